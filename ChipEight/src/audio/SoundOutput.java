@@ -0,0 +1,25 @@
+package audio;
+
+/**
+ * Something that can play the chip 8 buzzer, driven by the sound timer of the VM.
+ */
+public interface SoundOutput {
+   /**
+    * Notifies this output of the sound timer state after a 60Hz timer tick.
+    * Implementations must return quickly and must never block the emulation thread.
+    * @param soundTimer the value of the sound timer, the tone sounds while this is not 0.
+    */
+   public void tick(int soundTimer);
+
+   /**
+    * Sets the XO-CHIP audio pattern to play instead of the default square wave.
+    * @param pattern the 16 byte pattern, null to use the square wave.
+    * @param pitch the XO-CHIP pitch register value.
+    */
+   public void setPattern(byte[] pattern, int pitch);
+
+   /**
+    * Stops this output and releases any resources it holds.
+    */
+   public void close();
+}//End interface SoundOutput
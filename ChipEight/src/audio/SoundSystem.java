@@ -0,0 +1,105 @@
+package audio;
+
+import javax.sound.sampled.AudioFormat;
+import javax.sound.sampled.AudioSystem;
+import javax.sound.sampled.LineUnavailableException;
+import javax.sound.sampled.SourceDataLine;
+
+/**
+ * Plays the chip 8 buzzer through javax.sound on its own thread.
+ * The emulation thread only publishes the timer state through {@link #tick(int)}, which writes a
+ * volatile field and returns, the synthesis thread picks the state up between chunks. The line is 
+ * opened with a buffer of only a few chunks so a change in the sound timer is heard in under 20ms.
+ */
+public class SoundSystem implements SoundOutput, Runnable {
+   /**The number of samples generated per chunk, roughly 6ms of audio.*/
+   private static final int CHUNK_SAMPLES = 256;
+   /**The number of chunks the line buffer holds, keeps the output latency at roughly 17ms.*/
+   private static final int BUFFERED_CHUNKS = 3;
+
+   /**The generator used to synthesise the tone, only touched by the synthesis thread.*/
+   private ToneGenerator generator = new ToneGenerator();
+   /**The line being written to.*/
+   private SourceDataLine line;
+   /**The synthesis thread.*/
+   private Thread thread;
+   /**Whether the tone should currently be sounding.*/
+   private volatile boolean toneOn;
+   /**Whether the synthesis thread should keep running.*/
+   private volatile boolean running;
+   /**A pattern waiting to be handed to the generator, set by the emulation thread.*/
+   private volatile byte[] pendingPattern;
+   /**The pitch to go with the pending pattern.*/
+   private volatile int pendingPitch;
+   /**Whether a new pattern is waiting to be handed to the generator.*/
+   private volatile boolean patternChanged;
+
+   /**
+    * Opens the audio line and starts the synthesis thread.
+    * @return <code>true</code> if audio output could be started, otherwise <code>false</code>.
+    */
+   public boolean start(){
+      if(running){
+         return true;
+      }//End if
+      try{
+         AudioFormat format = new AudioFormat(ToneGenerator.SAMPLE_RATE, 16, 1, true, false);
+         line = AudioSystem.getSourceDataLine(format);
+         line.open(format, CHUNK_SAMPLES * BUFFERED_CHUNKS * ToneGenerator.BYTES_PER_SAMPLE);
+         line.start();
+      } catch (LineUnavailableException | IllegalArgumentException e){
+         System.err.println("Unable to open an audio line, sound is disabled.");
+         e.printStackTrace();
+         line = null;
+         return false;
+      }//End try/catch
+      running = true;
+      thread = new Thread(this, "Chip8 Sound");
+      thread.setDaemon(true);
+      thread.setPriority(Thread.MAX_PRIORITY);
+      thread.start();
+      return true;
+   }//End method start
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void run(){
+      byte[] chunk = new byte[CHUNK_SAMPLES * ToneGenerator.BYTES_PER_SAMPLE];
+      while(running){
+         if(patternChanged){
+            patternChanged = false;
+            generator.setPattern(pendingPattern, pendingPitch);
+         }//End if
+         generator.generate(chunk, 0, CHUNK_SAMPLES, toneOn);
+         //Blocks this thread only, until there is room in the line buffer.
+         line.write(chunk, 0, chunk.length);
+      }//End while
+      line.drain();
+      line.close();
+   }//End method run
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void tick(int soundTimer){
+      toneOn = soundTimer > 0;
+   }//End method tick
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void setPattern(byte[] pattern, int pitch){
+      pendingPattern = pattern == null ? null : pattern.clone();
+      pendingPitch = pitch;
+      patternChanged = true;
+   }//End method setPattern
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void close(){
+      running = false;
+      toneOn = false;
+   }//End method close
+}//End class SoundSystem
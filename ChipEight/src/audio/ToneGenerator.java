@@ -0,0 +1,81 @@
+package audio;
+
+/**
+ * Generates 16 bit signed mono PCM for the chip 8 buzzer. By default this is a
+ * square wave at a fixed frequency, if an XO-CHIP audio pattern has been set then the
+ * 128 bit pattern is looped at the rate given by the pitch register instead.
+ */
+public class ToneGenerator {
+   /**The sample rate of the generated audio in Hz.*/
+   public static final int SAMPLE_RATE = 44100;
+   /**The number of bytes per generated sample.*/
+   public static final int BYTES_PER_SAMPLE = 2;
+   /**The default frequency of the square wave in Hz.*/
+   public static final double DEFAULT_FREQUENCY = 440;
+   /**The number of bits in an XO-CHIP audio pattern.*/
+   private static final int PATTERN_BITS = 128;
+   /**The default XO-CHIP pitch, plays the pattern at 4000 bits per second.*/
+   private static final int DEFAULT_PITCH = 64;
+   /**Amplitude of the generated wave, kept well below full scale.*/
+   private static final short AMPLITUDE = 6000;
+
+   /**The frequency of the square wave in Hz.*/
+   private double frequency = DEFAULT_FREQUENCY;
+   /**The XO-CHIP audio pattern, null if the square wave should be used.*/
+   private byte[] pattern;
+   /**The XO-CHIP pitch register.*/
+   private int pitch = DEFAULT_PITCH;
+   /**The current phase of the wave in cycles, kept between chunks so there are no clicks.*/
+   private double phase;
+
+   /**
+    * Sets the frequency of the square wave.
+    * @param frequency the frequency to set in Hz.
+    */
+   public void setFrequency(double frequency){
+      this.frequency = frequency;
+   }//End method setFrequency
+
+   /**
+    * Sets the XO-CHIP audio pattern to play instead of the square wave.
+    * @param pattern the 16 byte pattern to play, null to go back to the square wave.
+    * @param pitch the XO-CHIP pitch register value.
+    */
+   public void setPattern(byte[] pattern, int pitch){
+      if(pattern != null && pattern.length != PATTERN_BITS / 8){
+         throw new IllegalArgumentException("An audio pattern must be " + PATTERN_BITS / 8 + " bytes long");
+      }//End if
+      this.pattern = pattern;
+      this.pitch = pitch;
+   }//End method setPattern
+
+   /**
+    * Generates samples into the given buffer.
+    * @param buffer the buffer to write the little endian samples to.
+    * @param offset the byte offset in the buffer to start writing at.
+    * @param samples the number of samples to generate.
+    * @param on whether the tone is currently sounding, silence is written if not.
+    */
+   public void generate(byte[] buffer, int offset, int samples, boolean on){
+      byte[] pattern = this.pattern;
+      double step = pattern == null ? frequency / SAMPLE_RATE 
+            : 4000 * Math.pow(2, (pitch - DEFAULT_PITCH) / 48.0) / SAMPLE_RATE / PATTERN_BITS;
+      for(int s = 0; s < samples; s++){
+         short sample = 0;
+         if(on){
+            if(pattern == null){
+               sample = phase < 0.5 ? AMPLITUDE : -AMPLITUDE;
+            } else {
+               int bit = (int)(phase * PATTERN_BITS);
+               sample = ((pattern[bit >> 3] >> (7 - (bit & 7))) & 0x1) == 1 ? AMPLITUDE : -AMPLITUDE;
+            }//End if
+            phase += step;
+            if(phase >= 1){
+               phase -= Math.floor(phase);
+            }//End if
+         }//End if
+         buffer[offset++] = (byte) sample;
+         buffer[offset++] = (byte) (sample >> 8);
+      }//End for
+   }//End method generate
+}//End class ToneGenerator
@@ -0,0 +1,88 @@
+package audio;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+/**
+ * Renders the chip 8 buzzer to a WAV file, for headless runs where there is no audio device.
+ * Each call to {@link #tick(int)} renders exactly one 60Hz timer period of audio, so the file
+ * stays in step with emulated time rather than wall clock time.
+ */
+public class WavRecorder implements SoundOutput {
+   /**The size of the RIFF/WAVE header in bytes.*/
+   private static final int HEADER_SIZE = 44;
+   /**The rate the timers tick at in Hz.*/
+   private static final int TIMER_RATE = 60;
+
+   /**The generator used to synthesise the tone.*/
+   private ToneGenerator generator = new ToneGenerator();
+   /**The file being written to.*/
+   private RandomAccessFile file;
+   /**Buffer holding one timer period of samples.*/
+   private byte[] buffer;
+   /**The number of whole samples rendered, used to spread the remainder of 44100 / 60.*/
+   private long samplesWritten;
+   /**The number of ticks rendered.*/
+   private long ticks;
+
+   /**
+    * Constructs a new {@link WavRecorder} writing to the given file.
+    * @param output the file to write to, any existing file is replaced.
+    * @throws IOException if the file can not be opened.
+    */
+   public WavRecorder(File output) throws IOException{
+      file = new RandomAccessFile(output, "rw");
+      file.setLength(0);
+      file.write(new byte[HEADER_SIZE]);
+      buffer = new byte[(ToneGenerator.SAMPLE_RATE / TIMER_RATE + 1) * ToneGenerator.BYTES_PER_SAMPLE];
+   }//End constructor
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void tick(int soundTimer){
+      ticks++;
+      int samples = (int)(ticks * ToneGenerator.SAMPLE_RATE / TIMER_RATE - samplesWritten);
+      generator.generate(buffer, 0, samples, soundTimer > 0);
+      try{
+         file.write(buffer, 0, samples * ToneGenerator.BYTES_PER_SAMPLE);
+      } catch (IOException e){
+         e.printStackTrace();
+      }//End try/catch
+      samplesWritten += samples;
+   }//End method tick
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void setPattern(byte[] pattern, int pitch){
+      generator.setPattern(pattern, pitch);
+   }//End method setPattern
+
+   /**
+    * Writes the WAV header now the length of the data is known and closes the file.
+    */
+   @Override public void close(){
+      try{
+         int dataSize = (int)(samplesWritten * ToneGenerator.BYTES_PER_SAMPLE);
+         file.seek(0);
+         file.writeBytes("RIFF");
+         file.writeInt(Integer.reverseBytes(36 + dataSize));
+         file.writeBytes("WAVE");
+         file.writeBytes("fmt ");
+         file.writeInt(Integer.reverseBytes(16));
+         file.writeShort(Short.reverseBytes((short)1)); //PCM
+         file.writeShort(Short.reverseBytes((short)1)); //Mono
+         file.writeInt(Integer.reverseBytes(ToneGenerator.SAMPLE_RATE));
+         file.writeInt(Integer.reverseBytes(ToneGenerator.SAMPLE_RATE * ToneGenerator.BYTES_PER_SAMPLE));
+         file.writeShort(Short.reverseBytes((short)ToneGenerator.BYTES_PER_SAMPLE));
+         file.writeShort(Short.reverseBytes((short)16));
+         file.writeBytes("data");
+         file.writeInt(Integer.reverseBytes(dataSize));
+         file.close();
+      } catch (IOException e){
+         e.printStackTrace();
+      }//End try/catch
+   }//End method close
+}//End class WavRecorder
@@ -0,0 +1,32 @@
+package capture;
+
+import java.io.IOException;
+
+/**
+ * Writes packed display frames to disk. Encoders are only ever called from the
+ * encoding thread of a {@link FrameRecorder}.
+ */
+public interface FrameEncoder {
+   /**
+    * Called once before the first frame is encoded.
+    * @param width the width of the display in pixels.
+    * @param height the height of the display in pixels.
+    * @throws IOException if the output can not be opened.
+    */
+   public void begin(int width, int height) throws IOException;
+
+   /**
+    * Encodes a single frame.
+    * @param bitmap the display packed at 1 bit per pixel, see {@link FrameRecorder#pack(boolean[][], long[])}.
+    * @param frame the emulated frame number the display was captured on.
+    * @param duration the number of emulated frames this display was shown for.
+    * @throws IOException if the frame can not be written.
+    */
+   public void encode(long[] bitmap, long frame, int duration) throws IOException;
+
+   /**
+    * Called once after the last frame has been encoded.
+    * @throws IOException if the output can not be completed.
+    */
+   public void finish() throws IOException;
+}//End interface FrameEncoder
@@ -0,0 +1,235 @@
+package capture;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Records the chip 8 display to disk. The emulation thread packs each frame to 1 bit per
+ * pixel and hands it over on a bounded queue, identical consecutive frames are dropped
+ * before they reach the queue. Encoding happens on a background thread through a {@link FrameEncoder}.
+ * Frame snapshots are pooled, so capturing a frame does not allocate.
+ */
+public class FrameRecorder implements Runnable {
+   /**The ARGB colour used for set pixels.*/
+   public static final int ON_COLOUR = 0xFFFFFFFF;
+   /**The ARGB colour used for clear pixels.*/
+   public static final int OFF_COLOUR = 0xFF000000;
+   /**The number of frames that can be waiting to be encoded.*/
+   private static final int QUEUE_SIZE = 64;
+
+   /**A packed frame waiting to be encoded.*/
+   private static class Frame{
+      /**The packed display.*/
+      private long[] bitmap;
+      /**The emulated frame number the display was captured on.*/
+      private long number;
+
+      private Frame(int words){
+         bitmap = new long[words];
+      }//End constructor
+   }//End class Frame
+
+   /**The encoder to write frames with.*/
+   private FrameEncoder encoder;
+   /**The width and height of the display being recorded.*/
+   private int width, height;
+   /**Frames waiting to be encoded.*/
+   private BlockingQueue<Frame> queue;
+   /**Frames free to be reused.*/
+   private BlockingQueue<Frame> pool;
+   /**The last frame that was queued, for removing duplicates.*/
+   private long[] last;
+   /**Scratch bitmap the current display is packed into.*/
+   private long[] scratch;
+   /**Whether any frame has been queued yet.*/
+   private boolean started;
+   /**The number of the last frame passed to {@link #capture(boolean[][], long)}.*/
+   private long lastFrame;
+   /**If true, capturing waits for room in the queue rather than dropping the frame.*/
+   private boolean lossless;
+   /**The number of frames dropped because the queue was full.*/
+   private int droppedFrames;
+   /**Whether the encoder has failed, frames are discarded once it has.*/
+   private volatile boolean failed;
+   /**The encoding thread.*/
+   private Thread thread;
+
+   /**
+    * Constructs a new {@link FrameRecorder} and starts its encoding thread.
+    * @param encoder the {@link FrameEncoder} to write frames with.
+    * @param width the width of the display in pixels.
+    * @param height the height of the display in pixels.
+    * @param lossless if true capturing blocks when the queue is full, for headless runs where
+    * every frame matters more than speed, otherwise frames are dropped.
+    */
+   public FrameRecorder(FrameEncoder encoder, int width, int height, boolean lossless){
+      this.encoder = encoder;
+      this.width = width;
+      this.height = height;
+      this.lossless = lossless;
+      int words = (width * height + 63) / 64;
+      //One extra slot in the queue for the end of recording marker.
+      queue = new ArrayBlockingQueue<Frame>(QUEUE_SIZE + 1);
+      pool = new ArrayBlockingQueue<Frame>(QUEUE_SIZE);
+      for(int i = 0; i < QUEUE_SIZE; i++){
+         pool.add(new Frame(words));
+      }//End for
+      last = new long[words];
+      scratch = new long[words];
+      thread = new Thread(this, "Chip8 Frame Recorder");
+      thread.setDaemon(true);
+      thread.start();
+   }//End constructor
+
+   /**
+    * Creates a {@link FrameEncoder} for the given file, ".gif" files are written as an animated GIF,
+    * ".raw" files as a raw 1 bit per pixel stream and anything else is treated as a directory
+    * for a PNG sequence.
+    * @param file the file or directory to write to.
+    * @param scale the number of image pixels per display pixel.
+    * @return the {@link FrameEncoder} for the file.
+    */
+   public static FrameEncoder createEncoder(File file, int scale){
+      String name = file.getName().toLowerCase();
+      if(name.endsWith(".gif")){
+         return new GifEncoder(file, scale);
+      } else if(name.endsWith(".raw")){
+         return new RawFrameEncoder(file);
+      }//End if
+      return new PngSequenceEncoder(file, scale);
+   }//End method createEncoder
+
+   /**
+    * Packs a display buffer to 1 bit per pixel, pixel (x, y) is stored in bit (y * width + x).
+    * @param display the display buffer indexed [x][y].
+    * @param bitmap the bitmap to pack into.
+    */
+   public static void pack(boolean[][] display, long[] bitmap){
+      Arrays.fill(bitmap, 0L);
+      int width = display.length;
+      for(int x = 0; x < width; x++){
+         boolean[] column = display[x];
+         for(int y = 0; y < column.length; y++){
+            if(column[y]){
+               int bit = y * width + x;
+               bitmap[bit >> 6] |= 1L << bit;
+            }//End if
+         }//End for
+      }//End for
+   }//End method pack
+
+   /**
+    * Captures a frame of the display, called from the emulation thread.
+    * @param display the display buffer indexed [x][y].
+    * @param frame the emulated frame number.
+    * @return <code>true</code> if the frame was queued, <code>false</code> if it was identical to
+    * the last frame or had to be dropped.
+    */
+   public boolean capture(boolean[][] display, long frame){
+      lastFrame = frame;
+      pack(display, scratch);
+      if(started && Arrays.equals(scratch, last)){
+         return false;
+      }//End if
+      Frame snapshot = pool.poll();
+      try{
+         if(snapshot == null && lossless && !failed){
+            snapshot = pool.take();
+         }//End if
+      } catch (InterruptedException e){
+         Thread.currentThread().interrupt();
+      }//End try/catch
+      if(snapshot == null){
+         droppedFrames++;
+         return false;
+      }//End if
+      System.arraycopy(scratch, 0, snapshot.bitmap, 0, scratch.length);
+      snapshot.number = frame;
+      long[] swap = last;
+      last = scratch;
+      scratch = swap;
+      started = true;
+      queue.add(snapshot);
+      return true;
+   }//End method capture
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void run(){
+      Frame previous = null;
+      try{
+         encoder.begin(width, height);
+      } catch (IOException e){
+         e.printStackTrace();
+         failed = true;
+      }//End try/catch
+      while(true){
+         Frame frame;
+         try{
+            frame = queue.take();
+         } catch (InterruptedException e){
+            break;
+         }//End try/catch
+         if(previous != null){
+            //The previous frame was shown until this one replaced it.
+            encode(previous, (int)(frame.number - previous.number));
+            pool.add(previous);
+         }//End if
+         if(frame.bitmap == null){
+            break;
+         }//End if
+         previous = frame;
+      }//End while
+      try{
+         if(!failed){
+            encoder.finish();
+         }//End if
+      } catch (IOException e){
+         e.printStackTrace();
+      }//End try/catch
+   }//End method run
+
+   /**
+    * Encodes a frame, marking this recorder as failed if the encoder throws.
+    * @param frame the frame to encode.
+    * @param duration the number of emulated frames it was shown for.
+    */
+   private void encode(Frame frame, int duration){
+      if(failed){
+         return;
+      }//End if
+      try{
+         encoder.encode(frame.bitmap, frame.number, Math.max(duration, 1));
+      } catch (IOException e){
+         e.printStackTrace();
+         failed = true;
+      }//End try/catch
+   }//End method encode
+
+   /**
+    * Stops recording, waits for the queued frames to be encoded and completes the output.
+    */
+   public void stop(){
+      Frame end = new Frame(0);
+      end.bitmap = null;
+      end.number = lastFrame + 1;
+      try{
+         queue.put(end);
+         thread.join();
+      } catch (InterruptedException e){
+         Thread.currentThread().interrupt();
+      }//End try/catch
+   }//End method stop
+
+   /**
+    * Gets the number of frames dropped because the encoder could not keep up.
+    * @return the number of dropped frames.
+    */
+   public int getDroppedFrames(){
+      return droppedFrames;
+   }//End method getDroppedFrames
+}//End class FrameRecorder
@@ -0,0 +1,133 @@
+package capture;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.IIOImage;
+import javax.imageio.ImageIO;
+import javax.imageio.ImageTypeSpecifier;
+import javax.imageio.ImageWriteParam;
+import javax.imageio.ImageWriter;
+import javax.imageio.metadata.IIOMetadata;
+import javax.imageio.metadata.IIOMetadataNode;
+import javax.imageio.stream.ImageOutputStream;
+
+import java.awt.image.BufferedImage;
+
+import utility.ImageUtils;
+
+/**
+ * {@link FrameEncoder} writing an animated, looping GIF. Each frame is shown for as
+ * long as the display was unchanged in emulated time.
+ */
+public class GifEncoder implements FrameEncoder {
+   /**The metadata format used by the JDK GIF writer.*/
+   private static final String METADATA_FORMAT = "javax_imageio_gif_image_1.0";
+
+   /**The file to write to.*/
+   private File file;
+   /**The number of image pixels per display pixel.*/
+   private int scale;
+   /**The width and height of the display.*/
+   private int width, height;
+   /**The GIF writer.*/
+   private ImageWriter writer;
+   /**The stream the writer is writing to.*/
+   private ImageOutputStream out;
+   /**The emulated time written so far in 1/100ths of a second, used to keep frame delays from drifting.*/
+   private long centisecondsWritten;
+   /**The emulated frames written so far.*/
+   private long framesWritten;
+
+   /**
+    * Constructs a new {@link GifEncoder}.
+    * @param file the file to write the GIF to.
+    * @param scale the number of image pixels per display pixel.
+    */
+   public GifEncoder(File file, int scale){
+      this.file = file;
+      this.scale = scale;
+   }//End constructor
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void begin(int width, int height) throws IOException{
+      this.width = width;
+      this.height = height;
+      writer = ImageIO.getImageWritersByFormatName("gif").next();
+      if(file.exists()){
+         file.delete();
+      }//End if
+      out = ImageIO.createImageOutputStream(file);
+      writer.setOutput(out);
+      writer.prepareWriteSequence(null);
+   }//End method begin
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void encode(long[] bitmap, long frame, int duration) throws IOException{
+      BufferedImage image = ImageUtils.createImageFromBitmap(bitmap, width, height, scale, FrameRecorder.ON_COLOUR, FrameRecorder.OFF_COLOUR);
+      framesWritten += duration;
+      long target = framesWritten * 100 / 60;
+      int delay = (int)Math.max(1, target - centisecondsWritten);
+      centisecondsWritten += delay;
+      writer.writeToSequence(new IIOImage(image, null, createMetadata(image, delay, centisecondsWritten == delay)), null);
+   }//End method encode
+
+   /**
+    * Creates the metadata for a frame of the animation.
+    * @param image the image the metadata is for.
+    * @param delay the time to show the frame for in 1/100ths of a second.
+    * @param first whether this is the first frame, which carries the looping extension.
+    * @return the {@link IIOMetadata} for the frame.
+    * @throws IOException if the metadata can not be built.
+    */
+   private IIOMetadata createMetadata(BufferedImage image, int delay, boolean first) throws IOException{
+      ImageWriteParam param = writer.getDefaultWriteParam();
+      IIOMetadata metadata = writer.getDefaultImageMetadata(ImageTypeSpecifier.createFromRenderedImage(image), param);
+      IIOMetadataNode root = (IIOMetadataNode) metadata.getAsTree(METADATA_FORMAT);
+      IIOMetadataNode control = getNode(root, "GraphicControlExtension");
+      control.setAttribute("disposalMethod", "none");
+      control.setAttribute("userInputFlag", "FALSE");
+      control.setAttribute("transparentColorFlag", "FALSE");
+      control.setAttribute("delayTime", Integer.toString(delay));
+      control.setAttribute("transparentColorIndex", "0");
+      if(first){
+         IIOMetadataNode application = new IIOMetadataNode("ApplicationExtension");
+         application.setAttribute("applicationID", "NETSCAPE");
+         application.setAttribute("authenticationCode", "2.0");
+         application.setUserObject(new byte[]{ 0x1, 0, 0 }); //Loop forever
+         getNode(root, "ApplicationExtensions").appendChild(application);
+      }//End if
+      metadata.setFromTree(METADATA_FORMAT, root);
+      return metadata;
+   }//End method createMetadata
+
+   /**
+    * Gets the child node of the given name, creating it if it does not exist.
+    * @param root the node to search.
+    * @param name the name of the child node.
+    * @return the child node.
+    */
+   private static IIOMetadataNode getNode(IIOMetadataNode root, String name){
+      for(int i = 0; i < root.getLength(); i++){
+         if(root.item(i).getNodeName().equalsIgnoreCase(name)){
+            return (IIOMetadataNode) root.item(i);
+         }//End if
+      }//End for
+      IIOMetadataNode node = new IIOMetadataNode(name);
+      root.appendChild(node);
+      return node;
+   }//End method getNode
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void finish() throws IOException{
+      writer.endWriteSequence();
+      out.close();
+      writer.dispose();
+   }//End method finish
+}//End class GifEncoder
@@ -0,0 +1,57 @@
+package capture;
+
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import utility.ImageUtils;
+
+/**
+ * {@link FrameEncoder} writing each frame as a numbered PNG in a directory.
+ * The file name holds the emulated frame number, so gaps in the numbering are frames that were
+ * identical to the one before.
+ */
+public class PngSequenceEncoder implements FrameEncoder {
+   /**The directory to write the PNGs to.*/
+   private File directory;
+   /**The number of image pixels per display pixel.*/
+   private int scale;
+   /**The width and height of the display.*/
+   private int width, height;
+
+   /**
+    * Constructs a new {@link PngSequenceEncoder}.
+    * @param directory the directory to write the PNGs to, created if it does not exist.
+    * @param scale the number of image pixels per display pixel.
+    */
+   public PngSequenceEncoder(File directory, int scale){
+      this.directory = directory;
+      this.scale = scale;
+   }//End constructor
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void begin(int width, int height) throws IOException{
+      if(!directory.isDirectory() && !directory.mkdirs()){
+         throw new IOException("Unable to create the directory " + directory);
+      }//End if
+      this.width = width;
+      this.height = height;
+   }//End method begin
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void encode(long[] bitmap, long frame, int duration) throws IOException{
+      ImageIO.write(ImageUtils.createImageFromBitmap(bitmap, width, height, scale, FrameRecorder.ON_COLOUR, FrameRecorder.OFF_COLOUR),
+            "png", new File(directory, String.format("frame_%06d.png", frame)));
+   }//End method encode
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void finish(){
+   }//End method finish
+}//End class PngSequenceEncoder
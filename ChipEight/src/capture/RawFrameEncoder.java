@@ -0,0 +1,64 @@
+package capture;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+/**
+ * {@link FrameEncoder} writing a raw stream of 1 bit per pixel frames.
+ * The stream starts with the magic "C8RW", a version int and the display width and height,
+ * then for each frame the emulated timestamp in microseconds, the duration in frames and
+ * the packed bitmap as big endian longs.
+ */
+public class RawFrameEncoder implements FrameEncoder {
+   /**Magic number at the start of a raw stream, "C8RW".*/
+   public static final int MAGIC = 0x43385257;
+   /**The version of the stream format.*/
+   public static final int VERSION = 1;
+   /**The number of microseconds in an emulated 60Hz frame.*/
+   private static final double MICROS_PER_FRAME = 1000000.0 / 60;
+
+   /**The file to write to.*/
+   private File file;
+   /**The stream being written to.*/
+   private DataOutputStream out;
+
+   /**
+    * Constructs a new {@link RawFrameEncoder}.
+    * @param file the file to write the stream to.
+    */
+   public RawFrameEncoder(File file){
+      this.file = file;
+   }//End constructor
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void begin(int width, int height) throws IOException{
+      out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeInt(width);
+      out.writeInt(height);
+   }//End method begin
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void encode(long[] bitmap, long frame, int duration) throws IOException{
+      out.writeLong((long)(frame * MICROS_PER_FRAME));
+      out.writeInt(duration);
+      for(long bits : bitmap){
+         out.writeLong(bits);
+      }//End for
+   }//End method encode
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void finish() throws IOException{
+      out.close();
+   }//End method finish
+}//End class RawFrameEncoder
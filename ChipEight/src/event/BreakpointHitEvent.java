@@ -0,0 +1,21 @@
+package event;
+
+import core.event.Event;
+
+public class BreakpointHitEvent extends Event{
+   private int address;
+   private String reason;
+   
+   public BreakpointHitEvent(int address, String reason){
+      this.address = address;
+      this.reason = reason;
+   }
+   
+   public int getAddress(){
+      return address;
+   }
+   
+   public String getReason(){
+      return reason;
+   }
+}
@@ -1,6 +0,0 @@
-package event;
-
-import core.event.Event;
-
-public class CycleCompleteEvent extends Event{
-}
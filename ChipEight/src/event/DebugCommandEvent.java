@@ -0,0 +1,21 @@
+package event;
+
+import java.util.function.Consumer;
+
+import vm.Chip8Debugger;
+import core.event.Event;
+
+/**
+ * Carries a change to the {@link Chip8Debugger} from the UI to the game thread, which owns the VM.
+ */
+public class DebugCommandEvent extends Event{
+   private Consumer<Chip8Debugger> command;
+   
+   public DebugCommandEvent(Consumer<Chip8Debugger> command){
+      this.command = command;
+   }
+   
+   public void apply(Chip8Debugger debugger){
+      command.accept(debugger);
+   }
+}
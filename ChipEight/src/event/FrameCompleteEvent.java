@@ -0,0 +1,6 @@
+package event;
+
+import core.event.Event;
+
+public class FrameCompleteEvent extends Event{
+}
@@ -0,0 +1,15 @@
+package event;
+
+import core.event.Event;
+
+public class RunToCursorEvent extends Event{
+   private int address;
+   
+   public RunToCursorEvent(int address){
+      this.address = address;
+   }
+   
+   public int getAddress(){
+      return address;
+   }
+}
@@ -0,0 +1,18 @@
+package event;
+
+import java.io.File;
+
+import core.event.Event;
+
+public class StartRecordingEvent extends Event{
+   private File file;
+   
+   public StartRecordingEvent(File file){
+      this.file = file;
+   }
+   
+   public File getFile(){
+      return file;
+   }
+
+}
@@ -0,0 +1,7 @@
+package event;
+
+import core.event.Event;
+
+public class StopRecordingEvent extends Event{
+
+}
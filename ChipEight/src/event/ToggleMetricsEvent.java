@@ -0,0 +1,7 @@
+package event;
+
+import core.event.Event;
+
+public class ToggleMetricsEvent extends Event{
+
+}
@@ -1,5 +1,7 @@
 package game;
 
+import java.io.File;
+
 import javax.swing.SwingUtilities;
 import javax.swing.UIManager;
 
@@ -7,21 +9,61 @@ import org.lwjgl.opengl.Display;
 
 import ui.EmulatorFrame;
 import vm.Chip8VM;
+import audio.SoundOutput;
+import audio.SoundSystem;
+import capture.FrameRecorder;
 import core.Game;
 import core.event.EventManager;
+import core.graphics.SpriteFont;
+import core.graphics.TextureAtlas;
+import core.metrics.Counter;
+import core.metrics.MetricsOverlay;
+import core.metrics.MetricsRegistry;
 import core.resource.ResourceManager;
+import event.BreakpointHitEvent;
+import event.DebugCommandEvent;
 import event.DebugStepEvent;
+import event.FrameCompleteEvent;
 import event.GameInitialisedEvent;
 import event.LoadRomEvent;
+import event.RunToCursorEvent;
+import event.ShutdownEvent;
+import event.StartRecordingEvent;
+import event.StopRecordingEvent;
 import event.ToggleDebugEvent;
+import event.ToggleMetricsEvent;
 
 public class Chip8Game extends Game{
+   /**The font the metrics overlay is drawn with.*/
+   private static final String METRICS_FONT = "12-Monospaced.font";
    /**The {@link Chip8VM}.*/
    private Chip8VM vm;
    /**{@link EventManager} for message passing.*/
    private EventManager event = EventManager.getEventManager();
    /**Whether the VM is currently in debug mode.*/
    private boolean paused = false;
+   /**The {@link SoundOutput} driven by the sound timer of the VM.*/
+   private SoundOutput sound;
+   /**The {@link FrameRecorder} capturing the display, null if not recording.*/
+   private FrameRecorder recorder;
+   /**The number of frames the VM has been run for.*/
+   private long frame;
+   /**Counts the instructions the VM has executed.*/
+   private Counter instructions = MetricsRegistry.getMetricsRegistry().getCounter("vm.instructions");
+   /**Counts the instructions the VM accounted for in idle loops without running them.*/
+   private Counter idleInstructions = MetricsRegistry.getMetricsRegistry().getCounter("vm.idleInstructions");
+   /**The instructions executed in the last full second.*/
+   private volatile long instructionsPerSecond;
+   /**The instruction count at the start of the current second.*/
+   private long secondStartInstructions;
+   /**The time the current second started.*/
+   private long secondStart = System.nanoTime();
+   /**The metrics overlay, created when first shown.*/
+   private MetricsOverlay overlay;
+   /**Whether the metrics overlay is shown.*/
+   private boolean showMetrics;
+   /**The atlas the pixel and font textures are packed into, so a frame is a single draw call.*/
+   private TextureAtlas atlas;
 
    /**
     * Constructs a new Chip8Game
@@ -35,6 +77,14 @@ public class Chip8Game extends Game{
          event.registerFor(ToggleDebugEvent.class, (event)->(paused = !paused));
          event.registerFor(DebugStepEvent.class, (event)->debugStep());
          event.registerFor(LoadRomEvent.class, (event)->vm.loadGame(((LoadRomEvent)event).getFile()));
+         event.registerFor(StartRecordingEvent.class, (event)->startRecording(((StartRecordingEvent)event).getFile()));
+         event.registerFor(StopRecordingEvent.class, (event)->stopRecording());
+         event.registerFor(ToggleMetricsEvent.class, (event)->showMetrics = !showMetrics);
+         event.registerFor(DebugCommandEvent.class, (event)->((DebugCommandEvent)event).apply(vm.getDebugger()));
+         event.registerFor(BreakpointHitEvent.class, (event)->breakpointHit());
+         event.registerFor(RunToCursorEvent.class, (event)->runToCursor(((RunToCursorEvent)event).getAddress()));
+         event.registerFor(ShutdownEvent.class, (event)->requestClose());
+         MetricsRegistry.getMetricsRegistry().registerGauge("vm.ips", ()->instructionsPerSecond);
       } catch (Exception e) {
          e.printStackTrace();
       }//End try/catch
@@ -46,22 +96,74 @@ public class Chip8Game extends Game{
    @Override protected void update(double deltaTime) {
       if(!paused){
          cycleVM(10);
+         if(recorder != null){
+            recorder.capture(vm.getDisplayBuffer(), frame);
+         }//End if
+         frame++;
+      } else if(sound != null){
+         //The timers do not run while paused, so silence the tone rather than hold it.
+         sound.tick(0);
       }//End if
       draw();
+      event.fireEvent(new FrameCompleteEvent());
    }//End method update
 
    /**
-    * Cycles the VM by the specified number of times and decrements the delay and sound timers by one;
+    * Cycles the VM by the specified number of times, decrements the delay and sound timers by one
+    * and publishes the sound timer to the {@link SoundOutput};
     * @param times the number of times to cycle the VM.
     */
    public void cycleVM(int times){
-      for(int i = 0; i < times; i++){
-         vm.cycle();
-      }//End for
+      long executed = vm.getInstructionsExecuted();
+      idleInstructions.add(vm.runCycles(times));
+      //Only what actually ran, not cycles blocked, suspended or skipped as idle.
+      instructions.add(vm.getInstructionsExecuted() - executed);
+      long now = System.nanoTime();
+      if(now - secondStart >= 1e9){
+         long count = instructions.getCount();
+         instructionsPerSecond = count - secondStartInstructions;
+         secondStartInstructions = count;
+         secondStart = now;
+      }//End if
       vm.decrementDelayTimer();
       vm.decrementSoundTimer();
+      if(sound != null){
+         sound.tick(vm.getSoundTimer());
+      }//End if
    }//End method cycleVM
 
+   /**
+    * {@inheritDoc}
+    */
+   @Override protected void shutdown(){
+      //Finish the recording so the file has its trailer.
+      stopRecording();
+      if(sound != null){
+         sound.close();
+         sound = null;
+      }//End if
+   }//End method shutdown
+
+   /**
+    * Starts recording the display to the given file, stopping any current recording.
+    * @param file the file to record to, see {@link FrameRecorder#createEncoder(File, int)}.
+    */
+   private void startRecording(File file){
+      stopRecording();
+      boolean[][] displayBuffer = vm.getDisplayBuffer();
+      recorder = new FrameRecorder(FrameRecorder.createEncoder(file, 4), displayBuffer.length, displayBuffer[0].length, false);
+   }//End method startRecording
+
+   /**
+    * Stops recording the display, if it is being recorded.
+    */
+   private void stopRecording(){
+      if(recorder != null){
+         recorder.stop();
+         recorder = null;
+      }//End if
+   }//End method stopRecording
+
    /**
     * Draws the contents of the VM display buffer to the screen
     */
@@ -78,14 +180,50 @@ public class Chip8Game extends Game{
             }//End if
          }//End for
       }//End for
+      if(showMetrics){
+         drawMetrics();
+      }//End if
       spriteBatch.end();
    }//End method draw
 
+   /**
+    * Draws the metrics overlay, creating it on first use.
+    */
+   private void drawMetrics(){
+      if(overlay == null){
+         MetricsRegistry metrics = MetricsRegistry.getMetricsRegistry();
+         SpriteFont font = ResourceManager.getResource(SpriteFont.class, METRICS_FONT);
+         font.pack(atlas);
+         overlay = new MetricsOverlay(font);
+         overlay.addGauge("FPS", "fps");
+         overlay.addGauge("IPS", "vm.ips");
+         overlay.addTiming("Frame", metrics.getHistogram("frame.totalNanos"));
+         overlay.addTiming("Update", metrics.getHistogram("frame.updateNanos"));
+         overlay.addTiming("Render", metrics.getHistogram("frame.renderNanos"));
+         overlay.addTiming("Display", metrics.getHistogram("frame.displayNanos"));
+         overlay.addTiming("Events", metrics.getHistogram("events.dispatchNanos"));
+         overlay.addHistogram("Queue", metrics.getHistogram("events.queueDepth"));
+         overlay.addHistogram("Draws", metrics.getHistogram("spritebatch.drawsPerFrame"));
+         overlay.addHistogram("Flushes", metrics.getHistogram("spritebatch.flushesPerFrame"));
+         overlay.addGauge("GC", "gc.count");
+      }//End if
+      overlay.draw(spriteBatch, 4, 4);
+   }//End method drawMetrics
+
    /**
     * {@inheritDoc}
     */
    @Override protected void init() {
       vm.initialise();
+      atlas = new TextureAtlas();
+      atlas.add(ResourceManager.getBlankTexture());
+      spriteBatch.setTextureAtlas(atlas);
+      //Rasterise the overlay font in the background so showing the metrics does not stall a frame.
+      ResourceManager.loadAsync(SpriteFont.class, METRICS_FONT);
+      SoundSystem soundSystem = new SoundSystem();
+      if(soundSystem.start()){
+         sound = soundSystem;
+      }//End if
       SwingUtilities.invokeLater(this::openFrames);
    }//End method unit
 
@@ -96,6 +234,24 @@ public class Chip8Game extends Game{
       EventManager.getEventManager().fireEvent(new GameInitialisedEvent());
    }//End method openFrames
 
+   /**
+    * Pauses emulation when the debugger breaks, then resumes the VM so it can be stepped
+    * or continued from the breakpoint.
+    */
+   private void breakpointHit(){
+      paused = true;
+      vm.getDebugger().resume();
+   }//End method breakpointHit
+
+   /**
+    * Runs the VM until it reaches an address, unpausing emulation if needed.
+    * @param address the address to run to.
+    */
+   private void runToCursor(int address){
+      vm.getDebugger().runTo(address);
+      paused = false;
+   }//End method runToCursor
+
    /**
     * Steps forward the VM by 1 operation.
     */
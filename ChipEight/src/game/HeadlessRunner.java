@@ -0,0 +1,158 @@
+package game;
+
+import java.io.File;
+import java.io.IOException;
+
+import vm.Chip8Profiler;
+import vm.Chip8Translator;
+import vm.Chip8Tracer;
+import vm.Chip8VM;
+import audio.SoundOutput;
+import audio.WavRecorder;
+import capture.FrameRecorder;
+import core.event.EventManager;
+
+/**
+ * Runs a ROM without a window or OpenGL context, for bug reports and CI artefacts.
+ * Usage: HeadlessRunner rom [-frames n] [-cycles n] [-record file] [-scale n] [-wav file] [-profile file] [-trace file] [-aot dir]
+ * where -record takes a .gif, a .raw or a directory for a PNG sequence, and -profile takes a .json or .csv.
+ * -trace records the last million instructions to the file at the end of the run, and next to it on an unsupported opcode.
+ * -aot runs the ROM as Java translated ahead of time, cached in the directory.
+ */
+public class HeadlessRunner {
+   /**The default number of 60Hz frames to run for.*/
+   private static final int DEFAULT_FRAMES = 600;
+   /**The default number of cycles per frame, matches {@link Chip8Game}.*/
+   private static final int DEFAULT_CYCLES = 10;
+   /**The default scale of recorded frames.*/
+   private static final int DEFAULT_SCALE = 4;
+   /**The number of instructions kept when tracing.*/
+   private static final int TRACE_CAPACITY = 1 << 20;
+
+   /**The VM being run.*/
+   private Chip8VM vm;
+   /**The number of cycles to run per frame.*/
+   private int cyclesPerFrame;
+   /**The recorder to capture frames with, null if not recording.*/
+   private FrameRecorder recorder;
+   /**The sound output, null if sound is not being rendered.*/
+   private SoundOutput sound;
+   /**The number of frames run so far.*/
+   private long frame;
+
+   /**
+    * Constructs a new {@link HeadlessRunner}.
+    * @param vm the {@link Chip8VM} to run, with a ROM already loaded.
+    * @param cyclesPerFrame the number of cycles to run per 60Hz frame.
+    */
+   public HeadlessRunner(Chip8VM vm, int cyclesPerFrame){
+      this.vm = vm;
+      this.cyclesPerFrame = cyclesPerFrame;
+   }//End constructor
+
+   /**
+    * Sets the {@link FrameRecorder} to capture each frame with.
+    * @param recorder the recorder to set, null to stop capturing.
+    */
+   public void setRecorder(FrameRecorder recorder){
+      this.recorder = recorder;
+   }//End method setRecorder
+
+   /**
+    * Sets the {@link SoundOutput} to drive with the sound timer.
+    * @param sound the sound output to set, null for no sound.
+    */
+   public void setSoundOutput(SoundOutput sound){
+      this.sound = sound;
+   }//End method setSoundOutput
+
+   /**
+    * Runs the VM for a number of frames, each frame runs the cycles, ticks the timers
+    * and captures the display.
+    * @param frames the number of frames to run.
+    */
+   public void run(int frames){
+      EventManager events = EventManager.getEventManager();
+      for(int f = 0; f < frames; f++){
+         vm.runCycles(cyclesPerFrame);
+         vm.decrementDelayTimer();
+         vm.decrementSoundTimer();
+         if(sound != null){
+            sound.tick(vm.getSoundTimer());
+         }//End if
+         if(recorder != null){
+            recorder.capture(vm.getDisplayBuffer(), frame);
+         }//End if
+         //Nothing is listening, but the queue still needs emptying.
+         events.processEventQueue();
+         frame++;
+      }//End for
+   }//End method run
+
+   /**
+    * Entry point.
+    * @param args arguments, see the class documentation.
+    * @throws IOException if an output file can not be written.
+    */
+   public static void main(String[] args) throws IOException{
+      if(args.length < 1){
+         System.err.println("Usage: HeadlessRunner rom [-frames n] [-cycles n] [-record file] [-scale n] [-wav file] [-profile file] [-trace file] [-aot dir]");
+         System.exit(1);
+      }//End if
+      int frames = DEFAULT_FRAMES;
+      int cycles = DEFAULT_CYCLES;
+      int scale = DEFAULT_SCALE;
+      File record = null;
+      File wav = null;
+      File profile = null;
+      File trace = null;
+      File aot = null;
+      for(int i = 1; i < args.length - 1; i += 2){
+         switch(args[i]){
+         case "-frames": frames = Integer.parseInt(args[i + 1]); break;
+         case "-cycles": cycles = Integer.parseInt(args[i + 1]); break;
+         case "-scale": scale = Integer.parseInt(args[i + 1]); break;
+         case "-record": record = new File(args[i + 1]); break;
+         case "-wav": wav = new File(args[i + 1]); break;
+         case "-profile": profile = new File(args[i + 1]); break;
+         case "-trace": trace = new File(args[i + 1]); break;
+         case "-aot": aot = new File(args[i + 1]); break;
+         default: System.err.println("Unknown option " + args[i]);
+         }//End switch
+      }//End for
+      Chip8VM vm = new Chip8VM();
+      vm.loadGame(new File(args[0]));
+      HeadlessRunner runner = new HeadlessRunner(vm, cycles);
+      boolean[][] display = vm.getDisplayBuffer();
+      if(record != null){
+         runner.setRecorder(new FrameRecorder(FrameRecorder.createEncoder(record, scale), display.length, display[0].length, true));
+      }//End if
+      if(wav != null){
+         runner.setSoundOutput(new WavRecorder(wav));
+      }//End if
+      if(profile != null){
+         vm.setProfiler(new Chip8Profiler());
+      }//End if
+      if(trace != null){
+         Chip8Tracer tracer = new Chip8Tracer(TRACE_CAPACITY);
+         tracer.setFaultDirectory(trace.getAbsoluteFile().getParentFile());
+         vm.setTracer(tracer);
+      }//End if
+      if(aot != null){
+         vm.setCompiled(Chip8Translator.load(new File(args[0]), aot));
+      }//End if
+      runner.run(frames);
+      if(runner.recorder != null){
+         runner.recorder.stop();
+      }//End if
+      if(runner.sound != null){
+         runner.sound.close();
+      }//End if
+      if(profile != null){
+         vm.getProfiler().dump(profile);
+      }//End if
+      if(trace != null){
+         vm.getTracer().dump(trace);
+      }//End if
+   }//End method main
+}//End class HeadlessRunner
@@ -7,13 +7,24 @@ import javax.swing.JScrollPane;
 
 import javax.swing.JTable;
 import javax.swing.KeyStroke;
+import javax.swing.SwingUtilities;
+import javax.swing.WindowConstants;
+import javax.swing.table.AbstractTableModel;
 import javax.swing.table.DefaultTableCellRenderer;
-import javax.swing.table.DefaultTableModel;
 
 import java.awt.Color;
 import java.awt.Component;
 import java.awt.Event;
+import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.awt.event.ComponentAdapter;
+import java.awt.event.ComponentEvent;
+import java.awt.event.MouseEvent;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.ObjIntConsumer;
+import java.util.function.Predicate;
 
 import javax.swing.JMenuBar;
 import javax.swing.JMenuItem;
@@ -21,28 +32,89 @@ import javax.swing.JMenuItem;
 import core.event.EventManager;
 
 import javax.swing.JMenu;
+import javax.swing.JOptionPane;
 
-import vm.Chip8Memory;
+import vm.Chip8Debugger;
+import vm.Chip8Disassembler;
+import vm.Chip8State;
 import vm.Chip8VM;
-import vm.Chip8Memory.Change;
-import event.CycleCompleteEvent;
+import vm.ControlFlowGraph;
+import event.BreakpointHitEvent;
+import event.DebugCommandEvent;
 import event.DebugStepEvent;
+import event.RunToCursorEvent;
+import event.FrameCompleteEvent;
 import event.ToggleDebugEvent;
 
 import java.awt.GridBagLayout;
 import java.awt.GridBagConstraints;
 import java.awt.Insets;
 
+/**
+ * Debugger view of the registers and memory of a {@link Chip8VM}.
+ * 
+ * The VM is never read from the EDT. At the end of a frame, at most 30 times a second, the game thread
+ * copies the VM into a {@link Chip8State} and hands it to the EDT, which diffs it against the snapshot
+ * on screen and repaints only the cells that changed. The table models format cells from the snapshot
+ * when they are painted, so only the visible rows are ever turned into text.
+ */
 public class DebugFrame extends JFrame {
    private static final long serialVersionUID = -395547754627517058L;
+   /**Nanoseconds between snapshots, 30 a second.*/
+   private static final long SNAPSHOT_NANOS = 1000000000L / 30;
+   /**The number of bytes shown on each row of the memory table.*/
+   private static final int BYTES_PER_ROW = 16;
+   /**Above this many changed memory cells all rows are repainted rather than each cell.*/
+   private static final int CELL_UPDATE_LIMIT = 64;
+   /**Two digit hex strings for every byte value, so painting does not format.*/
+   private static final String[] HEX = new String[256];
+   /**The columns of the register table.*/
+   private static final String[] REGISTER_COLUMNS = new String[]{
+      "v0", "v1", "v2", "v3", "v4", "v5", "v6", "v7", "v8", "v9", "vA", "vB", "vC", "vD", "vE", "vF", "I", "Delay", "Sound", "PC", "SP"
+   };
+   /**The columns of the memory table.*/
+   private static final String[] MEMORY_COLUMNS = new String[]{
+      "", "0", "1", "2", "3", "4", "5", "6", "7", "8", "9", "A", "B", "C", "D", "E", "F"
+   };
+
+   static{
+      for(int b = 0; b < HEX.length; b++){
+         HEX[b] = String.format("%02X", b);
+      }//End for
+   }//End static
+
    private JTable memoryTable;
    private JTable registerTable;
    private JMenuBar menuBar;
    private JMenu mntmdebug;
    private JMenuItem mntmToggleDebug;
    private JMenuItem mntmStepForward;
-   private int pc = 0x200;
+   private JMenu mnBreakpoints;
+   private JMenuItem mntmToggleBreakpoint;
+   private JMenuItem mntmConditionalBreakpoint;
+   private JMenuItem mntmReadWatchpoint;
+   private JMenuItem mntmWriteWatchpoint;
+   private JMenuItem mntmRunToCursor;
+   private JMenuItem mntmClearBreakpoints;
    private Chip8VM vm;
+   /**The model of the memory table.*/
+   private MemoryTableModel memoryModel = new MemoryTableModel();
+   /**The model of the register table.*/
+   private RegisterTableModel registerModel = new RegisterTableModel();
+   /**The snapshot on screen, only used on the EDT.*/
+   private Chip8State current = new Chip8State();
+   /**The newest snapshot not yet shown, handed from the game thread to the EDT.*/
+   private AtomicReference<Chip8State> latest = new AtomicReference<Chip8State>();
+   /**A snapshot the EDT has finished with, for the game thread to reuse.*/
+   private AtomicReference<Chip8State> spare = new AtomicReference<Chip8State>();
+   /**The time of the last snapshot, only used on the game thread.*/
+   private long lastSnapshot;
+   /**Whether the frame is showing and snapshots should be taken.*/
+   private volatile boolean open = true;
+   /**The control flow graph of the snapshot on screen, rebuilt when memory changes.*/
+   private ControlFlowGraph graph = Chip8Disassembler.analyse(current);
+   /**Bitmap of the memory cells that changed in the latest snapshot.*/
+   private long[] dirty = new long[4096 / 64];
 
    private class CellRenderer extends DefaultTableCellRenderer{
       private static final long serialVersionUID = 4113262082580460652L;
@@ -56,25 +128,97 @@ public class DebugFrame extends JFrame {
             Object value, boolean isSelected, boolean hasFocus, int row, int column) {
          
          Component cell = super.getTableCellRendererComponent(table, value, isSelected, hasFocus, row, column);
-         int x = pc % 16 + 1;
-         int y = (int) Math.floor(pc / 16);
-         int x1 = (pc + 1) % 16 + 1;
-         int y1 = (int) Math.floor((pc + 1)/ 16) ;
-         if((x == column && y == row) || (x1 == column && y1 == row)){
+         int pc = current.getProgramCounter();
+         int address = row * BYTES_PER_ROW + column - 1;
+         if(column > 0 && (address == pc || address == pc + 1)){
             cell.setBackground(Color.CYAN);
+         } else if(column > 0 && !isSelected && current.isBreakpoint(address)){
+            cell.setBackground(Color.PINK);
+         } else if(column > 0 && !isSelected && current.isWatchpoint(address)){
+            cell.setBackground(Color.ORANGE);
          } else if(!isSelected){
             cell.setBackground(table.getBackground());
          }//End if
+         if(column > 0 && !isSelected && !graph.isCode(address)){
+            cell.setForeground(Color.GRAY);
+         } else if(!isSelected){
+            cell.setForeground(table.getForeground());
+         }//End if
          return cell;
       }//End method getTableCellRendererComponent
    }//End class CellRenderer
 
+   /**
+    * Table model showing the memory of the current snapshot, 16 bytes to a row.
+    */
+   private class MemoryTableModel extends AbstractTableModel{
+      private static final long serialVersionUID = -2236520436447024137L;
+
+      @Override public int getRowCount(){
+         return current.getMemorySize() / BYTES_PER_ROW;
+      }//End method getRowCount
+
+      @Override public int getColumnCount(){
+         return MEMORY_COLUMNS.length;
+      }//End method getColumnCount
+
+      @Override public String getColumnName(int column){
+         return MEMORY_COLUMNS[column];
+      }//End method getColumnName
+
+      @Override public Object getValueAt(int row, int column){
+         if(column == 0){
+            return HEX[(row >> 4) & 0xFF].substring(1) + HEX[(row << 4) & 0xFF];
+         }//End if
+         return HEX[current.getValueAt(row * BYTES_PER_ROW + column - 1) & 0xFF];
+      }//End method getValueAt
+   }//End class MemoryTableModel
+
+   /**
+    * Table model showing the registers of the current snapshot, in hex then decimal.
+    */
+   private class RegisterTableModel extends AbstractTableModel{
+      private static final long serialVersionUID = 6310930611286466214L;
+
+      @Override public int getRowCount(){
+         return 2;
+      }//End method getRowCount
+
+      @Override public int getColumnCount(){
+         return REGISTER_COLUMNS.length;
+      }//End method getColumnCount
+
+      @Override public String getColumnName(int column){
+         return REGISTER_COLUMNS[column];
+      }//End method getColumnName
+
+      @Override public Object getValueAt(int row, int column){
+         int value = getRegister(current, column);
+         if(row == 1){
+            return value;
+         }//End if
+         return value < HEX.length ? HEX[value] : Integer.toHexString(value).toUpperCase();
+      }//End method getValueAt
+   }//End class RegisterTableModel
+
    public DebugFrame(Chip8VM vm) {
       setTitle("Chip 8 Debug");
+      //Closing only hides the frame, its event listeners live as long as the VM, so the frame is reused.
+      setDefaultCloseOperation(WindowConstants.HIDE_ON_CLOSE);
       this.vm = vm;
       initialiseComponents();
-      setMem(vm.getMemory());
-      EventManager.getEventManager().registerFor(CycleCompleteEvent.class, (e)->updateViews(vm));
+      addComponentListener(new ComponentAdapter(){
+         @Override public void componentShown(ComponentEvent e){
+            open = true;
+         }//End method componentShown
+
+         @Override public void componentHidden(ComponentEvent e){
+            open = false;
+         }//End method componentHidden
+      });
+      EventManager.getEventManager().registerFor(FrameCompleteEvent.class, (e)->takeSnapshot());
+      EventManager.getEventManager().registerFor(BreakpointHitEvent.class,
+            (e)->SwingUtilities.invokeLater(()->setTitle("Chip 8 Debug - " + ((BreakpointHitEvent)e).getReason())));
    }
 
    private void initialiseComponents() {
@@ -95,15 +239,7 @@ public class DebugFrame extends JFrame {
       getContentPane().add(scrollPane_1, gbc_scrollPane_1);
 
       registerTable = new JTable();
-      registerTable.setModel(new DefaultTableModel(
-            new Object[][] {
-                  {"00", "00", "00", "00", "00", "00", "00", "00", "00", "00", "00", "00", "00", "00", "00", "00", "00", "00"},
-                  {"0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0", "0"}
-            },
-            new String[] {
-                  "v0", "v1", "v2", "v3", "v4", "v5", "v6", "v7", "v8", "v9", "vA", "vB", "vC", "vD", "vE", "vF", "I", "Delay"
-            }
-            ));
+      registerTable.setModel(registerModel);
       registerTable.setFillsViewportHeight(true);
       scrollPane_1.setViewportView(registerTable);
 
@@ -116,16 +252,27 @@ public class DebugFrame extends JFrame {
       gbc_scrollPane.gridy = 1;
       getContentPane().add(scrollPane, gbc_scrollPane);
 
-      memoryTable = new JTable();
+      memoryTable = new JTable(){
+         private static final long serialVersionUID = -6021583947284526307L;
+
+         /**
+          * Disassembles the word at the cell under the mouse, only when a tooltip is shown rather than on every paint.
+          */
+         @Override public String getToolTipText(MouseEvent event){
+            int row = rowAtPoint(event.getPoint());
+            int column = columnAtPoint(event.getPoint());
+            int address = row * BYTES_PER_ROW + column - 1;
+            if(row < 0 || column < 1 || address + 1 >= current.getMemorySize()){
+               return null;
+            }//End if
+            int opcode = (current.getValueAt(address) & 0xFF) << 8 | (current.getValueAt(address + 1) & 0xFF);
+            return (graph.isInstruction(address) ? "" : "data: ") + Chip8Disassembler.disassemble(opcode);
+         }//End method getToolTipText
+      };
       memoryTable.setDefaultRenderer(Object.class, new CellRenderer());
       memoryTable.setCellSelectionEnabled(true);
       memoryTable.setShowGrid(false);
-      memoryTable.setModel(new DefaultTableModel(
-            new Object[][] {},
-            new String[] {
-                  "v0", "v1", "v2", "v3", "v4", "v5", "v6", "v7", "v8", "v9", "vA", "vB", "vC", "vD", "vE", "vF", "I"
-            }
-            ));
+      memoryTable.setModel(memoryModel);
       memoryTable.setFillsViewportHeight(true);
       scrollPane.setViewportView(memoryTable);
       setSize(800, 600);
@@ -145,53 +292,215 @@ public class DebugFrame extends JFrame {
       mntmdebug.add(mntmStepForward);
       mntmStepForward.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F6, 0));
       mntmStepForward.addActionListener(ae->EventManager.getEventManager().fireEvent(new DebugStepEvent()));
-   }
 
-   public void setMem(Chip8Memory mem){
-      for(int i = 0; i < mem.getMemorySize(); ){
-         String[] data = new String[17];
-         data[0] = Integer.toHexString(i &0xFFFF0).toUpperCase();
-         for(int x = 1; x < data.length && i < mem.getMemorySize(); x++){
-            String str = Integer.toHexString(mem.getValueAt(i)).toUpperCase();
-            String formatted = ("00" + str).substring(str.length());
-            data[x] = formatted;
-            i++;
-         }
-         ((DefaultTableModel)memoryTable.getModel()).addRow(data);
-      }
-      updateRegisterView(vm);
-      repaint();
-   }
+      mnBreakpoints = new JMenu("Breakpoints");
+      menuBar.add(mnBreakpoints);
 
-   public void updateViews(Chip8VM vm){
-      updateRegisterView(vm);
-      updateMemoryView(vm);
-   }
+      mntmToggleBreakpoint = new JMenuItem("Toggle Breakpoint");
+      mnBreakpoints.add(mntmToggleBreakpoint);
+      mntmToggleBreakpoint.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F9, 0));
+      mntmToggleBreakpoint.addActionListener(ae->sendCommand((debugger, address)->debugger.toggleBreakpoint(address)));
 
-   private void updateMemoryView(Chip8VM vm) {
-      for(Change change : vm.getMemory().getChanges()){
-         int x = change.getChangeLocation() % 16 + 1;
-         int y = (int) Math.floor(change.getChangeLocation() / 16);
-         String str = Integer.toHexString(change.getNewValue()).toUpperCase();
-         String formatted = ("00" + str).substring(str.length());
-         ((DefaultTableModel)memoryTable.getModel()).setValueAt(formatted, y, x);
-      }
-      if(vm.getProgramCounter() != this.pc){
-         this.pc = vm.getProgramCounter();
-         memoryTable.repaint();
-      }
-   }
+      mntmConditionalBreakpoint = new JMenuItem("Conditional Breakpoint...");
+      mnBreakpoints.add(mntmConditionalBreakpoint);
+      mntmConditionalBreakpoint.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F9, InputEvent.SHIFT_DOWN_MASK));
+      mntmConditionalBreakpoint.addActionListener(ae->addConditionalBreakpoint());
 
-   private void updateRegisterView(Chip8VM vm) {
-      DefaultTableModel model = (DefaultTableModel)registerTable.getModel();
-      for(int i = 0; i < 0xF; i++){
-         model.setValueAt(Integer.toHexString(vm.getRegisterValue(i)).toUpperCase(), 0, i);
-         model.setValueAt(vm.getRegisterValue(i), 1, i);
-         registerTable.repaint();
-      }
-      model.setValueAt(Integer.toHexString(vm.getAddressRegister()).toUpperCase(), 0, 16);
-      model.setValueAt(vm.getAddressRegister(), 1, 16);
-      model.setValueAt(Integer.toHexString(vm.getDelayTimer()), 0, 17);
-      model.setValueAt(vm.getDelayTimer(), 1, 17);
+      mntmReadWatchpoint = new JMenuItem("Toggle Read Watchpoint");
+      mnBreakpoints.add(mntmReadWatchpoint);
+      mntmReadWatchpoint.addActionListener(ae->sendCommand((debugger, address)->debugger.setWatchpoint(address,
+            !debugger.isReadWatchpoint(address), debugger.isWriteWatchpoint(address))));
+
+      mntmWriteWatchpoint = new JMenuItem("Toggle Write Watchpoint");
+      mnBreakpoints.add(mntmWriteWatchpoint);
+      mntmWriteWatchpoint.addActionListener(ae->sendCommand((debugger, address)->debugger.setWatchpoint(address,
+            debugger.isReadWatchpoint(address), !debugger.isWriteWatchpoint(address))));
+
+      mntmRunToCursor = new JMenuItem("Run to Cursor");
+      mnBreakpoints.add(mntmRunToCursor);
+      mntmRunToCursor.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F4, 0));
+      mntmRunToCursor.addActionListener(ae->runToCursor());
+
+      mntmClearBreakpoints = new JMenuItem("Clear All");
+      mnBreakpoints.add(mntmClearBreakpoints);
+      mntmClearBreakpoints.addActionListener(ae->fireCommand((debugger)->debugger.clearAll()));
    }
+
+   /**
+    * Gets the address of the memory cell selected in the memory table.
+    * @return the address, -1 if no cell is selected.
+    */
+   private int getSelectedAddress(){
+      int row = memoryTable.getSelectedRow();
+      int column = memoryTable.getSelectedColumn();
+      if(row < 0 || column < 0){
+         return -1;
+      }//End if
+      return row * BYTES_PER_ROW + Math.max(column - 1, 0);
+   }//End method getSelectedAddress
+
+   /**
+    * Sends a command for the selected address to the debugger on the game thread.
+    * @param command the command to send.
+    */
+   private void sendCommand(ObjIntConsumer<Chip8Debugger> command){
+      int address = getSelectedAddress();
+      if(address >= 0){
+         fireCommand((debugger)->command.accept(debugger, address));
+      }//End if
+   }//End method sendCommand
+
+   /**
+    * Sends a command to the debugger on the game thread. The memory table shows the change once
+    * the next snapshot is taken.
+    * @param command the command to send.
+    */
+   private void fireCommand(Consumer<Chip8Debugger> command){
+      EventManager.getEventManager().fireEvent(new DebugCommandEvent(command));
+   }//End method fireCommand
+
+   /**
+    * Asks for a condition and sets a conditional breakpoint at the selected address.
+    */
+   private void addConditionalBreakpoint(){
+      int address = getSelectedAddress();
+      if(address < 0){
+         return;
+      }//End if
+      String text = JOptionPane.showInputDialog(this, "Break at 0x" + Integer.toHexString(address).toUpperCase() + " when (e.g. v3 == 0x10 && I >= 0x300)");
+      if(text == null || text.trim().isEmpty()){
+         return;
+      }//End if
+      try{
+         Predicate<Chip8VM> condition = Chip8Debugger.parseCondition(text);
+         fireCommand((debugger)->debugger.setBreakpoint(address, condition));
+      } catch (IllegalArgumentException e){
+         JOptionPane.showMessageDialog(this, e.getMessage(), "Invalid Condition", JOptionPane.ERROR_MESSAGE);
+      }//End try/catch
+   }//End method addConditionalBreakpoint
+
+   /**
+    * Runs the VM until it reaches the selected address.
+    */
+   private void runToCursor(){
+      int address = getSelectedAddress();
+      if(address >= 0){
+         setTitle("Chip 8 Debug");
+         EventManager.getEventManager().fireEvent(new RunToCursorEvent(address));
+      }//End if
+   }//End method runToCursor
+
+   /**
+    * Copies the VM into a snapshot and hands it to the EDT, at most 30 times a second.
+    * Runs on the game thread at the end of each frame.
+    */
+   private void takeSnapshot(){
+      long now = System.nanoTime();
+      if(!open || now - lastSnapshot < SNAPSHOT_NANOS){
+         return;
+      }//End if
+      lastSnapshot = now;
+      Chip8State snapshot = spare.getAndSet(null);
+      if(snapshot == null){
+         snapshot = new Chip8State();
+      }//End if
+      Chip8State unshown = latest.getAndSet(snapshot.capture(vm));
+      if(unshown != null){
+         //The EDT has not caught up, the older snapshot is dropped and reused.
+         spare.set(unshown);
+      } else {
+         SwingUtilities.invokeLater(this::showSnapshot);
+      }//End if
+   }//End method takeSnapshot
+
+   /**
+    * Shows the latest snapshot, repainting only the cells that differ from the one on screen.
+    * Runs on the EDT.
+    */
+   private void showSnapshot(){
+      Chip8State snapshot = latest.getAndSet(null);
+      if(snapshot == null){
+         return;
+      }//End if
+      Chip8State previous = current;
+      current = snapshot;
+      for(int column = 0; column < REGISTER_COLUMNS.length; column++){
+         if(getRegister(previous, column) != getRegister(snapshot, column)){
+            registerModel.fireTableCellUpdated(0, column);
+            registerModel.fireTableCellUpdated(1, column);
+         }//End if
+      }//End for
+      int changes = 0;
+      for(int address = 0; address < snapshot.getMemorySize(); address++){
+         if(previous.getValueAt(address) != snapshot.getValueAt(address)){
+            dirty[address >> 6] |= 1L << address;
+            changes++;
+         }//End if
+      }//End for
+      int debugChanges = 0;
+      for(int word = 0; word < dirty.length; word++){
+         long changed = snapshot.getDebugChanges(previous, word);
+         dirty[word] |= changed;
+         debugChanges += Long.bitCount(changed);
+      }//End for
+      if(changes > 0){
+         ControlFlowGraph analysed = Chip8Disassembler.analyse(snapshot);
+         if(!analysed.hasSameCode(graph)){
+            //Code and data may have swapped anywhere, so every cell needs repainting.
+            changes = CELL_UPDATE_LIMIT + 1;
+         }//End if
+         graph = analysed;
+      }//End if
+      changes += debugChanges;
+      int oldPC = previous.getProgramCounter();
+      int pc = snapshot.getProgramCounter();
+      if(oldPC != pc){
+         markDirty(oldPC);
+         markDirty(oldPC + 1);
+         markDirty(pc);
+         markDirty(pc + 1);
+         changes += 4;
+      }//End if
+      if(changes > CELL_UPDATE_LIMIT){
+         memoryModel.fireTableRowsUpdated(0, memoryModel.getRowCount() - 1);
+      } else {
+         for(int word = 0; word < dirty.length; word++){
+            for(long bits = dirty[word]; bits != 0; bits &= bits - 1){
+               int address = word * 64 + Long.numberOfTrailingZeros(bits);
+               memoryModel.fireTableCellUpdated(address / BYTES_PER_ROW, address % BYTES_PER_ROW + 1);
+            }//End for
+         }//End for
+      }//End if
+      Arrays.fill(dirty, 0L);
+      spare.set(previous);
+   }//End method showSnapshot
+
+   /**
+    * Marks a memory cell as changed, if the address is in memory.
+    * @param address the address of the cell.
+    */
+   private void markDirty(int address){
+      if(address >= 0 && address < dirty.length * 64){
+         dirty[address >> 6] |= 1L << address;
+      }//End if
+   }//End method markDirty
+
+   /**
+    * Gets the value of a register column from a snapshot.
+    * @param state the snapshot.
+    * @param column the column of the register table.
+    * @return the value of the register.
+    */
+   private static int getRegister(Chip8State state, int column){
+      if(column < 16){
+         return state.getRegisterValue(column);
+      }//End if
+      switch(column){
+      case 16: return state.getAddressRegister();
+      case 17: return state.getDelayTimer();
+      case 18: return state.getSoundTimer();
+      case 19: return state.getProgramCounter();
+      default: return state.getStackPointer();
+      }//End switch
+   }//End method getRegister
 }
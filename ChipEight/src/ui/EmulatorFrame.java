@@ -19,13 +19,19 @@ import event.DebugStepEvent;
 import event.GameInitialisedEvent;
 import event.LoadRomEvent;
 import event.RomLoadedEvent;
+import event.ShutdownEvent;
+import event.StartRecordingEvent;
+import event.StopRecordingEvent;
 import event.ToggleDebugEvent;
+import event.ToggleMetricsEvent;
 
 import java.awt.Canvas;
 import java.awt.BorderLayout;
 import java.awt.Dimension;
 import java.awt.event.InputEvent;
 import java.awt.event.KeyEvent;
+import java.awt.event.WindowAdapter;
+import java.awt.event.WindowEvent;
 import java.io.File;
 
 public class EmulatorFrame extends JFrame{
@@ -33,17 +39,28 @@ public class EmulatorFrame extends JFrame{
    
    private Canvas canvas;
    private JMenuItem mntmOpen;
+   private JMenuItem mntmRecord;
+   private boolean recording;
    private Chip8VM vm;
 
    private JMenuItem mntmShowDebug;
+   /**The debug frame, created the first time it is shown and hidden rather than closed.*/
+   private DebugFrame debugFrame;
    private JMenuItem mntmPause;
    private JMenuItem mntmSkip;
+   private JMenuItem mntmMetrics;
 
    /**
     * Constructs a new EmulatorFrame
     */
    public EmulatorFrame(Chip8VM vm) {
-      setDefaultCloseOperation(JFrame.EXIT_ON_CLOSE);
+      //The game loop exits once it has shut down, so recordings and sound are closed properly.
+      setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
+      addWindowListener(new WindowAdapter(){
+         @Override public void windowClosing(WindowEvent e){
+            EventManager.getEventManager().fireEvent(new ShutdownEvent());
+         }//End method windowClosing
+      });
       setTitle(Display.getTitle());
       initialiseComponents();
       registerSubscriptions();
@@ -65,6 +82,9 @@ public class EmulatorFrame extends JFrame{
 
       mnFile.add(mntmOpen);
       
+      mntmRecord = new JMenuItem("Start Recording");
+      mnFile.add(mntmRecord);
+      
       JMenu mnDebug = new JMenu("Debug");
       menuBar.add(mnDebug);
       
@@ -77,6 +97,9 @@ public class EmulatorFrame extends JFrame{
       mntmSkip = new JMenuItem("Single Cycle Step");
       mnDebug.add(mntmSkip);
       
+      mntmMetrics = new JMenuItem("Show Metrics");
+      mnDebug.add(mntmMetrics);
+      
       canvas = new Canvas();
       canvas.setSize(new Dimension(340, 320));
       canvas.setMinimumSize(new Dimension(640, 320));
@@ -97,7 +120,11 @@ public class EmulatorFrame extends JFrame{
       mntmOpen.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_O, InputEvent.CTRL_DOWN_MASK));
       input.addKeyboardShorcut(Keyboard.KEY_LCONTROL, Keyboard.KEY_O, (e,i)->loadRom());
       
-      mntmShowDebug.addActionListener((ae)->new DebugFrame(vm).setVisible(true));
+      mntmRecord.addActionListener((ae)->SwingUtilities.invokeLater(this::toggleRecording));
+      mntmRecord.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_R, InputEvent.CTRL_DOWN_MASK));
+      input.addKeyboardShorcut(Keyboard.KEY_LCONTROL, Keyboard.KEY_R, (e,i)->mntmRecord.doClick());
+      
+      mntmShowDebug.addActionListener((ae)->showDebug());
       mntmShowDebug.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_D, InputEvent.CTRL_DOWN_MASK));
       input.addKeyboardShorcut(Keyboard.KEY_LCONTROL, Keyboard.KEY_D, (e,i)->mntmShowDebug.doClick());
       
@@ -109,8 +136,23 @@ public class EmulatorFrame extends JFrame{
       mntmSkip.addActionListener(ae->EventManager.getEventManager().fireEvent(new DebugStepEvent()));
       mntmSkip.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_F6, 0));
       input.addKeyboardShorcut(0, Keyboard.KEY_F6, (e,i)->mntmSkip.doClick());
+      
+      mntmMetrics.addActionListener(ae->EventManager.getEventManager().fireEvent(new ToggleMetricsEvent()));
+      mntmMetrics.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_M, InputEvent.CTRL_DOWN_MASK));
+      input.addKeyboardShorcut(Keyboard.KEY_LCONTROL, Keyboard.KEY_M, (e,i)->mntmMetrics.doClick());
    }//End method registerSubscriptions
    
+   /**
+    * Shows the debug frame, creating it the first time.
+    */
+   private void showDebug(){
+      if(debugFrame == null){
+         debugFrame = new DebugFrame(vm);
+      }//End if
+      debugFrame.setVisible(true);
+      debugFrame.toFront();
+   }//End method showDebug
+
    /**
     * Sets the LWJGL Display's parent to the canvas in this frame.
     */
@@ -139,4 +181,24 @@ public class EmulatorFrame extends JFrame{
       });
    }//End method loadRom
    
+   /**
+    * Stops the current recording, or opens a file chooser for the recording output and
+    * notifies an event to start recording to it. A .gif or .raw file records to that format, anything
+    * else is used as a directory for a PNG sequence.
+    */
+   private void toggleRecording(){
+      if(recording){
+         recording = false;
+         mntmRecord.setText("Start Recording");
+         EventManager.getEventManager().fireEvent(new StopRecordingEvent());
+         return;
+      }//End if
+      JFileChooser chooser = new JFileChooser();
+      if(chooser.showSaveDialog(EmulatorFrame.this) == JFileChooser.APPROVE_OPTION){
+         recording = true;
+         mntmRecord.setText("Stop Recording");
+         EventManager.getEventManager().fireEvent(new StartRecordingEvent(chooser.getSelectedFile()));
+      }//End if
+   }//End method toggleRecording
+   
 }//End class EmulatorFrame
@@ -0,0 +1,401 @@
+package vm;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+import java.util.function.ToIntFunction;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import core.event.EventManager;
+import event.BreakpointHitEvent;
+
+/**
+ * Breakpoints, watchpoints and run to cursor for a {@link Chip8VM}.
+ * 
+ * Breakpoints are kept in a bitmap with one bit per address, checked once per instruction by a
+ * dispatch table the VM only swaps in while a breakpoint is set. Conditions are only evaluated when
+ * the bitmap hits. Watchpoints swap the VM onto a {@link WatchedMemory} while any are set. With no
+ * breakpoints or watchpoints the VM runs its normal dispatch table and memory, with no checks at all.
+ * 
+ * A hit suspends the VM, which stops stepping until {@link #resume()} is called, and fires a 
+ * {@link BreakpointHitEvent}. The debugger is not thread safe, it should be changed on the thread running the VM.
+ */
+public class Chip8Debugger {
+   /**The size of the address space.*/
+   private static final int ADDRESSES = 0x1000;
+   /**A comparison in a condition, a register, an operator and a number.*/
+   private static final Pattern COMPARISON = Pattern.compile("\\s*(\\w+)\\s*(==|!=|<=|>=|<|>)\\s*(\\w+)\\s*");
+
+   /**The VM being debugged.*/
+   private Chip8VM vm;
+   /**Bitmap of the addresses with a breakpoint.*/
+   long[] breakpoints = new long[ADDRESSES / 64];
+   /**Bitmap of the addresses with a temporary breakpoint from {@link #runTo(int)}.*/
+   private long[] temporary = new long[ADDRESSES / 64];
+   /**Bitmap of the addresses to check, the union of the breakpoints and temporary breakpoints.*/
+   long[] active = new long[ADDRESSES / 64];
+   /**Bitmap of the addresses with a read watchpoint.*/
+   long[] readWatches = new long[ADDRESSES / 64];
+   /**Bitmap of the addresses with a write watchpoint.*/
+   long[] writeWatches = new long[ADDRESSES / 64];
+   /**The conditions of conditional breakpoints mapped to their address.*/
+   private Map<Integer, Predicate<Chip8VM>> conditions = new HashMap<Integer, Predicate<Chip8VM>>();
+   /**The number of addresses with a breakpoint of any kind.*/
+   private int breakpointCount;
+   /**The number of addresses with a watchpoint.*/
+   private int watchpointCount;
+   /**The address of a breakpoint to pass over once after resuming, -1 if none.*/
+   private int resumeAddress = -1;
+
+   /**
+    * Constructs a new {@link Chip8Debugger}.
+    * @param vm the VM to debug.
+    */
+   Chip8Debugger(Chip8VM vm){
+      this.vm = vm;
+   }//End constructor
+
+   /**
+    * Checks whether a bit is set in a bitmap.
+    * @param bitmap the bitmap.
+    * @param address the address of the bit.
+    * @return <code>true</code> if the bit is set.
+    */
+   static boolean isSet(long[] bitmap, int address){
+      return (bitmap[address >> 6] & (1L << address)) != 0;
+   }//End method isSet
+
+   /**
+    * Sets or clears a bit in a bitmap.
+    * @param bitmap the bitmap.
+    * @param address the address of the bit.
+    * @param set whether to set or clear the bit.
+    * @return <code>true</code> if the bit changed.
+    */
+   private static boolean set(long[] bitmap, int address, boolean set){
+      boolean was = isSet(bitmap, address);
+      if(set){
+         bitmap[address >> 6] |= 1L << address;
+      } else {
+         bitmap[address >> 6] &= ~(1L << address);
+      }//End if
+      return was != set;
+   }//End method set
+
+   /**
+    * Sets a breakpoint.
+    * @param address the address to break at.
+    */
+   public void setBreakpoint(int address){
+      setBreakpoint(address, null);
+   }//End method setBreakpoint
+
+   /**
+    * Sets a breakpoint that only breaks while a condition holds, replacing any breakpoint at the address.
+    * @param address the address to break at.
+    * @param condition the condition, see {@link #parseCondition(String)}, null to always break.
+    */
+   public void setBreakpoint(int address, Predicate<Chip8VM> condition){
+      set(breakpoints, address, true);
+      if(condition == null){
+         conditions.remove(address);
+      } else {
+         conditions.put(address, condition);
+      }//End if
+      updateActive(address);
+   }//End method setBreakpoint
+
+   /**
+    * Clears the breakpoint at an address.
+    * @param address the address.
+    */
+   public void clearBreakpoint(int address){
+      set(breakpoints, address, false);
+      conditions.remove(address);
+      updateActive(address);
+   }//End method clearBreakpoint
+
+   /**
+    * Sets or clears the breakpoint at an address.
+    * @param address the address.
+    */
+   public void toggleBreakpoint(int address){
+      if(isBreakpoint(address)){
+         clearBreakpoint(address);
+      } else {
+         setBreakpoint(address);
+      }//End if
+   }//End method toggleBreakpoint
+
+   /**
+    * Checks whether there is a breakpoint at an address.
+    * @param address the address.
+    * @return <code>true</code> if there is a breakpoint.
+    */
+   public boolean isBreakpoint(int address){
+      return isSet(breakpoints, address);
+   }//End method isBreakpoint
+
+   /**
+    * Gets the condition of the breakpoint at an address.
+    * @param address the address.
+    * @return the condition, null if the breakpoint is unconditional or there is no breakpoint.
+    */
+   public Predicate<Chip8VM> getCondition(int address){
+      return conditions.get(address);
+   }//End method getCondition
+
+   /**
+    * Runs to an address, resuming the VM if it is suspended and breaking once the address is reached.
+    * @param address the address to run to.
+    */
+   public void runTo(int address){
+      set(temporary, address, true);
+      updateActive(address);
+      resume();
+   }//End method runTo
+
+   /**
+    * Sets the watchpoints on an address.
+    * @param address the address.
+    * @param read whether to break when the address is read by an instruction.
+    * @param write whether to break when the address is written.
+    */
+   public void setWatchpoint(int address, boolean read, boolean write){
+      boolean watched = isWatchpoint(address);
+      set(readWatches, address, read);
+      set(writeWatches, address, write);
+      if(watched != (read || write)){
+         watchpointCount += watched ? -1 : 1;
+         updateMemory();
+      }//End if
+   }//End method setWatchpoint
+
+   /**
+    * Checks whether there is a read or write watchpoint at an address.
+    * @param address the address.
+    * @return <code>true</code> if the address is watched.
+    */
+   public boolean isWatchpoint(int address){
+      return isSet(readWatches, address) || isSet(writeWatches, address);
+   }//End method isWatchpoint
+
+   /**
+    * Checks whether there is a read watchpoint at an address.
+    * @param address the address.
+    * @return <code>true</code> if reads of the address are watched.
+    */
+   public boolean isReadWatchpoint(int address){
+      return isSet(readWatches, address);
+   }//End method isReadWatchpoint
+
+   /**
+    * Checks whether there is a write watchpoint at an address.
+    * @param address the address.
+    * @return <code>true</code> if writes to the address are watched.
+    */
+   public boolean isWriteWatchpoint(int address){
+      return isSet(writeWatches, address);
+   }//End method isWriteWatchpoint
+
+   /**
+    * Clears every breakpoint and watchpoint.
+    */
+   public void clearAll(){
+      for(long[] bitmap : new long[][]{ breakpoints, temporary, active, readWatches, writeWatches }){
+         Arrays.fill(bitmap, 0L);
+      }//End for
+      conditions.clear();
+      breakpointCount = 0;
+      watchpointCount = 0;
+      vm.updateDispatch();
+      updateMemory();
+   }//End method clearAll
+
+   /**
+    * Checks whether the VM has been suspended by a hit.
+    * @return <code>true</code> if suspended.
+    */
+   public boolean isSuspended(){
+      return vm.suspended;
+   }//End method isSuspended
+
+   /**
+    * Resumes a suspended VM, a breakpoint at the program counter is passed over once.
+    */
+   public void resume(){
+      if(vm.suspended){
+         vm.suspended = false;
+         resumeAddress = vm.pc;
+      }//End if
+   }//End method resume
+
+   /**
+    * Checks whether any breakpoints are set.
+    * @return <code>true</code> if the VM needs to check breakpoints.
+    */
+   boolean hasBreakpoints(){
+      return breakpointCount > 0;
+   }//End method hasBreakpoints
+
+   /**
+    * Reapplies the debugger to the VM after it has been initialised.
+    */
+   void install(){
+      //A new program starts running, whatever the last one was stopped at.
+      vm.suspended = false;
+      resumeAddress = -1;
+      vm.updateDispatch();
+      updateMemory();
+   }//End method install
+
+   /**
+    * Recalculates the active bitmap at an address, swapping the dispatch table if breakpoints
+    * have been added where there were none, or all have been removed.
+    * @param address the address that changed.
+    */
+   private void updateActive(int address){
+      boolean hadBreakpoints = hasBreakpoints();
+      if(set(active, address, isSet(breakpoints, address) || isSet(temporary, address))){
+         breakpointCount += isSet(active, address) ? 1 : -1;
+      }//End if
+      if(hadBreakpoints != hasBreakpoints()){
+         vm.updateDispatch();
+      }//End if
+   }//End method updateActive
+
+   /**
+    * Swaps the VM onto a {@link WatchedMemory} while there are watchpoints, and back off it once there are none.
+    */
+   private void updateMemory(){
+      if(vm.memory == null){
+         return;
+      }//End if
+      if(watchpointCount > 0 && !(vm.memory instanceof WatchedMemory)){
+         vm.memory = new WatchedMemory(vm.memory, this);
+      } else if(watchpointCount == 0 && vm.memory instanceof WatchedMemory){
+         vm.memory = ((WatchedMemory) vm.memory).getMemory();
+      }//End if
+   }//End method updateMemory
+
+   /**
+    * Called before an instruction at an address with a breakpoint is run.
+    * @param address the address of the instruction.
+    * @return <code>true</code> if the VM should break rather than run the instruction.
+    */
+   boolean shouldBreak(int address){
+      if(address == resumeAddress){
+         resumeAddress = -1;
+         return false;
+      }//End if
+      if(isSet(temporary, address)){
+         set(temporary, address, false);
+         updateActive(address);
+         suspend(address, "Reached 0x" + Integer.toHexString(address).toUpperCase());
+         return true;
+      }//End if
+      Predicate<Chip8VM> condition = conditions.get(address);
+      if(condition == null || condition.test(vm)){
+         suspend(address, "Breakpoint at 0x" + Integer.toHexString(address).toUpperCase() + (condition == null ? "" : " when " + condition));
+         return true;
+      }//End if
+      return false;
+   }//End method shouldBreak
+
+   /**
+    * Called when an instruction reads or writes a watched address. The instruction completes and the
+    * VM is suspended before the next.
+    * @param address the address accessed.
+    * @param write whether the access was a write.
+    */
+   void watchpointHit(int address, boolean write){
+      if(!vm.suspended){
+         resumeAddress = -1;
+         suspend(vm.pc - 2, (write ? "Write to 0x" : "Read of 0x") + Integer.toHexString(address).toUpperCase()
+               + " by instruction at 0x" + Integer.toHexString(vm.pc - 2).toUpperCase());
+      }//End if
+   }//End method watchpointHit
+
+   /**
+    * Suspends the VM and notifies listeners.
+    * @param address the address of the instruction that caused the break.
+    * @param reason a description of the break.
+    */
+   private void suspend(int address, String reason){
+      vm.suspended = true;
+      EventManager.getEventManager().fireEvent(new BreakpointHitEvent(address, reason));
+   }//End method suspend
+
+   /**
+    * Parses a condition on the registers, a list of comparisons joined with "&amp;&amp;" such as
+    * "v3 == 0x10 &amp;&amp; I &gt;= 0x300". Registers are v0 to vF, I, DT, ST and SP, the operators
+    * are ==, !=, &lt;, &lt;=, &gt; and &gt;=, and numbers are decimal or hex with a 0x prefix.
+    * @param text the condition.
+    * @return the condition.
+    * @throws IllegalArgumentException if the condition can not be parsed.
+    */
+   public static Predicate<Chip8VM> parseCondition(String text){
+      Predicate<Chip8VM> condition = null;
+      for(String term : text.split("&&")){
+         Predicate<Chip8VM> comparison = parseComparison(term.trim());
+         condition = condition == null ? comparison : condition.and(comparison);
+      }//End for
+      Predicate<Chip8VM> parsed = condition;
+      String description = text.trim();
+      return new Predicate<Chip8VM>(){
+         @Override public boolean test(Chip8VM vm){
+            return parsed.test(vm);
+         }//End method test
+
+         @Override public String toString(){
+            return description;
+         }//End method toString
+      };
+   }//End method parseCondition
+
+   /**
+    * Parses a single comparison of a register with a number.
+    * @param term the comparison.
+    * @return the comparison.
+    * @throws IllegalArgumentException if the comparison can not be parsed.
+    */
+   private static Predicate<Chip8VM> parseComparison(String term){
+      Matcher matcher = COMPARISON.matcher(term);
+      if(!matcher.matches()){
+         throw new IllegalArgumentException("Expected a register, an operator and a number in \"" + term + "\"");
+      }//End if
+      String register = matcher.group(1).toUpperCase();
+      String operator = matcher.group(2);
+      String number = matcher.group(3).toLowerCase();
+      int value;
+      try{
+         value = number.startsWith("0x") ? Integer.parseInt(number.substring(2), 16) : Integer.parseInt(number);
+      } catch (NumberFormatException e){
+         throw new IllegalArgumentException("Invalid number \"" + matcher.group(3) + "\"");
+      }//End try/catch
+      ToIntFunction<Chip8VM> read;
+      if(register.length() == 2 && register.charAt(0) == 'V' && Character.digit(register.charAt(1), 16) >= 0){
+         int x = Character.digit(register.charAt(1), 16);
+         read = (vm)->vm.v[x];
+      } else {
+         switch(register){
+         case "I": read = (vm)->vm.i; break;
+         case "DT": read = (vm)->vm.delayTimer; break;
+         case "ST": read = (vm)->vm.soundTimer; break;
+         case "SP": read = (vm)->vm.sp; break;
+         default: throw new IllegalArgumentException("Unknown register \"" + matcher.group(1) + "\"");
+         }//End switch
+      }//End if
+      switch(operator){
+      case "==": return (vm)->read.applyAsInt(vm) == value;
+      case "!=": return (vm)->read.applyAsInt(vm) != value;
+      case "<": return (vm)->read.applyAsInt(vm) < value;
+      case "<=": return (vm)->read.applyAsInt(vm) <= value;
+      case ">": return (vm)->read.applyAsInt(vm) > value;
+      case ">=": return (vm)->read.applyAsInt(vm) >= value;
+      default: throw new IllegalArgumentException("Unknown operator \"" + operator + "\"");
+      }//End switch
+   }//End method parseComparison
+}//End class Chip8Debugger
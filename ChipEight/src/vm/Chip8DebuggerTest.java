@@ -0,0 +1,135 @@
+package vm;
+
+import static org.junit.Assert.*;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests breakpoints, conditions, watchpoints and run to cursor on a small looping program.
+ */
+public class Chip8DebuggerTest {
+   /**The {@link Chip8VM} to be tested.*/
+   private Chip8VM vm;
+
+   /**
+    * Loads a program that counts v0 up forever, storing it at 0x300 each time round.
+    * 200: 7001 ADD v0, 1
+    * 202: A300 LD I, 0x300
+    * 204: F055 LD [I], v0
+    * 206: 1200 JP 0x200
+    */
+   @Before public void setupVM(){
+      vm = new Chip8VM();
+      vm.initialise();
+      int[] program = new int[]{ 0x70, 0x01, 0xA3, 0x00, 0xF0, 0x55, 0x12, 0x00 };
+      for(int b = 0; b < program.length; b++){
+         vm.memory.setMemory(0x200 + b, (short) program[b]);
+      }//End for
+      vm.forceReady();
+   }//End method setupVM
+
+   /**
+    * Steps the VM a number of times.
+    * @param steps the number of steps.
+    */
+   private void step(int steps){
+      for(int s = 0; s < steps; s++){
+         vm.step();
+      }//End for
+   }//End method step
+
+   @Test public void testBreakpoint(){
+      Chip8Debugger debugger = vm.getDebugger();
+      debugger.setBreakpoint(0x204);
+      step(10);
+      assertTrue(debugger.isSuspended());
+      assertEquals(0x204, vm.getProgramCounter());
+      assertEquals(1, vm.getRegisterValue(0));
+      debugger.resume();
+      step(10);
+      assertEquals(0x204, vm.getProgramCounter());
+      assertEquals(2, vm.getRegisterValue(0));
+      debugger.clearBreakpoint(0x204);
+      debugger.resume();
+      step(8);
+      assertFalse(debugger.isSuspended());
+      assertEquals(4, vm.getRegisterValue(0));
+   }//End method testBreakpoint
+
+   @Test public void testSuspendKeepsReady(){
+      Chip8Debugger debugger = vm.getDebugger();
+      debugger.setBreakpoint(0x204);
+      step(10);
+      assertTrue(debugger.isSuspended());
+      assertTrue(vm.isReady());
+      //Forcing the VM ready must not run it past the break.
+      vm.forceReady();
+      step(10);
+      assertEquals(0x204, vm.getProgramCounter());
+      assertEquals(1, vm.getRegisterValue(0));
+   }//End method testSuspendKeepsReady
+
+   @Test public void testSuspendedNotCounted(){
+      Chip8Debugger debugger = vm.getDebugger();
+      debugger.setBreakpoint(0x204);
+      vm.runCycles(10);
+      assertTrue(debugger.isSuspended());
+      assertEquals(2, vm.getInstructionsExecuted());
+      vm.runCycles(10);
+      assertEquals(2, vm.getInstructionsExecuted());
+   }//End method testSuspendedNotCounted
+
+   @Test public void testConditionalBreakpoint(){
+      Chip8Debugger debugger = vm.getDebugger();
+      debugger.setBreakpoint(0x202, Chip8Debugger.parseCondition("v0 >= 0x5 && I == 768"));
+      step(100);
+      assertTrue(debugger.isSuspended());
+      assertEquals(5, vm.getRegisterValue(0));
+      assertEquals(0x202, vm.getProgramCounter());
+   }//End method testConditionalBreakpoint
+
+   @Test public void testWriteWatchpoint(){
+      Chip8Debugger debugger = vm.getDebugger();
+      debugger.setWatchpoint(0x300, false, true);
+      step(10);
+      assertTrue(debugger.isSuspended());
+      assertEquals(0x206, vm.getProgramCounter());
+      assertEquals(1, vm.memory.getValueAt(0x300));
+      debugger.setWatchpoint(0x300, false, false);
+      assertFalse(vm.memory instanceof WatchedMemory);
+   }//End method testWriteWatchpoint
+
+   @Test public void testBcdDoesNotReadWatchpoint(){
+      //200: 6A9C LD vA, 156  202: A300 LD I, 0x300  204: FA33 LD B, vA
+      int[] program = new int[]{ 0x6A, 0x9C, 0xA3, 0x00, 0xFA, 0x33 };
+      for(int b = 0; b < program.length; b++){
+         vm.memory.setMemory(0x200 + b, (short) program[b]);
+      }//End for
+      Chip8Debugger debugger = vm.getDebugger();
+      debugger.setWatchpoint(0x300, true, false);
+      debugger.setWatchpoint(0x301, true, false);
+      step(3);
+      assertFalse(debugger.isSuspended());
+      assertEquals(1, vm.memory.getValueAt(0x300));
+      assertEquals(5, vm.memory.getValueAt(0x301));
+      assertEquals(6, vm.memory.getValueAt(0x302));
+   }//End method testBcdDoesNotReadWatchpoint
+
+   @Test public void testRunToCursor(){
+      Chip8Debugger debugger = vm.getDebugger();
+      debugger.setBreakpoint(0x200);
+      step(1);
+      assertTrue(debugger.isSuspended());
+      debugger.runTo(0x206);
+      step(10);
+      assertTrue(debugger.isSuspended());
+      assertEquals(0x206, vm.getProgramCounter());
+      assertFalse(debugger.isBreakpoint(0x206));
+   }//End method testRunToCursor
+
+   @Test(expected = IllegalArgumentException.class)
+   public void testInvalidCondition(){
+      Chip8Debugger.parseCondition("vG == 1");
+   }//End method testInvalidCondition
+}//End class Chip8DebuggerTest
@@ -0,0 +1,126 @@
+package vm;
+
+/**
+ * Decodes chip 8 opcodes into mnemonics and analyses programs into a {@link ControlFlowGraph}.
+ * Mnemonics follow the ones documented on each run method of {@link Chip8VM}.
+ */
+public class Chip8Disassembler {
+   /**Hex digits for formatting without {@link String#format(String, Object...)}.*/
+   private static final char[] DIGITS = "0123456789ABCDEF".toCharArray();
+
+   /**
+    * Constructor
+    */
+   private Chip8Disassembler(){}
+
+   /**
+    * Disassembles an opcode.
+    * @param opcode the opcode.
+    * @return the mnemonic and operands, "DW" with the opcode for unsupported opcodes.
+    */
+   public static String disassemble(int opcode){
+      StringBuilder builder = new StringBuilder(16);
+      String x = "V" + DIGITS[(opcode >> 8) & 0xF];
+      String y = "V" + DIGITS[(opcode >> 4) & 0xF];
+      switch(Chip8Profiler.OPCODES[Chip8Profiler.getOpcodeIndex(opcode)]){
+      case "00E0": builder.append("CLS"); break;
+      case "00EE": builder.append("RET"); break;
+      case "1NNN": builder.append("JP "); address(builder, opcode); break;
+      case "2NNN": builder.append("CALL "); address(builder, opcode); break;
+      case "3XNN": builder.append("SE ").append(x).append(", "); hexByte(builder, opcode); break;
+      case "4XNN": builder.append("SNE ").append(x).append(", "); hexByte(builder, opcode); break;
+      case "5XY0": builder.append("SE ").append(x).append(", ").append(y); break;
+      case "6XNN": builder.append("LD ").append(x).append(", "); hexByte(builder, opcode); break;
+      case "7XNN": builder.append("ADD ").append(x).append(", "); hexByte(builder, opcode); break;
+      case "8XY0": builder.append("LD ").append(x).append(", ").append(y); break;
+      case "8XY1": builder.append("OR ").append(x).append(", ").append(y); break;
+      case "8XY2": builder.append("AND ").append(x).append(", ").append(y); break;
+      case "8XY3": builder.append("XOR ").append(x).append(", ").append(y); break;
+      case "8XY4": builder.append("ADD ").append(x).append(", ").append(y); break;
+      case "8XY5": builder.append("SUB ").append(x).append(", ").append(y); break;
+      case "8XY6": builder.append("SHR ").append(x); break;
+      case "8XY7": builder.append("SUBN ").append(x).append(", ").append(y); break;
+      case "8XYE": builder.append("SHL ").append(x); break;
+      case "9XY0": builder.append("SNE ").append(x).append(", ").append(y); break;
+      case "ANNN": builder.append("LD I, "); address(builder, opcode); break;
+      case "BNNN": builder.append("JP V0, "); address(builder, opcode); break;
+      case "CXNN": builder.append("RND ").append(x).append(", "); hexByte(builder, opcode); break;
+      case "DXYN": builder.append("DRW ").append(x).append(", ").append(y).append(", ").append(opcode & 0xF); break;
+      case "EX9E": builder.append("SKP ").append(x); break;
+      case "EXA1": builder.append("SKNP ").append(x); break;
+      case "FX07": builder.append("LD ").append(x).append(", DT"); break;
+      case "FX0A": builder.append("LD ").append(x).append(", K"); break;
+      case "FX15": builder.append("LD DT, ").append(x); break;
+      case "FX18": builder.append("LD ST, ").append(x); break;
+      case "FX1E": builder.append("ADD I, ").append(x); break;
+      case "FX29": builder.append("LD F, ").append(x); break;
+      case "FX33": builder.append("LD B, ").append(x); break;
+      case "FX55": builder.append("LD [I], ").append(x); break;
+      case "FX65": builder.append("LD ").append(x).append(", [I]"); break;
+      default:
+         builder.append("DW 0x");
+         for(int shift = 12; shift >= 0; shift -= 4){
+            builder.append(DIGITS[(opcode >> shift) & 0xF]);
+         }//End for
+      }//End switch
+      return builder.toString();
+   }//End method disassemble
+
+   /**
+    * Appends the NNN operand of an opcode in hex.
+    * @param builder the builder to append to.
+    * @param opcode the opcode.
+    */
+   private static void address(StringBuilder builder, int opcode){
+      builder.append("0x").append(DIGITS[(opcode >> 8) & 0xF]).append(DIGITS[(opcode >> 4) & 0xF]).append(DIGITS[opcode & 0xF]);
+   }//End method address
+
+   /**
+    * Appends the NN operand of an opcode in hex.
+    * @param builder the builder to append to.
+    * @param opcode the opcode.
+    */
+   private static void hexByte(StringBuilder builder, int opcode){
+      builder.append("0x").append(DIGITS[(opcode >> 4) & 0xF]).append(DIGITS[opcode & 0xF]);
+   }//End method hexByte
+
+   /**
+    * Checks whether an opcode is supported by the VM.
+    * @param opcode the opcode.
+    * @return <code>true</code> if the opcode is supported.
+    */
+   public static boolean isValid(int opcode){
+      return Chip8Profiler.getOpcodeIndex(opcode) != Chip8Profiler.OPCODES.length - 1;
+   }//End method isValid
+
+   /**
+    * Analyses the memory of a VM, following the program from 0x200.
+    * @param vm the VM.
+    * @return the control flow graph.
+    */
+   public static ControlFlowGraph analyse(Chip8VM vm){
+      return new ControlFlowGraph(vm.memory.memory, 0x200);
+   }//End method analyse
+
+   /**
+    * Analyses the memory of a snapshot, following the program from 0x200.
+    * @param state the snapshot.
+    * @return the control flow graph.
+    */
+   public static ControlFlowGraph analyse(Chip8State state){
+      return new ControlFlowGraph(state.memory, 0x200);
+   }//End method analyse
+
+   /**
+    * Analyses a ROM image as it would be loaded at 0x200.
+    * @param rom the ROM image.
+    * @return the control flow graph.
+    */
+   public static ControlFlowGraph analyse(byte[] rom){
+      short[] memory = new short[Math.max(0x1000, 0x200 + rom.length)];
+      for(int b = 0; b < rom.length; b++){
+         memory[0x200 + b] = (short) (rom[b] & 0xFF);
+      }//End for
+      return new ControlFlowGraph(memory, 0x200);
+   }//End method analyse
+}//End class Chip8Disassembler
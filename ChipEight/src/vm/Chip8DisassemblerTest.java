@@ -0,0 +1,57 @@
+package vm;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the disassembler mnemonics and the control flow graph built from a small program.
+ */
+public class Chip8DisassemblerTest {
+
+   @Test public void testDisassemble(){
+      assertEquals("CLS", Chip8Disassembler.disassemble(0x00E0));
+      assertEquals("LD V3, 0x1F", Chip8Disassembler.disassemble(0x631F));
+      assertEquals("DRW V0, V1, 5", Chip8Disassembler.disassemble(0xD015));
+      assertEquals("JP V0, 0x2A0", Chip8Disassembler.disassemble(0xB2A0));
+      assertEquals("LD V2, [I]", Chip8Disassembler.disassemble(0xF265));
+      assertEquals("DW 0x5121", Chip8Disassembler.disassemble(0x5121));
+   }//End method testDisassemble
+
+   @Test public void testControlFlowGraph(){
+      //200: 2208 CALL 0x208  202: 3001 SE v0, 1  204: 1202 JP 0x202  206: 1206 JP 0x206
+      //208: 7001 ADD v0, 1  20A: 00EE RET  20C: F0 90 font data
+      byte[] rom = new byte[]{ 0x22, 0x08, 0x30, 0x01, 0x12, 0x02, 0x12, 0x06,
+            0x70, 0x01, 0x00, (byte) 0xEE, (byte) 0xF0, (byte) 0x90 };
+      ControlFlowGraph graph = Chip8Disassembler.analyse(rom);
+      assertTrue(graph.isInstruction(0x200));
+      assertTrue(graph.isCode(0x201));
+      assertTrue(graph.isCallTarget(0x208));
+      assertFalse(graph.isCode(0x20C));
+      assertEquals(5, graph.getBlocks().size());
+
+      ControlFlowGraph.Block call = graph.getBlockAt(0x200);
+      assertEquals(ControlFlowGraph.Exit.CALL, call.getExit());
+      assertArrayEquals(new int[]{ 0x208, 0x202 }, call.getSuccessors());
+      ControlFlowGraph.Block skip = graph.getBlockAt(0x202);
+      assertEquals(ControlFlowGraph.Exit.SKIP, skip.getExit());
+      assertArrayEquals(new int[]{ 0x204, 0x206 }, skip.getSuccessors());
+      assertEquals(ControlFlowGraph.Exit.JUMP, graph.getBlockAt(0x204).getExit());
+      ControlFlowGraph.Block subroutine = graph.getBlockAt(0x20A);
+      assertEquals(0x208, subroutine.getStart());
+      assertEquals(0x20C, subroutine.getEnd());
+      assertEquals(ControlFlowGraph.Exit.RETURN, subroutine.getExit());
+   }//End method testControlFlowGraph
+
+   @Test public void testLargeImage(){
+      byte[] rom = new byte[0x10000 - 0x200];
+      for(int b = 0; b + 1 < rom.length; b += 2){
+         rom[b] = 0x70;
+         rom[b + 1] = 0x01;
+      }//End for
+      ControlFlowGraph graph = Chip8Disassembler.analyse(rom);
+      assertEquals(1, graph.getBlocks().size());
+      assertEquals(ControlFlowGraph.Exit.HALT, graph.getBlockAt(0x200).getExit());
+      assertEquals(0x10000, graph.getBlockAt(0xFFFE).getEnd());
+   }//End method testLargeImage
+}//End class Chip8DisassemblerTest
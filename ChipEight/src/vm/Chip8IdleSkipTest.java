@@ -0,0 +1,129 @@
+package vm;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests {@link Chip8VM#runCycles(int)} accounts for idle loops without running them, leaving the state,
+ * the cycles run and skipped, and the timers exactly as if every cycle had been stepped.
+ */
+public class Chip8IdleSkipTest {
+
+   /**
+    * Creates a VM with a program loaded and scripted keys, ready to run.
+    * @param program the bytes of the program, loaded at 0x200.
+    * @return the VM.
+    */
+   private static Chip8VM load(int... program){
+      Chip8VM vm = new Chip8VM();
+      vm.initialise();
+      vm.getKeypad().setScripted(true);
+      for(int b = 0; b < program.length; b++){
+         vm.memory.setMemory(0x200 + b, (short) program[b]);
+      }//End for
+      vm.forceReady();
+      return vm;
+   }//End method load
+
+   /**
+    * Checks a VM is in the state of the same program stepped a number of times.
+    * @param vm the VM run through {@link Chip8VM#runCycles(int)}.
+    * @param cycles the number of cycles it was run for.
+    * @param program the bytes of the program.
+    */
+   private static void assertSameAsStepped(Chip8VM vm, int cycles, int... program){
+      Chip8VM stepped = load(program);
+      for(int c = 0; c < cycles; c++){
+         stepped.step();
+      }//End for
+      assertNull(new Chip8State().capture(stepped).difference(new Chip8State().capture(vm)));
+   }//End method assertSameAsStepped
+
+   /**
+    * Tests a delay timer wait loop is accounted for in whole iterations, the left over cycles are run,
+    * and the loop runs on once the timer reaches zero.
+    */
+   @Test public void testDelayLoopSkipped(){
+      //200: 6004 LD v0, 4  202: F015 LD DT, v0  204: F107 LD v1, DT  206: 3100 SE v1, 0  208: 1204 JP 0x204  20A: 7201 ADD v2, 1
+      int[] program = new int[]{ 0x60, 0x04, 0xF0, 0x15, 0xF1, 0x07, 0x31, 0x00, 0x12, 0x04, 0x72, 0x01 };
+      Chip8VM vm = load(program);
+      //5 cycles reach the jump, 31 whole iterations are skipped and the last 2 cycles run.
+      assertEquals(93, vm.runCycles(100));
+      assertEquals(7, vm.getInstructionsExecuted());
+      assertEquals(0x208, vm.getProgramCounter());
+      assertEquals(4, vm.getRegisterValue(1));
+      assertEquals(4, vm.getDelayTimer());
+      assertSameAsStepped(vm, 100, program);
+      for(int tick = 0; tick < 3; tick++){
+         vm.decrementDelayTimer();
+      }//End for
+      assertEquals(1, vm.getDelayTimer());
+      //Still waiting, the jump runs, 16 whole iterations are skipped and the last cycle runs.
+      assertEquals(48, vm.runCycles(50));
+      assertEquals(9, vm.getInstructionsExecuted());
+      assertEquals(0x206, vm.getProgramCounter());
+      assertEquals(1, vm.getRegisterValue(1));
+      assertEquals(1, vm.getDelayTimer());
+      vm.decrementDelayTimer();
+      //The compare still sees the old read, so one more iteration runs, too short to skip, before leaving the loop.
+      assertEquals(0, vm.runCycles(5));
+      assertEquals(14, vm.getInstructionsExecuted());
+      assertEquals(0x20C, vm.getProgramCounter());
+      assertEquals(0, vm.getRegisterValue(1));
+      assertEquals(1, vm.getRegisterValue(2));
+      assertEquals(0, vm.getDelayTimer());
+   }//End method testDelayLoopSkipped
+
+   /**
+    * Tests a jump to itself skips every cycle left, leaving the timers for the frame to count down.
+    */
+   @Test public void testJumpToSelfSkipped(){
+      //200: 6005 LD v0, 5  202: F018 LD ST, v0  204: F015 LD DT, v0  206: 1206 JP 0x206
+      int[] program = new int[]{ 0x60, 0x05, 0xF0, 0x18, 0xF0, 0x15, 0x12, 0x06 };
+      Chip8VM vm = load(program);
+      assertEquals(56, vm.runCycles(60));
+      assertEquals(4, vm.getInstructionsExecuted());
+      assertEquals(0x206, vm.getProgramCounter());
+      assertEquals(5, vm.getSoundTimer());
+      assertEquals(5, vm.getDelayTimer());
+      assertSameAsStepped(vm, 60, program);
+      vm.decrementDelayTimer();
+      vm.decrementSoundTimer();
+      //The jump runs once before the rest is skipped.
+      assertEquals(59, vm.runCycles(60));
+      assertEquals(5, vm.getInstructionsExecuted());
+      assertEquals(4, vm.getSoundTimer());
+      assertEquals(4, vm.getDelayTimer());
+   }//End method testJumpToSelfSkipped
+
+   /**
+    * Tests a key wait loop is skipped in whole iterations while the key is up, and runs once it is down.
+    */
+   @Test public void testKeyLoopSkipped(){
+      //200: 6307 LD v3, 7  202: E39E SKP v3  204: 1202 JP 0x202  206: 7401 ADD v4, 1
+      int[] program = new int[]{ 0x63, 0x07, 0xE3, 0x9E, 0x12, 0x02, 0x74, 0x01 };
+      Chip8VM vm = load(program);
+      //3 cycles reach the jump, 6 whole iterations are skipped and the last cycle runs.
+      assertEquals(12, vm.runCycles(16));
+      assertEquals(4, vm.getInstructionsExecuted());
+      assertEquals(0x204, vm.getProgramCounter());
+      assertSameAsStepped(vm, 16, program);
+      vm.getKeypad().setKeyDown(7, true);
+      assertEquals(0, vm.runCycles(3));
+      assertEquals(7, vm.getInstructionsExecuted());
+      assertEquals(1, vm.getRegisterValue(4));
+   }//End method testKeyLoopSkipped
+
+   /**
+    * Tests cycles blocked in FX0A are skipped rather than counted as run.
+    */
+   @Test public void testKeyWaitSkipped(){
+      //200: F50A LD v5, K
+      Chip8VM vm = load(0xF5, 0x0A);
+      assertEquals(9, vm.runCycles(10));
+      assertEquals(1, vm.getInstructionsExecuted());
+      assertTrue(vm.isWaitingForKey());
+      assertEquals(0x202, vm.getProgramCounter());
+   }//End method testKeyWaitSkipped
+}//End class Chip8IdleSkipTest
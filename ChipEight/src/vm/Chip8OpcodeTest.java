@@ -473,13 +473,14 @@ public class Chip8OpcodeTest {
     * Should skip an instruction if the key stored in vX is pressed
     */
    @Test public void testEX9E(){
-      //vm.keyInputs[3] = true;
+      vm.keypad.setScripted(true);
+      vm.keypad.setKeyDown(3, true);
       loadOpcode(0x63, 0x03);
       loadOpcode(PC_START + 2, 0xE3, 0x9E);
       vm.cycle();
       vm.cycle();
-      assertEquals(PC_START + 6, vm.pc); //TODO: This will fail until Input can be overridden manually.
-   //   vm.keyInputs[3] = false;
+      assertEquals(PC_START + 6, vm.pc);
+      vm.keypad.setKeyDown(3, false);
       loadOpcode(PC_START + 6, 0x64, 0x03);
       loadOpcode(PC_START + 8, 0xE4, 0x9E);
       vm.cycle();
@@ -492,19 +493,18 @@ public class Chip8OpcodeTest {
     * Should skip an instruction if the key stored in vX is not pressed
     */
    @Test public void testEXA1(){
-      //vm.keyInputs[3] = false;
-      //fail();
+      vm.keypad.setScripted(true);
       loadOpcode(0x63, 0x03);
       loadOpcode(PC_START + 2, 0xE3, 0xA1);
       vm.cycle();
       vm.cycle();
       assertEquals(PC_START + 6, vm.pc);
-      //vm.keyInputs[3] = true;
+      vm.keypad.setKeyDown(3, true);
       loadOpcode(PC_START + 6, 0x64, 0x03);
       loadOpcode(PC_START + 8, 0xE4, 0xA1);
       vm.cycle();
       vm.cycle();
-      assertEquals(PC_START + 10, vm.pc ); //TODO This will fail until input can be overridden manually.
+      assertEquals(PC_START + 10, vm.pc );
    }//End method testEX9E
    
    @Test public void testFX07(){
@@ -514,9 +514,34 @@ public class Chip8OpcodeTest {
       assertEquals(vm.v[0], 0xFF);
    }//End method testFX07
    
-   @Test public void textFX0A(){
-	   //TODO: Test this opcode
-   }
+   /**
+    * Tests the opcode FX0A
+    * Should block until a key goes down and comes back up, ignoring a key held beforehand
+    * and taking the lowest key when several go down together.
+    */
+   @Test public void testFX0A(){
+      vm.keypad.setScripted(true);
+      vm.keypad.setKeyDown(5, true);
+      vm.keypad.update();
+      loadOpcode(0xF3, 0x0A);
+      vm.cycle();
+      assertTrue(vm.isWaitingForKey());
+      vm.cycle();
+      vm.keypad.setKeyDown(5, false);
+      vm.cycle();
+      assertTrue(vm.isWaitingForKey());
+      vm.keypad.setKeyDown(7, true);
+      vm.keypad.setKeyDown(2, true);
+      vm.cycle();
+      vm.keypad.setKeyDown(7, false);
+      vm.cycle();
+      assertTrue(vm.isWaitingForKey());
+      vm.keypad.setKeyDown(2, false);
+      vm.cycle();
+      assertFalse(vm.isWaitingForKey());
+      assertEquals(2, vm.v[3]);
+      assertEquals(PC_START + 2, vm.pc);
+   }//End method testFX0A
    @Test public void testFX15(){
       loadOpcode(0x64, 0xFE);
       loadOpcode(PC_START + 2, 0xF4, 0x15);
@@ -560,8 +585,16 @@ public class Chip8OpcodeTest {
    
    
    @Test public void testFX33(){
-      fail();
-   }
+      loadOpcode(0x6A, 0x9C);
+      loadOpcode(PC_START + 2, 0xA2, 0x10);
+      loadOpcode(PC_START + 4, 0xFA, 0x33);
+      vm.cycle();
+      vm.cycle();
+      vm.cycle();
+      assertEquals(1, vm.memory.getValueAt(0x210));
+      assertEquals(5, vm.memory.getValueAt(0x211));
+      assertEquals(6, vm.memory.getValueAt(0x212));
+   }//End method testFX33
    
    @Test public void testFX55(){
       loadOpcode(0x60, 0x11);
@@ -0,0 +1,225 @@
+package vm;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.util.Arrays;
+
+/**
+ * Execution profile of a {@link Chip8VM}, counts the instructions run per opcode and per address
+ * along with the pixels drawn and collisions from DXYN.
+ * 
+ * Attach with {@link Chip8VM#setProfiler(Chip8Profiler)}, which swaps the VM onto a profiled dispatch
+ * table, a VM without a profiler runs the normal table and pays nothing. Counts are updated on the 
+ * thread running the VM, other threads may read them but will see a slightly stale profile.
+ */
+public class Chip8Profiler {
+   /**The names of the opcodes counted, indexed by {@link #getOpcodeIndex(int)}.*/
+   public static final String[] OPCODES = new String[]{
+      "00E0", "00EE", "1NNN", "2NNN", "3XNN", "4XNN", "5XY0", "6XNN", "7XNN",
+      "8XY0", "8XY1", "8XY2", "8XY3", "8XY4", "8XY5", "8XY6", "8XY7", "8XYE",
+      "9XY0", "ANNN", "BNNN", "CXNN", "DXYN", "EX9E", "EXA1",
+      "FX07", "FX0A", "FX15", "FX18", "FX1E", "FX29", "FX33", "FX55", "FX65", "????"};
+   /**The index of unsupported opcodes.*/
+   private static final int UNKNOWN = OPCODES.length - 1;
+   /**The size of the address space.*/
+   private static final int ADDRESSES = 0x1000;
+
+   /**Instructions run per opcode.*/
+   private long[] opcodeCounts = new long[OPCODES.length];
+   /**Instructions run per address.*/
+   private long[] addressCounts = new long[ADDRESSES];
+   /**Total instructions run.*/
+   private long instructions;
+   /**Sprite pixels drawn by DXYN.*/
+   private long pixelsDrawn;
+   /**DXYN instructions that set the collision flag.*/
+   private long collisions;
+
+   /**
+    * Gets the index of an opcode in {@link #OPCODES}.
+    * @param opcode the opcode.
+    * @return the index, the last index for unsupported opcodes.
+    */
+   public static int getOpcodeIndex(int opcode){
+      int x = (opcode & 0xF000) >> 12;
+      switch(x){
+      case 0x0:
+         return opcode == 0x00E0 ? 0 : opcode == 0x00EE ? 1 : UNKNOWN;
+      case 0x5:
+      case 0x9:
+         return (opcode & 0xF) == 0 ? (x == 0x5 ? 6 : 18) : UNKNOWN;
+      case 0x8:
+         int op = opcode & 0xF;
+         return op <= 0x7 ? 9 + op : op == 0xE ? 17 : UNKNOWN;
+      case 0xE:
+         return (opcode & 0xFF) == 0x9E ? 23 : (opcode & 0xFF) == 0xA1 ? 24 : UNKNOWN;
+      case 0xF:
+         switch(opcode & 0xFF){
+         case 0x07: return 25;
+         case 0x0A: return 26;
+         case 0x15: return 27;
+         case 0x18: return 28;
+         case 0x1E: return 29;
+         case 0x29: return 30;
+         case 0x33: return 31;
+         case 0x55: return 32;
+         case 0x65: return 33;
+         default: return UNKNOWN;
+         }//End switch
+      case 0xA: return 19;
+      case 0xB: return 20;
+      case 0xC: return 21;
+      case 0xD: return 22;
+      default: return x + 1;
+      }//End switch
+   }//End method getOpcodeIndex
+
+   /**
+    * Records an instruction about to be run.
+    * @param opcode the opcode.
+    * @param address the address of the opcode.
+    */
+   void recordInstruction(int opcode, int address){
+      opcodeCounts[getOpcodeIndex(opcode)]++;
+      addressCounts[address & (ADDRESSES - 1)]++;
+      instructions++;
+   }//End method recordInstruction
+
+   /**
+    * Records a sprite draw.
+    * @param pixels the number of sprite pixels drawn.
+    * @param collision whether the draw set the collision flag.
+    */
+   void recordDraw(int pixels, boolean collision){
+      pixelsDrawn += pixels;
+      if(collision){
+         collisions++;
+      }//End if
+   }//End method recordDraw
+
+   /**
+    * Clears the profile.
+    */
+   public void reset(){
+      Arrays.fill(opcodeCounts, 0);
+      Arrays.fill(addressCounts, 0);
+      instructions = 0;
+      pixelsDrawn = 0;
+      collisions = 0;
+   }//End method reset
+
+   /**
+    * Gets the number of times an opcode has run.
+    * @param index the index of the opcode in {@link #OPCODES}.
+    * @return the count.
+    */
+   public long getOpcodeCount(int index){
+      return opcodeCounts[index];
+   }//End method getOpcodeCount
+
+   /**
+    * Gets the number of instructions run at an address.
+    * @param address the address.
+    * @return the count.
+    */
+   public long getAddressCount(int address){
+      return addressCounts[address];
+   }//End method getAddressCount
+
+   /**
+    * Gets the total number of instructions run.
+    * @return the number of instructions.
+    */
+   public long getInstructions(){
+      return instructions;
+   }//End method getInstructions
+
+   /**
+    * Gets the number of sprite pixels drawn.
+    * @return the number of pixels.
+    */
+   public long getPixelsDrawn(){
+      return pixelsDrawn;
+   }//End method getPixelsDrawn
+
+   /**
+    * Gets the number of sprite draws that collided.
+    * @return the number of collisions.
+    */
+   public long getCollisions(){
+      return collisions;
+   }//End method getCollisions
+
+   /**
+    * Writes the profile as CSV, one row per opcode and per address that has run.
+    * @param out the writer to write to.
+    */
+   public void writeCSV(Writer out){
+      PrintWriter writer = new PrintWriter(out);
+      writer.println("kind,key,count");
+      writer.println("total,instructions," + instructions);
+      writer.println("total,pixels," + pixelsDrawn);
+      writer.println("total,collisions," + collisions);
+      for(int o = 0; o < OPCODES.length; o++){
+         if(opcodeCounts[o] != 0){
+            writer.println("opcode," + OPCODES[o] + "," + opcodeCounts[o]);
+         }//End if
+      }//End for
+      for(int a = 0; a < ADDRESSES; a++){
+         if(addressCounts[a] != 0){
+            writer.println(String.format("address,0x%03X,%d", a, addressCounts[a]));
+         }//End if
+      }//End for
+      writer.flush();
+   }//End method writeCSV
+
+   /**
+    * Writes the profile as JSON, only opcodes and addresses that have run are included.
+    * @param out the writer to write to.
+    */
+   public void writeJSON(Writer out){
+      PrintWriter writer = new PrintWriter(out);
+      writer.println("{");
+      writer.println("  \"instructions\": " + instructions + ",");
+      writer.println("  \"pixels\": " + pixelsDrawn + ",");
+      writer.println("  \"collisions\": " + collisions + ",");
+      writer.print("  \"opcodes\": {");
+      String separator = "";
+      for(int o = 0; o < OPCODES.length; o++){
+         if(opcodeCounts[o] != 0){
+            writer.print(separator + "\"" + OPCODES[o] + "\": " + opcodeCounts[o]);
+            separator = ", ";
+         }//End if
+      }//End for
+      writer.println("},");
+      writer.print("  \"addresses\": {");
+      separator = "";
+      for(int a = 0; a < ADDRESSES; a++){
+         if(addressCounts[a] != 0){
+            writer.print(String.format("%s\"0x%03X\": %d", separator, a, addressCounts[a]));
+            separator = ", ";
+         }//End if
+      }//End for
+      writer.println("}");
+      writer.println("}");
+      writer.flush();
+   }//End method writeJSON
+
+   /**
+    * Dumps the profile to a file, as JSON if the name ends in .json and CSV otherwise.
+    * @param file the file to write.
+    * @throws IOException if the file can not be written.
+    */
+   public void dump(File file) throws IOException{
+      try(Writer writer = new FileWriter(file)){
+         if(file.getName().toLowerCase().endsWith(".json")){
+            writeJSON(writer);
+         } else {
+            writeCSV(writer);
+         }//End if
+      }//End try
+   }//End method dump
+}//End class Chip8Profiler
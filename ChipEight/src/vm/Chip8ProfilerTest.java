@@ -0,0 +1,41 @@
+package vm;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the profiler counts instructions by opcode and address, and the pixels and collisions drawn, only while attached.
+ */
+public class Chip8ProfilerTest {
+
+   /**
+    * Tests the profiler counts the DXYN test program by opcode and address,
+    * along with the pixels drawn, and stops counting once detached.
+    */
+   @Test public void testProfiler(){
+      Chip8VM vm = new Chip8VM();
+      vm.initialise();
+      vm.memory.setMemory(0x210, (short)0x7E);
+      vm.memory.setMemory(0x211, (short)0xFF);
+      //200: A210 LD I, 0x210  202: D002 DRW v0, v0, 2  204: D002 DRW v0, v0, 2
+      int[] program = new int[]{ 0xA2, 0x10, 0xD0, 0x02, 0xD0, 0x02 };
+      for(int b = 0; b < program.length; b++){
+         vm.memory.setMemory(0x200 + b, (short) program[b]);
+      }//End for
+      vm.forceReady();
+      Chip8Profiler profiler = new Chip8Profiler();
+      vm.setProfiler(profiler);
+      vm.cycle();
+      vm.cycle();
+      vm.cycle();
+      vm.setProfiler(null);
+      vm.cycle();
+      assertEquals(3, profiler.getInstructions());
+      assertEquals(1, profiler.getOpcodeCount(Chip8Profiler.getOpcodeIndex(0xA210)));
+      assertEquals(2, profiler.getOpcodeCount(Chip8Profiler.getOpcodeIndex(0xD002)));
+      assertEquals(1, profiler.getAddressCount(0x204));
+      assertEquals(28, profiler.getPixelsDrawn());
+      assertEquals(1, profiler.getCollisions());
+   }//End method testProfiler
+}//End class Chip8ProfilerTest
@@ -0,0 +1,206 @@
+package vm;
+
+import java.util.Arrays;
+
+/**
+ * A copy of the complete state of a {@link Chip8VM}. Snapshots are reusable,
+ * {@link #capture(Chip8VM)} copies into the existing arrays so taking one does not allocate.
+ * The breakpoints and watchpoints of the VM's debugger are copied too, so a view can show them
+ * without reading the debugger, but they are not part of the state compared by {@link #difference(Chip8State)}.
+ */
+public class Chip8State {
+   /**The width and height of the display.*/
+   private static final int WIDTH = 64, HEIGHT = 32;
+
+   /**The "v" registers.*/
+   protected short[] v = new short[16];
+   /**The stack.*/
+   protected int[] stack = new int[16];
+   /**The memory.*/
+   protected short[] memory = new short[4096];
+   /**The display packed at 1 bit per pixel, pixel (x, y) is bit (y * 64 + x).*/
+   protected long[] display = new long[WIDTH * HEIGHT / 64];
+   /**The I register.*/
+   protected int i;
+   /**The program counter.*/
+   protected int pc;
+   /**The stack pointer.*/
+   protected int sp;
+   /**The delay timer.*/
+   protected short delayTimer;
+   /**The sound timer.*/
+   protected short soundTimer;
+   /**Bitmap of the addresses with a breakpoint.*/
+   protected long[] breakpoints = new long[4096 / 64];
+   /**Bitmap of the addresses with a read or write watchpoint.*/
+   protected long[] watchpoints = new long[4096 / 64];
+
+   /**
+    * Copies the state of the given VM into this snapshot.
+    * @param vm the {@link Chip8VM} to copy.
+    * @return this snapshot.
+    */
+   public Chip8State capture(Chip8VM vm){
+      System.arraycopy(vm.v, 0, v, 0, v.length);
+      System.arraycopy(vm.stack, 0, stack, 0, stack.length);
+      if(memory.length != vm.memory.memory.length){
+         memory = new short[vm.memory.memory.length];
+      }//End if
+      System.arraycopy(vm.memory.memory, 0, memory, 0, memory.length);
+      Arrays.fill(display, 0L);
+      for(int x = 0; x < WIDTH; x++){
+         boolean[] column = vm.displayBuffer[x];
+         for(int y = 0; y < HEIGHT; y++){
+            if(column[y]){
+               int bit = y * WIDTH + x;
+               display[bit >> 6] |= 1L << bit;
+            }//End if
+         }//End for
+      }//End for
+      i = vm.i;
+      pc = vm.pc;
+      sp = vm.sp;
+      delayTimer = vm.delayTimer;
+      soundTimer = vm.soundTimer;
+      Chip8Debugger debugger = vm.getDebugger();
+      System.arraycopy(debugger.breakpoints, 0, breakpoints, 0, breakpoints.length);
+      for(int word = 0; word < watchpoints.length; word++){
+         watchpoints[word] = debugger.readWatches[word] | debugger.writeWatches[word];
+      }//End for
+      return this;
+   }//End method capture
+
+   /**
+    * Describes the first difference between this snapshot and another.
+    * @param other the snapshot to compare against.
+    * @return a description of the first difference, null if the snapshots are identical.
+    */
+   public String difference(Chip8State other){
+      if(pc != other.pc) return "pc " + hex(pc) + " != " + hex(other.pc);
+      if(i != other.i) return "I " + hex(i) + " != " + hex(other.i);
+      if(sp != other.sp) return "sp " + sp + " != " + other.sp;
+      if(delayTimer != other.delayTimer) return "delay timer " + delayTimer + " != " + other.delayTimer;
+      if(soundTimer != other.soundTimer) return "sound timer " + soundTimer + " != " + other.soundTimer;
+      for(int r = 0; r < v.length; r++){
+         if(v[r] != other.v[r]) return "v" + Integer.toHexString(r).toUpperCase() + " " + hex(v[r]) + " != " + hex(other.v[r]);
+      }//End for
+      for(int s = 0; s < stack.length; s++){
+         if(stack[s] != other.stack[s]) return "stack[" + s + "] " + hex(stack[s]) + " != " + hex(other.stack[s]);
+      }//End for
+      if(memory.length != other.memory.length){
+         return "memory size " + memory.length + " != " + other.memory.length;
+      }//End if
+      for(int location = 0; location < memory.length; location++){
+         if(memory[location] != other.memory[location]){
+            return "memory " + hex(location) + " " + hex(memory[location]) + " != " + hex(other.memory[location]);
+         }//End if
+      }//End for
+      if(!Arrays.equals(display, other.display)){
+         return "display";
+      }//End if
+      return null;
+   }//End method difference
+
+   /**
+    * Formats a value as hex for a difference description.
+    * @param value the value to format.
+    * @return the value as upper case hex.
+    */
+   private static String hex(int value){
+      return "0x" + Integer.toHexString(value).toUpperCase();
+   }//End method hex
+
+   /**
+    * Gets the value of a "v" register.
+    * @param x the index of the register.
+    * @return the value of the register.
+    */
+   public short getRegisterValue(int x){
+      return v[x];
+   }//End method getRegisterValue
+
+   /**
+    * Gets the value at a location in memory.
+    * @param location the memory location.
+    * @return the value at the location.
+    */
+   public short getValueAt(int location){
+      return memory[location];
+   }//End method getValueAt
+
+   /**
+    * Gets the size of the captured memory.
+    * @return the size of the memory.
+    */
+   public int getMemorySize(){
+      return memory.length;
+   }//End method getMemorySize
+
+   /**
+    * Checks whether there was a breakpoint at an address.
+    * @param address the address.
+    * @return <code>true</code> if there was a breakpoint.
+    */
+   public boolean isBreakpoint(int address){
+      return Chip8Debugger.isSet(breakpoints, address);
+   }//End method isBreakpoint
+
+   /**
+    * Checks whether there was a read or write watchpoint at an address.
+    * @param address the address.
+    * @return <code>true</code> if the address was watched.
+    */
+   public boolean isWatchpoint(int address){
+      return Chip8Debugger.isSet(watchpoints, address);
+   }//End method isWatchpoint
+
+   /**
+    * Gets the words of the breakpoint and watchpoint bitmaps that differ from another snapshot.
+    * @param other the snapshot to compare against.
+    * @param word the index of the 64 address word.
+    * @return a bit set for each address in the word whose breakpoint or watchpoint changed.
+    */
+   public long getDebugChanges(Chip8State other, int word){
+      return (breakpoints[word] ^ other.breakpoints[word]) | (watchpoints[word] ^ other.watchpoints[word]);
+   }//End method getDebugChanges
+
+   /**
+    * Gets the I register.
+    * @return the value of the I register.
+    */
+   public int getAddressRegister(){
+      return i;
+   }//End method getAddressRegister
+
+   /**
+    * Gets the program counter.
+    * @return the program counter.
+    */
+   public int getProgramCounter(){
+      return pc;
+   }//End method getProgramCounter
+
+   /**
+    * Gets the stack pointer.
+    * @return the stack pointer.
+    */
+   public int getStackPointer(){
+      return sp;
+   }//End method getStackPointer
+
+   /**
+    * Gets the delay timer.
+    * @return the delay timer.
+    */
+   public short getDelayTimer(){
+      return delayTimer;
+   }//End method getDelayTimer
+
+   /**
+    * Gets the sound timer.
+    * @return the sound timer.
+    */
+   public short getSoundTimer(){
+      return soundTimer;
+   }//End method getSoundTimer
+}//End class Chip8State
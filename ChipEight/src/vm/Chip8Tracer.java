@@ -0,0 +1,345 @@
+package vm;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records the most recent instructions run by a {@link Chip8VM} into a fixed size ring buffer,
+ * one long per changed register holding the address, the opcode and the register with its new value.
+ * An instruction that changes more than one register, such as 8XY4 setting vX and vF or FX65 loading
+ * v0 to vX, records an entry for each, the entries after the first marked as continuations.
+ * Nothing is allocated per instruction.
+ * 
+ * Attach with {@link Chip8VM#setTracer(Chip8Tracer)}, which swaps the VM onto a tracing dispatch
+ * table. The trace is written with {@link #dump(File)}, and automatically on an unsupported opcode if
+ * a fault directory is set. {@link TraceTool} reads the files back.
+ * 
+ * A trace file starts with the magic "C8TR", a version int, the entry count as an int and the
+ * sequence number of the first entry as a long, followed by the entries oldest first.
+ */
+public class Chip8Tracer {
+   /**The magic number at the start of a trace file, "C8TR".*/
+   public static final int MAGIC = 0x43385452;
+   /**The version of the trace file format.*/
+   public static final int VERSION = 2;
+   /**The register index for the I register.*/
+   public static final int REGISTER_I = 16;
+   /**The register index for the stack pointer.*/
+   public static final int REGISTER_SP = 17;
+   /**The register index for the delay timer.*/
+   public static final int REGISTER_DT = 18;
+   /**The register index for the sound timer.*/
+   public static final int REGISTER_ST = 19;
+   /**The register index for an instruction that changed no register.*/
+   public static final int NO_REGISTER = 31;
+   /**The bit marking an entry as a further register changed by the instruction of the entry before.*/
+   private static final long CONTINUATION = 1L << 49;
+   /**The size of the file header in bytes.*/
+   private static final int HEADER_SIZE = 20;
+
+   /**The ring of entries.*/
+   private long[] ring;
+   /**Mask to wrap an index into the ring.*/
+   private int mask;
+   /**The number of entries ever recorded.*/
+   private long count;
+   /**The directory to dump the trace to on an unsupported opcode, null to not dump.*/
+   private File faultDirectory;
+
+   /**
+    * Constructs a new {@link Chip8Tracer}.
+    * @param capacity the number of instructions to keep, rounded up to a power of two.
+    */
+   public Chip8Tracer(int capacity){
+      int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+      ring = new long[size];
+      mask = size - 1;
+   }//End constructor
+
+   /**
+    * Packs an entry into a long.
+    * @param address the address of the instruction.
+    * @param opcode the opcode.
+    * @param register the index of the register changed.
+    * @param value the new value of the register.
+    * @return the entry.
+    */
+   public static long pack(int address, int opcode, int register, int value){
+      return (address & 0xFFFL) | (opcode & 0xFFFFL) << 12 | (register & 0x1FL) << 28 | (value & 0xFFFFL) << 33;
+   }//End method pack
+
+   /**
+    * Gets the address of the instruction of an entry.
+    * @param entry the entry.
+    * @return the address.
+    */
+   public static int getAddress(long entry){
+      return (int) (entry & 0xFFF);
+   }//End method getAddress
+
+   /**
+    * Gets the opcode of an entry.
+    * @param entry the entry.
+    * @return the opcode.
+    */
+   public static int getOpcode(long entry){
+      return (int) (entry >>> 12 & 0xFFFF);
+   }//End method getOpcode
+
+   /**
+    * Gets the register changed by the instruction of an entry.
+    * @param entry the entry.
+    * @return 0 to 15 for v0 to vF, {@link #REGISTER_I}, {@link #REGISTER_SP}, {@link #REGISTER_DT},
+    * {@link #REGISTER_ST} or {@link #NO_REGISTER}.
+    */
+   public static int getRegister(long entry){
+      return (int) (entry >>> 28 & 0x1F);
+   }//End method getRegister
+
+   /**
+    * Gets the new value of the register changed by the instruction of an entry.
+    * @param entry the entry.
+    * @return the value.
+    */
+   public static int getValue(long entry){
+      return (int) (entry >>> 33 & 0xFFFF);
+   }//End method getValue
+
+   /**
+    * Checks whether an entry is a further register changed by the same instruction as the entry before it.
+    * @param entry the entry.
+    * @return <code>true</code> if the entry continues the instruction before it.
+    */
+   public static boolean isContinuation(long entry){
+      return (entry & CONTINUATION) != 0;
+   }//End method isContinuation
+
+   /**
+    * Gets the name of a register index.
+    * @param register the register index.
+    * @return the name of the register, empty for {@link #NO_REGISTER}.
+    */
+   public static String getRegisterName(int register){
+      switch(register){
+      case REGISTER_I: return "I";
+      case REGISTER_SP: return "SP";
+      case REGISTER_DT: return "DT";
+      case REGISTER_ST: return "ST";
+      case NO_REGISTER: return "";
+      default: return "v" + Integer.toHexString(register).toUpperCase();
+      }//End switch
+   }//End method getRegisterName
+
+   /**
+    * Records an instruction that has just run, with the registers it changed.
+    * @param address the address of the instruction.
+    * @param opcode the opcode.
+    * @param vm the VM that ran it.
+    */
+   void record(int address, int opcode, Chip8VM vm){
+      int register;
+      int value;
+      int x = (opcode & 0xF00) >> 8;
+      switch(opcode >> 12){
+      case 0x0:
+         if(opcode == 0x00EE){
+            register = REGISTER_SP;
+            value = vm.sp;
+         } else {
+            register = NO_REGISTER;
+            value = 0;
+         }//End if
+         break;
+      case 0x2:
+         register = REGISTER_SP;
+         value = vm.sp;
+         break;
+      case 0x6:
+      case 0x7:
+      case 0x8:
+      case 0xC:
+         register = x;
+         value = vm.v[x];
+         break;
+      case 0xA:
+         register = REGISTER_I;
+         value = vm.i;
+         break;
+      case 0xD:
+         register = 0xF;
+         value = vm.v[0xF];
+         break;
+      case 0xF:
+         switch(opcode & 0xFF){
+         case 0x07:
+         case 0x0A:
+         case 0x65:
+            register = x;
+            value = vm.v[x];
+            break;
+         case 0x15:
+            register = REGISTER_DT;
+            value = vm.delayTimer;
+            break;
+         case 0x18:
+            register = REGISTER_ST;
+            value = vm.soundTimer;
+            break;
+         case 0x1E:
+         case 0x29:
+            register = REGISTER_I;
+            value = vm.i;
+            break;
+         default:
+            register = NO_REGISTER;
+            value = 0;
+         }//End switch
+         break;
+      default:
+         register = NO_REGISTER;
+         value = 0;
+      }//End switch
+      add(pack(address, opcode, register, value));
+      if((opcode & 0xF000) == 0x8000 && x != 0xF){
+         switch(opcode & 0xF){
+         case 0x4:
+         case 0x5:
+         case 0x6:
+         case 0x7:
+         case 0xE:
+            add(pack(address, opcode, 0xF, vm.v[0xF]) | CONTINUATION);
+            break;
+         }//End switch
+      } else if((opcode & 0xF0FF) == 0xF065){
+         //The first entry holds vX, the rest of the loaded registers follow it.
+         for(int r = 0; r < x; r++){
+            add(pack(address, opcode, r, vm.v[r]) | CONTINUATION);
+         }//End for
+      }//End if
+   }//End method record
+
+   /**
+    * Adds an entry to the ring, overwriting the oldest once it is full.
+    * @param entry the entry.
+    */
+   private void add(long entry){
+      ring[(int) count & mask] = entry;
+      count++;
+   }//End method add
+
+   /**
+    * Called by the VM on an unsupported opcode, dumps the trace including the faulting instruction
+    * to the fault directory if one is set.
+    * @param address the address of the opcode.
+    * @param opcode the opcode.
+    */
+   void fault(int address, int opcode){
+      if(faultDirectory == null){
+         return;
+      }//End if
+      //Record the fault so it ends the dump, then roll back as the dispatch table records it again.
+      add(pack(address, opcode, NO_REGISTER, 0));
+      try{
+         dump(new File(faultDirectory, "trace-" + System.currentTimeMillis() + ".c8t"));
+      } catch (IOException e){
+         e.printStackTrace();
+      }//End try/catch
+      count--;
+   }//End method fault
+
+   /**
+    * Sets the directory to dump the trace to when the VM hits an unsupported opcode.
+    * @param faultDirectory the directory, null to not dump on faults.
+    */
+   public void setFaultDirectory(File faultDirectory){
+      this.faultDirectory = faultDirectory;
+   }//End method setFaultDirectory
+
+   /**
+    * Gets the number of entries recorded since the tracer was created or cleared.
+    * @return the number of entries recorded, including those overwritten.
+    */
+   public long getCount(){
+      return count;
+   }//End method getCount
+
+   /**
+    * Gets the number of entries held in the ring.
+    * @return the number of entries held.
+    */
+   public int size(){
+      return (int) Math.min(count, ring.length);
+   }//End method size
+
+   /**
+    * Gets a held entry.
+    * @param index the index of the entry, 0 being the oldest held.
+    * @return the entry.
+    */
+   public long getEntry(int index){
+      return ring[(int) (count - size() + index) & mask];
+   }//End method getEntry
+
+   /**
+    * Clears the trace.
+    */
+   public void clear(){
+      count = 0;
+   }//End method clear
+
+   /**
+    * Writes the held entries to a file, oldest first.
+    * @param file the file to write.
+    * @throws IOException if the file can not be written.
+    */
+   public void dump(File file) throws IOException{
+      int size = size();
+      try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)){
+         ByteBuffer buffer = ByteBuffer.allocateDirect(1 << 16);
+         buffer.putInt(MAGIC).putInt(VERSION).putInt(size).putLong(count - size);
+         for(int e = 0; e < size; e++){
+            if(buffer.remaining() < 8){
+               buffer.flip();
+               while(buffer.hasRemaining()){
+                  channel.write(buffer);
+               }//End while
+               buffer.clear();
+            }//End if
+            buffer.putLong(getEntry(e));
+         }//End for
+         buffer.flip();
+         while(buffer.hasRemaining()){
+            channel.write(buffer);
+         }//End while
+      }//End try
+   }//End method dump
+
+   /**
+    * Reads the entries from a trace file.
+    * @param file the file to read.
+    * @param first receives the sequence number of the first entry at index 0, may be null.
+    * @return the entries, oldest first.
+    * @throws IOException if the file can not be read or is not a trace.
+    */
+   public static long[] load(File file, long[] first) throws IOException{
+      try(RandomAccessFile input = new RandomAccessFile(file, "r")){
+         FileChannel channel = input.getChannel();
+         ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+         while(header.hasRemaining() && channel.read(header) >= 0);
+         header.flip();
+         if(header.remaining() < HEADER_SIZE || header.getInt() != MAGIC || header.getInt() != VERSION){
+            throw new IOException(file + " is not a version " + VERSION + " trace");
+         }//End if
+         long[] entries = new long[header.getInt()];
+         if(first != null){
+            first[0] = header.getLong();
+         }//End if
+         channel.map(FileChannel.MapMode.READ_ONLY, HEADER_SIZE, entries.length * 8L).asLongBuffer().get(entries);
+         return entries;
+      }//End try
+   }//End method load
+}//End class Chip8Tracer
@@ -0,0 +1,90 @@
+package vm;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+/**
+ * Tests the tracer records the changed registers into its ring and survives a round trip through a file.
+ */
+public class Chip8TracerTest {
+
+   @Test public void testTraceRoundTrip() throws IOException{
+      Chip8VM vm = new Chip8VM();
+      vm.initialise();
+      //200: 7001 ADD v0, 1  202: A300 LD I, 0x300  204: 1200 JP 0x200
+      int[] program = new int[]{ 0x70, 0x01, 0xA3, 0x00, 0x12, 0x00 };
+      for(int b = 0; b < program.length; b++){
+         vm.memory.setMemory(0x200 + b, (short) program[b]);
+      }//End for
+      vm.forceReady();
+      Chip8Tracer tracer = new Chip8Tracer(5);
+      vm.setTracer(tracer);
+      for(int s = 0; s < 30; s++){
+         vm.step();
+      }//End for
+      assertEquals(30, tracer.getCount());
+      assertEquals(8, tracer.size());
+      long newest = tracer.getEntry(7);
+      assertEquals(0x204, Chip8Tracer.getAddress(newest));
+      assertEquals(Chip8Tracer.NO_REGISTER, Chip8Tracer.getRegister(newest));
+      long add = tracer.getEntry(5);
+      assertEquals(0x7001, Chip8Tracer.getOpcode(add));
+      assertEquals(0, Chip8Tracer.getRegister(add));
+      assertEquals(10, Chip8Tracer.getValue(add));
+
+      File file = File.createTempFile("trace", ".c8t");
+      file.deleteOnExit();
+      tracer.dump(file);
+      long[] first = new long[1];
+      long[] entries = Chip8Tracer.load(file, first);
+      assertEquals(22, first[0]);
+      assertEquals(8, entries.length);
+      for(int e = 0; e < entries.length; e++){
+         assertEquals(tracer.getEntry(e), entries[e]);
+      }//End for
+      vm.setTracer(null);
+      vm.step();
+      assertEquals(30, tracer.getCount());
+   }//End method testTraceRoundTrip
+
+   @Test public void testMultipleRegisters(){
+      Chip8VM vm = new Chip8VM();
+      vm.initialise();
+      //200: 60FF LD v0, 0xFF  202: 7101 ADD v1, 1  204: 8014 ADD v0, v1  206: A300 LD I, 0x300  208: F265 LD v0-v2, [I]
+      int[] program = new int[]{ 0x60, 0xFF, 0x71, 0x01, 0x80, 0x14, 0xA3, 0x00, 0xF2, 0x65 };
+      for(int b = 0; b < program.length; b++){
+         vm.memory.setMemory(0x200 + b, (short) program[b]);
+      }//End for
+      vm.memory.setMemory(0x300, (short) 0x11);
+      vm.memory.setMemory(0x301, (short) 0x22);
+      vm.memory.setMemory(0x302, (short) 0x33);
+      vm.forceReady();
+      Chip8Tracer tracer = new Chip8Tracer(16);
+      vm.setTracer(tracer);
+      for(int s = 0; s < 5; s++){
+         vm.step();
+      }//End for
+      assertEquals(8, tracer.getCount());
+      long add = tracer.getEntry(2);
+      long carry = tracer.getEntry(3);
+      assertEquals(0, Chip8Tracer.getRegister(add));
+      assertEquals(0, Chip8Tracer.getValue(add));
+      assertFalse(Chip8Tracer.isContinuation(add));
+      assertEquals(0x8014, Chip8Tracer.getOpcode(carry));
+      assertEquals(0xF, Chip8Tracer.getRegister(carry));
+      assertEquals(1, Chip8Tracer.getValue(carry));
+      assertTrue(Chip8Tracer.isContinuation(carry));
+      int[] loaded = new int[]{ 0x33, 0x11, 0x22 };
+      for(int e = 0; e < 3; e++){
+         long entry = tracer.getEntry(5 + e);
+         assertEquals(0x208, Chip8Tracer.getAddress(entry));
+         assertEquals(e == 0 ? 2 : e - 1, Chip8Tracer.getRegister(entry));
+         assertEquals(loaded[e], Chip8Tracer.getValue(entry));
+         assertEquals(e > 0, Chip8Tracer.isContinuation(entry));
+      }//End for
+   }//End method testMultipleRegisters
+}//End class Chip8TracerTest
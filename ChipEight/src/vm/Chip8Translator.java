@@ -0,0 +1,285 @@
+package vm;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+/**
+ * Translates ROMs ahead of time into Java classes extending {@link CompiledRom}, with one method per
+ * basic block of the {@link ControlFlowGraph}. Compiled classes are cached on disk under the SHA-256 
+ * of the ROM, so later runs load the class straight away and skip translation and compilation.
+ * 
+ * Usage: Chip8Translator rom cacheDirectory
+ */
+public class Chip8Translator {
+   /**Version of the generated code, part of the hash so a change to the translator misses the cache.*/
+   private static final String VERSION = "2";
+   /**The package of generated classes.*/
+   private static final String PACKAGE = "aot";
+   /**The most instructions in one block method, longer blocks are split so methods stay small enough to JIT.*/
+   private static final int MAX_BLOCK = 64;
+   /**Hex digits for the hash.*/
+   private static final char[] DIGITS = "0123456789abcdef".toCharArray();
+
+   /**
+    * Constructor
+    */
+   private Chip8Translator(){}
+
+   /**
+    * Generates the source of the class for a ROM.
+    * @param className the simple name of the class.
+    * @param rom the ROM image, loaded at 0x200.
+    * @param graph the control flow graph of the ROM.
+    * @return the Java source.
+    */
+   public static String generate(String className, byte[] rom, ControlFlowGraph graph){
+      StringBuilder source = new StringBuilder(rom.length * 64);
+      source.append("package ").append(PACKAGE).append(";\n\n");
+      source.append("/** Generated by vm.Chip8Translator, do not edit. */\n");
+      source.append("public final class ").append(className).append(" extends vm.CompiledRom {\n");
+      //Split the blocks into chunks, each chunk is a method that can be entered at its start.
+      List<int[]> chunks = new ArrayList<int[]>();
+      for(ControlFlowGraph.Block block : graph.getBlocks()){
+         int count = 0;
+         int start = block.getStart();
+         for(int address = block.getStart(); address < block.getEnd(); address += 2){
+            if(++count == MAX_BLOCK && address + 2 < block.getEnd()){
+               chunks.add(new int[]{ start, address + 2, count });
+               start = address + 2;
+               count = 0;
+            }//End if
+         }//End for
+         chunks.add(new int[]{ start, block.getEnd(), count });
+      }//End for
+      source.append("   @Override public int run(int budget){\n");
+      source.append("      int pc = getPC();\n");
+      source.append("      switch(pc >> 8){\n");
+      int page = -1;
+      for(int[] chunk : chunks){
+         if(chunk[0] >> 8 != page){
+            page = chunk[0] >> 8;
+            source.append(String.format("      case 0x%X: return page%X(pc, budget);\n", page, page));
+         }//End if
+      }//End for
+      source.append("      default: return 0;\n      }\n   }\n");
+      page = -1;
+      for(int[] chunk : chunks){
+         if(chunk[0] >> 8 != page){
+            if(page != -1){
+               source.append("      default: return 0;\n      }\n   }\n");
+            }//End if
+            page = chunk[0] >> 8;
+            source.append(String.format("\n   private int page%X(int pc, int budget){\n      switch(pc){\n", page));
+         }//End if
+         source.append(String.format("      case 0x%X: return budget < %d ? 0 : b%X();\n", chunk[0], chunk[2], chunk[0]));
+      }//End for
+      if(page != -1){
+         source.append("      default: return 0;\n      }\n   }\n");
+      }//End if
+      //Padded so an instruction straddling the end of the ROM reads zeros, as it does in memory.
+      byte[] image = Arrays.copyOf(rom, rom.length + 2);
+      for(int[] chunk : chunks){
+         generateChunk(source, image, graph.getBlockAt(chunk[0]), chunk);
+      }//End for
+      source.append("}\n");
+      return source.toString();
+   }//End method generate
+
+   /**
+    * Generates the method for a chunk of a block.
+    * @param source the source to append to.
+    * @param rom the ROM image, padded past the end.
+    * @param block the block the chunk is part of.
+    * @param chunk the start, end and instruction count of the chunk.
+    */
+   private static void generateChunk(StringBuilder source, byte[] rom, ControlFlowGraph.Block block, int[] chunk){
+      source.append(String.format("\n   /** %03X-%03X %s */\n   private int b%X(){\n", chunk[0], chunk[1], block.getExit(), chunk[0]));
+      int count = 0;
+      for(int address = chunk[0]; address < chunk[1]; address += 2){
+         int opcode = (rom[address - 0x200] & 0xFF) << 8 | (rom[address - 0x200 + 1] & 0xFF);
+         String family = Chip8Profiler.OPCODES[Chip8Profiler.getOpcodeIndex(opcode)];
+         boolean last = address + 2 == block.getEnd();
+         count++;
+         source.append("      //").append(Chip8Disassembler.disassemble(opcode)).append('\n');
+         switch(family){
+         case "00EE": case "1NNN": case "2NNN": case "BNNN": case "DXYN":
+         case "FX0A": case "FX33": case "FX55": case "FX65":
+            //Reads the program counter, or may throw and should report where.
+            source.append(String.format("      setPC(0x%X);\n", address + 2));
+            break;
+         default:
+            if(last && block.getExit() == ControlFlowGraph.Exit.SKIP){
+               source.append(String.format("      setPC(0x%X);\n", address + 2));
+            }//End if
+         }//End switch
+         source.append(String.format("      op(0x%04X); vm.run%s();\n", opcode, family));
+         switch(family){
+         case "FX0A":
+            source.append(String.format("      if(vm.isWaitingForKey()){ return %d; }\n", count));
+            break;
+         case "FX33": case "FX55":
+            source.append(String.format("      if(written(0x%04X)){ return %d; }\n", opcode, count));
+            break;
+         default:
+            break;
+         }//End switch
+      }//End for
+      switch(chunk[1] == block.getEnd() ? block.getExit() : ControlFlowGraph.Exit.FALLTHROUGH){
+      case FALLTHROUGH: case HALT:
+         source.append(String.format("      setPC(0x%X);\n", chunk[1]));
+         break;
+      default:
+         break;
+      }//End switch
+      source.append("      return ").append(count).append(";\n   }\n");
+   }//End method generateChunk
+
+   /**
+    * Gets the compiled class for a ROM, translating and compiling it into the cache if it is not already there.
+    * @param rom the ROM image.
+    * @param cache the cache directory.
+    * @return the compiled ROM, null if it could not be compiled and the ROM should be interpreted.
+    */
+   public static CompiledRom load(byte[] rom, File cache){
+      try{
+         String hash = hash(rom);
+         String className = "Rom" + hash;
+         File directory = new File(cache, hash);
+         File classFile = new File(directory, PACKAGE + File.separator + className + ".class");
+         ControlFlowGraph graph = Chip8Disassembler.analyse(rom);
+         if(!classFile.isFile() && !compile(className, rom, graph, cache, directory)){
+            return null;
+         }//End if
+         URLClassLoader loader = new URLClassLoader(new URL[]{ directory.toURI().toURL() }, CompiledRom.class.getClassLoader());
+         try{
+            CompiledRom compiled = (CompiledRom) loader.loadClass(PACKAGE + "." + className).getDeclaredConstructor().newInstance();
+            compiled.setGraph(graph);
+            compiled.setLoader(loader);
+            return compiled;
+         } catch (ReflectiveOperationException | RuntimeException e){
+            loader.close();
+            throw e;
+         }//End try/catch
+      } catch (IOException | ReflectiveOperationException e){
+         e.printStackTrace();
+         return null;
+      }//End try/catch
+   }//End method load
+
+   /**
+    * Gets the compiled class for a ROM file.
+    * @param rom the ROM file.
+    * @param cache the cache directory.
+    * @return the compiled ROM, null if it could not be compiled and the ROM should be interpreted.
+    */
+   public static CompiledRom load(File rom, File cache){
+      try{
+         return load(Files.readAllBytes(rom.toPath()), cache);
+      } catch (IOException e){
+         e.printStackTrace();
+         return null;
+      }//End try/catch
+   }//End method load
+
+   /**
+    * Translates and compiles a ROM into a temporary directory, then moves it into place so
+    * concurrent runs never see a half written entry.
+    * @param className the simple name of the class.
+    * @param rom the ROM image.
+    * @param graph the control flow graph of the ROM.
+    * @param cache the cache directory.
+    * @param directory the cache entry to create.
+    * @return <code>true</code> if the entry exists afterwards.
+    * @throws IOException if there is no compiler, the source does not compile or the cache can not be written.
+    */
+   private static boolean compile(String className, byte[] rom, ControlFlowGraph graph, File cache, File directory) throws IOException{
+      JavaCompiler compiler = ToolProvider.getSystemJavaCompiler();
+      if(compiler == null){
+         throw new IOException("No Java compiler available to compile " + className);
+      }//End if
+      cache.mkdirs();
+      File temporary = Files.createTempDirectory(cache.toPath(), directory.getName()).toFile();
+      try{
+         File source = new File(temporary, PACKAGE + File.separator + className + ".java");
+         source.getParentFile().mkdirs();
+         Files.write(source.toPath(), generate(className, rom, graph).getBytes(StandardCharsets.UTF_8));
+         String classPath = new File(CompiledRom.class.getProtectionDomain().getCodeSource().getLocation().getPath()).getPath();
+         int result = compiler.run(null, null, null, "-nowarn", "-classpath", classPath, "-d", temporary.getPath(), source.getPath());
+         if(result != 0){
+            throw new IOException("Could not compile " + source);
+         }//End if
+         try{
+            Files.move(temporary.toPath(), directory.toPath(), StandardCopyOption.ATOMIC_MOVE);
+         } catch (IOException e){
+            //Another run got there first.
+         }//End try/catch
+         return directory.isDirectory();
+      } finally {
+         delete(temporary);
+      }//End try/finally
+   }//End method compile
+
+   /**
+    * Deletes a directory and everything in it, if it exists.
+    * @param directory the directory to delete.
+    * @throws IOException if the directory can not be listed.
+    */
+   private static void delete(File directory) throws IOException{
+      if(!directory.exists()){
+         return;
+      }//End if
+      try(Stream<Path> paths = Files.walk(directory.toPath())){
+         paths.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+      }//End try
+   }//End method delete
+
+   /**
+    * Hashes a ROM together with the translator version.
+    * @param rom the ROM image.
+    * @return the SHA-256 in hex.
+    */
+   public static String hash(byte[] rom){
+      try{
+         MessageDigest digest = MessageDigest.getInstance("SHA-256");
+         digest.update(VERSION.getBytes(StandardCharsets.UTF_8));
+         byte[] bytes = digest.digest(rom);
+         char[] hex = new char[bytes.length * 2];
+         for(int b = 0; b < bytes.length; b++){
+            hex[b * 2] = DIGITS[(bytes[b] >> 4) & 0xF];
+            hex[b * 2 + 1] = DIGITS[bytes[b] & 0xF];
+         }//End for
+         return new String(hex);
+      } catch (NoSuchAlgorithmException e){
+         throw new IllegalStateException(e);
+      }//End try/catch
+   }//End method hash
+
+   /**
+    * Entry point, translates a ROM into the cache ahead of a run.
+    * @param args the ROM and the cache directory.
+    */
+   public static void main(String[] args){
+      if(args.length < 2){
+         System.err.println("Usage: Chip8Translator rom cacheDirectory");
+         System.exit(1);
+      }//End if
+      CompiledRom compiled = load(new File(args[0]), new File(args[1]));
+      System.out.println(compiled == null ? "Translation failed" : "Cached " + compiled.getClass().getName());
+   }//End method main
+}//End class Chip8Translator
@@ -0,0 +1,96 @@
+package vm;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Tests ROMs translated ahead of time run the same as the interpreter, are cached by hash
+ * and fall back to the interpreter when they write over their own code.
+ */
+public class Chip8TranslatorTest {
+   /**The cache directory shared by the tests.*/
+   private static File cache;
+
+   @BeforeClass public static void createCache() throws Exception{
+      new Chip8VM().initialise();
+      cache = Files.createTempDirectory("aot").toFile();
+      cache.deleteOnExit();
+   }//End method createCache
+
+   /**
+    * Runs a ROM for a number of frames, interpreted or compiled.
+    * @param rom the ROM image.
+    * @param compiled the compiled ROM, null to interpret.
+    * @param frames the number of frames to run.
+    * @return the state at the end.
+    */
+   private static Chip8VM run(byte[] rom, CompiledRom compiled, int frames){
+      Chip8VM vm = new Chip8VM();
+      vm.setSeed(1);
+      vm.initialise();
+      vm.getKeypad().setScripted(true);
+      for(int b = 0; b < rom.length; b++){
+         vm.memory.setMemory(0x200 + b, (short) (rom[b] & 0xFF));
+      }//End for
+      vm.forceReady();
+      vm.setCompiled(compiled);
+      for(int frame = 0; frame < frames; frame++){
+         vm.runCycles(50);
+         vm.decrementDelayTimer();
+         vm.decrementSoundTimer();
+      }//End for
+      return vm;
+   }//End method run
+
+   @Test public void testCorpusMatchesInterpreter() throws Exception{
+      File corpus = new File(Chip8TranslatorTest.class.getClassLoader().getResource("vm/regression").toURI());
+      for(File file : corpus.listFiles((directory, name)->name.endsWith(".ch8"))){
+         byte[] rom = Files.readAllBytes(file.toPath());
+         CompiledRom compiled = Chip8Translator.load(rom, cache);
+         assertNotNull(file.getName(), compiled);
+         Chip8VM expected = run(rom, null, 120);
+         Chip8VM actual = run(rom, compiled, 120);
+         assertNull(file.getName(), new Chip8State().capture(expected).difference(new Chip8State().capture(actual)));
+         File entry = new File(cache, Chip8Translator.hash(rom));
+         assertTrue(entry.isDirectory());
+         long modified = entry.lastModified();
+         CompiledRom cached = Chip8Translator.load(rom, cache);
+         assertEquals(compiled.getClass().getName(), cached.getClass().getName());
+         cached.close();
+         assertEquals(modified, entry.lastModified());
+      }//End for
+   }//End method testCorpusMatchesInterpreter
+
+   @Test public void testSelfModifyingFallsBack(){
+      //200: A208 LD I, 0x208  202: 6012 LD v0, 0x12  204: 6106 LD v1, 0x06  206: F155 LD [I], v1
+      //208: 7201 ADD v2, 1, rewritten to 1206 JP 0x206  20A: 120A JP 0x20A
+      byte[] rom = new byte[]{ (byte) 0xA2, 0x08, 0x60, 0x12, 0x61, 0x06, (byte) 0xF1, 0x55, 0x72, 0x01, 0x12, 0x0A };
+      CompiledRom compiled = Chip8Translator.load(rom, cache);
+      assertNotNull(compiled);
+      Chip8VM expected = run(rom, null, 2);
+      Chip8VM actual = run(rom, compiled, 2);
+      assertNull(actual.getCompiled());
+      assertEquals(0, actual.getRegisterValue(2));
+      assertNull(new Chip8State().capture(expected).difference(new Chip8State().capture(actual)));
+   }//End method testSelfModifyingFallsBack
+
+   @Test public void testWatchpointStopsCompiled(){
+      //200: 7001 ADD v0, 1  202: A300 LD I, 0x300  204: F055 LD [I], v0  206: 1200 JP 0x200
+      byte[] rom = new byte[]{ 0x70, 0x01, (byte) 0xA3, 0x00, (byte) 0xF0, 0x55, 0x12, 0x00 };
+      CompiledRom compiled = Chip8Translator.load(rom, cache);
+      assertNotNull(compiled);
+      Chip8VM vm = run(rom, compiled, 0);
+      vm.getDebugger().setWatchpoint(0x300, false, true);
+      vm.runCycles(50);
+      assertTrue(vm.getDebugger().isSuspended());
+      assertEquals(1, vm.getRegisterValue(0));
+      assertEquals(1, vm.memory.getValueAt(0x300));
+      vm.runCycles(50);
+      assertEquals(1, vm.getRegisterValue(0));
+   }//End method testWatchpointStopsCompiled
+}//End class Chip8TranslatorTest
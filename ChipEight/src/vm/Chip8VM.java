@@ -8,7 +8,6 @@ import java.util.Arrays;
 import java.util.Random;
 
 import core.event.EventManager;
-import event.CycleCompleteEvent;
 import event.RomLoadedEvent;
 
 public class Chip8VM {
@@ -27,6 +26,8 @@ public class Chip8VM {
    protected int[] stack = new int[16];
    /**Random seed.*/
    protected long seed = System.currentTimeMillis();
+   /**Random number generator for CXNN, seeded from {@link #seed} on initialisation.*/
+   protected Random random;
    /**Current opcode ready to execute.*/
    protected int opcode;
    /**Sound timer, should decrement 60 times a second, plays a sound when != 0*/
@@ -41,6 +42,14 @@ public class Chip8VM {
    protected int sp;
    /**Whether this vm is ready to perform cycles.*/
    protected boolean ready;
+   /**Whether the debugger has suspended this VM at a break, kept apart from {@link #ready} so loading a game does not clear it.*/
+   protected boolean suspended;
+   /**The number of instructions run since this VM was created, not counting idle cycles skipped or cycles blocked in FX0A.*/
+   protected long instructionsExecuted;
+   /**The register FX0A is waiting to read a key into, -1 if not waiting.*/
+   protected int keyWait = -1;
+   /**The key FX0A saw go down and is waiting to come up, -1 if none yet.*/
+   protected int keyWaitKey = -1;
   
    /**
     * Font for characters 0 to F.
@@ -76,6 +85,20 @@ public class Chip8VM {
          this::run8XXX, this::run9XY0, this::runANNN, this::runBNNN, 
          this::runCXNN, this::runDXYN, this::runEXXX, this::runFXXX};
 
+   /**
+    * The table {@link #step()} dispatches through, either {@link #instructions} or a profiled copy of it.
+    */
+   private Callback[] dispatch = instructions;
+
+   /**The attached profiler, null if not profiling.*/
+   private Chip8Profiler profiler;
+   /**The attached tracer, null if not tracing.*/
+   private Chip8Tracer tracer;
+   /**The debugger holding the breakpoints and watchpoints.*/
+   private Chip8Debugger debugger = new Chip8Debugger(this);
+   /**The ROM translated ahead of time, null to interpret.*/
+   private CompiledRom compiled;
+
    /**
     * Chip 8 opcodes relating to the system.
     */
@@ -131,9 +154,23 @@ public class Chip8VM {
       sp = 0;
       ready = false;
       pc = 0x200;
+      keyWait = -1;
+      keyWaitKey = -1;
+      random = new Random(seed);
+      setCompiled(null);
+      debugger.install();
       loadFonts();
    }//End method initialise
 
+   /**
+    * Sets the seed used for random numbers, takes effect on the next initialisation.
+    * Runs with the same seed and input are deterministic.
+    * @param seed the seed to set.
+    */
+   public void setSeed(long seed){
+      this.seed = seed;
+   }//End method setSeed
+
    /**
     * Forces the VM into the ready state for testing purposes.
     */
@@ -177,7 +214,8 @@ public class Chip8VM {
     * Gets the next opcode and increments the program counter by 2
     */
    protected void getOpcode(){
-      opcode = ((int)memory.getValueAt(pc) << 8) | memory.getValueAt(pc+1);
+      //Read the array directly so instruction fetches do not trigger read watchpoints.
+      opcode = ((int)memory.memory[pc] << 8) | memory.memory[pc+1];
       pc+=2;
    }//End method getOpcode
 
@@ -185,24 +223,304 @@ public class Chip8VM {
     * Cycles this VM, gets the opcode in memory at the address loacted at the program counter and executes it.
     */
    public void cycle(){
-      if(ready){
+      step();
+   }//End method cycle
+
+   /**
+    * Executes the opcode at the program counter.
+    */
+   public void step(){
+      if(ready && !suspended){
          keypad.update();
+         if(keyWait != -1){
+            waitForKey();
+            return;
+         }//End if
          getOpcode();
+         instructionsExecuted++;
          try{
-            instructions[(opcode & 0xF000) >> 12].run();
+            dispatch[(opcode & 0xF000) >> 12].run();
          } catch (Exception e){
             System.out.println("Exception at opcode " + Integer.toHexString(opcode) + " at memory location 0x" + Integer.toHexString(pc - 2) + ".");
             e.printStackTrace();
          }//End try/catch
-         EventManager.getEventManager().fireEvent(new CycleCompleteEvent());
       }//End if
-   }//End method cycle
+   }//End method step
+
+   /**
+    * Runs a number of instructions. While a {@link CompiledRom} is attached and the profiler, tracer and
+    * breakpoints are not in use, whole blocks that fit in the budget run as compiled code and the rest 
+    * are interpreted. Once the program writes over its own code the compiled ROM is dropped and
+    * everything is interpreted. A watchpoint hit inside a compiled block suspends the VM once that
+    * block has finished, and nothing more runs until the debugger resumes it.
+    * 
+    * The timers and keys do not change during a call, so once the program is spinning in an idle loop
+    * every remaining cycle would repeat it without changing anything. Those cycles are accounted for
+    * without being run, see {@link #skipIdle(int)}.
+    * @param budget the number of instructions to run.
+    * @return the number of the instructions skipped as idle.
+    */
+   public int runCycles(int budget){
+      int executed = 0;
+      int idle = 0;
+      if(compiled != null && dispatch == instructions && ready && !suspended){
+         //Key state only changes between frames, so one update covers the compiled blocks.
+         keypad.update();
+         while(executed < budget && !compiled.isInvalid() && !suspended){
+            int ran = 0;
+            int block = pc;
+            try{
+               ran = keyWait == -1 ? compiled.run(budget - executed) : 0;
+            } catch (Exception e){
+               System.out.println("Exception in compiled block at memory location 0x" + Integer.toHexString(block) + ".");
+               e.printStackTrace();
+               setCompiled(null);
+               return idle;
+            }//End try/catch
+            if(ran == 0){
+               step();
+               ran = 1;
+               if((opcode & 0xF0FF) == 0xF033 || (opcode & 0xF0FF) == 0xF055){
+                  compiled.written(opcode);
+               }//End if
+            } else {
+               instructionsExecuted += ran;
+            }//End if
+            executed += ran;
+            int skipped = skipIdle(budget - executed);
+            executed += skipped;
+            idle += skipped;
+         }//End while
+         if(compiled.isInvalid()){
+            //The program wrote over its own code, so it is interpreted from here on.
+            setCompiled(null);
+         }//End if
+      }//End if
+      while(executed < budget){
+         step();
+         executed++;
+         if((opcode & 0xF000) == 0x1000 || (opcode & 0xF0FF) == 0xF00A){
+            int skipped = skipIdle(budget - executed);
+            executed += skipped;
+            idle += skipped;
+         }//End if
+      }//End while
+      return idle;
+   }//End method runCycles
+
+   /**
+    * Checks whether the program counter is at an idle loop that can only end when a timer ticks or a key
+    * changes, and if so accounts for as many whole iterations as fit in the remaining cycles. The loops
+    * recognised are FX0A blocked waiting for a key, a jump to itself, FX07 then 3XNN or 4XNN then a jump back
+    * waiting for the delay timer, and EX9E or EXA1 then a jump back waiting for a key. The state after 
+    * the skipped iterations is exactly the state after running them, and any cycles left over that 
+    * do not make a whole iteration are left to be run.
+    * @param remaining the number of cycles left in the budget.
+    * @return the number of cycles skipped.
+    */
+   private int skipIdle(int remaining){
+      if(remaining <= 0 || dispatch != instructions || !ready || suspended){
+         return 0;
+      } else if(keyWait != -1){
+         //Keys only change between calls, so no edge can arrive to end the wait.
+         return remaining;
+      } else if(pc + 5 >= memory.memory.length){
+         return 0;
+      }//End if
+      short[] m = memory.memory;
+      int first = m[pc] << 8 | m[pc + 1];
+      int second = m[pc + 2] << 8 | m[pc + 3];
+      int x = (first & 0xF00) >> 8;
+      if(first == (0x1000 | pc)){
+         opcode = first;
+         return remaining;
+      } else if(((first & 0xF0FF) == 0xE09E || (first & 0xF0FF) == 0xE0A1) && second == (0x1000 | pc)){
+         boolean pressed = keypad.isKeyPressed(v[x] & 0xF);
+         if(pressed == ((first & 0xFF) == 0x9E)){
+            return 0;
+         }//End if
+         opcode = second;
+         return remaining - remaining % 2;
+      } else if((first & 0xF0FF) == 0xF007 
+            && ((second & 0xFF00) == (0x3000 | first & 0xF00) || (second & 0xFF00) == (0x4000 | first & 0xF00))
+            && (m[pc + 4] << 8 | m[pc + 5]) == (0x1000 | pc)){
+         //3XNN skips out of the loop when the timer equals NN, 4XNN when it does not.
+         boolean equal = delayTimer == (second & 0xFF);
+         if(equal == ((second & 0xF000) == 0x3000) || remaining < 3){
+            return 0;
+         }//End if
+         v[x] = delayTimer;
+         opcode = 0x1000 | pc;
+         return remaining - remaining % 3;
+      }//End if
+      return 0;
+   }//End method skipIdle
+
+   /**
+    * Spends a cycle blocked in FX0A, which finishes when a key goes down and then comes back up.
+    * Only key edges move the wait on, so a key already held when FX0A ran is not read until it
+    * is pressed again, and the lowest key wins when several go down at once.
+    */
+   private void waitForKey(){
+      if(keyWaitKey == -1){
+         int pressed = keypad.getPressed();
+         if(pressed != 0){
+            keyWaitKey = Integer.numberOfTrailingZeros(pressed);
+         }//End if
+      } else if((keypad.getReleased() & (1 << keyWaitKey)) != 0){
+         v[keyWait] = (short) keyWaitKey;
+         keyWait = -1;
+         keyWaitKey = -1;
+      }//End if
+   }//End method waitForKey
+
+   /**
+    * Checks whether the VM is blocked in FX0A waiting for a key to be pressed and released.
+    * @return <code>true</code> if waiting for a key.
+    */
+   public boolean isWaitingForKey(){
+      return keyWait != -1;
+   }//End method isWaitingForKey
+
+   /**
+    * Attaches a ROM translated by {@link Chip8Translator}, used by {@link #runCycles(int)}. It must have
+    * been translated from the ROM loaded, and is detached when the VM is initialised. The VM owns the
+    * attached ROM and closes it once it is detached.
+    * @param compiled the compiled ROM, null to interpret.
+    */
+   public void setCompiled(CompiledRom compiled){
+      if(this.compiled != null && this.compiled != compiled){
+         this.compiled.close();
+      }//End if
+      this.compiled = compiled;
+      if(compiled != null){
+         compiled.bind(this);
+      }//End if
+   }//End method setCompiled
+
+   /**
+    * Gets the attached compiled ROM.
+    * @return the compiled ROM, null if interpreting.
+    */
+   public CompiledRom getCompiled(){
+      return compiled;
+   }//End method getCompiled
+
+   /**
+    * Attaches a profiler, swapping to a dispatch table that records every instruction
+    * before running it. Detaching restores the plain table so there is no cost when not profiling.
+    * @param profiler the profiler to attach, null to detach.
+    */
+   public void setProfiler(Chip8Profiler profiler){
+      this.profiler = profiler;
+      updateDispatch();
+   }//End method setProfiler
+
+   /**
+    * Rebuilds the dispatch table from the plain instruction table, wrapping it for
+    * the profiler, tracer and breakpoints only when they are in use.
+    */
+   void updateDispatch(){
+      Callback[] table = instructions;
+      if(profiler != null){
+         Chip8Profiler profiler = this.profiler;
+         Callback[] profiled = new Callback[table.length];
+         for(int n = 0; n < table.length; n++){
+            Callback instruction = table[n];
+            profiled[n] = ()->{
+               profiler.recordInstruction(opcode, pc - 2);
+               instruction.run();
+            };
+         }//End for
+         Callback draw = table[0xD];
+         profiled[0xD] = ()->{
+            profiler.recordInstruction(opcode, pc - 2);
+            int pixels = 0;
+            for(int row = 0; row < (opcode & 0xF) && i + row < memory.memory.length; row++){
+               pixels += Integer.bitCount(memory.memory[i + row]);
+            }//End for
+            draw.run();
+            profiler.recordDraw(pixels, v[0xF] != 0);
+         };
+         table = profiled;
+      }//End if
+      if(tracer != null){
+         Chip8Tracer tracer = this.tracer;
+         Callback[] traced = new Callback[table.length];
+         for(int n = 0; n < table.length; n++){
+            Callback instruction = table[n];
+            traced[n] = ()->{
+               int address = pc - 2;
+               int op = opcode;
+               instruction.run();
+               tracer.record(address, op, this);
+            };
+         }//End for
+         table = traced;
+      }//End if
+      if(debugger.hasBreakpoints()){
+         long[] active = debugger.active;
+         Callback[] checked = new Callback[table.length];
+         for(int n = 0; n < table.length; n++){
+            Callback instruction = table[n];
+            checked[n] = ()->{
+               int address = pc - 2;
+               if(Chip8Debugger.isSet(active, address) && debugger.shouldBreak(address)){
+                  //The instruction is run again on resuming, so it was not run now.
+                  pc = address;
+                  instructionsExecuted--;
+                  return;
+               }//End if
+               instruction.run();
+            };
+         }//End for
+         table = checked;
+      }//End if
+      dispatch = table;
+   }//End method updateDispatch
+
+   /**
+    * Attaches a tracer, swapping to a dispatch table that records every instruction after
+    * running it. Detaching restores the plain table so there is no cost when not tracing.
+    * @param tracer the tracer to attach, null to detach.
+    */
+   public void setTracer(Chip8Tracer tracer){
+      this.tracer = tracer;
+      updateDispatch();
+   }//End method setTracer
+
+   /**
+    * Gets the attached tracer.
+    * @return the tracer, null if not tracing.
+    */
+   public Chip8Tracer getTracer(){
+      return tracer;
+   }//End method getTracer
+
+   /**
+    * Gets the debugger holding the breakpoints and watchpoints of this VM.
+    * @return the debugger.
+    */
+   public Chip8Debugger getDebugger(){
+      return debugger;
+   }//End method getDebugger
+
+   /**
+    * Gets the attached profiler.
+    * @return the profiler, null if not profiling.
+    */
+   public Chip8Profiler getProfiler(){
+      return profiler;
+   }//End method getProfiler
 
    /**
     * Default operation for an unreconized op code.
     */
    public void nullOP() {
       System.out.println("Unsupported opcode " + Integer.toHexString(opcode));
+      if(tracer != null){
+         tracer.fault(pc - 2, opcode);
+      }//End if
    }//End method nullOP
 
    /**
@@ -432,7 +750,7 @@ public class Chip8VM {
     * RND vX, byte. Set Vx = Random Number AND NN
     */
    public void runCXNN(){
-      v[(opcode & 0xF00) >> 8] = (short) (new Random().nextInt(255) & (opcode & 0xFF));
+      v[(opcode & 0xF00) >> 8] = (short) (random.nextInt(255) & (opcode & 0xFF));
    }//End method runCXNN
 
    /**
@@ -520,18 +838,12 @@ public class Chip8VM {
    
    /**
     * Runs the opcode FX0A.
-    * LD Vx, K. Wait for a keypress, Set Vx = key value.
+    * LD Vx, K. Wait for a key to be pressed and released, Set Vx = key value.
+    * The VM blocks until then, spending each cycle in {@link #waitForKey()}.
     */
    public void runFX0A(){
-      boolean key = false;
-      Integer keyPress = keypad.getKeyPress();
-      if(keyPress != null){
-         v[(opcode & 0xF00) >> 8] = (short)keyPress.intValue();
-         key = true;
-      } //End if
-      if(!key){
-         pc-=2;
-      }//End if
+      keyWait = (opcode & 0xF00) >> 8;
+      keyWaitKey = -1;
    }//End method runFX0A
 
    /**
@@ -556,9 +868,10 @@ public class Chip8VM {
     */
    public void runFX33(){
       short vX = v[(opcode & 0xF00) >> 8];
+      //Worked out from vX alone, reading the digits back would trigger read watchpoints.
       memory.setMemory(i, (short) (vX / 100));
-      memory.setMemory(i + 1, (short) ((vX - memory.getValueAt(i) * 100) / 10));
-      memory.setMemory(i + 2, (short) (vX -  memory.getValueAt(i)*100 - memory.getValueAt(i+1) * 10));
+      memory.setMemory(i + 1, (short) (vX / 10 % 10));
+      memory.setMemory(i + 2, (short) (vX % 10));
    }//End method runFX33
 
    /**
@@ -656,6 +969,31 @@ public class Chip8VM {
       return displayBuffer;
    }//End method getDisplayBuffer.
    
+   /**
+    * Gets the keypad of this VM.
+    * @return the {@link Keypad} of this VM.
+    */
+   public Keypad getKeypad(){
+      return keypad;
+   }//End method getKeypad
+   
+   /**
+    * Gets whether this VM is ready to perform cycles.
+    * @return <code>true</code> if a game has been loaded, otherwise <code>false</code>.
+    */
+   public boolean isReady(){
+      return ready;
+   }//End method isReady
+
+   /**
+    * Gets the number of instructions this VM has run, interpreted or compiled. Idle cycles accounted for
+    * by {@link #runCycles(int)} without being run, cycles blocked in FX0A and cycles while suspended are not counted.
+    * @return the number of instructions run since this VM was created.
+    */
+   public long getInstructionsExecuted(){
+      return instructionsExecuted;
+   }//End method getInstructionsExecuted
+   
    /**
     * Gets the memory of this VM.
     * @return the memory of this VM.
@@ -0,0 +1,119 @@
+package vm;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.URLClassLoader;
+
+/**
+ * Base class of the ROMs translated to Java by {@link Chip8Translator}. A generated subclass has 
+ * one method per basic block that runs the block's instructions as direct calls to the run methods
+ * of {@link Chip8VM}, with the opcodes as constants, so there is no fetch, decode or table dispatch.
+ * 
+ * Generated classes are loaded by their own class loader, so they reach the state of the VM
+ * through the helpers here rather than its fields. Closing the ROM closes its class loader, a
+ * {@link Chip8VM} closes the ROM attached to it once it detaches it.
+ */
+public abstract class CompiledRom implements Closeable {
+   /**The VM the blocks run on.*/
+   protected Chip8VM vm;
+   /**The graph the blocks were generated from, used to spot writes to code.*/
+   private ControlFlowGraph graph;
+   /**Whether the program has written over its own code, so the blocks no longer match memory.*/
+   private boolean invalid;
+   /**The class loader the generated class was loaded by, null if it does not need closing.*/
+   private URLClassLoader loader;
+
+   /**
+    * Runs the block starting at the program counter, if there is one and it fits in the budget.
+    * @param budget the most instructions to run.
+    * @return the number of instructions run, 0 if the instruction at the program counter should be interpreted.
+    */
+   public abstract int run(int budget);
+
+   /**
+    * Sets the graph the blocks were generated from.
+    * @param graph the control flow graph of the ROM.
+    */
+   void setGraph(ControlFlowGraph graph){
+      this.graph = graph;
+   }//End method setGraph
+
+   /**
+    * Sets the class loader the generated class was loaded by, closed along with this ROM.
+    * @param loader the class loader.
+    */
+   void setLoader(URLClassLoader loader){
+      this.loader = loader;
+   }//End method setLoader
+
+   /**
+    * Binds this ROM to a VM, making it valid again.
+    * @param vm the VM to run on.
+    */
+   void bind(Chip8VM vm){
+      this.vm = vm;
+      invalid = false;
+   }//End method bind
+
+   /**
+    * Sets the opcode the next run method call decodes its operands from.
+    * @param opcode the opcode.
+    */
+   protected final void op(int opcode){
+      vm.opcode = opcode;
+   }//End method op
+
+   /**
+    * Sets the program counter.
+    * @param pc the program counter.
+    */
+   protected final void setPC(int pc){
+      vm.pc = pc;
+   }//End method setPC
+
+   /**
+    * Gets the program counter.
+    * @return the program counter.
+    */
+   protected final int getPC(){
+      return vm.pc;
+   }//End method getPC
+
+   /**
+    * Checks whether a memory write just run by FX33 or FX55 landed on code, invalidating
+    * this ROM if it did.
+    * @param opcode the opcode of the write.
+    * @return <code>true</code> if the blocks no longer match memory.
+    */
+   protected final boolean written(int opcode){
+      int count = (opcode & 0xFF) == 0x33 ? 3 : ((opcode & 0xF00) >> 8) + 1;
+      for(int address = vm.i; address < vm.i + count; address++){
+         if(graph.isCode(address)){
+            invalid = true;
+         }//End if
+      }//End for
+      return invalid;
+   }//End method written
+
+   /**
+    * Checks whether the program has written over its own code.
+    * @return <code>true</code> if the blocks must no longer run.
+    */
+   public boolean isInvalid(){
+      return invalid;
+   }//End method isInvalid
+
+   /**
+    * Closes the class loader of this ROM, its blocks must not be run afterwards.
+    */
+   @Override public void close(){
+      if(loader != null){
+         try{
+            loader.close();
+         } catch (IOException e){
+            e.printStackTrace();
+         }//End try/catch
+         loader = null;
+      }//End if
+   }//End method close
+}//End class CompiledRom
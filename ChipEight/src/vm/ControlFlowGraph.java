@@ -0,0 +1,343 @@
+package vm;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Control flow graph of a chip 8 program, built by following every path from the entry point
+ * through jumps, calls, returns and skips. Bytes reached as part of an instruction are code, 
+ * everything else is data. Targets of BNNN depend on v0 and are not followed.
+ * 
+ * The analysis keeps per address flags in flat arrays, so it runs in time linear in the
+ * size of the image and analyses a 64KB image in milliseconds.
+ */
+public class ControlFlowGraph {
+   /**Flag for an address holding the first byte of a reachable instruction.*/
+   private static final byte INSTRUCTION = 1;
+   /**Flag for an address holding any byte of a reachable instruction.*/
+   private static final byte CODE = 2;
+   /**Flag for an address that starts a block.*/
+   private static final byte LEADER = 4;
+   /**Flag for an address that is the target of a call.*/
+   private static final byte CALL_TARGET = 8;
+
+   /**
+    * How control leaves a block.
+    */
+   public enum Exit{
+      /**Falls through into the next block.*/
+      FALLTHROUGH,
+      /**1NNN, jumps to one successor.*/
+      JUMP,
+      /**2NNN, the successors are the subroutine and the return address.*/
+      CALL,
+      /**00EE, returns to the caller.*/
+      RETURN,
+      /**A conditional skip, the successors are the next instruction and the one after.*/
+      SKIP,
+      /**BNNN, the target depends on v0.*/
+      INDIRECT,
+      /**Runs into data or off the end of memory.*/
+      HALT
+   }//End enum Exit
+
+   /**
+    * A straight line run of instructions with a single entry and exit.
+    */
+   public static class Block{
+      /**The address of the first instruction.*/
+      private int start;
+      /**The address after the last instruction.*/
+      private int end;
+      /**How control leaves the block.*/
+      private Exit exit;
+      /**The start addresses of the blocks control can pass to.*/
+      private int[] successors;
+
+      /**
+       * Gets the address of the first instruction.
+       * @return the start address.
+       */
+      public int getStart(){
+         return start;
+      }//End method getStart
+
+      /**
+       * Gets the address after the last instruction.
+       * @return the end address.
+       */
+      public int getEnd(){
+         return end;
+      }//End method getEnd
+
+      /**
+       * Gets how control leaves the block.
+       * @return the exit.
+       */
+      public Exit getExit(){
+         return exit;
+      }//End method getExit
+
+      /**
+       * Gets the start addresses of the blocks control can pass to. Returns leave the 
+       * successors empty, their targets are the return addresses of the calls.
+       * @return the successors.
+       */
+      public int[] getSuccessors(){
+         return successors;
+      }//End method getSuccessors
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override public String toString(){
+         return String.format("%03X-%03X %s %s", start, end, exit, Arrays.toString(successors));
+      }//End method toString
+   }//End class Block
+
+   /**The memory analysed.*/
+   private short[] memory;
+   /**The entry point.*/
+   private int entry;
+   /**The flags of each address.*/
+   private byte[] flags;
+   /**The index of the block containing each instruction, -1 for data.*/
+   private int[] blockIndex;
+   /**The blocks in address order.*/
+   private List<Block> blocks = new ArrayList<Block>();
+
+   /**
+    * Builds the control flow graph of a program.
+    * @param memory the memory holding the program, one byte per element.
+    * @param entry the entry point.
+    */
+   public ControlFlowGraph(short[] memory, int entry){
+      this.memory = memory;
+      this.entry = entry;
+      flags = new byte[memory.length];
+      blockIndex = new int[memory.length];
+      Arrays.fill(blockIndex, -1);
+      trace();
+      buildBlocks();
+   }//End constructor
+
+   /**
+    * Gets the opcode at an address.
+    * @param address the address.
+    * @return the opcode.
+    */
+   private int word(int address){
+      return (memory[address] & 0xFF) << 8 | (memory[address + 1] & 0xFF);
+   }//End method word
+
+   /**
+    * Checks whether an address holds a reachable instruction.
+    * @param address the address.
+    * @return <code>true</code> if an instruction starts at the address.
+    */
+   private boolean isReachable(int address){
+      return address >= 0 && address + 1 < memory.length && Chip8Disassembler.isValid(word(address));
+   }//End method isReachable
+
+   /**
+    * Follows every path from the entry point, flagging instructions and block leaders.
+    */
+   private void trace(){
+      int[] work = new int[64];
+      int top = 0;
+      work[top++] = entry;
+      flags[entry] |= LEADER;
+      while(top > 0){
+         int pc = work[--top];
+         while(isReachable(pc) && (flags[pc] & INSTRUCTION) == 0){
+            int opcode = word(pc);
+            flags[pc] |= INSTRUCTION | CODE;
+            flags[pc + 1] |= CODE;
+            int next = pc + 2;
+            int target = opcode & 0xFFF;
+            int branch = -1;
+            switch(opcode >> 12){
+            case 0x0:
+               next = opcode == 0x00EE ? -1 : next;
+               break;
+            case 0x1:
+               branch = target;
+               next = -1;
+               break;
+            case 0x2:
+               branch = target;
+               if(target < memory.length){
+                  flags[target] |= CALL_TARGET;
+               }//End if
+               mark(next);
+               break;
+            case 0x3:
+            case 0x4:
+            case 0x5:
+            case 0x9:
+            case 0xE:
+               branch = next + 2;
+               mark(next);
+               break;
+            case 0xB:
+               next = -1;
+               break;
+            default:
+               break;
+            }//End switch
+            if(branch >= 0 && branch < memory.length){
+               flags[branch] |= LEADER;
+               if(top == work.length){
+                  work = Arrays.copyOf(work, top * 2);
+               }//End if
+               work[top++] = branch;
+            }//End if
+            pc = next;
+         }//End while
+         if(pc >= 0 && pc < memory.length){
+            //Joined a path already traced, it must start a block here.
+            flags[pc] |= LEADER;
+         }//End if
+      }//End while
+   }//End method trace
+
+   /**
+    * Marks an address as a block leader, if it is in memory.
+    * @param address the address.
+    */
+   private void mark(int address){
+      if(address < memory.length){
+         flags[address] |= LEADER;
+      }//End if
+   }//End method mark
+
+   /**
+    * Groups the flagged instructions into blocks.
+    */
+   private void buildBlocks(){
+      for(int address = 0; address < memory.length; address++){
+         if((flags[address] & INSTRUCTION) == 0 || blockIndex[address] != -1){
+            continue;
+         }//End if
+         Block block = new Block();
+         block.start = address;
+         int pc = address;
+         while(true){
+            blockIndex[pc] = blocks.size();
+            int opcode = word(pc);
+            int next = pc + 2;
+            Exit exit = null;
+            switch(opcode >> 12){
+            case 0x0:
+               if(opcode == 0x00EE){
+                  exit = Exit.RETURN;
+                  block.successors = new int[0];
+               }//End if
+               break;
+            case 0x1:
+               exit = Exit.JUMP;
+               block.successors = new int[]{ opcode & 0xFFF };
+               break;
+            case 0x2:
+               exit = Exit.CALL;
+               block.successors = new int[]{ opcode & 0xFFF, next };
+               break;
+            case 0x3:
+            case 0x4:
+            case 0x5:
+            case 0x9:
+            case 0xE:
+               exit = Exit.SKIP;
+               block.successors = new int[]{ next, next + 2 };
+               break;
+            case 0xB:
+               exit = Exit.INDIRECT;
+               block.successors = new int[0];
+               break;
+            default:
+               break;
+            }//End switch
+            if(exit == null && (next >= memory.length || (flags[next] & INSTRUCTION) == 0)){
+               exit = Exit.HALT;
+               block.successors = new int[0];
+            } else if(exit == null && (flags[next] & LEADER) != 0){
+               exit = Exit.FALLTHROUGH;
+               block.successors = new int[]{ next };
+            }//End if
+            if(exit != null){
+               block.exit = exit;
+               block.end = next;
+               break;
+            }//End if
+            pc = next;
+         }//End while
+         blocks.add(block);
+      }//End for
+   }//End method buildBlocks
+
+   /**
+    * Gets the entry point.
+    * @return the entry point.
+    */
+   public int getEntry(){
+      return entry;
+   }//End method getEntry
+
+   /**
+    * Gets the blocks in address order.
+    * @return the blocks.
+    */
+   public List<Block> getBlocks(){
+      return Collections.unmodifiableList(blocks);
+   }//End method getBlocks
+
+   /**
+    * Gets the block containing the instruction at an address.
+    * @param address the address.
+    * @return the block, null if no reachable instruction starts at the address.
+    */
+   public Block getBlockAt(int address){
+      if(address < 0 || address >= blockIndex.length || blockIndex[address] == -1){
+         return null;
+      }//End if
+      return blocks.get(blockIndex[address]);
+   }//End method getBlockAt
+
+   /**
+    * Checks whether an address holds part of a reachable instruction.
+    * @param address the address.
+    * @return <code>true</code> for code, <code>false</code> for data.
+    */
+   public boolean isCode(int address){
+      return address >= 0 && address < flags.length && (flags[address] & CODE) != 0;
+   }//End method isCode
+
+   /**
+    * Checks whether a reachable instruction starts at an address.
+    * @param address the address.
+    * @return <code>true</code> if an instruction starts at the address.
+    */
+   public boolean isInstruction(int address){
+      return address >= 0 && address < flags.length && (flags[address] & INSTRUCTION) != 0;
+   }//End method isInstruction
+
+   /**
+    * Checks whether an address is the target of a call.
+    * @param address the address.
+    * @return <code>true</code> if a subroutine starts at the address.
+    */
+   public boolean isCallTarget(int address){
+      return address >= 0 && address < flags.length && (flags[address] & CALL_TARGET) != 0;
+   }//End method isCallTarget
+
+   /**
+    * Checks whether another graph finds the same code, instructions and leaders.
+    * @param other the other graph.
+    * @return <code>true</code> if every address is classified the same.
+    */
+   public boolean hasSameCode(ControlFlowGraph other){
+      return other != null && Arrays.equals(flags, other.flags);
+   }//End method hasSameCode
+}//End class ControlFlowGraph
@@ -0,0 +1,577 @@
+package vm;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.Random;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Differential fuzzing harness for chip 8 execution engines. Random valid programs and
+ * initial states are run through the reference {@link Chip8VM} and every registered engine,
+ * the full {@link Chip8State} is compared after every instruction, and any program that 
+ * diverges is shrunk to a minimal reproduction. Programs are fuzzed in parallel on all cores.
+ * 
+ * An engine is anything that behaves as a {@link Chip8VM} through {@link Chip8VM#step()},
+ * typically a subclass with an optimised execution path. A batched engine instead runs through
+ * {@link Chip8VM#runCycles(int)}, which may run whole compiled blocks or skip idle loops, and is
+ * compared at the end of every batch of {@link #BATCH_STEPS} instructions.
+ */
+public class DifferentialFuzzer {
+   /**The address programs are loaded at.*/
+   private static final int PROGRAM_START = 0x200;
+   /**The maximum number of instructions in a generated program.*/
+   private static final int MAX_LENGTH = 48;
+   /**The maximum number of steps run per instruction in the program, programs may loop.*/
+   private static final int STEPS_PER_INSTRUCTION = 4;
+   /**The number of instructions a batched engine runs between comparisons.*/
+   private static final int BATCH_STEPS = 16;
+   /**The opcodes of the FXXX table.*/
+   private static final int[] REGISTER_OPS = new int[]{ 0x07, 0x0A, 0x15, 0x18, 0x1E, 0x29, 0x33, 0x55, 0x65 };
+   /**The opcodes of the 8XXX table.*/
+   private static final int[] MATH_OPS = new int[]{ 0x0, 0x1, 0x2, 0x3, 0x4, 0x5, 0x6, 0x7, 0xE };
+
+   /**
+    * A generated program and the state the VM starts it in.
+    */
+   public static class Program{
+      /**The opcodes of the program, loaded from {@link DifferentialFuzzer#PROGRAM_START}.*/
+      private int[] opcodes;
+      /**The initial "v" registers.*/
+      private short[] v = new short[16];
+      /**The initial I register.*/
+      private int i;
+      /**The initial timers.*/
+      private short delayTimer, soundTimer;
+      /**The keys held down for the whole program.*/
+      private boolean[] keys = new boolean[16];
+      /**The seed for CXNN.*/
+      private long seed;
+
+      /**
+       * Creates a copy of this program.
+       * @return a copy of this program.
+       */
+      private Program copy(){
+         Program copy = new Program();
+         copy.opcodes = opcodes.clone();
+         copy.v = v.clone();
+         copy.i = i;
+         copy.delayTimer = delayTimer;
+         copy.soundTimer = soundTimer;
+         copy.keys = keys.clone();
+         copy.seed = seed;
+         return copy;
+      }//End method copy
+
+      /**
+       * Creates a copy of this program with a range of instructions removed.
+       * @param from the index of the first instruction to remove.
+       * @param to the index after the last instruction to remove.
+       * @return the copy.
+       */
+      private Program without(int from, int to){
+         Program copy = copy();
+         copy.opcodes = new int[opcodes.length - (to - from)];
+         System.arraycopy(opcodes, 0, copy.opcodes, 0, from);
+         System.arraycopy(opcodes, to, copy.opcodes, from, opcodes.length - to);
+         return copy;
+      }//End method without
+
+      /**
+       * Gets the opcodes of this program.
+       * @return the opcodes of this program.
+       */
+      public int[] getOpcodes(){
+         return opcodes;
+      }//End method getOpcodes
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override public String toString(){
+         StringBuilder builder = new StringBuilder();
+         builder.append("v=");
+         for(short value : v){
+            builder.append(String.format("%02X", value));
+         }//End for
+         builder.append(String.format(" I=%03X DT=%02X ST=%02X seed=%d keys=", i, delayTimer, soundTimer, seed));
+         for(int k = 0; k < keys.length; k++){
+            if(keys[k]){
+               builder.append(Integer.toHexString(k).toUpperCase());
+            }//End if
+         }//End for
+         for(int o = 0; o < opcodes.length; o++){
+            builder.append(String.format("%n   %03X: %04X", PROGRAM_START + o * 2, opcodes[o]));
+         }//End for
+         return builder.toString();
+      }//End method toString
+   }//End class Program
+
+   /**
+    * A divergence between an engine and the reference.
+    */
+   public static class Failure{
+      /**The program that diverged.*/
+      private Program program;
+      /**The name of the engine that diverged.*/
+      private String engine;
+      /**The step the divergence happened on, the first of the batch for a batched engine.*/
+      private int step;
+      /**The address of the instruction at that step.*/
+      private int address;
+      /**The first difference in state, engine first.*/
+      private String difference;
+
+      /**
+       * Gets the program that diverged.
+       * @return the program that diverged.
+       */
+      public Program getProgram(){
+         return program;
+      }//End method getProgram
+
+      /**
+       * Gets the name of the engine that diverged.
+       * @return the name of the engine.
+       */
+      public String getEngine(){
+         return engine;
+      }//End method getEngine
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override public String toString(){
+         return String.format("%s diverged on step %d at 0x%03X: %s%n%s", engine, step, address, difference, program);
+      }//End method toString
+   }//End class Failure
+
+   /**
+    * An engine registered to compare against the reference.
+    */
+   private static class Engine{
+      /**The name of the engine, used in reports.*/
+      private String name;
+      /**Creates a new instance of the engine.*/
+      private Supplier<? extends Chip8VM> factory;
+      /**If true the engine runs through {@link Chip8VM#runCycles(int)} rather than {@link Chip8VM#step()}.*/
+      private boolean batched;
+      /**The cache each program is translated ahead of time into, null to interpret.*/
+      private File cache;
+
+      /**
+       * {@inheritDoc}
+       */
+      @Override public String toString(){
+         return name;
+      }//End method toString
+   }//End class Engine
+
+   /**The reference engine.*/
+   private Supplier<? extends Chip8VM> reference = Chip8VM::new;
+   /**The engines to compare against the reference, in the order they were registered.*/
+   private List<Engine> engines = new ArrayList<Engine>();
+
+   /**
+    * Registers an engine to compare against the reference interpreter after every instruction.
+    * @param name the name of the engine, used in reports.
+    * @param factory creates a new instance of the engine.
+    */
+   public void registerEngine(String name, Supplier<? extends Chip8VM> factory){
+      registerEngine(name, factory, false, null);
+   }//End method registerEngine
+
+   /**
+    * Registers an engine run through {@link Chip8VM#runCycles(int)}, such as one skipping idle loops,
+    * to compare against the reference interpreter after every batch of instructions.
+    * @param name the name of the engine, used in reports.
+    * @param factory creates a new instance of the engine.
+    */
+   public void registerBatchedEngine(String name, Supplier<? extends Chip8VM> factory){
+      registerEngine(name, factory, true, null);
+   }//End method registerBatchedEngine
+
+   /**
+    * Registers an engine running each program translated ahead of time into a {@link CompiledRom}
+    * through {@link Chip8VM#runCycles(int)}, to compare against the reference interpreter after every
+    * batch of instructions. Every program is compiled, so this is far slower to fuzz than other engines.
+    * @param name the name of the engine, used in reports.
+    * @param cache the directory the programs are compiled into.
+    */
+   public void registerCompiledEngine(String name, File cache){
+      registerEngine(name, Chip8VM::new, true, cache);
+   }//End method registerCompiledEngine
+
+   /**
+    * Registers an engine to compare against the reference interpreter.
+    * @param name the name of the engine, used in reports.
+    * @param factory creates a new instance of the engine.
+    * @param batched if true the engine runs through {@link Chip8VM#runCycles(int)}.
+    * @param cache the cache each program is translated ahead of time into, null to interpret.
+    */
+   private void registerEngine(String name, Supplier<? extends Chip8VM> factory, boolean batched, File cache){
+      Engine engine = new Engine();
+      engine.name = name;
+      engine.factory = factory;
+      engine.batched = batched;
+      engine.cache = cache;
+      engines.add(engine);
+   }//End method registerEngine
+
+   /**
+    * Generates a random program.
+    * @param random the source of randomness.
+    * @return the generated program.
+    */
+   public Program generate(Random random){
+      Program program = new Program();
+      program.opcodes = new int[1 + random.nextInt(MAX_LENGTH)];
+      for(int o = 0; o < program.opcodes.length; o++){
+         program.opcodes[o] = generateOpcode(random, program.opcodes.length);
+      }//End for
+      for(int r = 0; r < 16; r++){
+         program.v[r] = (short) random.nextInt(256);
+         program.keys[r] = random.nextInt(4) == 0;
+      }//End for
+      program.i = random.nextInt(0x1000);
+      program.delayTimer = (short) random.nextInt(256);
+      program.soundTimer = (short) random.nextInt(256);
+      program.seed = random.nextLong();
+      return program;
+   }//End method generate
+
+   /**
+    * Generates a random valid opcode.
+    * @param random the source of randomness.
+    * @param length the length of the program, jumps and calls stay within it.
+    * @return the generated opcode.
+    */
+   private static int generateOpcode(Random random, int length){
+      int x = random.nextInt(16) << 8;
+      int y = random.nextInt(16) << 4;
+      int nn = random.nextInt(256);
+      int target = PROGRAM_START + random.nextInt(length) * 2;
+      switch(random.nextInt(16)){
+      case 0x0: return random.nextBoolean() ? 0x00E0 : 0x00EE;
+      case 0x1: return 0x1000 | target;
+      case 0x2: return 0x2000 | target;
+      case 0x3: return 0x3000 | x | nn;
+      case 0x4: return 0x4000 | x | nn;
+      case 0x5: return 0x5000 | x | y;
+      case 0x6: return 0x6000 | x | nn;
+      case 0x7: return 0x7000 | x | nn;
+      case 0x8: return 0x8000 | x | y | MATH_OPS[random.nextInt(MATH_OPS.length)];
+      case 0x9: return 0x9000 | x | y;
+      case 0xA: return 0xA000 | random.nextInt(0x1000);
+      case 0xB: return 0xB000 | target;
+      case 0xC: return 0xC000 | x | nn;
+      case 0xD: return 0xD000 | x | y | random.nextInt(16);
+      case 0xE: return 0xE000 | x | (random.nextBoolean() ? 0x9E : 0xA1);
+      default: return 0xF000 | x | REGISTER_OPS[random.nextInt(REGISTER_OPS.length)];
+      }//End switch
+   }//End method generateOpcode
+
+   /**
+    * Creates a VM from the factory and loads a program and its initial state into it.
+    * @param factory the engine factory.
+    * @param program the program to load.
+    * @return the loaded VM.
+    */
+   private static Chip8VM load(Supplier<? extends Chip8VM> factory, Program program){
+      Chip8VM vm = factory.get();
+      vm.setSeed(program.seed);
+      vm.initialise();
+      for(int o = 0; o < program.opcodes.length; o++){
+         vm.memory.memory[PROGRAM_START + o * 2] = (short) (program.opcodes[o] >> 8);
+         vm.memory.memory[PROGRAM_START + o * 2 + 1] = (short) (program.opcodes[o] & 0xFF);
+      }//End for
+      System.arraycopy(program.v, 0, vm.v, 0, 16);
+      vm.i = program.i;
+      vm.delayTimer = program.delayTimer;
+      vm.soundTimer = program.soundTimer;
+      vm.getKeypad().setScripted(true);
+      for(int k = 0; k < 16; k++){
+         vm.getKeypad().setKeyDown(k, program.keys[k]);
+      }//End for
+      vm.forceReady();
+      return vm;
+   }//End method load
+
+   /**
+    * Creates a VM for an engine and loads a program and its initial state into it, translating the
+    * program ahead of time if the engine is compiled.
+    * @param engine the engine.
+    * @param program the program to load.
+    * @return the loaded VM.
+    */
+   private static Chip8VM load(Engine engine, Program program){
+      Chip8VM vm = load(engine.factory, program);
+      if(engine.cache != null){
+         byte[] rom = new byte[program.opcodes.length * 2];
+         for(int b = 0; b < rom.length; b++){
+            rom[b] = (byte) vm.memory.memory[PROGRAM_START + b];
+         }//End for
+         vm.setCompiled(Chip8Translator.load(rom, engine.cache));
+      }//End if
+      return vm;
+   }//End method load
+
+   /**
+    * Checks whether the next instruction is safe to run. Execution stops when it leaves the program or lands between instructions,
+    * when a self modifying program writes an unsupported opcode, or when an instruction would overflow the stack
+    * or touch memory outside the address space, the interpreter does not define behaviour for these.
+    * @param vm the reference VM.
+    * @param end the address after the last instruction of the program.
+    * @return <code>true</code> if the next instruction can be run.
+    */
+   private static boolean canStep(Chip8VM vm, int end){
+      int pc = vm.pc;
+      if(pc < PROGRAM_START || pc >= end || (pc & 1) != 0){
+         return false;
+      }//End if
+      int opcode = (vm.memory.memory[pc] << 8) | vm.memory.memory[pc + 1];
+      int size = vm.memory.memory.length;
+      int x = (opcode & 0xF00) >> 8;
+      switch(opcode & 0xF000){
+      case 0x0000: return opcode == 0x00E0 || (opcode == 0x00EE && vm.sp > 0);
+      case 0x2000: return vm.sp < vm.stack.length;
+      case 0x5000:
+      case 0x9000: return (opcode & 0xF) == 0;
+      case 0x8000: return contains(MATH_OPS, opcode & 0xF);
+      case 0xD000: return vm.i + (opcode & 0xF) <= size;
+      case 0xE000: return (opcode & 0xFF) == 0x9E || (opcode & 0xFF) == 0xA1;
+      case 0xF000:
+         switch(opcode & 0xFF){
+         case 0x33: return vm.i + 3 <= size;
+         case 0x55:
+         case 0x65: return vm.i + x + 1 <= size;
+         default: return contains(REGISTER_OPS, opcode & 0xFF);
+         }//End switch
+      default: return true;
+      }//End switch
+   }//End method canStep
+
+   /**
+    * Checks whether an opcode table contains an opcode.
+    * @param table the table to search.
+    * @param op the opcode.
+    * @return <code>true</code> if the table contains the opcode.
+    */
+   private static boolean contains(int[] table, int op){
+      for(int entry : table){
+         if(entry == op){
+            return true;
+         }//End if
+      }//End for
+      return false;
+   }//End method contains
+
+   /**
+    * Runs a program through the reference and every registered engine, comparing the state after every instruction.
+    * @param program the program to run.
+    * @return the first divergence, null if every engine matched the reference.
+    */
+   public Failure check(Program program){
+      Chip8VM expectedVM = load(reference, program);
+      Chip8VM[] actualVMs = new Chip8VM[engines.size()];
+      for(int e = 0; e < actualVMs.length; e++){
+         actualVMs[e] = load(engines.get(e), program);
+      }//End for
+      try{
+         Chip8State expected = new Chip8State();
+         Chip8State actual = new Chip8State();
+         int end = PROGRAM_START + program.opcodes.length * 2;
+         int steps = program.opcodes.length * STEPS_PER_INSTRUCTION;
+         //The step and address the batched engines last caught up at.
+         int batchStep = 0;
+         int batchAddress = expectedVM.pc;
+         int step = 0;
+         boolean running = true;
+         while(running){
+            running = step < steps && canStep(expectedVM, end);
+            if(running){
+               int address = expectedVM.pc;
+               expectedVM.step();
+               expected.capture(expectedVM);
+               for(int e = 0; e < actualVMs.length; e++){
+                  if(!engines.get(e).batched){
+                     actualVMs[e].step();
+                     Failure failure = compare(program, engines.get(e), actualVMs[e], actual, expected, step, address);
+                     if(failure != null){
+                        return failure;
+                     }//End if
+                  }//End if
+               }//End for
+               step++;
+            }//End if
+            if(step > batchStep && (!running || step - batchStep == BATCH_STEPS)){
+               for(int e = 0; e < actualVMs.length; e++){
+                  if(engines.get(e).batched){
+                     actualVMs[e].runCycles(step - batchStep);
+                     Failure failure = compare(program, engines.get(e), actualVMs[e], actual, expected, batchStep, batchAddress);
+                     if(failure != null){
+                        return failure;
+                     }//End if
+                  }//End if
+               }//End for
+               batchStep = step;
+               batchAddress = expectedVM.pc;
+            }//End if
+         }//End while
+         return null;
+      } finally {
+         for(Chip8VM vm : actualVMs){
+            vm.setCompiled(null);
+         }//End for
+      }//End try/finally
+   }//End method check
+
+   /**
+    * Compares the state of an engine with the state of the reference.
+    * @param program the program being run.
+    * @param engine the engine.
+    * @param vm the VM of the engine.
+    * @param actual the state to capture the engine into.
+    * @param expected the state of the reference.
+    * @param step the step being compared, the first of the batch for batched engines.
+    * @param address the address of the instruction at that step.
+    * @return the divergence, null if the engine matched the reference.
+    */
+   private static Failure compare(Program program, Engine engine, Chip8VM vm, Chip8State actual, Chip8State expected, int step, int address){
+      String difference = actual.capture(vm).difference(expected);
+      if(difference == null){
+         return null;
+      }//End if
+      Failure failure = new Failure();
+      failure.program = program;
+      failure.engine = engine.name;
+      failure.step = step;
+      failure.address = address;
+      failure.difference = difference;
+      return failure;
+   }//End method compare
+
+   /**
+    * Shrinks a failing program, first by removing instructions and then by
+    * clearing the initial state, until it stops getting smaller.
+    * @param failure the failure to shrink.
+    * @return the failure for the smallest program found.
+    */
+   public Failure shrink(Failure failure){
+      int length;
+      do{
+         length = failure.program.opcodes.length;
+         //Control flow often makes single removals fail, so first try starting and ending on the diverging instruction.
+         int index = (failure.address - PROGRAM_START) / 2;
+         Failure tail = check(failure.program.without(0, index));
+         if(tail != null){
+            failure = tail;
+            index = (failure.address - PROGRAM_START) / 2;
+         }//End if
+         Failure head = check(failure.program.without(index + 1, failure.program.opcodes.length));
+         if(head != null){
+            failure = head;
+         }//End if
+         for(int chunk = Math.max(failure.program.opcodes.length / 2, 1); chunk >= 1; chunk /= 2){
+            boolean removed = true;
+            while(removed){
+               removed = false;
+               Program program = failure.program;
+               for(int start = 0; start + chunk <= program.opcodes.length && program.opcodes.length > chunk; start += chunk){
+                  Failure smaller = check(program.without(start, start + chunk));
+                  if(smaller != null){
+                     failure = smaller;
+                     removed = true;
+                     break;
+                  }//End if
+               }//End for
+            }//End while
+         }//End for
+         for(int field = 0; field < 16 + 16 + 3; field++){
+            Program candidate = failure.program.copy();
+            if(field < 16){
+               candidate.v[field] = 0;
+            } else if(field < 32){
+               candidate.keys[field - 16] = false;
+            } else if(field == 32){
+               candidate.i = 0;
+            } else if(field == 33){
+               candidate.delayTimer = 0;
+            } else {
+               candidate.soundTimer = 0;
+            }//End if
+            Failure simpler = check(candidate);
+            if(simpler != null){
+               failure = simpler;
+            }//End if
+         }//End for
+      } while(failure.program.opcodes.length < length);
+      return failure;
+   }//End method shrink
+
+   /**
+    * Fuzzes a number of programs in parallel. Program n is generated from seed + n,
+    * so any failure can be reproduced on its own.
+    * @param programs the number of programs to run.
+    * @param seed the base seed.
+    * @return the shrunk failures.
+    */
+   public List<Failure> fuzz(int programs, long seed){
+      //Loads the shared key config on this thread before the workers need it.
+      new Chip8VM().initialise();
+      return IntStream.range(0, programs).parallel()
+            .mapToObj(n->check(generate(new Random(seed + n))))
+            .filter(Objects::nonNull)
+            .map(this::shrink)
+            .collect(Collectors.toList());
+   }//End method fuzz
+
+   /**
+    * Creates a VM running through the profiling dispatch table, which wraps every instruction.
+    * @return the VM.
+    */
+   static Chip8VM createProfiledVM(){
+      Chip8VM vm = new Chip8VM();
+      vm.setProfiler(new Chip8Profiler());
+      return vm;
+   }//End method createProfiledVM
+
+   /**
+    * Creates a VM running through the tracing dispatch table, which wraps every instruction.
+    * @return the VM.
+    */
+   static Chip8VM createTracedVM(){
+      Chip8VM vm = new Chip8VM();
+      vm.setTracer(new Chip8Tracer(1024));
+      return vm;
+   }//End method createTracedVM
+
+   /**
+    * Entry point, fuzzes every known engine against the reference.
+    * @param args the number of programs and the seed, both optional.
+    */
+   public static void main(String[] args){
+      int programs = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+      long seed = args.length > 1 ? Long.parseLong(args[1]) : System.nanoTime();
+      DifferentialFuzzer fuzzer = new DifferentialFuzzer();
+      fuzzer.registerEngine("profiled", DifferentialFuzzer::createProfiledVM);
+      fuzzer.registerEngine("traced", DifferentialFuzzer::createTracedVM);
+      fuzzer.registerBatchedEngine("idle skip", Chip8VM::new);
+      if(Boolean.getBoolean("fuzz.compiled")){
+         fuzzer.registerCompiledEngine("compiled", new File(System.getProperty("java.io.tmpdir"), "chip8-fuzz-aot"));
+      }//End if
+      long start = System.nanoTime();
+      List<Failure> failures = fuzzer.fuzz(programs, seed);
+      double seconds = (System.nanoTime() - start) / 1e9;
+      System.out.println(String.format("Fuzzed %d programs with seed %d in %.2fs (%.0f programs/s), engines %s",
+            programs, seed, seconds, programs / seconds, fuzzer.engines));
+      for(Failure failure : failures){
+         System.out.println(failure);
+      }//End for
+      System.exit(failures.isEmpty() ? 0 : 1);
+   }//End method main
+}//End class DifferentialFuzzer
@@ -0,0 +1,75 @@
+package vm;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+
+import org.junit.Test;
+
+import vm.DifferentialFuzzer.Failure;
+
+/**
+ * Checks the differential fuzzer finds and shrinks a divergence in a deliberately broken engine.
+ */
+public class DifferentialFuzzerTest {
+
+   /**
+    * An engine that forgets to set the carry flag on 8XY4.
+    */
+   private static class NoCarryVM extends Chip8VM{
+      @Override public void run8XY4(){
+         int x = (opcode & 0xF00) >> 8;
+         v[x] = (short) (0xFF & (v[x] + v[(opcode & 0xF0) >> 4]));
+      }//End method run8XY4
+   }//End class NoCarryVM
+
+   @Test
+   public void testReferenceMatchesItself() {
+      DifferentialFuzzer fuzzer = new DifferentialFuzzer();
+      fuzzer.registerEngine("reference", Chip8VM::new);
+      assertTrue(fuzzer.fuzz(2000, 0xC8C8).isEmpty());
+   }//End method testReferenceMatchesItself
+
+   @Test
+   public void testDispatchEnginesMatchReference() {
+      DifferentialFuzzer fuzzer = new DifferentialFuzzer();
+      fuzzer.registerEngine("profiled", DifferentialFuzzer::createProfiledVM);
+      fuzzer.registerEngine("traced", DifferentialFuzzer::createTracedVM);
+      List<Failure> failures = fuzzer.fuzz(2000, 0xC8C8);
+      assertTrue(failures.toString(), failures.isEmpty());
+   }//End method testDispatchEnginesMatchReference
+
+   @Test
+   public void testIdleSkipMatchesReference() {
+      DifferentialFuzzer fuzzer = new DifferentialFuzzer();
+      fuzzer.registerBatchedEngine("idle skip", Chip8VM::new);
+      List<Failure> failures = fuzzer.fuzz(2000, 0xC8C8);
+      assertTrue(failures.toString(), failures.isEmpty());
+   }//End method testIdleSkipMatchesReference
+
+   @Test
+   public void testCompiledMatchesReference() throws Exception {
+      File cache = Files.createTempDirectory("fuzz").toFile();
+      cache.deleteOnExit();
+      DifferentialFuzzer fuzzer = new DifferentialFuzzer();
+      fuzzer.registerCompiledEngine("compiled", cache);
+      List<Failure> failures = fuzzer.fuzz(100, 0xC8C8);
+      assertTrue(failures.toString(), failures.isEmpty());
+   }//End method testCompiledMatchesReference
+
+   @Test
+   public void testBrokenEngineIsShrunk() {
+      DifferentialFuzzer fuzzer = new DifferentialFuzzer();
+      fuzzer.registerEngine("no carry", NoCarryVM::new);
+      List<Failure> failures = fuzzer.fuzz(2000, 0xC8C8);
+      assertFalse(failures.isEmpty());
+      for(Failure failure : failures){
+         assertEquals("no carry", failure.getEngine());
+         int[] opcodes = failure.getProgram().getOpcodes();
+         assertEquals(failure.toString(), 1, opcodes.length);
+         assertEquals(0x8004, opcodes[0] & 0xF00F);
+      }//End for
+   }//End method testBrokenEngineIsShrunk
+}//End class DifferentialFuzzerTest
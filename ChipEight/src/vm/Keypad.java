@@ -1,5 +1,6 @@
 package vm;
 
+import java.util.Arrays;
 import java.util.Map;
 import java.util.Map.Entry;
 
@@ -7,39 +8,104 @@ import resource.KeyConfig;
 import core.input.InputManager;
 import core.resource.ResourceManager;
 
+/**
+ * The chip 8 hex keypad. Keys are held as a bitmask, bit n set while key n is down, and each 
+ * {@link #update()} records which keys went down and which came up since the last one.
+ */
 public class Keypad {
    private static final String DEFAULT_KEY_CONFIG = "resource/default.konf";
-   private static final int KEY_COUNT = 16;
    
    private InputManager input = InputManager.getInputManager();
-   private Map<Integer, Integer> keyMap;
-   private Integer keyPress;
-   private boolean[] keys;
+   /**The keyboard keys mapped to chip 8 keys, ordered by chip 8 key.*/
+   private int[] hostKeys;
+   /**The chip 8 key each entry of {@link #hostKeys} maps to.*/
+   private int[] chipKeys;
+   /**Bitmask of the keys that are down.*/
+   private int down;
+   /**Bitmask of the keys that were down at the last update.*/
+   private int previous;
+   /**Bitmask of the keys that went down at the last update.*/
+   private int pressed;
+   /**Bitmask of the keys that came up at the last update.*/
+   private int released;
+   /**If true, keys are set through {@link #setKeyDown(int, boolean)} rather than read from the keyboard.*/
+   private boolean scripted;
    
    public Keypad(){
-      keyMap = ResourceManager.getResource(KeyConfig.class, DEFAULT_KEY_CONFIG).getKeyMap();
-      keys = new boolean[KEY_COUNT];
+      Map<Integer, Integer> keyMap = ResourceManager.getResource(KeyConfig.class, DEFAULT_KEY_CONFIG).getKeyMap();
+      long[] entries = new long[keyMap.size()];
+      int n = 0;
+      for(Entry<Integer, Integer> key : keyMap.entrySet()){
+         entries[n++] = (long) key.getValue() << 32 | key.getKey();
+      }//End for
+      //Sorted so the mapping does not depend on the iteration order of the map.
+      Arrays.sort(entries);
+      hostKeys = new int[entries.length];
+      chipKeys = new int[entries.length];
+      for(int e = 0; e < entries.length; e++){
+         hostKeys[e] = (int) entries[e];
+         chipKeys[e] = (int) (entries[e] >> 32);
+      }//End for
    }//End constructor
   
+   /**
+    * Reads the keys from the keyboard, unless scripted, and records the keys that went down
+    * and came up since the last update.
+    */
    public void update(){
-      keyPress = null;
-      for(Entry<Integer, Integer> key : keyMap.entrySet()){
-         if(input.isKeyDown(key.getKey())){
-            keys[key.getValue()] = true;
-            if(keyPress == null){
-               keyPress = key.getValue();
-            }
-         } else {
-            keys[key.getValue()] = false;
-         }//End if
-      }//End for
+      if(!scripted){
+         int state = 0;
+         for(int k = 0; k < hostKeys.length; k++){
+            if(input.isKeyDown(hostKeys[k])){
+               state |= 1 << chipKeys[k];
+            }//End if
+         }//End for
+         down = state;
+      }//End if
+      pressed = down & ~previous;
+      released = previous & ~down;
+      previous = down;
    }//End method update
    
    public boolean isKeyPressed(int key){
-      return keys[key];
+      return (down & (1 << key)) != 0;
    }//End method isKeyPressed
    
-   public Integer getKeyPress(){
-      return keyPress;
-   }
+   /**
+    * Gets the keys that went down at the last update.
+    * @return a bitmask with bit n set if key n went down.
+    */
+   public int getPressed(){
+      return pressed;
+   }//End method getPressed
+
+   /**
+    * Gets the keys that came up at the last update.
+    * @return a bitmask with bit n set if key n came up.
+    */
+   public int getReleased(){
+      return released;
+   }//End method getReleased
+   
+   /**
+    * Sets whether this keypad is scripted, a scripted keypad ignores the keyboard and
+    * only changes through {@link #setKeyDown(int, boolean)}, for headless runs and tests.
+    * @param scripted whether this keypad is scripted.
+    */
+   public void setScripted(boolean scripted){
+      this.scripted = scripted;
+   }//End method setScripted
+   
+   /**
+    * Sets the state of a key on a scripted keypad.
+    * @param key the chip 8 key, 0 to F.
+    * @param down whether the key is down.
+    */
+   public void setKeyDown(int key, boolean down){
+      if(down){
+         this.down |= 1 << key;
+      } else {
+         this.down &= ~(1 << key);
+      }//End if
+   }//End method setKeyDown
 }//End class Keypad
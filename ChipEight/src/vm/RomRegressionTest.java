@@ -0,0 +1,229 @@
+package vm;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StreamTokenizer;
+import java.net.URISyntaxException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import utility.TokenizerUtilities;
+import capture.FrameRecorder;
+
+/**
+ * Regression test running every ROM in the test corpus headless and comparing the
+ * framebuffer hash and register state at checkpoints against stored goldens.
+ * 
+ * Each ROM "name.ch8" in the corpus directory has a "name.script" giving the cycles per frame,
+ * the number of frames, the scripted key presses and the frames to checkpoint on, and a
+ * "name.golden" holding the expected state at each checkpoint.
+ * 
+ * After an intentional change in behaviour the goldens can be rewritten by running with
+ * -Dregression.update=true -Dregression.dir=src/vm/regression.
+ */
+public class RomRegressionTest {
+   /**The corpus directory on the class path.*/
+   private static final String CORPUS = "vm/regression";
+   /**System property to rewrite the goldens rather than compare against them.*/
+   private static final String UPDATE_PROPERTY = "regression.update";
+   /**System property overriding the corpus directory.*/
+   private static final String DIRECTORY_PROPERTY = "regression.dir";
+   /**Seed for CXNN so runs are deterministic.*/
+   private static final long SEED = 0xC8C8L;
+
+   /**A ROM from the corpus and its script.*/
+   private static class RomCase{
+      private String name;
+      private File rom;
+      private File golden;
+      private int cycles = 10;
+      private int frames;
+      /**Key events as {frame, key, down}.*/
+      private List<int[]> input = new ArrayList<int[]>();
+      private TreeSet<Integer> checkpoints = new TreeSet<Integer>();
+   }//End class RomCase
+
+   /**
+    * Initialises a VM before the cases run in parallel, so the shared key config is 
+    * loaded once by a single thread.
+    */
+   @BeforeClass public static void loadKeyConfig(){
+      new Chip8VM().initialise();
+   }//End method loadKeyConfig
+
+   /**
+    * Runs every ROM in the corpus in parallel and checks each against its golden.
+    */
+   @Test public void testCorpus() throws Exception{
+      List<RomCase> cases = loadCorpus(getCorpusDirectory());
+      assertFalse("The regression corpus is empty", cases.isEmpty());
+      boolean update = Boolean.getBoolean(UPDATE_PROPERTY);
+      ExecutorService executor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+      List<Callable<String>> tasks = new ArrayList<Callable<String>>();
+      for(RomCase romCase : cases){
+         tasks.add(()->check(romCase, update));
+      }//End for
+      StringBuilder failures = new StringBuilder();
+      for(Future<String> result : executor.invokeAll(tasks)){
+         if(result.get() != null){
+            failures.append(result.get()).append('\n');
+         }//End if
+      }//End for
+      executor.shutdown();
+      assertTrue(failures.toString(), failures.length() == 0);
+   }//End method testCorpus
+
+   /**
+    * Runs a case and compares it against, or writes, its golden.
+    * @param romCase the case to check.
+    * @param update if true the golden is rewritten.
+    * @return a description of the failure, null if the case passed.
+    */
+   private static String check(RomCase romCase, boolean update) throws IOException{
+      List<String> actual = run(romCase);
+      if(update){
+         try(PrintWriter writer = new PrintWriter(romCase.golden)){
+            for(String line : actual){
+               writer.println(line);
+            }//End for
+         }//End try
+         return null;
+      }//End if
+      if(!romCase.golden.exists()){
+         return romCase.name + ": no golden, run with -D" + UPDATE_PROPERTY + "=true to create one";
+      }//End if
+      List<String> expected = Files.readAllLines(romCase.golden.toPath());
+      for(int i = 0; i < Math.max(expected.size(), actual.size()); i++){
+         String e = i < expected.size() ? expected.get(i) : "<none>";
+         String a = i < actual.size() ? actual.get(i) : "<none>";
+         if(!e.equals(a)){
+            return romCase.name + ": diverged\n   expected " + e + "\n   actual   " + a;
+         }//End if
+      }//End for
+      return null;
+   }//End method check
+
+   /**
+    * Runs a case headless and records the state at each checkpoint.
+    * @param romCase the case to run.
+    * @return a line describing the state at each checkpoint.
+    */
+   static List<String> run(RomCase romCase){
+      Chip8VM vm = new Chip8VM();
+      vm.setSeed(SEED);
+      vm.loadGame(romCase.rom);
+      vm.getKeypad().setScripted(true);
+      long[] bitmap = new long[32];
+      List<String> states = new ArrayList<String>();
+      int event = 0;
+      for(int frame = 1; frame <= romCase.frames; frame++){
+         while(event < romCase.input.size() && romCase.input.get(event)[0] == frame){
+            vm.getKeypad().setKeyDown(romCase.input.get(event)[1], romCase.input.get(event)[2] == 1);
+            event++;
+         }//End while
+         vm.runCycles(romCase.cycles);
+         vm.decrementDelayTimer();
+         vm.decrementSoundTimer();
+         if(romCase.checkpoints.contains(frame)){
+            FrameRecorder.pack(vm.getDisplayBuffer(), bitmap);
+            StringBuilder state = new StringBuilder(String.format("frame=%d display=%016x pc=%03x i=%03x sp=%x dt=%02x st=%02x v=",
+                  frame, hash(bitmap), vm.pc, vm.i, vm.sp, vm.delayTimer, vm.soundTimer));
+            for(int r = 0; r < 16; r++){
+               state.append(String.format("%02x", vm.v[r]));
+            }//End for
+            states.add(state.toString());
+         }//End if
+      }//End for
+      return states;
+   }//End method run
+
+   /**
+    * Hashes a packed framebuffer with 64 bit FNV-1a.
+    * @param bitmap the packed framebuffer.
+    * @return the hash of the framebuffer.
+    */
+   static long hash(long[] bitmap){
+      long hash = 0xcbf29ce484222325L;
+      for(long word : bitmap){
+         for(int b = 0; b < 8; b++){
+            hash ^= (word >>> (b * 8)) & 0xFF;
+            hash *= 0x100000001b3L;
+         }//End for
+      }//End for
+      return hash;
+   }//End method hash
+
+   /**
+    * Gets the directory holding the corpus.
+    * @return the corpus directory.
+    */
+   private static File getCorpusDirectory() throws URISyntaxException{
+      String directory = System.getProperty(DIRECTORY_PROPERTY);
+      if(directory != null){
+         return new File(directory);
+      }//End if
+      return new File(RomRegressionTest.class.getClassLoader().getResource(CORPUS).toURI());
+   }//End method getCorpusDirectory
+
+   /**
+    * Loads every case in the corpus directory.
+    * @param directory the corpus directory.
+    * @return the cases in the corpus.
+    */
+   private static List<RomCase> loadCorpus(File directory) throws IOException{
+      List<RomCase> cases = new ArrayList<RomCase>();
+      File[] roms = directory.listFiles((dir, name)->name.endsWith(".ch8"));
+      for(File rom : roms){
+         RomCase romCase = new RomCase();
+         romCase.name = rom.getName().substring(0, rom.getName().lastIndexOf('.'));
+         romCase.rom = rom;
+         romCase.golden = new File(directory, romCase.name + ".golden");
+         readScript(romCase, new File(directory, romCase.name + ".script"));
+         cases.add(romCase);
+      }//End for
+      return cases;
+   }//End method loadCorpus
+
+   /**
+    * Reads the script for a case. Scripts are made up of the commands "cycles n", "frames n",
+    * "checkpoint frame", "press frame key" and "release frame key", frames are counted from 1
+    * and key events happen at the start of the frame. Lines starting with # are comments.
+    * @param romCase the case to read the script for.
+    * @param script the script file.
+    */
+   private static void readScript(RomCase romCase, File script) throws IOException{
+      try(FileReader reader = new FileReader(script)){
+         StreamTokenizer tokenizer = TokenizerUtilities.createTokenizer(reader);
+         tokenizer.commentChar('#');
+         while(!TokenizerUtilities.isEndOfFile(tokenizer)){
+            String command = TokenizerUtilities.readString(tokenizer);
+            switch(command){
+            case "cycles": romCase.cycles = TokenizerUtilities.readInteger(tokenizer); break;
+            case "frames": romCase.frames = TokenizerUtilities.readInteger(tokenizer); break;
+            case "checkpoint": romCase.checkpoints.add(TokenizerUtilities.readInteger(tokenizer)); break;
+            case "press": 
+            case "release":
+               int frame = TokenizerUtilities.readInteger(tokenizer);
+               int key = TokenizerUtilities.readInteger(tokenizer);
+               romCase.input.add(new int[]{frame, key, command.equals("press") ? 1 : 0});
+               break;
+            default: throw new IOException("Unknown command " + command + " in " + script);
+            }//End switch
+         }//End while
+      }//End try
+      romCase.input.sort((a, b)->Integer.compare(a[0], b[0]));
+   }//End method readScript
+}//End class RomRegressionTest
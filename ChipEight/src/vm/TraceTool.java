@@ -0,0 +1,104 @@
+package vm;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+
+/**
+ * Prints a trace file written by {@link Chip8Tracer}, one instruction per line with every register
+ * it changed, optionally filtered.
+ * Usage: TraceTool trace [-last n] [-from address] [-to address] [-op opcode] [-reg register]
+ * where addresses are hex, -op takes an opcode name such as 8XY4 and -reg a register such as vF or I.
+ */
+public class TraceTool {
+
+   /**
+    * Entry point.
+    * @param args arguments, see the class documentation.
+    * @throws IOException if the trace can not be read.
+    */
+   public static void main(String[] args) throws IOException{
+      if(args.length < 1){
+         System.err.println("Usage: TraceTool trace [-last n] [-from address] [-to address] [-op opcode] [-reg register]");
+         System.exit(1);
+      }//End if
+      int last = Integer.MAX_VALUE;
+      int from = 0;
+      int to = 0xFFF;
+      int op = -1;
+      int register = -1;
+      for(int i = 1; i < args.length - 1; i += 2){
+         String value = args[i + 1];
+         switch(args[i]){
+         case "-last": last = Integer.parseInt(value); break;
+         case "-from": from = Integer.parseInt(value.replaceFirst("^0[xX]", ""), 16); break;
+         case "-to": to = Integer.parseInt(value.replaceFirst("^0[xX]", ""), 16); break;
+         case "-op": op = indexOf(Chip8Profiler.OPCODES, value); break;
+         case "-reg": register = registerIndex(value); break;
+         default: System.err.println("Unknown option " + args[i]);
+         }//End switch
+      }//End for
+      long[] first = new long[1];
+      long[] entries = Chip8Tracer.load(new File(args[0]), first);
+      PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out)));
+      int end;
+      for(int e = Math.max(0, entries.length - last); e < entries.length; e = end){
+         long entry = entries[e];
+         int address = Chip8Tracer.getAddress(entry);
+         int opcode = Chip8Tracer.getOpcode(entry);
+         //The instruction's further registers follow it as continuations.
+         boolean hasRegister = register < 0;
+         for(end = e; end < entries.length && (end == e || Chip8Tracer.isContinuation(entries[end])); end++){
+            hasRegister |= Chip8Tracer.getRegister(entries[end]) == register;
+         }//End for
+         if(address < from || address > to
+               || (op >= 0 && Chip8Profiler.getOpcodeIndex(opcode) != op)
+               || !hasRegister){
+            continue;
+         }//End if
+         out.print(String.format("%10d  %03X  %04X  %-16s", first[0] + e, address, opcode, 
+               Chip8Disassembler.disassemble(opcode)));
+         for(int c = e; c < end; c++){
+            int changed = Chip8Tracer.getRegister(entries[c]);
+            if(changed != Chip8Tracer.NO_REGISTER){
+               out.print(String.format("  %s=%X", Chip8Tracer.getRegisterName(changed), Chip8Tracer.getValue(entries[c])));
+            }//End if
+         }//End for
+         out.println();
+      }//End for
+      out.flush();
+   }//End method main
+
+   /**
+    * Finds a name in a list, ignoring case.
+    * @param names the names.
+    * @param name the name to find.
+    * @return the index of the name.
+    * @throws IllegalArgumentException if the name is not in the list.
+    */
+   private static int indexOf(String[] names, String name){
+      for(int n = 0; n < names.length; n++){
+         if(names[n].equalsIgnoreCase(name)){
+            return n;
+         }//End if
+      }//End for
+      throw new IllegalArgumentException("Unknown opcode " + name);
+   }//End method indexOf
+
+   /**
+    * Gets the index {@link Chip8Tracer} uses for a register name.
+    * @param name the register name.
+    * @return the register index.
+    * @throws IllegalArgumentException if the name is not a register.
+    */
+   private static int registerIndex(String name){
+      for(int r = 0; r < Chip8Tracer.NO_REGISTER; r++){
+         if(Chip8Tracer.getRegisterName(r).equalsIgnoreCase(name)){
+            return r;
+         }//End if
+      }//End for
+      throw new IllegalArgumentException("Unknown register " + name);
+   }//End method registerIndex
+}//End class TraceTool
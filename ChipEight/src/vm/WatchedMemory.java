@@ -0,0 +1,51 @@
+package vm;
+
+/**
+ * {@link Chip8Memory} that notifies a {@link Chip8Debugger} when an instruction reads or writes a
+ * watched address. Shares the array of the memory it wraps, the VM only uses it while watchpoints are set.
+ */
+class WatchedMemory extends Chip8Memory {
+   /**The plain memory this wraps.*/
+   private Chip8Memory plain;
+   /**The debugger holding the watchpoints.*/
+   private Chip8Debugger debugger;
+
+   /**
+    * Constructs a new {@link WatchedMemory}.
+    * @param plain the memory to wrap.
+    * @param debugger the debugger holding the watchpoints.
+    */
+   WatchedMemory(Chip8Memory plain, Chip8Debugger debugger){
+      this.plain = plain;
+      this.debugger = debugger;
+      memory = plain.memory;
+   }//End constructor
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public void setMemory(int loc, short val){
+      memory[loc] = val;
+      if(Chip8Debugger.isSet(debugger.writeWatches, loc)){
+         debugger.watchpointHit(loc, true);
+      }//End if
+   }//End method setMemory
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public short getValueAt(int loc){
+      if(Chip8Debugger.isSet(debugger.readWatches, loc)){
+         debugger.watchpointHit(loc, false);
+      }//End if
+      return memory[loc];
+   }//End method getValueAt
+
+   /**
+    * Gets the plain memory this wraps.
+    * @return the plain memory.
+    */
+   Chip8Memory getMemory(){
+      return plain;
+   }//End method getMemory
+}//End class WatchedMemory
@@ -4,6 +4,7 @@ import static org.lwjgl.opengl.GL11.*;
 
 import java.awt.Canvas;
 import java.nio.ByteBuffer;
+import java.util.concurrent.Future;
 
 import org.lwjgl.LWJGLException;
 import org.lwjgl.opengl.ContextAttribs;
@@ -18,6 +19,10 @@ import core.graphics.Colour;
 import core.graphics.SpriteBatch;
 import core.graphics.Texture2D;
 import core.input.InputManager;
+import core.metrics.Counter;
+import core.metrics.Gauge;
+import core.metrics.Histogram;
+import core.metrics.MetricsRegistry;
 import core.resource.ResourceManager;
 
 public abstract class Game {
@@ -25,6 +30,10 @@ public abstract class Game {
    private int fps = 60;
    private int currentFramesPerSecond;
    private static final boolean displayFPS = false;
+   /**The nanoseconds per frame that may be spent uploading asynchronously loaded resources.*/
+   private static final long UPLOAD_BUDGET_NANOS = 2000000L;
+   /**Whether the game has been asked to close, checked by the game loop each frame.*/
+   private volatile boolean closeRequested;
    public GameContext context;
 
    public class GameContext {
@@ -115,8 +124,10 @@ public abstract class Game {
       try {
          Display.create(format, attribs);
          ByteBuffer[] list = new ByteBuffer[2];
-         list[0] = ImageUtils.createBufferFromImage(ResourceManager.getResource(Texture2D.class, "resources/icon/default16.png").getBufferedImageFromData());
-         list[1] = ImageUtils.createBufferFromImage(ResourceManager.getResource(Texture2D.class, "resources/icon/default32.png").getBufferedImageFromData());
+         Future<Texture2D> icon16 = ResourceManager.loadAsync(Texture2D.class, "resources/icon/default16.png");
+         Future<Texture2D> icon32 = ResourceManager.loadAsync(Texture2D.class, "resources/icon/default32.png");
+         list[0] = ImageUtils.createBufferFromImage(ResourceManager.await(icon16).getBufferedImageFromData());
+         list[1] = ImageUtils.createBufferFromImage(ResourceManager.await(icon32).getBufferedImageFromData());
          Display.setIcon(list);
          glClearColor(0f, 0f, 0f, 0f);
          spriteBatch = new SpriteBatch(160000, Display.getWidth(), Display.getHeight());
@@ -137,21 +148,46 @@ public abstract class Game {
       init();
       recalculateViewport();
 
+      MetricsRegistry metrics = MetricsRegistry.getMetricsRegistry();
+      Histogram frameTime = metrics.getHistogram("frame.totalNanos");
+      Histogram updateTime = metrics.getHistogram("frame.updateNanos");
+      Histogram renderTime = metrics.getHistogram("frame.renderNanos");
+      Histogram displayTime = metrics.getHistogram("frame.displayNanos");
+      Histogram draws = metrics.getHistogram("spritebatch.drawsPerFrame");
+      Histogram flushes = metrics.getHistogram("spritebatch.flushesPerFrame");
+      Counter frames = metrics.getCounter("frames");
+      metrics.registerGauge("fps", new Gauge(){
+         @Override public long getValue(){
+            return context.fps;
+         }//End method getValue
+      });
+      metrics.startDumpFromProperties();
+
       long lastTime, lastFPS;
       lastTime = lastFPS = System.nanoTime();
       currentFramesPerSecond = 0;
 
-      while(!Display.isCloseRequested()) {
+      while(!Display.isCloseRequested() && !closeRequested) {
          long deltaTime = System.nanoTime() - lastTime;
          lastTime += deltaTime;
+         frameTime.record(deltaTime);
 
          if(Display.wasResized())
             recalculateViewport();
          EventManager.getEventManager().processEventQueue();
+         ResourceManager.processUploads(UPLOAD_BUDGET_NANOS);
          InputManager.getInputManager().update();
          update(deltaTime / 1e9);
+         long updated = System.nanoTime();
+         updateTime.record(updated - lastTime);
 
          render();
+         long rendered = System.nanoTime();
+         renderTime.record(rendered - updated);
+         draws.record(spriteBatch.getDrawCount());
+         flushes.record(spriteBatch.getFlushCount());
+         spriteBatch.resetStatistics();
+         frames.increment();
          Display.update();
 
          currentFramesPerSecond++;
@@ -164,7 +200,10 @@ public abstract class Game {
             currentFramesPerSecond = 0;
          }//End if
          Display.sync(fps);
+         displayTime.record(System.nanoTime() - rendered);
       }//End while
+      shutdown();
+      spriteBatch.dispose();
       System.exit(0);
    }//End method gameLoop
 
@@ -204,6 +243,20 @@ public abstract class Game {
     */
    protected abstract void update(double deltaTime);
 
+   /**
+    * Method to release anything the game holds open, called on the game thread
+    * once the game loop has ended and before the game exits.
+    */
+   protected void shutdown(){}
+
+   /**
+    * Asks the game loop to end after the current frame, such as when the window holding
+    * the display is closed. May be called from any thread.
+    */
+   public void requestClose(){
+      closeRequested = true;
+   }//End method requestClose
+
    /**
     * Method to perform rendering
     */
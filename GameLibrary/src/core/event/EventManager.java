@@ -6,6 +6,9 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 
+import core.metrics.Histogram;
+import core.metrics.MetricsRegistry;
+
 
 /**
  * The EventManager is a singleton that is responsible for keeping track of subscriptions
@@ -19,6 +22,10 @@ public class EventManager {
    private List<Event> eventQueue;
    /** Map of {@link EventListener} mapped to the {@link Event}s they subscribe to **/
    private Map<Class<? extends Event>, List<EventListener>> subscriptionMap;
+   /** The number of events waiting each time the queue is processed **/
+   private Histogram queueDepth;
+   /** The nanoseconds taken to dispatch the queue each time it is processed **/
+   private Histogram dispatchTime;
 
    /**
     * Constructs a new {@link EventManager}.
@@ -26,6 +33,8 @@ public class EventManager {
    private EventManager(){
       subscriptionMap = new HashMap<Class<? extends Event>, List<EventListener>>();
       eventQueue = new ArrayList<Event>();
+      queueDepth = MetricsRegistry.getMetricsRegistry().getHistogram("events.queueDepth");
+      dispatchTime = MetricsRegistry.getMetricsRegistry().getHistogram("events.dispatchNanos");
    }//End constructor
 
    /**
@@ -56,12 +65,15 @@ public class EventManager {
     * Processes the event queue
     */
    public void processEventQueue(){
+      long start = System.nanoTime();
       List<Event> eventQueueClone = new ArrayList<Event>();
       eventQueueClone.addAll(eventQueue);
       eventQueue.clear();
+      queueDepth.record(eventQueueClone.size());
       for(Iterator<Event> it = eventQueueClone.iterator(); it.hasNext();){
          processEvent(it.next());
       }//End for
+      dispatchTime.record(System.nanoTime() - start);
    }//End method processEventQueue
 
    /**
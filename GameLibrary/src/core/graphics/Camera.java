@@ -15,6 +15,8 @@ import org.lwjgl.util.vector.Vector3f;
  * on screen graphics to reflect the state of this Camera.
  */
 public class Camera {
+   /**The axis the camera rotates around.**/
+   private static final Vector3f ROTATION_AXIS = new Vector3f(0, 0, 1);
    /**The position of this {@link Camera}.**/
    private float x, y;
    /**The target position of this {@link Camera}. **/
@@ -30,6 +32,9 @@ public class Camera {
    /**The path for this camera to follow**/
    @SuppressWarnings("unused")
    private List<Vector2f> cameraPath;
+   /**Scratch vectors reused when building the translation matrix**/
+   private final Vector2f translation = new Vector2f();
+   private final Vector3f scale = new Vector3f();
    
    /**
     * Constructs a new {@link Camera}.
@@ -57,23 +62,27 @@ public class Camera {
     * @return a {@link Matrix4f} containing translation information to apply this "camera" to a {@link SpriteBatch}.
     */
    public Matrix4f createTranslationMatrix(float paralax){
-      Matrix4f transform = new Matrix4f();
-      Matrix4f translateOrigin = new Matrix4f();
-      Matrix4f.translate(new Vector2f((width / 2) / zoom, (height / 2) / zoom), translateOrigin, translateOrigin);
-      Matrix4f translate = new Matrix4f();
-      Matrix4f.translate(new Vector2f(-x * paralax, -y * paralax), translate, translate);
-      Matrix4f sca = new Matrix4f();
-      Matrix4f.scale(new Vector3f(zoom, zoom, 1f), sca, sca);
-      Matrix4f rotate = new Matrix4f();
-      Matrix4f.rotate(rotation, new Vector3f(0, 0, 1), rotate, rotate);
-      Matrix4f identity = new Matrix4f();
-      // Scale > Origin > Rotate > Translate
-      Matrix4f.mul(transform, sca, transform);
-      Matrix4f.mul(transform, translateOrigin, transform);
-      Matrix4f.mul(transform, rotate, transform);
-      Matrix4f.mul(transform, translate, transform);
-      Matrix4f.mul(translate, identity, translate);
-      return transform;
+      return createTranslationMatrix(paralax, new Matrix4f());
+   }//End method createTranslationMatrix
+
+   /**
+    * Writes the translation matrix reflecting the state of this {@link Camera} into an existing matrix,
+    * so a matrix can be reused every frame.
+    * @param paralax the paralax delta to multiply the position of this {@link Camera} for paralax scrolling effects.
+    * @param dest the {@link Matrix4f} to write to.
+    * @return the destination matrix.
+    */
+   public Matrix4f createTranslationMatrix(float paralax, Matrix4f dest){
+      dest.setIdentity();
+      // Scale > Origin > Rotate > Translate, each applied to the matrix in place
+      scale.set(zoom, zoom, 1f);
+      Matrix4f.scale(scale, dest, dest);
+      translation.set((width / 2) / zoom, (height / 2) / zoom);
+      Matrix4f.translate(translation, dest, dest);
+      Matrix4f.rotate(rotation, ROTATION_AXIS, dest, dest);
+      translation.set(-x * paralax, -y * paralax);
+      Matrix4f.translate(translation, dest, dest);
+      return dest;
    }//End method createTranslationMatrix
    
    /**
@@ -277,6 +286,21 @@ public class Camera {
     * @return <code>true</code> if the area is contained in this {@link Camera} otherwise <code>false</code>. 
     */
    public boolean contains(Rectangle rectangle){
-      return getBounds().intersects(rectangle);
+      return contains(rectangle.x, rectangle.y, rectangle.x + rectangle.width, rectangle.y + rectangle.height);
+   }//End method contains
+
+   /**
+    * Method to check if this {@link Camera} contains a given area, without allocating a {@link Rectangle}.
+    * @param minX the left of the area.
+    * @param minY the top of the area.
+    * @param maxX the right of the area.
+    * @param maxY the bottom of the area.
+    * @return <code>true</code> if the area is contained in this {@link Camera} otherwise <code>false</code>.
+    */
+   public boolean contains(float minX, float minY, float maxX, float maxY){
+      float left = (int)x - width / 2;
+      float top = (int)y - height / 2;
+      return maxX > minX && maxY > minY && width > 0 && height > 0
+            && maxX > left && minX < left + width && maxY > top && minY < top + height;
    }//End method contains
 }//End class Camera
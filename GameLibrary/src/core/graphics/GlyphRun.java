@@ -0,0 +1,155 @@
+package core.graphics;
+
+import java.util.Arrays;
+
+/**
+ * A GlyphRun is a string laid out by a {@link SpriteFont} into sprite records, ready to be copied into the
+ * buffers of a {@link SpriteBatch} in bulk. Each glyph is one record in the layout of a sprite instance,
+ * x, y, width, height, origin x, origin y, rotation, depth, r, g, b, a, u, v, u2, v2, and the
+ * records are expanded into quads of vertices the first time they are drawn without instancing.
+ * A run remembers what it was laid out from, so unchanged text is not laid out again.
+ */
+public class GlyphRun {
+   /**The number of floats in a record.*/
+   static final int RECORD_SIZE = 16;
+   /**The number of floats in the quad of a record, four vertices of X,Y,Z, R,G,B,A, U,V.*/
+   static final int QUAD_SIZE = 36;
+
+   /**The records of the glyphs.*/
+   private float[] records = new float[16 * RECORD_SIZE];
+   /**The quads of the glyphs, valid when {@link #quadsValid} is set.*/
+   private float[] quads = new float[16 * QUAD_SIZE];
+   /**Whether {@link #quads} matches the records.*/
+   private boolean quadsValid;
+   /**The number of glyphs in the run.*/
+   private int count;
+   /**The texture every glyph is drawn from.*/
+   private Texture2D texture;
+
+   /**What the run was laid out from.*/
+   private SpriteFont font;
+   private String text;
+   private int x, y;
+   private float r, g, b, a;
+   private TextureAtlas atlas;
+
+   /**
+    * Checks whether this run was laid out from the given text, so can be drawn as it is.
+    * @return true if the run matches.
+    */
+   boolean matches(SpriteFont font, String text, int x, int y, Colour colour, TextureAtlas atlas){
+      return this.font == font && this.x == x && this.y == y && this.atlas == atlas
+            && r == colour.getR() && g == colour.getG() && b == colour.getB() && a == colour.getA()
+            && (this.text == text || this.text != null && this.text.equals(text));
+   }//End method matches
+
+   /**
+    * Empties the run to lay out new text into it.
+    */
+   void reset(SpriteFont font, String text, int x, int y, Colour colour, TextureAtlas atlas, Texture2D texture){
+      this.font = font;
+      this.text = text;
+      this.x = x;
+      this.y = y;
+      this.r = colour.getR();
+      this.g = colour.getG();
+      this.b = colour.getB();
+      this.a = colour.getA();
+      this.atlas = atlas;
+      this.texture = texture;
+      count = 0;
+      quadsValid = false;
+   }//End method reset
+
+   /**
+    * Adds a glyph to the end of the run.
+    */
+   void add(float x, float y, float width, float height, float u, float v, float u2, float v2){
+      if((count + 1) * RECORD_SIZE > records.length){
+         records = Arrays.copyOf(records, records.length * 2);
+      }//End if
+      int offset = count * RECORD_SIZE;
+      records[offset] = x;
+      records[offset + 1] = y;
+      records[offset + 2] = width;
+      records[offset + 3] = height;
+      records[offset + 4] = 0;
+      records[offset + 5] = 0;
+      records[offset + 6] = 0;
+      records[offset + 7] = 0;
+      records[offset + 8] = r;
+      records[offset + 9] = g;
+      records[offset + 10] = b;
+      records[offset + 11] = a;
+      records[offset + 12] = u;
+      records[offset + 13] = v;
+      records[offset + 14] = u2;
+      records[offset + 15] = v2;
+      count++;
+   }//End method add
+
+   /**
+    * Gets the records of the glyphs, {@link #RECORD_SIZE} floats each.
+    * @return the records.
+    */
+   float[] getRecords(){
+      return records;
+   }//End method getRecords
+
+   /**
+    * Gets the glyphs as quads of vertices, {@link #QUAD_SIZE} floats each, expanding the records the first time.
+    * @return the quads.
+    */
+   float[] getQuads(){
+      if(!quadsValid){
+         if(quads.length < count * QUAD_SIZE){
+            quads = new float[records.length / RECORD_SIZE * QUAD_SIZE];
+         }//End if
+         for(int i = 0; i < count; i++){
+            int record = i * RECORD_SIZE;
+            float x1 = records[record];
+            float y1 = records[record + 1];
+            float x2 = x1 + records[record + 2];
+            float y2 = y1 + records[record + 3];
+            int quad = i * QUAD_SIZE;
+            putVertex(quad, x1, y1, records[record + 12], records[record + 13]);
+            putVertex(quad + 9, x2, y1, records[record + 14], records[record + 13]);
+            putVertex(quad + 18, x2, y2, records[record + 14], records[record + 15]);
+            putVertex(quad + 27, x1, y2, records[record + 12], records[record + 15]);
+         }//End for
+         quadsValid = true;
+      }//End if
+      return quads;
+   }//End method getQuads
+
+   /**
+    * Writes a vertex of the run's colour at depth 0 into the quads.
+    */
+   private void putVertex(int offset, float x, float y, float u, float v){
+      quads[offset] = x;
+      quads[offset + 1] = y;
+      quads[offset + 2] = 0;
+      quads[offset + 3] = r;
+      quads[offset + 4] = g;
+      quads[offset + 5] = b;
+      quads[offset + 6] = a;
+      quads[offset + 7] = u;
+      quads[offset + 8] = v;
+   }//End method putVertex
+
+   /**
+    * Gets the number of glyphs in the run.
+    * @return the number of glyphs.
+    */
+   public int getCount(){
+      return count;
+   }//End method getCount
+
+   /**
+    * Gets the texture every glyph is drawn from.
+    * @return the texture.
+    */
+   public Texture2D getTexture(){
+      return texture;
+   }//End method getTexture
+}//End class GlyphRun
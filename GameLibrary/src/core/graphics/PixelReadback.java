@@ -0,0 +1,281 @@
+package core.graphics;
+
+import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL12.*;
+import static org.lwjgl.opengl.GL15.*;
+import static org.lwjgl.opengl.GL21.*;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GLContext;
+
+/**
+ * Reads frames back from OpenGL without stalling the render loop, for recording or testing.
+ * Each {@link #capture(FrameBuffer)} starts a glReadPixels into the next of a ring of pixel buffer objects
+ * and returns straight away. The buffer read into ring size - 1 captures earlier has finished by then, so it
+ * is mapped without waiting and its pixels are copied out and handed to a {@link FrameListener} on a thread
+ * of its own. Frames are delivered as ARGB pixels, row by row from the top of the image, two frames late
+ * with the default ring.
+ * Where pixel buffer objects are not supported the pixels are read straight away instead.
+ */
+public class PixelReadback {
+   /**The number of pixel buffer objects used if not given.*/
+   public static final int DEFAULT_RING_SIZE = 3;
+
+   /**
+    * Receives the frames read back.
+    */
+   public interface FrameListener {
+      /**
+       * Called on the readback thread with a frame read back.
+       * @param pixels the ARGB pixels of the frame, row by row from the top, only valid during the call.
+       * @param width the width of the frame.
+       * @param height the height of the frame.
+       * @param frame the number of the capture the frame was read by, counting from 0.
+       */
+      void frameRead(int[] pixels, int width, int height, long frame);
+   }//End interface FrameListener
+
+   /**The size of the frames read.*/
+   private int width, height;
+   /**The number of pixel buffer objects in the ring, 0 when reading straight away.*/
+   private int ringSize;
+   /**The pixel buffer objects.*/
+   private int[] pbos;
+   /**The capture each pixel buffer object was last read into.*/
+   private long[] pboFrames;
+   /**Whether each pixel buffer object was read from the default frame buffer, so is upside down.*/
+   private boolean[] pboFlipped;
+   /**The pixel buffer object to read the next capture into.*/
+   private int head;
+   /**The number of pixel buffer objects waiting to be mapped.*/
+   private int inFlight;
+   /**The mapping of a pixel buffer object, reused between mappings.*/
+   private ByteBuffer mapping;
+   /**The buffer read into straight away when there are no pixel buffer objects.*/
+   private ByteBuffer direct;
+   /**The number of captures made.*/
+   private long captures;
+   /**The number of frames dropped because the listener fell behind.*/
+   private volatile long dropped;
+
+   /**Frames with pixels ready to be filled.*/
+   private BlockingQueue<Frame> free;
+   /**Frames waiting for the listener.*/
+   private BlockingQueue<Frame> ready;
+   /**The thread calling the listener.*/
+   private Thread thread;
+   /**The frame that tells the thread to stop.*/
+   private final Frame stop = new Frame(0);
+
+   /**
+    * Constructs a new {@link PixelReadback} with {@link #DEFAULT_RING_SIZE} pixel buffer objects.
+    * @param width the width of the frames to read.
+    * @param height the height of the frames to read.
+    * @param listener the {@link FrameListener} to hand frames to.
+    */
+   public PixelReadback(int width, int height, FrameListener listener){
+      this(width, height, DEFAULT_RING_SIZE, listener);
+   }//End constructor
+
+   /**
+    * Constructs a new {@link PixelReadback}.
+    * @param width the width of the frames to read.
+    * @param height the height of the frames to read.
+    * @param ringSize the number of pixel buffer objects, at least 2, the more the later frames are delivered
+    * but the less likely mapping one is to wait for OpenGL.
+    * @param listener the {@link FrameListener} to hand frames to.
+    */
+   public PixelReadback(int width, int height, int ringSize, final FrameListener listener){
+      if(ringSize < 2){
+         throw new IllegalArgumentException("The ring needs at least 2 pixel buffer objects, not " + ringSize);
+      }//End if
+      this.width = width;
+      this.height = height;
+      int frameBytes = width * height * 4;
+      if(GLContext.getCapabilities().OpenGL21){
+         this.ringSize = ringSize;
+         pbos = new int[ringSize];
+         pboFrames = new long[ringSize];
+         pboFlipped = new boolean[ringSize];
+         for(int p = 0; p < ringSize; p++){
+            pbos[p] = glGenBuffers();
+            glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[p]);
+            glBufferData(GL_PIXEL_PACK_BUFFER, frameBytes, GL_STREAM_READ);
+         }//End for
+         glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+      } else {
+         direct = BufferUtils.createByteBuffer(frameBytes);
+      }//End if
+      //Enough frames for the listener to be a ring behind before any are dropped.
+      free = new ArrayBlockingQueue<Frame>(ringSize);
+      ready = new ArrayBlockingQueue<Frame>(ringSize + 1);
+      for(int f = 0; f < ringSize; f++){
+         free.add(new Frame(width * height));
+      }//End for
+      thread = new Thread(new Runnable(){
+         @Override public void run(){
+            deliver(listener);
+         }//End method run
+      }, "PixelReadback");
+      thread.setDaemon(true);
+      thread.start();
+   }//End constructor
+
+   /**
+    * Starts reading the current contents of a frame buffer back, must be called on the OpenGL thread after
+    * drawing the frame and before the display is updated.
+    * @param source the {@link FrameBuffer} to read, such as {@link SpriteBatch#getRenderTargetBuffer()},
+    * or null to read the default frame buffer. It should be at least the size of the frames read.
+    */
+   public void capture(FrameBuffer source){
+      if(source != null){
+         source.bind();
+      }//End if
+      glPixelStorei(GL_PACK_ALIGNMENT, 4);
+      if(pbos == null){
+         direct.clear();
+         //BGRA packed as 8_8_8_8_REV reads as ARGB ints in native order.
+         glReadPixels(0, 0, width, height, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, direct);
+         if(source != null){
+            source.unbind();
+         }//End if
+         publish(direct, source == null, captures++);
+         return;
+      }//End if
+      glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[head]);
+      glReadPixels(0, 0, width, height, GL_BGRA, GL_UNSIGNED_INT_8_8_8_8_REV, 0);
+      glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+      if(source != null){
+         source.unbind();
+      }//End if
+      pboFrames[head] = captures++;
+      pboFlipped[head] = source == null;
+      head = (head + 1) % ringSize;
+      inFlight++;
+      //Once every buffer is in use map the oldest, freeing it for the next capture.
+      if(inFlight == ringSize){
+         mapOldest();
+      }//End if
+   }//End method capture
+
+   /**
+    * Maps the oldest pixel buffer object waiting and hands its pixels on.
+    */
+   private void mapOldest(){
+      int oldest = (head - inFlight + ringSize) % ringSize;
+      glBindBuffer(GL_PIXEL_PACK_BUFFER, pbos[oldest]);
+      mapping = glMapBuffer(GL_PIXEL_PACK_BUFFER, GL_READ_ONLY, width * height * 4L, mapping);
+      if(mapping != null){
+         publish(mapping, pboFlipped[oldest], pboFrames[oldest]);
+         glUnmapBuffer(GL_PIXEL_PACK_BUFFER);
+      }//End if
+      glBindBuffer(GL_PIXEL_PACK_BUFFER, 0);
+      inFlight--;
+   }//End method mapOldest
+
+   /**
+    * Copies the pixels of a frame out of a buffer and queues them for the listener, dropping them if
+    * the listener is still busy with every frame it has been given.
+    * @param pixels the pixels read, BGRA bytes, rows from the bottom of the frame.
+    * @param flip whether the rows are upside down, as they are from the default frame buffer.
+    * @param number the capture the frame was read by.
+    */
+   private void publish(ByteBuffer pixels, boolean flip, long number){
+      Frame frame = free.poll();
+      if(frame == null){
+         dropped++;
+         return;
+      }//End if
+      IntBuffer ints = pixels.duplicate().order(ByteOrder.nativeOrder()).asIntBuffer();
+      if(flip){
+         for(int row = 0; row < height; row++){
+            ints.position((height - 1 - row) * width);
+            ints.get(frame.pixels, row * width, width);
+         }//End for
+      } else {
+         ints.get(frame.pixels);
+      }//End if
+      frame.number = number;
+      ready.add(frame);
+   }//End method publish
+
+   /**
+    * Reads every frame still waiting in the ring, waiting for OpenGL to finish them, such as before disposing.
+    */
+   public void flush(){
+      while(inFlight > 0){
+         mapOldest();
+      }//End while
+   }//End method flush
+
+   /**
+    * Hands frames to the listener until stopped, run by the readback thread.
+    * @param listener the listener.
+    */
+   private void deliver(FrameListener listener){
+      try {
+         for(Frame frame = ready.take(); frame != stop; frame = ready.take()){
+            try {
+               listener.frameRead(frame.pixels, width, height, frame.number);
+            } catch (RuntimeException e) {
+               e.printStackTrace();
+            }//End try/catch
+            free.add(frame);
+         }//End for
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }//End try/catch
+   }//End method deliver
+
+   /**
+    * Gets the number of frames dropped because the listener had not finished with the earlier ones.
+    * @return the number of frames dropped.
+    */
+   public long getDroppedFrames(){
+      return dropped;
+   }//End method getDroppedFrames
+
+   /**
+    * Reads the frames still waiting, lets the listener finish with them and deletes the pixel buffer objects.
+    * Must be called on the OpenGL thread.
+    */
+   public void dispose(){
+      flush();
+      try {
+         ready.put(stop);
+         thread.join();
+      } catch (InterruptedException e) {
+         Thread.currentThread().interrupt();
+      }//End try/catch
+      if(pbos != null){
+         for(int pbo : pbos){
+            glDeleteBuffers(pbo);
+         }//End for
+         pbos = null;
+      }//End if
+   }//End method dispose
+
+   /**
+    * A frame of pixels passed from the OpenGL thread to the readback thread.
+    */
+   private static class Frame {
+      /**The ARGB pixels of the frame.*/
+      private int[] pixels;
+      /**The capture the frame was read by.*/
+      private long number;
+
+      /**
+       * Constructs a new {@link Frame}.
+       * @param size the number of pixels.
+       */
+      Frame(int size){
+         pixels = new int[size];
+      }//End constructor
+   }//End class Frame
+}//End class PixelReadback
@@ -2,9 +2,7 @@ package core.graphics;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL20.*;
 
-import java.io.BufferedReader;
-import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 import java.util.List;
 
@@ -14,6 +12,7 @@ import core.event.Event;
 import core.event.EventListener;
 import core.event.EventManager;
 import core.event.WindowResizedEvent;
+import core.resource.ResourceManager;
 
 public class ShaderProgram {
    
@@ -124,30 +123,13 @@ public class ShaderProgram {
     */
    private String readFromFile(String file) {
       try {
-         return readFully(getClass().getClassLoader().getResourceAsStream(file));
+         //Decoded straight from the resource's buffer, a slice of the mapping when it is in a mounted archive.
+         return StandardCharsets.UTF_8.decode(ResourceManager.getBufferForFilename(file)).toString();
       } catch(Exception e) {
          throw new RuntimeException("Error reading file" + file, e);
       }//End try/catch
    }//End method readFromFile
 
-   /**
-    * Reads all the text in the input stream and returns it as a {@link String}.
-    * @param is the {@link InputStream} to read from.
-    * @return the {@link String} contents of the {@link InputStream}.
-    */
-   private static String readFully(InputStream is) {
-      try(BufferedReader reader = new BufferedReader(new InputStreamReader(is, "UTF-8"))) {
-         StringBuilder stringBuilder = new StringBuilder();
-         String line;
-         while((line = reader.readLine()) != null){
-            stringBuilder.append(line).append('\n');
-         }//End while
-         return stringBuilder.toString();
-      } catch(Exception e) {
-         throw new RuntimeException("Error reading input stream", e);
-      }//End try/catch
-   }//End method readFully
-
    /**
     * Binds this program to the OpenGL context,
     * will take over any previously binded programs
@@ -3,15 +3,17 @@ package core.graphics;
 import static org.lwjgl.opengl.GL11.*;
 import static org.lwjgl.opengl.GL20.*;
 
-import java.awt.Rectangle;
 import java.nio.FloatBuffer;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
 import org.lwjgl.BufferUtils;
 import org.lwjgl.opengl.Display;
+import org.lwjgl.opengl.GLContext;
 import org.lwjgl.util.vector.Matrix4f;
 
+import utility.RadixSort;
 import core.resource.ResourceManager;
 
 /**
@@ -25,11 +27,17 @@ import core.resource.ResourceManager;
  */
 public class SpriteBatch {
    /**Constant defining the number of vertices needed to draw a sprite**/
-   private static final int VERTICES_PER_SPRITE = 6;
+   private static final int VERTICES_PER_SPRITE = 4;
+   /**Constant defining the number of indices drawn for a sprite, 2 triangles sharing a diagonal**/
+   private static final int INDICES_PER_SPRITE = 6;
+   /**The order the vertices of a sprite are drawn in, as 2 triangles**/
+   private static final int[] SPRITE_ORDER = new int[]{0, 1, 2, 2, 3, 0};
    /**The default vertex shader to use for rendering**/
    public static final String DEFAULT_VERTEX = "resources/shader/default.vert";
    /**The default fragment shader to use for rendering**/
    public static final String DEFAULT_FRAGMENT = "resources/shader/default.frag";
+   /**The vertex shader expanding sprite instances into quads**/
+   public static final String INSTANCED_VERTEX = "resources/shader/instanced.vert";
    /**The default {@link VertexAttribute}s for a sprite, 3 for position(x,y,z),
     * 4 for colour(r,b,g,a), 2 for texture coordinates (u, v)*/
    private static final List<VertexAttribute> DEFAULT_ATTRIBUTE =
@@ -38,6 +46,21 @@ public class SpriteBatch {
                new VertexAttribute(1, "Colour", 4),
                new VertexAttribute(2, "TexCoord", 2)
          });
+   /**The per vertex {@link VertexAttribute} of an instanced sprite, the corner of the quad.*/
+   private static final List<VertexAttribute> CORNER_ATTRIBUTE =
+         Arrays.asList(new VertexAttribute[]{
+               new VertexAttribute(0, "Corner", 2)
+         });
+   /**The per instance {@link VertexAttribute}s of an instanced sprite, 4 for the rectangle (x, y, width, height),
+    * 3 for rotation (origin x, origin y, angle), 1 for depth, 4 for colour(r,g,b,a), 4 for texture coordinates (u, v, u2, v2)*/
+   private static final List<VertexAttribute> INSTANCE_ATTRIBUTE =
+         Arrays.asList(new VertexAttribute[]{
+               new VertexAttribute(1, "Rect", 4, 1),
+               new VertexAttribute(2, "Rotation", 3, 1),
+               new VertexAttribute(3, "Depth", 1, 1),
+               new VertexAttribute(4, "Colour", 4, 1),
+               new VertexAttribute(5, "Source", 4, 1)
+         });
 
    /**the default {@link ShaderProgram}**/
    private ShaderProgram defaultShaderProgram;
@@ -60,12 +83,60 @@ public class SpriteBatch {
    private boolean renderToFrameBuffer;
    /**The projection matrix used for rendering**/
    private Matrix4f projection;
+   /**The number of floats recorded per sprite in the sorted modes**/
+   private static final int COMMAND_SIZE = 16;
+   /**The order sprites are drawn in for the current batch, and from the next begin**/
+   private SpriteSortMode sortMode = SpriteSortMode.IMMEDIATE, nextSortMode = SpriteSortMode.IMMEDIATE;
+   /**The sprites recorded in the sorted modes, each laid out as an instance**/
+   private float[] commands = new float[64 * COMMAND_SIZE];
+   /**The sort key, original index, texture index and shader index of each recorded sprite**/
+   private long[] commandKeys = new long[64];
+   private int[] commandOrder = new int[64];
+   private int[] commandTextures = new int[64];
+   private int[] commandShaders = new int[64];
+   /**Scratch space for sorting the recorded sprites**/
+   private long[] sortKeys = new long[64];
+   private int[] sortOrder = new int[64];
+   private int[] sortCounts = new int[RadixSort.COUNTS_SIZE];
+   /**The number of sprites recorded**/
+   private int commandCount;
+   /**The textures and shaders used by the recorded sprites**/
+   private Texture2D[] batchTextures = new Texture2D[8];
+   private int batchTextureCount;
+   private ShaderProgram[] batchShaders = new ShaderProgram[4];
+   private int batchShaderCount;
+   /**The atlas packed textures are drawn from, null to draw every texture as is**/
+   private TextureAtlas atlas;
    /**The current camera for checking if an object should be culled**/
    private Camera camera;
    /**The current translation matrix.**/
    private Matrix4f currentTranslation;
+   /**The translation of the camera, rebuilt in place each {@link #begin(Camera)}**/
+   private final Matrix4f cameraTranslation = new Matrix4f();
+   /**The translation used when no camera or matrix is given**/
+   private final Matrix4f identity = new Matrix4f();
+   /**Scratch matrix for the transposed projection**/
+   private final Matrix4f projectionTransposition = new Matrix4f();
+   /**Direct buffer reused to upload matrices to the shaders**/
+   private final FloatBuffer matrixBuffer = BufferUtils.createFloatBuffer(16);
    /**The colour to use for rendering, defaults to white.*/
    private Colour colour = Colour.White;
+   /**The vertices of the sprite being drawn, assembled here then put in the buffer in one go.*/
+   private float[] quad;
+   /**The {@link ShaderProgram} expanding instances, null if instancing is not supported.*/
+   private ShaderProgram instancedShaderProgram;
+   /**The corners of the quad every instance is expanded from.*/
+   private VertexBuffer cornerBuffer;
+   /**The {@link VertexBuffer} for storing one record per sprite when instancing.*/
+   private VertexBuffer instanceBuffer;
+   /**The record of the sprite being drawn when instancing.*/
+   private float[] instance;
+   /**If true, sprites drawn with the default shader are drawn as instances, off until set with {@link #setInstanced(boolean)}.*/
+   private boolean instanced;
+   /**The number of sprites drawn since the statistics were last reset.*/
+   private int drawCount;
+   /**The number of times the buffer has been flushed to the GPU since the statistics were last reset.*/
+   private int flushCount;
    
 
    /**
@@ -78,8 +149,21 @@ public class SpriteBatch {
       glDepthFunc(GL_LEQUAL);
       defaultShaderProgram = new ShaderProgram(DEFAULT_VERTEX, DEFAULT_FRAGMENT, DEFAULT_ATTRIBUTE);
       program = defaultShaderProgram;
-      vertexBuffer = new VertexBuffer(bufferSize , DEFAULT_ATTRIBUTE);
-      this.maxSprites = bufferSize / vertexBuffer.getComponentCount();
+      vertexBuffer = new VertexBuffer(bufferSize , DEFAULT_ATTRIBUTE, true);
+      vertexBuffer.setVertexOrderBuffer(SPRITE_ORDER);
+      this.maxSprites = bufferSize / VERTICES_PER_SPRITE;
+      quad = new float[VERTICES_PER_SPRITE * vertexBuffer.getComponentCount()];
+      if(GLContext.getCapabilities().OpenGL33){
+         List<VertexAttribute> attributes = new ArrayList<VertexAttribute>(CORNER_ATTRIBUTE);
+         attributes.addAll(INSTANCE_ATTRIBUTE);
+         instancedShaderProgram = new ShaderProgram(INSTANCED_VERTEX, DEFAULT_FRAGMENT, attributes);
+         cornerBuffer = new VertexBuffer(VERTICES_PER_SPRITE, CORNER_ATTRIBUTE, true);
+         cornerBuffer.put(new float[]{ 0, 0, 1, 0, 1, 1, 0, 1 }, 0, 8);
+         cornerBuffer.flip();
+         cornerBuffer.setVertexOrderBuffer(SPRITE_ORDER);
+         instanceBuffer = new VertexBuffer(maxSprites, INSTANCE_ATTRIBUTE, true);
+         instance = new float[instanceBuffer.getComponentCount()];
+      }//End if
       recalculateViewport(width, height);
    }//End constructor
 
@@ -87,7 +171,8 @@ public class SpriteBatch {
     * Starts the {@link SpriteBatch} with a default alpha blend
     */
    public void begin(){
-      begin(new Matrix4f());
+      identity.setIdentity();
+      begin(identity);
    }//End method begin
    
    /**
@@ -96,7 +181,7 @@ public class SpriteBatch {
     */
    public void begin(Camera camera){
       this.camera = camera;
-      begin(camera.createTranslationMatrix());
+      begin(camera.createTranslationMatrix(1f, cameraTranslation));
    }//End method begin
    
    /**
@@ -109,34 +194,41 @@ public class SpriteBatch {
    }//End method begin
 
    private void setTranslationMatrixForShader(Matrix4f translation) {
+      if(instancedShaderProgram != null && instancedShaderProgram != program){
+         setTranslationMatrixForShader(instancedShaderProgram, translation);
+      }//End if
+      setTranslationMatrixForShader(program, translation);
+   }//End method setTranslationMatrixForShader
+
+   /**
+    * Sets the camera and translation matrices of a {@link ShaderProgram}.
+    * @param program the program to set the matrices in.
+    * @param translation the translation matrix.
+    */
+   private void setTranslationMatrixForShader(ShaderProgram program, Matrix4f translation) {
       program.begin();
-      Matrix4f view = new Matrix4f();
-      //Holder matrixes
-      Matrix4f projectionView = new Matrix4f();
-      Matrix4f projectionTransposition = new Matrix4f();
-      //Transpose the projection matrix for OpenGL.
+      //Transpose the projection matrix for OpenGL, the view is the identity so this is the projection view.
       Matrix4f.transpose(projection, projectionTransposition);
-      //Multiply the view and the projection matrix
-      projectionView = Matrix4f.mul(view, projectionTransposition, projectionView);
       //Get the float buffer of the matrix
-      FloatBuffer buffer = BufferUtils.createFloatBuffer(20);
-      projectionView.store(buffer);
-      buffer.flip();
+      matrixBuffer.clear();
+      projectionTransposition.store(matrixBuffer);
+      matrixBuffer.flip();
       //Store the matrix in the vertex shader
-      glUniformMatrix4(program.getUniform("CameraMatrix"), false, buffer);
-      setTranslationMatrix(translation);
+      glUniformMatrix4(program.getUniform("CameraMatrix"), false, matrixBuffer);
+      setTranslationMatrix(program, translation);
       program.end();
-   }
+   }//End method setTranslationMatrixForShader
    
    /**
     * Method to set the translation matrix in the {@link ShaderProgram} to the given matrix.
+    * @param program the {@link ShaderProgram} to set the matrix in.
     * @param translation the translation matrix to set in the {@link ShaderProgram}.
     */
-   private void setTranslationMatrix(Matrix4f translation){
-      FloatBuffer buffer = BufferUtils.createFloatBuffer(20);
-      translation.store(buffer);
-      buffer.flip();
-      glUniformMatrix4(program.getUniform("TransformMatrix"), false, buffer);
+   private void setTranslationMatrix(ShaderProgram program, Matrix4f translation){
+      matrixBuffer.clear();
+      translation.store(matrixBuffer);
+      matrixBuffer.flip();
+      glUniformMatrix4(program.getUniform("TransformMatrix"), false, matrixBuffer);
    }//End method setTranslationMatrix
    
    /**
@@ -154,6 +246,7 @@ public class SpriteBatch {
       }//End if
       ready = true;
       spriteCount = 0;
+      sortMode = nextSortMode;
    }//End method begin
 
    /**
@@ -221,6 +314,15 @@ public class SpriteBatch {
       calculateProjectionViewMatrix(false, Display.getWidth(), Display.getHeight());
    }//End method defaultRenderTarget
 
+   /**
+    * Gets the {@link FrameBuffer} this {@link SpriteBatch} draws into, such as to read it back with a {@link PixelReadback}.
+    * @return the frame buffer of the texture set by {@link #changeRenderTarget(Texture2D, int, int)}, or null
+    * when drawing to the default frame buffer.
+    */
+   public FrameBuffer getRenderTargetBuffer(){
+      return renderToFrameBuffer ? renderTargetBuffer : null;
+   }//End method getRenderTargetBuffer
+
    /**
     * Creates the orthographic 2d matrix for getting the vertices on screen correctly within
     * the shader
@@ -338,6 +440,43 @@ public class SpriteBatch {
       draw(texture, x, y, width, height, u, v, u2, v2, rotation, 0, origin);
    }
 
+   /**
+    * Draws a {@link TextureRegion} at its own size.
+    * @param region the region to draw.
+    * @param x the x position to draw at.
+    * @param y the y position to draw at.
+    */
+   public void draw(TextureRegion region, float x, float y){
+      draw(region, x, y, region.getWidth(), region.getHeight(), 0f, 0f, RotationOrigin.TOP_LEFT);
+   }//End method draw
+
+   /**
+    * Draws a {@link TextureRegion} stretched to a size.
+    * @param region the region to draw.
+    * @param x the x position to draw at.
+    * @param y the y position to draw at.
+    * @param width the width to draw.
+    * @param height the height to draw.
+    */
+   public void draw(TextureRegion region, float x, float y, float width, float height){
+      draw(region, x, y, width, height, 0f, 0f, RotationOrigin.TOP_LEFT);
+   }//End method draw
+
+   /**
+    * Draws a {@link TextureRegion}, regions on the same texture are drawn in the same batch.
+    * @param region the region to draw.
+    * @param x the x position to draw at.
+    * @param y the y position to draw at.
+    * @param width the width to draw.
+    * @param height the height to draw.
+    * @param rotation the rotation in radians.
+    * @param depth the depth to draw at.
+    * @param origin the origin to rotate around.
+    */
+   public void draw(TextureRegion region, float x, float y, float width, float height, float rotation, float depth, RotationOrigin origin){
+      draw(region.getTexture(), x, y, width, height, region.getU(), region.getV(), region.getU2(), region.getV2(), rotation, depth, origin);
+   }//End method draw
+
    public void draw(Texture2D texture, float x, float y, float width, float height,
          float u, float v, float u2, float v2, float rotation, float depth, RotationOrigin origin){
       if(!ready){
@@ -346,11 +485,58 @@ public class SpriteBatch {
       if(texture == null){
          throw new RuntimeException("The texture must be non-null");
       }//End if
-      
-      if(currentTexture != null && texture != currentTexture || spriteCount >= maxSprites ){
+      if(atlas != null){
+         TextureRegion region = atlas.getRegion(texture);
+         if(region != null){
+            //Draw from the region of the atlas page instead, so the texture does not break the batch.
+            float du = region.getU2() - region.getU();
+            float dv = region.getV2() - region.getV();
+            u = region.getU() + u * du;
+            u2 = region.getU() + u2 * du;
+            v = region.getV() + v * dv;
+            v2 = region.getV() + v2 * dv;
+            texture = region.getTexture();
+         }//End if
+      }//End if
+
+      float originX = 0;
+      float originY = 0;
+      if(rotation != 0){
+         if(origin.equals(RotationOrigin.CENTER)){
+            originX = width / 2;
+            originY = height / 2;
+         } else {
+            originX = origin.getX();
+            originY = origin.getY();
+         }//End if
+      }//End if
+      if(sortMode != SpriteSortMode.IMMEDIATE){
+         record(texture, x, y, width, height, u, v, u2, v2, rotation, depth, originX, originY,
+               colour.getR(), colour.getG(), colour.getB(), colour.getA());
+         return;
+      }//End if
+      drawSprite(texture, x, y, width, height, u, v, u2, v2, rotation, depth, originX, originY,
+            colour.getR(), colour.getG(), colour.getB(), colour.getA());
+   }//End method draw
+
+   /**
+    * Adds a sprite to the buffer, rendering the buffer first if the sprite does not fit or uses another texture.
+    * @param originX the x origin to rotate around, relative to the sprite.
+    * @param originY the y origin to rotate around, relative to the sprite.
+    */
+   private void drawSprite(Texture2D texture, float x, float y, float width, float height,
+         float u, float v, float u2, float v2, float rotation, float depth, float originX, float originY,
+         float r, float g, float b, float a){
+      boolean instancing = isInstancing();
+      if(currentTexture != null && texture != currentTexture || spriteCount >= maxSprites
+            || (instancing ? instanceBuffer.remaining() < instance.length : vertexBuffer.remaining() < quad.length)){
          render();
       }//End if
       currentTexture = texture;
+      if(instancing && camera == null){
+         putInstance(x, y, width, height, u, v, u2, v2, rotation, depth, originX, originY, r, g, b, a);
+         return;
+      }//End if
       /**Top left**/
       float x1,y1 ;
       /**Top right**/
@@ -361,15 +547,6 @@ public class SpriteBatch {
       float x4,y4;
 
       if (rotation != 0) {
-         float originX = 0;
-         float originY = 0;
-         if(origin.equals(RotationOrigin.CENTER)){
-            originX =  width / 2;
-            originY =  height / 2 ;
-         } else {
-            originX = origin.getX();
-            originY = origin.getY();
-         }
          float p1x = -originX;
          float p1y = -originY;
          float p2x = width - originX;
@@ -405,22 +582,185 @@ public class SpriteBatch {
          y4 = y+height;
       }//END IF
       
-      float r = colour.getR();
-      float g = colour.getG();
-      float b = colour.getB();
-      float a = colour.getA();
-      
-      if(camera == null || camera.contains(new Rectangle((int)x1, (int)y1, (int)(x3 - x1), (int)(y3 - y1)))){
-         //Create 6 vertices of, X,Y,Z, R,G,B,A, U,V to create 2 triangles forming a quad
-         vertexBuffer.add(x1).add(y1).add(depth).add(r).add(g).add(b).add(a).add(u).add(v);
-         vertexBuffer.add(x2).add(y2).add(depth).add(r).add(g).add(b).add(a).add(u2).add(v);
-         vertexBuffer.add(x3).add(y3).add(depth).add(r).add(g).add(b).add(a).add(u2).add(v2);
-         vertexBuffer.add(x3).add(y3).add(depth).add(r).add(g).add(b).add(a).add(u2).add(v2);
-         vertexBuffer.add(x4).add(y4).add(depth).add(r).add(g).add(b).add(a).add(u).add(v2);
-         vertexBuffer.add(x1).add(y1).add(depth).add(r).add(g).add(b).add(a).add(u).add(v);
+      if(camera == null || camera.contains(Math.min(Math.min(x1, x2), Math.min(x3, x4)), Math.min(Math.min(y1, y2), Math.min(y3, y4)),
+            Math.max(Math.max(x1, x2), Math.max(x3, x4)), Math.max(Math.max(y1, y2), Math.max(y3, y4)))){
+         if(instancing){
+            putInstance(x, y, width, height, u, v, u2, v2, rotation, depth, originX, originY, r, g, b, a);
+            return;
+         }//End if
+         //Create 4 vertices of, X,Y,Z, R,G,B,A, U,V, drawn as 2 triangles forming a quad
+         putVertex(0, x1, y1, depth, r, g, b, a, u, v);
+         putVertex(9, x2, y2, depth, r, g, b, a, u2, v);
+         putVertex(18, x3, y3, depth, r, g, b, a, u2, v2);
+         putVertex(27, x4, y4, depth, r, g, b, a, u, v2);
+         vertexBuffer.put(quad, 0, quad.length);
          spriteCount++;
+         drawCount++;
       }//End if
-   }//End method draw
+   }//End method drawSprite
+
+   /**
+    * Checks whether sprites are currently drawn as instances, only the default shader
+    * expects whole sprites rather than vertices.
+    * @return true if sprites are drawn as instances.
+    */
+   private boolean isInstancing(){
+      return instanced && instanceBuffer != null && program == defaultShaderProgram;
+   }//End method isInstancing
+
+   /**
+    * Puts the record of a sprite into the instance buffer, the quad is expanded and rotated by the vertex shader.
+    */
+   private void putInstance(float x, float y, float width, float height, float u, float v, float u2, float v2,
+         float rotation, float depth, float originX, float originY, float r, float g, float b, float a){
+      instance[0] = x;
+      instance[1] = y;
+      instance[2] = width;
+      instance[3] = height;
+      instance[4] = originX;
+      instance[5] = originY;
+      instance[6] = rotation;
+      instance[7] = depth;
+      instance[8] = r;
+      instance[9] = g;
+      instance[10] = b;
+      instance[11] = a;
+      instance[12] = u;
+      instance[13] = v;
+      instance[14] = u2;
+      instance[15] = v2;
+      instanceBuffer.put(instance, 0, instance.length);
+      spriteCount++;
+      drawCount++;
+   }//End method putInstance
+
+   /**
+    * Records a sprite to be drawn when the batch ends, for the sorted modes. The record has the
+    * same layout as an instance, the texture, shader and sort key are kept alongside it.
+    */
+   private void record(Texture2D texture, float x, float y, float width, float height, float u, float v, float u2, float v2,
+         float rotation, float depth, float originX, float originY, float r, float g, float b, float a){
+      if(commandCount == commandKeys.length){
+         int capacity = commandKeys.length * 2;
+         commands = Arrays.copyOf(commands, capacity * COMMAND_SIZE);
+         commandKeys = Arrays.copyOf(commandKeys, capacity);
+         commandOrder = Arrays.copyOf(commandOrder, capacity);
+         commandTextures = Arrays.copyOf(commandTextures, capacity);
+         commandShaders = Arrays.copyOf(commandShaders, capacity);
+         sortKeys = new long[capacity];
+         sortOrder = new int[capacity];
+      }//End if
+      int textureIndex = indexOf(batchTextures, batchTextureCount, texture);
+      if(textureIndex == batchTextureCount){
+         if(batchTextureCount == batchTextures.length){
+            batchTextures = Arrays.copyOf(batchTextures, batchTextureCount * 2);
+         }//End if
+         batchTextures[batchTextureCount++] = texture;
+      }//End if
+      int shaderIndex = indexOf(batchShaders, batchShaderCount, program);
+      if(shaderIndex == batchShaderCount){
+         if(batchShaderCount == batchShaders.length){
+            batchShaders = Arrays.copyOf(batchShaders, batchShaderCount * 2);
+         }//End if
+         batchShaders[batchShaderCount++] = program;
+      }//End if
+      int offset = commandCount * COMMAND_SIZE;
+      commands[offset] = x;
+      commands[offset + 1] = y;
+      commands[offset + 2] = width;
+      commands[offset + 3] = height;
+      commands[offset + 4] = originX;
+      commands[offset + 5] = originY;
+      commands[offset + 6] = rotation;
+      commands[offset + 7] = depth;
+      commands[offset + 8] = r;
+      commands[offset + 9] = g;
+      commands[offset + 10] = b;
+      commands[offset + 11] = a;
+      commands[offset + 12] = u;
+      commands[offset + 13] = v;
+      commands[offset + 14] = u2;
+      commands[offset + 15] = v2;
+      commandTextures[commandCount] = textureIndex;
+      commandShaders[commandCount] = shaderIndex;
+      commandKeys[commandCount] = sortMode.key(shaderIndex, textureIndex, depth);
+      commandOrder[commandCount] = commandCount;
+      commandCount++;
+   }//End method record
+
+   /**
+    * Finds an object in the first part of an array by identity.
+    * @param array the array.
+    * @param count the number of entries in use.
+    * @param object the object to find.
+    * @return the index of the object, count if it is not in the array.
+    */
+   private static int indexOf(Object[] array, int count, Object object){
+      for(int i = count - 1; i >= 0; i--){
+         if(array[i] == object){
+            return i;
+         }//End if
+      }//End for
+      return count;
+   }//End method indexOf
+
+   /**
+    * Sorts the recorded sprites and draws them, switching shader and texture only where the sorted order changes them.
+    */
+   private void drawRecorded(){
+      if(commandCount == 0){
+         return;
+      }//End if
+      RadixSort.sort(commandKeys, commandOrder, commandCount, sortKeys, sortOrder, sortCounts);
+      ShaderProgram current = program;
+      for(int c = 0; c < commandCount; c++){
+         int command = commandOrder[c];
+         ShaderProgram shader = batchShaders[commandShaders[command]];
+         if(shader != program){
+            render();
+            program = shader;
+         }//End if
+         int offset = command * COMMAND_SIZE;
+         drawSprite(batchTextures[commandTextures[command]],
+               commands[offset], commands[offset + 1], commands[offset + 2], commands[offset + 3],
+               commands[offset + 12], commands[offset + 13], commands[offset + 14], commands[offset + 15],
+               commands[offset + 6], commands[offset + 7], commands[offset + 4], commands[offset + 5],
+               commands[offset + 8], commands[offset + 9], commands[offset + 10], commands[offset + 11]);
+      }//End for
+      render();
+      program = current;
+      commandCount = 0;
+      Arrays.fill(batchTextures, 0, batchTextureCount, null);
+      batchTextureCount = 0;
+      Arrays.fill(batchShaders, 0, batchShaderCount, null);
+      batchShaderCount = 0;
+   }//End method drawRecorded
+
+   /**
+    * Sets how sprites are ordered, takes effect from the next {@link #begin()}.
+    * In {@link SpriteSortMode#IMMEDIATE} sprites are drawn in the order given, the sorted modes record
+    * every sprite and sort them when the batch ends, so each texture and shader is switched to as few times as possible.
+    * @param sortMode the {@link SpriteSortMode} to set.
+    */
+   public void setSortMode(SpriteSortMode sortMode){
+      nextSortMode = sortMode;
+   }//End method setSortMode
+
+   /**
+    * Writes a vertex into the quad being assembled.
+    * @param offset the index of the vertex's first float in the quad.
+    */
+   private void putVertex(int offset, float x, float y, float z, float r, float g, float b, float a, float u, float v){
+      quad[offset] = x;
+      quad[offset + 1] = y;
+      quad[offset + 2] = z;
+      quad[offset + 3] = r;
+      quad[offset + 4] = g;
+      quad[offset + 5] = b;
+      quad[offset + 6] = a;
+      quad[offset + 7] = u;
+      quad[offset + 8] = v;
+   }//End method putVertex
 
    /**
     * Draws a line from the given start position to end position.
@@ -446,8 +786,53 @@ public class SpriteBatch {
     * @param font the {@link SpriteFont} to use for drawing.
     */
    public void drawText(int x, int y, String text, SpriteFont font){
-      font.drawTextString(x, y, text, this);
+      draw(font.getGlyphRun(x, y, text, colour, atlas));
    }//End method drawText
+
+   /**
+    * Draws a string laid out by a {@link SpriteFont}. Without sorting or a camera to cull against the glyphs
+    * are copied into the buffer in bulk, otherwise each is drawn as a sprite.
+    * @param run the laid out string.
+    */
+   public void draw(GlyphRun run){
+      if(!ready){
+         throw new RuntimeException("begin() must be called before any drawing can be performed");
+      }//End if
+      Texture2D texture = run.getTexture();
+      int count = run.getCount();
+      float[] records = run.getRecords();
+      if(sortMode != SpriteSortMode.IMMEDIATE || camera != null){
+         for(int i = 0; i < count; i++){
+            int offset = i * GlyphRun.RECORD_SIZE;
+            if(sortMode != SpriteSortMode.IMMEDIATE){
+               record(texture, records[offset], records[offset + 1], records[offset + 2], records[offset + 3],
+                     records[offset + 12], records[offset + 13], records[offset + 14], records[offset + 15], 0, 0, 0, 0,
+                     records[offset + 8], records[offset + 9], records[offset + 10], records[offset + 11]);
+            } else {
+               drawSprite(texture, records[offset], records[offset + 1], records[offset + 2], records[offset + 3],
+                     records[offset + 12], records[offset + 13], records[offset + 14], records[offset + 15], 0, 0, 0, 0,
+                     records[offset + 8], records[offset + 9], records[offset + 10], records[offset + 11]);
+            }//End if
+         }//End for
+         return;
+      }//End if
+      boolean instancing = isInstancing();
+      VertexBuffer buffer = instancing ? instanceBuffer : vertexBuffer;
+      float[] data = instancing ? records : run.getQuads();
+      int stride = instancing ? GlyphRun.RECORD_SIZE : GlyphRun.QUAD_SIZE;
+      int drawn = 0;
+      while(drawn < count){
+         if(currentTexture != null && texture != currentTexture || spriteCount >= maxSprites || buffer.remaining() < stride){
+            render();
+         }//End if
+         currentTexture = texture;
+         int glyphs = Math.min(count - drawn, Math.min(maxSprites - spriteCount, buffer.remaining() / stride));
+         buffer.put(data, drawn * stride, glyphs * stride);
+         spriteCount += glyphs;
+         drawCount += glyphs;
+         drawn += glyphs;
+      }//End while
+   }//End method draw
    
    
    /**
@@ -458,6 +843,7 @@ public class SpriteBatch {
          System.err.println("begin() must be called before end");
          throw new RuntimeException("begin() must be called before end");
       }//End if
+      drawRecorded();
       render();
       setColour(Colour.White);
       currentTexture = null;
@@ -466,6 +852,18 @@ public class SpriteBatch {
       program = defaultShaderProgram;
    }//End method end
 
+   /**
+    * Deletes the GL buffer objects of the streaming vertex buffers and their vertex order buffers.
+    * The sprite batch must not be drawn with afterwards.
+    */
+   public void dispose(){
+      vertexBuffer.dispose();
+      if(cornerBuffer != null){
+         cornerBuffer.dispose();
+         instanceBuffer.dispose();
+      }//End if
+   }//End method dispose
+
 
    /**
     * Sets the viewport size this spritebatch should use
@@ -484,12 +882,24 @@ public class SpriteBatch {
       if(renderToFrameBuffer){
          renderTargetBuffer.bind();
       }//End if
-      program.begin();
-      if(currentTexture != null){
+      if(currentTexture != null && isInstancing()){
+         instancedShaderProgram.begin();
+         currentTexture.bind();
+         glUniform1i(instancedShaderProgram.getUniform("texture"), 0);
+         instanceBuffer.flip();
+         instanceBuffer.drawInstanced(cornerBuffer, GL_TRIANGLES, INDICES_PER_SPRITE, spriteCount);
+         flushCount++;
+         instanceBuffer.clear();
+         spriteCount = 0;
+         instancedShaderProgram.end();
+         currentTexture.unbind();
+      } else if(currentTexture != null){
+         program.begin();
          currentTexture.bind();
          glUniform1i(program.getUniform("texture"), 0);
          vertexBuffer.flip();
-         vertexBuffer.draw(GL_TRIANGLES, 0, spriteCount * VERTICES_PER_SPRITE);
+         vertexBuffer.draw(GL_TRIANGLES, 0, spriteCount * INDICES_PER_SPRITE);
+         flushCount++;
          vertexBuffer.clear();
          spriteCount = 0;
          program.end();
@@ -501,6 +911,66 @@ public class SpriteBatch {
 
    }//End method render
    
+   /**
+    * Gets the number of sprites drawn since the statistics were last reset.
+    * @return the number of sprites drawn.
+    */
+   public int getDrawCount(){
+      return drawCount;
+   }//End method getDrawCount
+
+   /**
+    * Gets the number of draw calls issued to the GPU since the statistics were last reset.
+    * @return the number of flushes.
+    */
+   public int getFlushCount(){
+      return flushCount;
+   }//End method getFlushCount
+
+   /**
+    * Resets the draw and flush counts, {@link core.Game} resets them every frame.
+    */
+   public void resetStatistics(){
+      drawCount = 0;
+      flushCount = 0;
+   }//End method resetStatistics
+
+   /**
+    * Sets whether sprites drawn with the default shader are drawn as one instance each rather than four vertices,
+    * ignored if instancing is not supported. Off by default.
+    * @param instanced true to draw sprites as instances.
+    */
+   public void setInstanced(boolean instanced){
+      render();
+      this.instanced = instanced;
+   }//End method setInstanced
+
+   /**
+    * Checks whether instancing is supported, so {@link #setInstanced(boolean)} takes effect.
+    * @return true if OpenGL 3.3 instancing is available.
+    */
+   public boolean isInstancingSupported(){
+      return instanceBuffer != null;
+   }//End method isInstancingSupported
+
+   /**
+    * Sets the {@link TextureAtlas} to draw packed textures from. Textures packed into the atlas are drawn from
+    * their region of an atlas page, so interleaved draws of different packed textures share a draw call.
+    * @param atlas the atlas to set, null to draw every texture as is.
+    */
+   public void setTextureAtlas(TextureAtlas atlas){
+      render();
+      this.atlas = atlas;
+   }//End method setTextureAtlas
+
+   /**
+    * Gets the {@link TextureAtlas} packed textures are drawn from.
+    * @return the atlas, null if not set.
+    */
+   public TextureAtlas getTextureAtlas(){
+      return atlas;
+   }//End method getTextureAtlas
+
    public void setShaderProgram(ShaderProgram program){
       render();
       this.program = program;
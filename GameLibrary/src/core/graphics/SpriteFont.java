@@ -4,136 +4,458 @@ import java.awt.Color;
 import java.awt.Font;
 import java.awt.FontMetrics;
 import java.awt.Graphics2D;
-import java.awt.Rectangle;
 import java.awt.RenderingHints;
 import java.awt.image.BufferedImage;
-import java.util.HashMap;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.util.List;
-import java.util.Map;
 
+import javax.imageio.ImageIO;
+
+import org.lwjgl.BufferUtils;
+
+import utility.ByteBufferInputStream;
+import utility.ImageUtils;
+import core.resource.ResourceManager;
 import core.resource.Resource;
+import de.matthiasmann.twl.utils.PNGDecoder;
 
+/**
+ * A SpriteFont draws text from characters prerendered into a {@link Texture2D}.
+ * Rasterising a Java2D {@link Font} is slow, so the rendered characters and their metrics are baked into a
+ * file named after the font with {@link #BAKED_EXTENSION} added. A baked file is looked for in the mounted
+ * archives and class path first, then in the cache directory, and written to the cache directory on first use.
+ */
 public class SpriteFont extends Resource{
+   /**The extension added to the font name for its baked file.*/
+   public static final String BAKED_EXTENSION = ".baked";
+   /**The first four bytes of a baked file, "SFNT".*/
+   private static final int MAGIC = 0x53464E54;
+   /**The version of the baked format, bumped whenever the layout or rendering changes.*/
+   private static final int VERSION = 1;
+   /**The width of the texture characters are rendered into.*/
+   private static final int TEXTURE_WIDTH = 512;
+   /**The number of ints per character in the glyph table, x, y, width and height.*/
+   private static final int GLYPH_SIZE = 4;
    /**ASCII code for space.*/
    private static final int SPACE = 32;
+   /**The number of laid out strings kept for redrawing, a power of two.*/
+   private static final int RUN_CACHE_SIZE = 64;
+   /**The directory baked fonts are cached in, null to not cache.*/
+   private static File cacheDirectory = new File(System.getProperty("java.io.tmpdir"), "spritefont-cache");
    /**ASCII Code for ! character, first printable character in set**/
    private int base = 33;
    /**ASCII Code for ~ character, last printable character in set**/
    private int max = 126;
    /**The {@link Texture2D} containing all of the prerendered characters.*/
    private Texture2D characterTexture;
-   /**Character map for mapping a character to its position in its {@link Texture2D}.**/
-   private Map<Character, Rectangle> characterMap;
-   /**The {@link FontMetrics} for getting information about this font.*/
+   /**The position of each character in the {@link Texture2D}, {@link #GLYPH_SIZE} ints from (character - base) * GLYPH_SIZE.**/
+   private int[] glyphs;
+   /**The texture coordinates of each character, u, v, u2 and v2 from (character - base) * GLYPH_SIZE, set on upload.**/
+   private float[] uvs;
+   /**Strings recently drawn, laid out and ready to be copied into a batch, by a hash of the text and position.**/
+   private GlyphRun[] runs = new GlyphRun[RUN_CACHE_SIZE];
+   /**The metrics of the font.*/
+   private int ascent, descent, leading, height, spaceWidth;
+   /**The name of the font, the size and name such as 12-Monospaced.font.*/
+   private String fontName;
+   /**The {@link FontMetrics} for getting information about this font, created when first asked for.*/
    private FontMetrics metrics;
+   /**The RGBA pixels of the rendered characters waiting for {@link #upload()}, null once uploaded.*/
+   private ByteBuffer decoded;
+   /**The size of the rendered characters.*/
+   private int textureHeight;
 
    /**
     * Constructs a new {@link SpriteFont}
     */
    public SpriteFont(){
-      characterMap = new HashMap<Character, Rectangle>();
+      glyphs = new int[(max - base + 1) * GLYPH_SIZE];
+      uvs = new float[glyphs.length];
    }//End constructor
 
+   /**
+    * Sets the directory fonts are baked into on first use.
+    * @param directory the directory, null to always rasterise fonts not found baked on the class path.
+    */
+   public static void setCacheDirectory(File directory){
+      cacheDirectory = directory;
+   }//End method setCacheDirectory
+
+   /**
+    * Gets the directory fonts are baked into on first use.
+    * @return the directory, null if fonts are not baked.
+    */
+   public static File getCacheDirectory(){
+      return cacheDirectory;
+   }//End method getCacheDirectory
+
    /**
     * Loads this sprite font
     */
    public void load(String fontName){
+      decode(fontName);
+      upload();
+   }//End method load
+
+   /**
+    * Loads the baked characters of this sprite font, baking them first if needed, without making any
+    * OpenGL calls so can be done on any thread.
+    * @param fontName the size and name of the font, such as 12-Monospaced.font.
+    */
+   @Override public void decode(String fontName){
+      this.fontName = fontName;
+      String bakedName = fontName + BAKED_EXTENSION;
+      File cached = cacheDirectory == null ? null : new File(cacheDirectory, bakedName);
+      try {
+         ByteBuffer baked = ResourceManager.getBufferForFilename(bakedName);
+         if(baked == null && cached != null && cached.isFile()){
+            baked = ByteBuffer.wrap(Files.readAllBytes(cached.toPath()));
+         }//End if
+         if(baked != null && readBaked(baked)){
+            return;
+         }//End if
+      } catch (IOException | RuntimeException e) {
+         //A truncated or corrupt file runs off the end of the buffer or has impossible lengths, so bake it again.
+         e.printStackTrace();
+      }//End try/catch
+      byte[] bakedFile = bake();
+      if(cached != null){
+         try {
+            writeAtomically(cached, bakedFile);
+         } catch (IOException e) {
+            e.printStackTrace();
+         }//End try/catch
+      }//End if
+   }//End method decode
+
+   /**
+    * Uploads the rendered characters to a {@link Texture2D}, must be called on the OpenGL thread.
+    */
+   @Override public void upload(){
+      characterTexture = new Texture2D();
+      characterTexture.load(decoded, TEXTURE_WIDTH, textureHeight);
+      decoded = null;
+      for(int g = 0; g < glyphs.length; g += GLYPH_SIZE){
+         uvs[g] = glyphs[g] / (float)TEXTURE_WIDTH;
+         uvs[g + 1] = glyphs[g + 1] / (float)textureHeight;
+         uvs[g + 2] = (glyphs[g] + glyphs[g + 2]) / (float)TEXTURE_WIDTH;
+         uvs[g + 3] = (glyphs[g + 1] + glyphs[g + 3]) / (float)textureHeight;
+      }//End for
+   }//End method upload
+
+   /**
+    * Reads a baked file.
+    * @param baked the baked file from position 0.
+    * @return <code>false</code> if the file is not a baked file of this font and version.
+    * @throws IOException if the rendered characters can not be decoded.
+    * @throws RuntimeException such as a {@link java.nio.BufferUnderflowException} if the file is truncated or corrupt.
+    */
+   private boolean readBaked(ByteBuffer baked) throws IOException{
+      if(baked.remaining() < 8 || baked.getInt() != MAGIC || baked.getInt() != VERSION){
+         return false;
+      }//End if
+      byte[] name = new byte[baked.getShort() & 0xFFFF];
+      baked.get(name);
+      if(!fontName.equals(new String(name, StandardCharsets.UTF_8)) || baked.getInt() != base || baked.getInt() != max){
+         return false;
+      }//End if
+      ascent = baked.getInt();
+      descent = baked.getInt();
+      leading = baked.getInt();
+      height = baked.getInt();
+      spaceWidth = baked.getInt();
+      baked.asIntBuffer().get(glyphs);
+      baked.position(baked.position() + glyphs.length * 4);
+      int pngLength = baked.getInt();
+      ByteBuffer png = baked.slice();
+      png.limit(pngLength);
+      PNGDecoder decoder = new PNGDecoder(new ByteBufferInputStream(png));
+      textureHeight = decoder.getHeight();
+      ByteBuffer pixels = BufferUtils.createByteBuffer(4 * decoder.getWidth() * decoder.getHeight());
+      decoder.decode(pixels, decoder.getWidth() * 4, PNGDecoder.Format.RGBA);
+      pixels.flip();
+      decoded = pixels;
+      return true;
+   }//End method readBaked
+
+   /**
+    * Rasterises the characters of the font and lays them out in rows, filling in the glyph table and metrics.
+    * @return the baked file of the font.
+    */
+   private byte[] bake(){
       String[] fontType = fontName.substring(0, fontName.lastIndexOf(".")).split("-");
-      Font font = new Font(fontType[1], Font.PLAIN, new Integer(fontType[0]));
-      BufferedImage fontBuffer = createBufferedImage(font);
-      
-      Graphics2D graphics = fontBuffer.createGraphics();
-      graphics.setRenderingHint(
-            RenderingHints.KEY_TEXT_ANTIALIASING,
-            RenderingHints.VALUE_TEXT_ANTIALIAS_GASP);
-      graphics.setBackground(Color.white);
-      graphics.setFont(font);
-      metrics = graphics.getFontMetrics();
-      graphics.setColor(Color.white);
+      Font font = new Font(fontType[1], Font.PLAIN, Integer.parseInt(fontType[0]));
+      FontMetrics metrics = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR).createGraphics().getFontMetrics(font);
+      ascent = metrics.getAscent();
+      descent = metrics.getDescent();
+      leading = metrics.getLeading();
+      height = metrics.getHeight();
+      spaceWidth = metrics.charWidth(SPACE);
+      //Lay the characters out first, to know the size of the image to render them into.
       int currentXPos = 0;
       int line = 1;
       for(int i = base; i <= max; i++){
          int width = metrics.charWidth(i);
-         if(currentXPos + width > 512){
+         if(currentXPos + width > TEXTURE_WIDTH){
             line++;
             currentXPos = 0;
          }//End if
-         int y = line * (metrics.getAscent() + metrics.getLeading() + metrics.getDescent());
-         graphics.drawString(new Character((char) i).toString(), currentXPos, y);
-         int yPos = y  - metrics.getLeading() - metrics.getAscent(); 
-         int height = metrics.getLeading() + metrics.getAscent()  + (hasDescent((char)i) ? metrics.getDescent() : 0) ;
-         characterMap.put((char) i, new Rectangle(currentXPos , yPos, width,  height));
+         int g = (i - base) * GLYPH_SIZE;
+         glyphs[g] = currentXPos;
+         glyphs[g + 1] = line * (ascent + leading + descent) - leading - ascent;
+         glyphs[g + 2] = width;
+         glyphs[g + 3] = leading + ascent + (hasDescent((char)i) ? descent : 0);
          currentXPos += width + 1;
       }//End for
-      characterTexture = new Texture2D();
-      characterTexture.load(fontBuffer);
-   }//End method load
-   
-   private boolean hasDescent(char c){
-      return ("gjpqy").contains(Character.toString(c));
-   }
-   /**
-    * Creates a {@link BufferedImage} of the correct width and height for this {@link SpriteFont}.
-    * @param font the {@link Font} to for creating the {@link SpriteFont}
-    * @return the empty {@link BufferedImage} of the correct width and height for this {@link SpriteFont}.
-    */
-   private BufferedImage createBufferedImage(Font font) {
-      BufferedImage fontBuffer = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR);
+      BufferedImage fontBuffer = new BufferedImage(TEXTURE_WIDTH, (int) ((line + 0.5) * height), BufferedImage.TYPE_4BYTE_ABGR);
       Graphics2D graphics = fontBuffer.createGraphics();
+      graphics.setRenderingHint(
+            RenderingHints.KEY_TEXT_ANTIALIASING,
+            RenderingHints.VALUE_TEXT_ANTIALIAS_GASP);
+      graphics.setBackground(Color.white);
       graphics.setFont(font);
-      FontMetrics metrics = graphics.getFontMetrics();
-      int currentXPos = 0;
-      int line = 1;
+      graphics.setColor(Color.white);
+      char[] character = new char[1];
       for(int i = base; i <= max; i++){
-         int width = metrics.charWidth(i);
-         if(currentXPos + width > 512){
-            line++;
-            currentXPos = 0;
-         }//End if
-         currentXPos += width + 1;
+         int g = (i - base) * GLYPH_SIZE;
+         character[0] = (char) i;
+         graphics.drawChars(character, 0, 1, glyphs[g], glyphs[g + 1] + leading + ascent);
       }//End for
-      
-      fontBuffer = new BufferedImage(512, (int) ((line + 0.5)* metrics.getHeight()), BufferedImage.TYPE_4BYTE_ABGR);
-      return fontBuffer;
-   }//End method createBufferedImage
-   
-   
+      graphics.dispose();
+      this.metrics = metrics;
+      textureHeight = fontBuffer.getHeight();
+      decoded = ImageUtils.createBufferFromImage(fontBuffer);
+      try {
+         ByteArrayOutputStream png = new ByteArrayOutputStream();
+         ImageIO.write(fontBuffer, "png", png);
+         byte[] name = fontName.getBytes(StandardCharsets.UTF_8);
+         ByteArrayOutputStream bytes = new ByteArrayOutputStream(png.size() + glyphs.length * 4 + 64);
+         DataOutputStream output = new DataOutputStream(bytes);
+         output.writeInt(MAGIC);
+         output.writeInt(VERSION);
+         output.writeShort(name.length);
+         output.write(name);
+         output.writeInt(base);
+         output.writeInt(max);
+         output.writeInt(ascent);
+         output.writeInt(descent);
+         output.writeInt(leading);
+         output.writeInt(height);
+         output.writeInt(spaceWidth);
+         for(int glyph : glyphs){
+            output.writeInt(glyph);
+         }//End for
+         output.writeInt(png.size());
+         png.writeTo(output);
+         output.flush();
+         return bytes.toByteArray();
+      } catch (IOException e) {
+         //Writing to memory does not fail.
+         throw new RuntimeException(e);
+      }//End try/catch
+   }//End method bake
+
+   /**
+    * Writes a file through a temporary file, so a half written file is never read.
+    * @param file the file to write.
+    * @param bytes the contents of the file.
+    * @throws IOException if the file can not be written.
+    */
+   private static void writeAtomically(File file, byte[] bytes) throws IOException{
+      File directory = file.getAbsoluteFile().getParentFile();
+      directory.mkdirs();
+      File temp = File.createTempFile(file.getName(), ".tmp", directory);
+      try {
+         Files.write(temp.toPath(), bytes);
+         Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+      } finally {
+         temp.delete();
+      }//End try/catch
+   }//End method writeAtomically
+
+   /**
+    * Packs the prerendered characters of this {@link SpriteFont} into a {@link TextureAtlas},
+    * so text drawn by a {@link SpriteBatch} using the atlas shares a batch with the other packed textures.
+    * @param atlas the atlas to pack into.
+    * @return the region the characters were packed into.
+    */
+   public TextureRegion pack(TextureAtlas atlas){
+      return atlas.add(characterTexture);
+   }//End method pack
+
+   /**
+    * Gets the memory the prerendered characters take on the GPU.
+    * @return the size in bytes.
+    */
+   @Override public long getSizeInBytes(){
+      return characterTexture == null ? 0 : characterTexture.getSizeInBytes();
+   }//End method getSizeInBytes
+
+   /**
+    * Deletes the prerendered characters from OpenGL.
+    */
+   @Override public void dispose(){
+      if(characterTexture != null){
+         characterTexture.dispose();
+      }//End if
+   }//End method dispose
+
+   private boolean hasDescent(char c){
+      return ("gjpqy").indexOf(c) >= 0;
+   }
+
+   /**
+    * Draws a string one character at a time, see {@link SpriteBatch#drawText(int, int, String, SpriteFont)}
+    * for drawing it from a cached {@link GlyphRun}.
+    * @param x the x coordinate to draw the text.
+    * @param y the y coordinate to draw the text.
+    * @param string the text to draw.
+    * @param batch the batch to draw with.
+    */
    public void drawTextString(int x, int y, String string, SpriteBatch batch){
       for(int i = 0; i < string.length(); i++){
          char character = string.charAt(i);
          if(character == SPACE){
-            x += metrics.stringWidth(" ");
+            x += spaceWidth;
             continue;
          }//End if
-         if(!characterMap.containsKey(character)){
+         if(!validCharacter(character)){
             continue;
          }//End if
-         Rectangle bounds = characterMap.get(character);
-         batch.draw(characterTexture, x, y, bounds.width, bounds.height,bounds.x, bounds.y, 0);
-         x += bounds.width;
+         int g = (character - base) * GLYPH_SIZE;
+         batch.draw(characterTexture, x, y, glyphs[g + 2], glyphs[g + 3],
+               uvs[g], uvs[g + 1], uvs[g + 2], uvs[g + 3], 0, 0, RotationOrigin.TOP_LEFT);
+         x += glyphs[g + 2];
       }//End for
    }//End method drawTextString
-   
+
+   /**
+    * Gets a string laid out as a {@link GlyphRun}, from the strings recently laid out if it is one of them
+    * so redrawing unchanged text such as labels does not lay it out again.
+    * @param x the x coordinate to draw the text.
+    * @param y the y coordinate to draw the text.
+    * @param text the text to lay out.
+    * @param colour the colour to draw the text.
+    * @param atlas the atlas the characters are drawn from if they were packed into it, or null.
+    * @return the laid out text, valid until this font lays out another string in its place.
+    */
+   public GlyphRun getGlyphRun(int x, int y, String text, Colour colour, TextureAtlas atlas){
+      int hash = (text.hashCode() * 31 + x) * 31 + y;
+      int slot = (hash ^ (hash >>> 16)) & (RUN_CACHE_SIZE - 1);
+      GlyphRun run = runs[slot];
+      if(run == null){
+         run = new GlyphRun();
+         runs[slot] = run;
+      }//End if
+      if(!run.matches(this, text, x, y, colour, atlas)){
+         layout(x, y, text, colour, atlas, run);
+      }//End if
+      return run;
+   }//End method getGlyphRun
+
+   /**
+    * Lays out a string into a {@link GlyphRun}.
+    * @param x the x coordinate to draw the text.
+    * @param y the y coordinate to draw the text.
+    * @param text the text to lay out.
+    * @param colour the colour to draw the text.
+    * @param atlas the atlas the characters are drawn from if they were packed into it, or null.
+    * @param run the run to lay out into, its previous contents are replaced.
+    */
+   public void layout(int x, int y, String text, Colour colour, TextureAtlas atlas, GlyphRun run){
+      TextureRegion region = atlas == null ? null : atlas.getRegion(characterTexture);
+      float u = 0, v = 0, du = 1, dv = 1;
+      if(region != null){
+         u = region.getU();
+         v = region.getV();
+         du = region.getU2() - u;
+         dv = region.getV2() - v;
+      }//End if
+      run.reset(this, text, x, y, colour, atlas, region == null ? characterTexture : region.getTexture());
+      for(int i = 0; i < text.length(); i++){
+         char character = text.charAt(i);
+         if(character == SPACE){
+            x += spaceWidth;
+            continue;
+         }//End if
+         if(!validCharacter(character)){
+            continue;
+         }//End if
+         int g = (character - base) * GLYPH_SIZE;
+         run.add(x, y, glyphs[g + 2], glyphs[g + 3],
+               u + uvs[g] * du, v + uvs[g + 1] * dv, u + uvs[g + 2] * du, v + uvs[g + 3] * dv);
+         x += glyphs[g + 2];
+      }//End for
+   }//End method layout
+
    public boolean validCharacter(char character){
       if(character >= base && character <= max){
          return true;
       }
       return false;
    }//End method validCharacter
-   
+
    @Override public List<String> validExtensions() {
       return null;
    }
-   
+
+   /**
+    * Gets the Java2D {@link FontMetrics} of this font, creating the {@link Font} if it was loaded baked.
+    * @return the metrics of the font.
+    */
    public FontMetrics getMetrics(){
+      if(metrics == null){
+         String[] fontType = fontName.substring(0, fontName.lastIndexOf(".")).split("-");
+         Font font = new Font(fontType[1], Font.PLAIN, Integer.parseInt(fontType[0]));
+         metrics = new BufferedImage(1, 1, BufferedImage.TYPE_4BYTE_ABGR).createGraphics().getFontMetrics(font);
+      }//End if
       return metrics;
-   }
-   
+   }//End method getMetrics
+
+   /**
+    * Measures the width of a string as {@link #drawTextString(int, int, String, SpriteBatch)} draws it.
+    * @param string the string to measure.
+    * @return the width in pixels.
+    */
    public int measureStringWidth(String string){
-      return metrics.stringWidth(string);
-   }
-   
+      int width = 0;
+      for(int i = 0; i < string.length(); i++){
+         char character = string.charAt(i);
+         if(character == SPACE){
+            width += spaceWidth;
+         } else if(validCharacter(character)){
+            width += glyphs[(character - base) * GLYPH_SIZE + 2];
+         }//End if
+      }//End for
+      return width;
+   }//End method measureStringWidth
+
    public int getHeight(){
-      return metrics.getHeight();
+      return height;
    }
+
+   /**
+    * Bakes fonts into a directory, to ship them baked on the class path or in an archive.
+    * Usage: SpriteFont directory font [font...] where each font is a size and name such as 12-Monospaced.font.
+    * @param args arguments, see above.
+    * @throws IOException if a baked file can not be written.
+    */
+   public static void main(String[] args) throws IOException{
+      if(args.length < 2){
+         System.err.println("Usage: SpriteFont directory font [font...]");
+         System.exit(1);
+      }//End if
+      for(int f = 1; f < args.length; f++){
+         SpriteFont font = new SpriteFont();
+         font.fontName = args[f];
+         writeAtomically(new File(args[0], args[f] + BAKED_EXTENSION), font.bake());
+      }//End for
+   }//End method main
 }
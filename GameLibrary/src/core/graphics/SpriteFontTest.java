@@ -0,0 +1,90 @@
+package core.graphics;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests a font baked into the cache reads back the same, and a damaged baked file is baked again.
+ */
+public class SpriteFontTest {
+   /**The font to bake.*/
+   private static final String FONT = "12-Monospaced.font";
+   /**Text measured to compare fonts.*/
+   private static final String TEXT = "Hello world gjpqy ~!";
+
+   /**The cache directory baked into.*/
+   private File cache;
+   /**The baked file of the font.*/
+   private File baked;
+   /**The cache directory in use before the test.*/
+   private File previous;
+
+   @Before public void createCache() throws IOException{
+      cache = Files.createTempDirectory("fonts").toFile();
+      baked = new File(cache, FONT + SpriteFont.BAKED_EXTENSION);
+      previous = SpriteFont.getCacheDirectory();
+      SpriteFont.setCacheDirectory(cache);
+   }//End method createCache
+
+   @After public void deleteCache(){
+      SpriteFont.setCacheDirectory(previous);
+      baked.delete();
+      cache.delete();
+   }//End method deleteCache
+
+   /**
+    * Decodes the test font.
+    * @return the font.
+    */
+   private static SpriteFont decode(){
+      SpriteFont font = new SpriteFont();
+      font.decode(FONT);
+      return font;
+   }//End method decode
+
+   /**
+    * Checks a font matches the one it was baked from.
+    * @param expected the font baked.
+    * @param actual the font to check.
+    */
+   private static void assertSameFont(SpriteFont expected, SpriteFont actual){
+      assertEquals(expected.getHeight(), actual.getHeight());
+      assertEquals(expected.measureStringWidth(TEXT), actual.measureStringWidth(TEXT));
+   }//End method assertSameFont
+
+   @Test public void testRoundTrip() throws IOException{
+      SpriteFont rasterised = decode();
+      assertTrue(baked.isFile());
+      byte[] bytes = Files.readAllBytes(baked.toPath());
+      //A font baked again would replace the file, so it keeps this time only if it is read.
+      assertTrue(baked.setLastModified(0));
+      SpriteFont read = decode();
+      assertEquals(0, baked.lastModified());
+      assertSameFont(rasterised, read);
+      assertArrayEquals(bytes, Files.readAllBytes(baked.toPath()));
+   }//End method testRoundTrip
+
+   @Test public void testCorruptFallsBack() throws IOException{
+      SpriteFont rasterised = decode();
+      byte[] bytes = Files.readAllBytes(baked.toPath());
+      //Truncated part way through the glyph table.
+      Files.write(baked.toPath(), Arrays.copyOf(bytes, 60));
+      assertSameFont(rasterised, decode());
+      assertArrayEquals(bytes, Files.readAllBytes(baked.toPath()));
+      //A name length running past the end of the file.
+      byte[] corrupt = bytes.clone();
+      corrupt[8] = (byte) 0xFF;
+      corrupt[9] = (byte) 0xFF;
+      Files.write(baked.toPath(), corrupt);
+      assertSameFont(rasterised, decode());
+      assertArrayEquals(bytes, Files.readAllBytes(baked.toPath()));
+   }//End method testCorruptFallsBack
+}//End class SpriteFontTest
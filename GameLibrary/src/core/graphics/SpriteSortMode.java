@@ -0,0 +1,46 @@
+package core.graphics;
+
+/**
+ * A SpriteSortMode defines the order a {@link SpriteBatch} draws sprites in.
+ * The sorted modes sort by a 64 bit key built from the shader, texture and depth of each sprite,
+ * sprites with equal keys keep the order they were drawn in.
+ */
+public enum SpriteSortMode {
+   /**Sprites are drawn in the order given, the batch is flushed whenever the texture changes.**/
+   IMMEDIATE,
+   /**Sprites are grouped by shader then texture, then drawn front to back within each texture.**/
+   TEXTURE,
+   /**Sprites are drawn from the greatest depth to the least, for blending translucent sprites correctly.**/
+   BACK_TO_FRONT,
+   /**Sprites are drawn from the least depth to the greatest, so the depth test rejects hidden pixels early.**/
+   FRONT_TO_BACK;
+
+   /**
+    * Builds the sort key of a sprite. Up to 256 shaders and 65536 textures per batch are told apart.
+    * @param shader the index of the sprite's shader in the batch.
+    * @param texture the index of the sprite's texture in the batch.
+    * @param depth the depth of the sprite.
+    * @return the key to sort the sprite by.
+    */
+   long key(int shader, int texture, float depth){
+      long state = ((shader & 0xFFL) << 16) | (texture & 0xFFFFL);
+      long ascending = ascendingBits(depth);
+      switch(this){
+      case TEXTURE: return (state << 40) | (ascending << 8);
+      case BACK_TO_FRONT: return ((~ascending & 0xFFFFFFFFL) << 32) | (state << 8);
+      case FRONT_TO_BACK: return (ascending << 32) | (state << 8);
+      default: return 0;
+      }//End switch
+   }//End method key
+
+   /**
+    * Maps a float onto an unsigned 32 bit value in the same order, so depths can be radix sorted.
+    * @param value the float.
+    * @return the value's bits, with negative values flipped and the sign bit inverted.
+    */
+   private static long ascendingBits(float value){
+      int bits = Float.floatToIntBits(value);
+      bits ^= (bits >> 31) | 0x80000000;
+      return bits & 0xFFFFFFFFL;
+   }//End method ascendingBits
+}//End enum SpriteSortMode
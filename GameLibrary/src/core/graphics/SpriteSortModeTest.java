@@ -0,0 +1,53 @@
+package core.graphics;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+/**
+ * Tests the sort keys of the sorted modes order sprites by depth, including negative depths, and by state.
+ */
+public class SpriteSortModeTest {
+   /**Depths in ascending order.*/
+   private static final float[] DEPTHS = new float[]{ Float.NEGATIVE_INFINITY, -100f, -1.5f, -1f, -Float.MIN_VALUE, 0f, Float.MIN_VALUE, 0.25f, 1f, 100f };
+
+   /**
+    * Compares two keys as unsigned values, the order the batch sorts them in.
+    * @param a the first key.
+    * @param b the second key.
+    * @return <code>true</code> if a sorts before b.
+    */
+   private static boolean before(long a, long b){
+      return (a ^ Long.MIN_VALUE) < (b ^ Long.MIN_VALUE);
+   }//End method before
+
+   @Test public void testFrontToBack(){
+      for(int d = 1; d < DEPTHS.length; d++){
+         assertTrue(DEPTHS[d] + " after " + DEPTHS[d - 1],
+               before(SpriteSortMode.FRONT_TO_BACK.key(0, 0, DEPTHS[d - 1]), SpriteSortMode.FRONT_TO_BACK.key(0, 0, DEPTHS[d])));
+      }//End for
+      //Depth comes before state.
+      assertTrue(before(SpriteSortMode.FRONT_TO_BACK.key(255, 65535, -1f), SpriteSortMode.FRONT_TO_BACK.key(0, 0, 1f)));
+   }//End method testFrontToBack
+
+   @Test public void testBackToFront(){
+      for(int d = 1; d < DEPTHS.length; d++){
+         assertTrue(DEPTHS[d] + " before " + DEPTHS[d - 1],
+               before(SpriteSortMode.BACK_TO_FRONT.key(0, 0, DEPTHS[d]), SpriteSortMode.BACK_TO_FRONT.key(0, 0, DEPTHS[d - 1])));
+      }//End for
+      assertTrue(before(SpriteSortMode.BACK_TO_FRONT.key(255, 65535, 1f), SpriteSortMode.BACK_TO_FRONT.key(0, 0, -1f)));
+   }//End method testBackToFront
+
+   @Test public void testTexture(){
+      //State comes first, shader before texture, then depth front to back.
+      assertTrue(before(SpriteSortMode.TEXTURE.key(0, 1, 100f), SpriteSortMode.TEXTURE.key(0, 2, -100f)));
+      assertTrue(before(SpriteSortMode.TEXTURE.key(0, 65535, 0f), SpriteSortMode.TEXTURE.key(1, 0, 0f)));
+      for(int d = 1; d < DEPTHS.length; d++){
+         assertTrue(before(SpriteSortMode.TEXTURE.key(3, 7, DEPTHS[d - 1]), SpriteSortMode.TEXTURE.key(3, 7, DEPTHS[d])));
+      }//End for
+   }//End method testTexture
+
+   @Test public void testImmediate(){
+      assertEquals(0, SpriteSortMode.IMMEDIATE.key(5, 9, -3f));
+   }//End method testImmediate
+}//End class SpriteSortModeTest
@@ -28,10 +28,16 @@ public class Texture2D extends Resource {
    private int width;
    /**The height of this texture**/
    private int height;
-   /**The OpenGL reference of this texture**/
+   /**The OpenGL reference of this texture, 0 until first needed so textures can be decoded off the OpenGL thread**/
    private int glRef;
+   /**The decoded RGBA pixels waiting for {@link #upload()}, null once uploaded**/
+   private ByteBuffer decoded;
    /**The colour data for this texture, only populated if requested by the user.**/
    private Colour[][] colourData;
+   /**Whether a copy of the pixels is kept in {@link #pixels}.**/
+   private boolean keepPixels;
+   /**The ARGB pixels of this texture row by row, kept in step with OpenGL when {@link #keepPixels} is set, otherwise null.**/
+   private int[] pixels;
 
    /**
     * Constructs an empty Texture2D.
@@ -45,7 +51,6 @@ public class Texture2D extends Resource {
     * @param blank1by1 if true the texture will be made to be a 1x1 white pixel with an alpha of 255.
     */
    public Texture2D(boolean blank1by1){
-      glRef = glGenTextures();
       if(blank1by1){
          createBlankOneByOne();
       }//End if
@@ -56,29 +61,51 @@ public class Texture2D extends Resource {
     */
    @Override public void load(String fileName) {
       try {
-         InputStream stream = ResourceManager.getInputStreamForFilename(fileName);
+         decode(fileName);
+         upload();
+      } catch (IOException e) {
+         e.printStackTrace();
+      }//End try catch
+   }
+
+   /**
+    * Decodes the PNG without making any OpenGL calls, so can be done on any thread.
+    * @param fileName the file to decode.
+    * @throws IOException if the file can not be read.
+    */
+   @Override public void decode(String fileName) throws IOException {
+      ByteBuffer buffer;
+      try(InputStream stream = ResourceManager.getInputStreamForFilename(fileName)){
          PNGDecoder decoder = new PNGDecoder(stream);
          width = decoder.getWidth();
          height = decoder.getHeight();
-         //Create the texture in openGL
-         glBindTexture(GL_TEXTURE_2D, glRef);
          //Load the png information from the PNG decoder
-         ByteBuffer buffer = BufferUtils.createByteBuffer(4 * width * height);
+         buffer = BufferUtils.createByteBuffer(4 * width * height);
          decoder.decode(buffer, width * 4, PNGDecoder.Format.RGBA);
-         buffer.flip();
+      }//End try
+      buffer.flip();
+      decoded = buffer;
+      if(keepPixels){
+         pixels = ImageUtils.readPixelsFromBuffer(buffer, new int[width * height]);
+      }//End if
+   }//End method decode
 
-         //Set the default texture parameters //TODO maybe add some options to specify these
-         glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT );
-         glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT );
-         glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST );
-         glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST );
-         //load the texture data into graphics memory
-         glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
-         glBindTexture(GL_TEXTURE_2D, 0);
-      } catch (IOException e) {
-         e.printStackTrace();
-      }//End try catch
-   }
+   /**
+    * Uploads the decoded PNG to OpenGL, must be called on the OpenGL thread.
+    */
+   @Override public void upload() {
+      //Create the texture in openGL
+      glBindTexture(GL_TEXTURE_2D, getRef());
+      //Set the default texture parameters //TODO maybe add some options to specify these
+      glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT );
+      glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT );
+      glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST );
+      glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST );
+      //load the texture data into graphics memory
+      glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, decoded);
+      glBindTexture(GL_TEXTURE_2D, 0);
+      decoded = null;
+   }//End method upload
    
    /**
     * Loads this {@link Texture2D} using the colour data from a {@link BufferedImage}.
@@ -89,6 +116,9 @@ public class Texture2D extends Resource {
       width = image.getWidth();
       height = image.getHeight();
       ByteBuffer buffer = ImageUtils.createBufferFromImage(image);
+      if(keepPixels){
+         pixels = image.getRGB(0, 0, width, height, null, 0, width);
+      }//End if
       //Set the default texture parameters //TODO maybe add some options to specify these
       glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT );
       glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT );
@@ -100,10 +130,69 @@ public class Texture2D extends Resource {
       unbind();
    }//End method load.
 
+   /**
+    * Loads this {@link Texture2D} from pixels that are already decoded, must be called on the OpenGL thread.
+    * @param pixels the RGBA pixels, from position 0, in a direct buffer.
+    * @param width the width of the pixels.
+    * @param height the height of the pixels.
+    */
+   public void load(ByteBuffer pixels, int width, int height){
+      this.width = width;
+      this.height = height;
+      decoded = pixels;
+      if(keepPixels){
+         this.pixels = ImageUtils.readPixelsFromBuffer(pixels, new int[width * height]);
+      }//End if
+      upload();
+   }//End method load
+
+   /**
+    * Creates empty, fully transparent storage for this {@link Texture2D}, to be filled with
+    * {@link #update(int, int, int, int, int[])}.
+    * @param width the width of the texture.
+    * @param height the height of the texture.
+    */
+   public void create(int width, int height){
+      this.width = width;
+      this.height = height;
+      glBindTexture(GL_TEXTURE_2D, getRef());
+      ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
+      glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_S, GL_REPEAT );
+      glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_WRAP_T, GL_REPEAT );
+      glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MAG_FILTER, GL_NEAREST );
+      glTexParameteri( GL_TEXTURE_2D, GL_TEXTURE_MIN_FILTER, GL_NEAREST );
+      glTexImage2D(GL_TEXTURE_2D, 0, GL_RGBA8, width, height, 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+      glBindTexture(GL_TEXTURE_2D, 0);
+      if(keepPixels){
+         pixels = new int[width * height];
+      }//End if
+   }//End method create
+
+   /**
+    * Replaces an area of this {@link Texture2D}.
+    * @param x the x pixel of the area.
+    * @param y the y pixel of the area.
+    * @param width the width of the area.
+    * @param height the height of the area.
+    * @param pixels the ARGB pixels of the area, row by row.
+    */
+   public void update(int x, int y, int width, int height, int[] pixels){
+      glBindTexture(GL_TEXTURE_2D, getRef());
+      glPixelStorei(GL_UNPACK_ALIGNMENT, 4);
+      glTexSubImage2D(GL_TEXTURE_2D, 0, x, y, width, height, GL_RGBA, GL_UNSIGNED_BYTE, ImageUtils.createBufferFromPixels(pixels));
+      glBindTexture(GL_TEXTURE_2D, 0);
+      if(this.pixels != null){
+         for(int row = 0; row < height; row++){
+            System.arraycopy(pixels, row * width, this.pixels, (y + row) * this.width + x, width);
+         }//End for
+      }//End if
+      colourData = null;
+   }//End method update
+
    private void createBlankOneByOne(){
       width = 1;
       height = 1;
-      glBindTexture(GL_TEXTURE_2D, glRef);
+      glBindTexture(GL_TEXTURE_2D, getRef());
       ByteBuffer buffer = BufferUtils.createByteBuffer(4);
       buffer.put((byte)0xFF);
       buffer.put((byte)0xFF);
@@ -119,33 +208,82 @@ public class Texture2D extends Resource {
    }
    
    /**
-    * Gets a {@link BufferedImage} from the data in this texture.
-    * This method iterates over each pixel in the texture, so can be a bit slow.
+    * Sets whether this texture keeps a copy of its pixels, so reading them does not wait on OpenGL.
+    * Set before loading the texture to take the copy from the loaded pixels, otherwise it is read back
+    * from OpenGL the next time the pixels are asked for.
+    * @param keepPixels true to keep a copy of the pixels, false to drop it.
+    */
+   public void setKeepPixels(boolean keepPixels){
+      this.keepPixels = keepPixels;
+      if(!keepPixels){
+         pixels = null;
+      }//End if
+   }//End method setKeepPixels
+
+   /**
+    * Gets a {@link BufferedImage} from the data in this texture. The image shares the array returned by
+    * {@link #getPixels()}, so it should not be drawn on while this texture keeps its pixels.
     * @return a {@link BufferedImage} from the data in the current texture
     */
    public BufferedImage getBufferedImageFromData(){
+      return ImageUtils.createImageFromPixels(getPixels(), width, height);
+   }//End method getBufferedImageFromData
+   
+   /**
+    * Gets the pixels of this texture, from the copy kept if {@link #setKeepPixels(boolean)} is set,
+    * otherwise read back from OpenGL.
+    * @return the ARGB pixels of this texture, row by row from the first row uploaded. When kept this is
+    * the copy itself, which must be changed through {@link #update(int, int, int, int, int[])} instead.
+    */
+   public int[] getPixels(){
+      if(pixels != null){
+         return pixels;
+      }//End if
       ByteBuffer buffer = BufferUtils.createByteBuffer(width * height * 4);
       bind();
       glGetTexImage(GL_TEXTURE_2D, 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
-      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
-      for(int x = 0; x < width; x++){
-         for(int y = height - 1; y > 0 ; y--){
-            int i = (x + (width * y)) * 4;
-            int r = buffer.get(i) & 0xFF;
-            int g = buffer.get(i + 1) & 0xFF;
-            int b = buffer.get(i + 2) & 0xFF;
-            int a = buffer.get(i + 3) & 0xFF;
-            image.setRGB(x, y, (a << 24) | (r << 16) | (g << 8) | b);
-         }//End for
+      unbind();
+      int[] read = ImageUtils.readPixelsFromBuffer(buffer, new int[width * height]);
+      if(keepPixels){
+         pixels = read;
+      }//End if
+      return read;
+   }//End method getPixels
+
+   /**
+    * Copies an area of the pixels of this texture into an array.
+    * @param x the x pixel of the area.
+    * @param y the y pixel of the area.
+    * @param width the width of the area.
+    * @param height the height of the area.
+    * @param destination the array to copy the ARGB pixels of the area into, row by row.
+    * @param offset the index in the array of the first pixel.
+    * @return the array.
+    */
+   public int[] getPixels(int x, int y, int width, int height, int[] destination, int offset){
+      int[] source = getPixels();
+      for(int row = 0; row < height; row++){
+         System.arraycopy(source, (y + row) * this.width + x, destination, offset + row * width, width);
       }//End for
-      return image;
-   }//End method getBufferedImageFromData
-   
+      return destination;
+   }//End method getPixels
+
+   /**
+    * Gets a single pixel of this texture.
+    * @param x the x pixel.
+    * @param y the y pixel.
+    * @return the ARGB colour of the pixel.
+    */
+   public int getPixel(int x, int y){
+      return getPixels()[y * width + x];
+   }//End method getPixel
+
    /**
     * Gets the colour data for this texture.
     * @return the {@link Colour} data for this texture as a 2D array.
+    * @deprecated creates an object for every pixel, use {@link #getPixels()}.
     */
-   public Colour[][] getColourData(){
+   @Deprecated public Colour[][] getColourData(){
       if(colourData == null){
          colourData = getSubImageColourData(0, 0, width, height);
       }//End if
@@ -159,20 +297,16 @@ public class Texture2D extends Resource {
     * @param width the width of the area to get the {@link Colour} data from.
     * @param height the height of the area to get the {@link Colour} data from.
     * @return a 2 dimensional array containing the {@link Colour} data of the sub section of this {@link Texture2D}.
+    * @deprecated creates an object for every pixel, use {@link #getPixels(int, int, int, int, int[], int)}.
     */
-   public Colour[][] getSubImageColourData(int startX, int startY, int width, int height){
+   @Deprecated public Colour[][] getSubImageColourData(int startX, int startY, int width, int height){
       Colour[][] colourData = new Colour[width][height];
-      ByteBuffer buffer = BufferUtils.createByteBuffer(this.width * this.height * 4);
-      bind();
-      glGetTexImage(GL_TEXTURE_2D, 0, GL_RGBA, GL_UNSIGNED_BYTE, buffer);
+      int[] pixels = getPixels();
       for(int x = startX; x < startX + width; x++){
          for(int y = startY; y < startY + height; y++){
-            int i = (x + (this.width * y)) * 4;
-            int r = unsignedByteToInt(buffer.get(i));
-            int g = unsignedByteToInt(buffer.get(i + 1));
-            int b = unsignedByteToInt(buffer.get(i + 2));
-            int a = unsignedByteToInt(buffer.get(i + 3));
-            colourData[x - startX][y - startY] = new Colour(r / 255f, g / 255f, b / 255f, a / 255f); 
+            int pixel = pixels[x + this.width * y];
+            colourData[x - startX][y - startY] = new Colour(((pixel >> 16) & 0xFF) / 255f, ((pixel >> 8) & 0xFF) / 255f,
+                  (pixel & 0xFF) / 255f, (pixel >>> 24) / 255f);
          }//End for
       }//End method for
       return colourData;
@@ -196,17 +330,17 @@ public class Texture2D extends Resource {
     * @param h the height of the area to grab the sub image from.
     * @return a {@link BufferedImage} containing the colour data from the specified sub area 
     * on this {@link Texture2D}.
-    * @see #getColourData()
+    * @see #getPixels(int, int, int, int, int[], int)
     */
    public BufferedImage getSubImage(int x, int y, int w, int h){
-      return getBufferedImageFromData().getSubimage(x, y, w, h);
+      return ImageUtils.createImageFromPixels(getPixels(x, y, w, h, new int[w * h], 0), w, h);
    }//End method getSubImage
    
    /**
     * Method to bind this texture to OpenGL
     */
    public void bind(){
-      glBindTexture(GL_TEXTURE_2D, glRef);
+      glBindTexture(GL_TEXTURE_2D, getRef());
    }//End method bind
 
    /**
@@ -248,11 +382,34 @@ public class Texture2D extends Resource {
       this.height = height;
    }//end method setHeight
 
+   /**
+    * Gets the memory this texture takes on the GPU.
+    * @return the size in bytes, 4 per pixel.
+    */
+   @Override public long getSizeInBytes(){
+      return 4L * width * height;
+   }//End method getSizeInBytes
+
+   /**
+    * Deletes this texture from OpenGL.
+    */
+   @Override public void dispose(){
+      pixels = null;
+      colourData = null;
+      if(glRef != 0){
+         glDeleteTextures(glRef);
+         glRef = 0;
+      }//End if
+   }//End method dispose
+
    /**
     * Gets the OpenGL reference of this texture
     * @return the OpenGL reference of this texture
     */
    public int getRef() {
+      if(glRef == 0){
+         glRef = glGenTextures();
+      }//End if
       return glRef;
    }//End method getRef
 
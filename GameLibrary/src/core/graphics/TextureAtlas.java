@@ -0,0 +1,200 @@
+package core.graphics;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Packs images into shared {@link Texture2D} pages, so sprites from different images can be drawn
+ * by a {@link SpriteBatch} without a draw call per texture switch.
+ * Images are placed left to right on shelves, and each image has its edge pixels repeated into a border
+ * so a region never samples its neighbours. Only the newest page is packed into, when an image does
+ * not fit a new page is started.
+ * The atlas makes OpenGL calls so must be used on the thread owning the context.
+ */
+public class TextureAtlas {
+   /**The default width and height of a page in pixels.**/
+   public static final int DEFAULT_PAGE_SIZE = 1024;
+   /**The border around each image, filled with its edge pixels.**/
+   private static final int BORDER = 1;
+
+   /**The width and height of each page.**/
+   private int pageSize;
+   /**The pages of this atlas, the last one is being packed into.**/
+   private List<Texture2D> pages = new ArrayList<Texture2D>();
+   /**The shelves of the current page, each holds {y, height, next free x}.**/
+   private List<int[]> shelves = new ArrayList<int[]>();
+   /**The height of the current page used by shelves.**/
+   private int usedHeight;
+   /**The regions packed by name.**/
+   private Map<String, TextureRegion> regions = new HashMap<String, TextureRegion>();
+   /**The regions of packed {@link Texture2D}s.**/
+   private Map<Texture2D, TextureRegion> textureRegions = new IdentityHashMap<Texture2D, TextureRegion>();
+
+   /**
+    * Constructs a new {@link TextureAtlas} with pages of {@link #DEFAULT_PAGE_SIZE}.
+    */
+   public TextureAtlas(){
+      this(DEFAULT_PAGE_SIZE);
+   }//End constructor
+
+   /**
+    * Constructs a new {@link TextureAtlas}.
+    * @param pageSize the width and height of each page in pixels.
+    */
+   public TextureAtlas(int pageSize){
+      this.pageSize = pageSize;
+   }//End constructor
+
+   /**
+    * Packs an image into this atlas, an image already packed under the name is not packed again.
+    * @param name the name to find the region by.
+    * @param image the image to pack.
+    * @return the region the image was packed into.
+    */
+   public TextureRegion add(String name, BufferedImage image){
+      TextureRegion region = regions.get(name);
+      if(region == null){
+         int[] pixels = image.getRGB(0, 0, image.getWidth(), image.getHeight(), null, 0, image.getWidth());
+         region = pack(pixels, image.getWidth(), image.getHeight());
+         regions.put(name, region);
+      }//End if
+      return region;
+   }//End method add
+
+   /**
+    * Packs a loaded {@link Texture2D} into this atlas. Once packed, a {@link SpriteBatch} using this atlas
+    * draws the texture from its region instead, so it can share a batch with everything else in the atlas.
+    * Texture coordinates outside 0 to 1, relying on the texture repeating, are not supported once packed.
+    * @param texture the texture to pack.
+    * @return the region the texture was packed into.
+    */
+   public TextureRegion add(Texture2D texture){
+      TextureRegion region = textureRegions.get(texture);
+      if(region == null){
+         region = pack(texture.getPixels(), texture.getWidth(), texture.getHeight());
+         textureRegions.put(texture, region);
+         if(texture.getName() != null){
+            regions.put(texture.getName(), region);
+         }//End if
+      }//End if
+      return region;
+   }//End method add
+
+   /**
+    * Gets a packed region by name.
+    * @param name the name the region was packed under.
+    * @return the region, null if nothing was packed under the name.
+    */
+   public TextureRegion getRegion(String name){
+      return regions.get(name);
+   }//End method getRegion
+
+   /**
+    * Gets the region a {@link Texture2D} was packed into.
+    * @param texture the texture.
+    * @return the region, null if the texture has not been packed.
+    */
+   public TextureRegion getRegion(Texture2D texture){
+      return textureRegions.get(texture);
+   }//End method getRegion
+
+   /**
+    * Gets the number of pages in this atlas, each needs its own draw call.
+    * @return the number of pages.
+    */
+   public int getPageCount(){
+      return pages.size();
+   }//End method getPageCount
+
+   /**
+    * Places pixels in the current page, starting a new page if they do not fit.
+    * @param pixels the ARGB pixels, row by row.
+    * @param width the width of the image.
+    * @param height the height of the image.
+    * @return the region the pixels were placed in.
+    */
+   private TextureRegion pack(int[] pixels, int width, int height){
+      int paddedWidth = width + BORDER * 2;
+      int paddedHeight = height + BORDER * 2;
+      if(paddedWidth > pageSize || paddedHeight > pageSize){
+         throw new IllegalArgumentException("An image of " + width + "x" + height + " does not fit on a page of " + pageSize);
+      }//End if
+      int[] shelf = findShelf(paddedWidth, paddedHeight);
+      if(shelf == null){
+         newPage();
+         shelf = findShelf(paddedWidth, paddedHeight);
+      }//End if
+      int x = shelf[2];
+      int y = shelf[0];
+      shelf[2] += paddedWidth;
+      Texture2D page = pages.get(pages.size() - 1);
+      page.update(x, y, paddedWidth, paddedHeight, addBorder(pixels, width, height));
+      return new TextureRegion(page, x + BORDER, y + BORDER, width, height);
+   }//End method pack
+
+   /**
+    * Finds the shelf of the current page an image fits best, opening a new shelf if none fit.
+    * @param width the width of the image with its border.
+    * @param height the height of the image with its border.
+    * @return the shelf, null if the current page is full.
+    */
+   private int[] findShelf(int width, int height){
+      int[] best = null;
+      for(int[] shelf : shelves){
+         if(shelf[1] >= height && shelf[2] + width <= pageSize && (best == null || shelf[1] < best[1])){
+            best = shelf;
+         }//End if
+      }//End for
+      if(best == null && !pages.isEmpty() && usedHeight + height <= pageSize){
+         best = new int[]{ usedHeight, height, 0 };
+         shelves.add(best);
+         usedHeight += height;
+      }//End if
+      return best;
+   }//End method findShelf
+
+   /**
+    * Starts a new, empty page.
+    */
+   private void newPage(){
+      Texture2D page = createPageTexture();
+      page.create(pageSize, pageSize);
+      page.setName("atlas-page-" + pages.size());
+      pages.add(page);
+      shelves.clear();
+      usedHeight = 0;
+   }//End method newPage
+
+   /**
+    * Creates the empty texture of a new page, before it is sized.
+    * @return the texture.
+    */
+   Texture2D createPageTexture(){
+      return new Texture2D();
+   }//End method createPageTexture
+
+   /**
+    * Surrounds pixels with a border repeating their edge pixels.
+    * @param pixels the ARGB pixels, row by row.
+    * @param width the width of the image.
+    * @param height the height of the image.
+    * @return the pixels with a border of {@link #BORDER} on every side.
+    */
+   private static int[] addBorder(int[] pixels, int width, int height){
+      int paddedWidth = width + BORDER * 2;
+      int paddedHeight = height + BORDER * 2;
+      int[] padded = new int[paddedWidth * paddedHeight];
+      for(int y = 0; y < paddedHeight; y++){
+         int sourceY = Math.min(Math.max(y - BORDER, 0), height - 1);
+         for(int x = 0; x < paddedWidth; x++){
+            int sourceX = Math.min(Math.max(x - BORDER, 0), width - 1);
+            padded[y * paddedWidth + x] = pixels[sourceY * width + sourceX];
+         }//End for
+      }//End for
+      return padded;
+   }//End method addBorder
+}//End class TextureAtlas
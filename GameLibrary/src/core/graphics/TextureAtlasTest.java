@@ -0,0 +1,123 @@
+package core.graphics;
+
+import static org.junit.Assert.*;
+
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests images are packed into pages without overlapping, with their borders, starting a new page
+ * once one is full. The pages are stand ins that record the pixels written rather than calling OpenGL.
+ */
+public class TextureAtlasTest {
+   /**The size of the pages packed into.*/
+   private static final int PAGE_SIZE = 64;
+
+   /**
+    * A page that records what is written to it.
+    */
+   private static class Page extends Texture2D {
+      /**The ARGB pixels of the page, row by row.*/
+      private int[] pixels;
+      /**The width and height of the page.*/
+      private int size;
+
+      @Override public void create(int width, int height){
+         size = width;
+         pixels = new int[width * height];
+      }//End method create
+
+      @Override public void update(int x, int y, int width, int height, int[] pixels){
+         for(int row = 0; row < height; row++){
+            for(int column = 0; column < width; column++){
+               assertEquals("overlapping write", 0, this.pixels[(y + row) * size + x + column]);
+               this.pixels[(y + row) * size + x + column] = pixels[row * width + column];
+            }//End for
+         }//End for
+      }//End method update
+
+      @Override public int getWidth(){
+         return size;
+      }//End method getWidth
+
+      @Override public int getHeight(){
+         return size;
+      }//End method getHeight
+   }//End class Page
+
+   /**
+    * An atlas packing into {@link Page}s.
+    */
+   private static class TestAtlas extends TextureAtlas {
+      TestAtlas(){
+         super(PAGE_SIZE);
+      }//End constructor
+
+      @Override Texture2D createPageTexture(){
+         return new Page();
+      }//End method createPageTexture
+   }//End class TestAtlas
+
+   /**
+    * Creates an image of a single colour.
+    * @param width the width of the image.
+    * @param height the height of the image.
+    * @param argb the colour, which must not be 0.
+    * @return the image.
+    */
+   private static BufferedImage image(int width, int height, int argb){
+      BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_ARGB);
+      for(int y = 0; y < height; y++){
+         for(int x = 0; x < width; x++){
+            image.setRGB(x, y, argb);
+         }//End for
+      }//End for
+      return image;
+   }//End method image
+
+   @Test public void testPacking(){
+      TextureAtlas atlas = new TestAtlas();
+      List<TextureRegion> packed = new ArrayList<TextureRegion>();
+      for(int i = 0; i < 40; i++){
+         int width = 6 + i * 3 % 11;
+         int height = 4 + i * 5 % 13;
+         TextureRegion region = atlas.add("image" + i, image(width, height, 0xFF000000 | (i + 1)));
+         assertEquals(width, region.getWidth());
+         assertEquals(height, region.getHeight());
+         //Room for the border on every side.
+         assertTrue(region.getX() >= 1 && region.getY() >= 1);
+         assertTrue(region.getX() + width + 1 <= PAGE_SIZE && region.getY() + height + 1 <= PAGE_SIZE);
+         assertEquals(region.getX() / (float) PAGE_SIZE, region.getU(), 0f);
+         assertEquals((region.getY() + height) / (float) PAGE_SIZE, region.getV2(), 0f);
+         packed.add(region);
+      }//End for
+      for(int i = 0; i < packed.size(); i++){
+         TextureRegion region = packed.get(i);
+         Page page = (Page) region.getTexture();
+         //Every pixel of the region and its border is the image's colour.
+         for(int y = region.getY() - 1; y <= region.getY() + region.getHeight(); y++){
+            for(int x = region.getX() - 1; x <= region.getX() + region.getWidth(); x++){
+               assertEquals(0xFF000000 | (i + 1), page.pixels[y * PAGE_SIZE + x]);
+            }//End for
+         }//End for
+         assertSame(region, atlas.getRegion("image" + i));
+      }//End for
+      assertTrue(atlas.getPageCount() > 1);
+   }//End method testPacking
+
+   @Test public void testAddedOnce(){
+      TextureAtlas atlas = new TestAtlas();
+      TextureRegion region = atlas.add("image", image(8, 8, 0xFFFF0000));
+      assertSame(region, atlas.add("image", image(8, 8, 0xFF00FF00)));
+      assertEquals(1, atlas.getPageCount());
+      assertNull(atlas.getRegion("missing"));
+   }//End method testAddedOnce
+
+   @Test(expected = IllegalArgumentException.class) public void testTooLarge(){
+      //The border makes an image the size of the page too large for it.
+      new TestAtlas().add("image", image(PAGE_SIZE, 4, 0xFFFF0000));
+   }//End method testTooLarge
+}//End class TextureAtlasTest
@@ -0,0 +1,106 @@
+package core.graphics;
+
+/**
+ * A rectangular area of a {@link Texture2D}, such as an image packed into a {@link TextureAtlas}.
+ * Drawing regions on the same texture with a {@link SpriteBatch} does not break the batch.
+ */
+public class TextureRegion {
+   /**The {@link Texture2D} the region is on.**/
+   private Texture2D texture;
+   /**The position and size of the region in pixels.**/
+   private int x, y, width, height;
+   /**The texture coordinates of the region.**/
+   private float u, v, u2, v2;
+
+   /**
+    * Constructs a new {@link TextureRegion}.
+    * @param texture the {@link Texture2D} the region is on.
+    * @param x the x pixel of the region.
+    * @param y the y pixel of the region.
+    * @param width the width of the region in pixels.
+    * @param height the height of the region in pixels.
+    */
+   public TextureRegion(Texture2D texture, int x, int y, int width, int height){
+      this.texture = texture;
+      this.x = x;
+      this.y = y;
+      this.width = width;
+      this.height = height;
+      u = x / (float)texture.getWidth();
+      v = y / (float)texture.getHeight();
+      u2 = (x + width) / (float)texture.getWidth();
+      v2 = (y + height) / (float)texture.getHeight();
+   }//End constructor
+
+   /**
+    * Gets the {@link Texture2D} this region is on.
+    * @return the texture of this region.
+    */
+   public Texture2D getTexture(){
+      return texture;
+   }//End method getTexture
+
+   /**
+    * Gets the x pixel of this region.
+    * @return the x pixel of this region.
+    */
+   public int getX(){
+      return x;
+   }//End method getX
+
+   /**
+    * Gets the y pixel of this region.
+    * @return the y pixel of this region.
+    */
+   public int getY(){
+      return y;
+   }//End method getY
+
+   /**
+    * Gets the width of this region.
+    * @return the width of this region in pixels.
+    */
+   public int getWidth(){
+      return width;
+   }//End method getWidth
+
+   /**
+    * Gets the height of this region.
+    * @return the height of this region in pixels.
+    */
+   public int getHeight(){
+      return height;
+   }//End method getHeight
+
+   /**
+    * Gets the left texture coordinate of this region.
+    * @return the left texture coordinate.
+    */
+   public float getU(){
+      return u;
+   }//End method getU
+
+   /**
+    * Gets the top texture coordinate of this region.
+    * @return the top texture coordinate.
+    */
+   public float getV(){
+      return v;
+   }//End method getV
+
+   /**
+    * Gets the right texture coordinate of this region.
+    * @return the right texture coordinate.
+    */
+   public float getU2(){
+      return u2;
+   }//End method getU2
+
+   /**
+    * Gets the bottom texture coordinate of this region.
+    * @return the bottom texture coordinate.
+    */
+   public float getV2(){
+      return v2;
+   }//End method getV2
+}//End class TextureRegion
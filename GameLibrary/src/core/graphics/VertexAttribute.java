@@ -8,6 +8,8 @@ public class VertexAttribute {
    private int components;
    /**The location in glVertexAttribLocation this attribute will be bound to**/
    private int location;
+   /**The number of instances drawn before this attribute advances, 0 to advance every vertex**/
+   private int divisor;
       
    /**
     * Constructs a new {@link VertexAttribute}
@@ -20,6 +22,18 @@ public class VertexAttribute {
       this.name = name;
       this.components = numComponents;
    }//End constructor
+
+   /**
+    * Constructs a new {@link VertexAttribute} that advances per instance rather than per vertex.
+    * @param location the location in the shader this attribute will be bound to.
+    * @param name the name of this attribute.
+    * @param numComponents the number of vertices that make up this attribute.
+    * @param divisor the number of instances drawn before this attribute advances, 0 to advance every vertex.
+    */
+   public VertexAttribute(int location, String name, int numComponents, int divisor) {
+      this(location, name, numComponents);
+      this.divisor = divisor;
+   }//End constructor
    
    /**
     * Method to get the name of this attribute
@@ -44,5 +58,13 @@ public class VertexAttribute {
    public int getLocation(){
       return location;
    }//End method getLocation
+
+   /**
+    * Method to get the number of instances drawn before this attribute advances.
+    * @return the divisor of this attribute, 0 if it advances every vertex.
+    */
+   public int getDivisor(){
+      return divisor;
+   }//End method getDivisor
    
 }//End class VertexAttribute
\ No newline at end of file
@@ -1,16 +1,30 @@
 package core.graphics;
 
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.FloatBuffer;
+import java.nio.IntBuffer;
+import java.nio.ShortBuffer;
 import java.util.List;
 
 import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.GLContext;
 
 import static org.lwjgl.opengl.GL11.*;
+import static org.lwjgl.opengl.GL15.*;
 import static org.lwjgl.opengl.GL20.*;
+import static org.lwjgl.opengl.GL30.*;
+import static org.lwjgl.opengl.GL31.*;
+import static org.lwjgl.opengl.GL33.*;
 
 /**
  * A class to hold vertex information inside a buffer in memory local memory until
- * it is drawn
+ * it is drawn.
+ * 
+ * A streaming buffer instead writes into a GL buffer object. Where glMapBufferRange is available
+ * each batch is written straight into a mapped range of the buffer after the last batch, without
+ * synchronising, and the buffer is orphaned when it fills up, so the GPU never stalls the writer. 
+ * Without it the batch is staged locally and uploaded into a freshly orphaned buffer.
  */
 public class VertexBuffer {
    /**Constant defining the number of bytes in a Java 32bit float**/
@@ -23,6 +37,24 @@ public class VertexBuffer {
    private int vertCount;
    /**The total number of components in each individual vertex**/
    private int componentCount;
+   /**The GL buffer object of a streaming buffer, 0 if not streaming.*/
+   private int vbo;
+   /**The GL buffer object holding the vertex order, 0 if there is none.*/
+   private int ibo;
+   /**If true, batches are written into a mapped range of the buffer object rather than staged.*/
+   private boolean mapped;
+   /**The local copy of the vertex order, when not streaming.*/
+   private ShortBuffer order;
+   /**The local copy of the vertex order for buffers too large to index with shorts, when not streaming.*/
+   private IntBuffer largeOrder;
+   /**The offset in floats of the current batch in the buffer object.*/
+   private int batchStart;
+   /**The mapped range the current batch is written into, null if not mapped.*/
+   private ByteBuffer mapping;
+   /**The floats written into the current batch.*/
+   private int written;
+   /**The batch being drawn, the local buffer or the mapped range.*/
+   private FloatBuffer target;
 
    /**
     * Constructs a new {@link VertexBuffer}
@@ -30,26 +62,67 @@ public class VertexBuffer {
     * @param attributes a list of attributes in each vertex
     */
    public VertexBuffer(int vertices, List<VertexAttribute> attributes) {
+      this(vertices, attributes, false);
+   }//End constructor
+
+   /**
+    * Constructs a new {@link VertexBuffer}
+    * @param vertices the number of vertices this buffer can hold
+    * @param attributes a list of attributes in each vertex
+    * @param streaming if true the vertices are streamed through a GL buffer object
+    */
+   public VertexBuffer(int vertices, List<VertexAttribute> attributes, boolean streaming) {
       this.attributes = attributes.toArray(new VertexAttribute[attributes.size()]);
       for (VertexAttribute a : attributes){
          componentCount += a.getComponents();
       }//End for
       this.vertCount = vertices;
-      this.buffer = BufferUtils.createFloatBuffer(vertices * componentCount);
+      if(streaming){
+         mapped = GLContext.getCapabilities().OpenGL30;
+         vbo = glGenBuffers();
+         glBindBuffer(GL_ARRAY_BUFFER, vbo);
+         glBufferData(GL_ARRAY_BUFFER, (long) vertices * componentCount * BYTES_PER_FLOAT, GL_STREAM_DRAW);
+         glBindBuffer(GL_ARRAY_BUFFER, 0);
+      }//End if
+      if(!mapped){
+         this.buffer = BufferUtils.createFloatBuffer(vertices * componentCount);
+         target = buffer;
+      }//End if
    }//End constructor
 
    /**
-    * Flips this buffer
+    * Finishes writing the current batch, ready to draw it.
     */
    public void flip() {
-      buffer.flip();
+      if(mapping != null){
+         glBindBuffer(GL_ARRAY_BUFFER, vbo);
+         glUnmapBuffer(GL_ARRAY_BUFFER);
+         glBindBuffer(GL_ARRAY_BUFFER, 0);
+         mapping = null;
+      } else if(!mapped){
+         buffer.flip();
+         if(vbo != 0 && buffer.hasRemaining()){
+            //Orphan the storage the GPU may still be reading and upload into a fresh one.
+            glBindBuffer(GL_ARRAY_BUFFER, vbo);
+            glBufferData(GL_ARRAY_BUFFER, (long) vertCount * componentCount * BYTES_PER_FLOAT, GL_STREAM_DRAW);
+            glBufferSubData(GL_ARRAY_BUFFER, 0, buffer);
+            glBindBuffer(GL_ARRAY_BUFFER, 0);
+         }//End if
+      }//End if
    }//End method flip
 
    /**
-    * Method to clear the data in this buffer
+    * Method to clear the data in this buffer, starting a new batch.
     */
    public void clear() {
-      buffer.clear();
+      if(mapped){
+         batchStart += written;
+         written = 0;
+         target = null;
+      } else {
+         buffer.clear();
+         written = 0;
+      }//End if
    }//End method clear
 
    /**
@@ -57,13 +130,75 @@ public class VertexBuffer {
     * @param f the float to put in the buffer.
     */
    public VertexBuffer add(float f) {
-      buffer.put(f);
+      if(target == null){
+         map(1);
+      }//End if
+      target.put(f);
+      written++;
+      return this;
+   }//End method put
+
+   /**
+    * Puts a run of floats into this buffer, such as whole vertices assembled beforehand.
+    * @param data the floats to put.
+    * @param offset the index of the first float to put.
+    * @param length the number of floats to put.
+    * @return this buffer.
+    */
+   public VertexBuffer put(float[] data, int offset, int length) {
+      if(target == null){
+         map(length);
+      }//End if
+      target.put(data, offset, length);
+      written += length;
       return this;
    }//End method put
 
+   /**
+    * Gets the number of floats that can be put before the buffer must be drawn and cleared.
+    * @return the number of floats left in the current batch.
+    */
+   public int remaining() {
+      if(mapped){
+         return vertCount * componentCount - (target == null ? 0 : batchStart) - written;
+      }//End if
+      return buffer.remaining();
+   }//End method remaining
+
+   /**
+    * Maps the rest of the buffer object after the last batch for writing. If less than an eighth
+    * is left, the buffer is orphaned and mapped from the start rather than drawing a small batch.
+    * @param needed the floats needed straight away.
+    */
+   private void map(int needed) {
+      int capacity = vertCount * componentCount;
+      int access = GL_MAP_WRITE_BIT | GL_MAP_UNSYNCHRONIZED_BIT | GL_MAP_INVALIDATE_RANGE_BIT;
+      if(mustOrphan(capacity, batchStart, needed)){
+         batchStart = 0;
+         access = GL_MAP_WRITE_BIT | GL_MAP_INVALIDATE_BUFFER_BIT;
+      }//End if
+      glBindBuffer(GL_ARRAY_BUFFER, vbo);
+      mapping = glMapBufferRange(GL_ARRAY_BUFFER, (long) batchStart * BYTES_PER_FLOAT, 
+            (long) (capacity - batchStart) * BYTES_PER_FLOAT, access, mapping);
+      glBindBuffer(GL_ARRAY_BUFFER, 0);
+      target = mapping.order(ByteOrder.nativeOrder()).asFloatBuffer();
+      written = 0;
+   }//End method map
+
+   /**
+    * Checks whether a batch must orphan the buffer object and start again from the start of it.
+    * @param capacity the floats the buffer object holds.
+    * @param batchStart the offset in floats the batch would start at.
+    * @param needed the floats needed straight away.
+    * @return true if less than the floats needed, or less than an eighth of the buffer, is left.
+    */
+   static boolean mustOrphan(int capacity, int batchStart, int needed) {
+      return capacity - batchStart < Math.max(needed, capacity / 8);
+   }//End method mustOrphan
+
    /**
     * Method to get the {@link FloatBuffer} in this buffer
-    * @return the {@link FloatBuffer} containing all the vertex information
+    * @return the {@link FloatBuffer} containing all the vertex information, null if mapped.
     */
    public FloatBuffer buffer() {
       return buffer;
@@ -91,7 +226,21 @@ public class VertexBuffer {
    private void bind() {
       int offset = 0;
       int stride = componentCount * BYTES_PER_FLOAT;
-
+      if(vbo != 0){
+         //Mapped batches start after the last one, staged batches always start at 0.
+         int start = mapped ? batchStart : 0;
+         glBindBuffer(GL_ARRAY_BUFFER, vbo);
+         for (int i=0; i<attributes.length; i++) {
+            VertexAttribute a = attributes[i];
+            glEnableVertexAttribArray(a.getLocation());
+            glVertexAttribPointer(a.getLocation(), a.getComponents(), GL_FLOAT, false, stride, (long) (start + offset) * BYTES_PER_FLOAT);
+            if(a.getDivisor() != 0){
+               glVertexAttribDivisor(a.getLocation(), a.getDivisor());
+            }//End if
+            offset += a.getComponents();
+         }//End for
+         return;
+      }//End if
       for (int i=0; i<attributes.length; i++) {
          VertexAttribute a = attributes[i];
          buffer.position(offset);
@@ -105,16 +254,51 @@ public class VertexBuffer {
     * Binds and draws the data contained in this vertex buffer.
     * @param geom the OpenGL geometry mode to use.
     * @param first the index in the buffer to start drawing from.
-    * @param count the number of vertices to draw.
+    * @param count the number of vertices to draw, through the vertex order buffer if one is set.
     */
    public void draw(int geom, int first, int count) {
-      if(buffer.hasRemaining()){
-         bind();
+      if(mapped ? written == 0 : !buffer.hasRemaining()){
+         return;
+      }//End if
+      bind();
+      if(ibo != 0){
+         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+         boolean large = vertCount > 0x10000;
+         glDrawElements(geom, count, large ? GL_UNSIGNED_INT : GL_UNSIGNED_SHORT, (long) first * (large ? 4 : 2));
+         glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+      } else if(order != null){
+         order.limit(first + count).position(first);
+         glDrawElements(geom, order);
+      } else if(largeOrder != null){
+         largeOrder.limit(first + count).position(first);
+         glDrawElements(geom, largeOrder);
+      } else {
          glDrawArrays(geom, first, count);
-         unbind();
       }//End if
+      unbind();
    }//End method draw
 
+   /**
+    * Draws instances of the indexed geometry in another streaming buffer, reading the per instance
+    * attributes from this streaming buffer.
+    * @param geometry the buffer holding the vertices and vertex order of one instance.
+    * @param geom the OpenGL geometry mode to use.
+    * @param count the number of vertices in an instance, through the vertex order buffer.
+    * @param instances the number of instances to draw.
+    */
+   public void drawInstanced(VertexBuffer geometry, int geom, int count, int instances) {
+      if(instances == 0){
+         return;
+      }//End if
+      geometry.bind();
+      bind();
+      glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, geometry.ibo);
+      glDrawElementsInstanced(geom, count, geometry.vertCount > 0x10000 ? GL_UNSIGNED_INT : GL_UNSIGNED_SHORT, 0, instances);
+      glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
+      unbind();
+      geometry.unbind();
+   }//End method drawInstanced
+
    /**
     * Unbinds this buffer from the OpenGL context
     */
@@ -122,14 +306,85 @@ public class VertexBuffer {
       for (int i=0; i<attributes.length; i++) {
          VertexAttribute a = attributes[i];
          glDisableVertexAttribArray(a.getLocation());
+         if(a.getDivisor() != 0){
+            glVertexAttribDivisor(a.getLocation(), 0);
+         }//End if
       }//End for
+      if(vbo != 0){
+         glBindBuffer(GL_ARRAY_BUFFER, 0);
+      }//End if
    }//End method unbind
    
    /**
-    * Sets the vertex order buffer of this vertex buffer.
-    * @param order
+    * Sets the vertex order buffer of this vertex buffer. The order describes one primitive, such
+    * as {0, 1, 2, 2, 3, 0} for a quad of 4 vertices drawn as 2 triangles, and is repeated across
+    * the whole buffer so vertices shared within a primitive are only stored once.
+    * @param order the vertex indices of one primitive.
     */
    public void setVertexOrderBuffer(int[] order){
-      
+      int[] indices = repeatOrder(order, vertCount);
+      boolean large = vertCount > 0x10000;
+      IntBuffer ints = null;
+      ShortBuffer shorts = null;
+      if(large){
+         ints = BufferUtils.createIntBuffer(indices.length);
+         ints.put(indices).flip();
+      } else {
+         shorts = BufferUtils.createShortBuffer(indices.length);
+         for(int index : indices){
+            shorts.put((short) index);
+         }//End for
+         shorts.flip();
+      }//End if
+      if(vbo == 0){
+         this.order = shorts;
+         this.largeOrder = ints;
+         return;
+      }//End if
+      if(ibo == 0){
+         ibo = glGenBuffers();
+      }//End if
+      glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, ibo);
+      if(large){
+         glBufferData(GL_ELEMENT_ARRAY_BUFFER, ints, GL_STATIC_DRAW);
+      } else {
+         glBufferData(GL_ELEMENT_ARRAY_BUFFER, shorts, GL_STATIC_DRAW);
+      }//End if
+      glBindBuffer(GL_ELEMENT_ARRAY_BUFFER, 0);
    }//End method setVertexOrderBuffer
+
+   /**
+    * Repeats the vertex order of one primitive across every whole primitive that fits in a buffer.
+    * @param order the vertex indices of one primitive.
+    * @param vertices the number of vertices in the buffer.
+    * @return the vertex indices of every primitive.
+    */
+   static int[] repeatOrder(int[] order, int vertices){
+      int stride = 0;
+      for(int index : order){
+         stride = Math.max(stride, index + 1);
+      }//End for
+      int primitives = vertices / stride;
+      int[] indices = new int[primitives * order.length];
+      for(int p = 0; p < primitives; p++){
+         for(int i = 0; i < order.length; i++){
+            indices[p * order.length + i] = p * stride + order[i];
+         }//End for
+      }//End for
+      return indices;
+   }//End method repeatOrder
+
+   /**
+    * Deletes the GL buffer objects of this buffer.
+    */
+   public void dispose(){
+      if(vbo != 0){
+         glDeleteBuffers(vbo);
+         vbo = 0;
+      }//End if
+      if(ibo != 0){
+         glDeleteBuffers(ibo);
+         ibo = 0;
+      }//End if
+   }//End method dispose
 }//End class VertexBuffer
@@ -0,0 +1,54 @@
+package core.graphics;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+/**
+ * Tests the vertex order, space left and orphaning of a {@link VertexBuffer}, using only the parts
+ * of it that do not need an OpenGL context.
+ */
+public class VertexBufferTest {
+   /**The vertex order of a quad drawn as 2 triangles.*/
+   private static final int[] QUAD = { 0, 1, 2, 2, 3, 0 };
+
+   @Test public void testRepeatOrder(){
+      int[] expected = { 0, 1, 2, 2, 3, 0, 4, 5, 6, 6, 7, 4 };
+      assertArrayEquals(expected, VertexBuffer.repeatOrder(QUAD, 8));
+      //Vertices left over after the last whole primitive are not indexed.
+      assertArrayEquals(expected, VertexBuffer.repeatOrder(QUAD, 11));
+      assertEquals(0, VertexBuffer.repeatOrder(QUAD, 3).length);
+      //Indices past a short are kept for buffers indexed with ints.
+      int[] large = VertexBuffer.repeatOrder(QUAD, 0x10004);
+      assertEquals(0x10000 / 4 * 6 + 6, large.length);
+      assertEquals(0x10003, large[large.length - 2]);
+   }//End method testRepeatOrder
+
+   @Test public void testRemaining(){
+      VertexBuffer buffer = new VertexBuffer(4, Arrays.asList(new VertexAttribute(0, "position", 2)));
+      assertEquals(8, buffer.remaining());
+      buffer.add(1).add(2).add(3);
+      assertEquals(5, buffer.remaining());
+      buffer.put(new float[]{ 4, 5, 6, 7, 8 }, 1, 4);
+      assertEquals(1, buffer.remaining());
+      buffer.flip();
+      assertEquals(7, buffer.remaining());
+      buffer.clear();
+      assertEquals(8, buffer.remaining());
+   }//End method testRemaining
+
+   @Test public void testMustOrphan(){
+      int capacity = 800;
+      assertFalse(VertexBuffer.mustOrphan(capacity, 0, 8));
+      assertFalse(VertexBuffer.mustOrphan(capacity, 600, 8));
+      //Exactly an eighth left is still mapped after the last batch.
+      assertFalse(VertexBuffer.mustOrphan(capacity, 700, 100));
+      //Less than an eighth left orphans rather than drawing a small batch.
+      assertTrue(VertexBuffer.mustOrphan(capacity, 750, 8));
+      assertTrue(VertexBuffer.mustOrphan(capacity, capacity, 1));
+      //More needed straight away than is left orphans even with plenty left.
+      assertTrue(VertexBuffer.mustOrphan(capacity, 600, 250));
+   }//End method testMustOrphan
+}//End class VertexBufferTest
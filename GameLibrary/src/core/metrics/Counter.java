@@ -0,0 +1,34 @@
+package core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock free counter that can be incremented from any thread.
+ */
+public class Counter {
+   /**The running total.*/
+   private final AtomicLong total = new AtomicLong();
+
+   /**
+    * Adds one to this counter.
+    */
+   public void increment(){
+      total.incrementAndGet();
+   }//End method increment
+
+   /**
+    * Adds a value to this counter.
+    * @param value the value to add.
+    */
+   public void add(long value){
+      total.addAndGet(value);
+   }//End method add
+
+   /**
+    * Gets the total of this counter.
+    * @return the total.
+    */
+   public long getCount(){
+      return total.get();
+   }//End method getCount
+}//End class Counter
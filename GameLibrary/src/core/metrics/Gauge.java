@@ -0,0 +1,13 @@
+package core.metrics;
+
+/**
+ * A Gauge supplies a value that is read whenever the metrics are reported, see
+ * {@link MetricsRegistry#registerGauge(String, Gauge)}.
+ */
+public interface Gauge {
+   /**
+    * Gets the current value of this gauge, called from the reporting thread.
+    * @return the value.
+    */
+   public long getValue();
+}//End interface Gauge
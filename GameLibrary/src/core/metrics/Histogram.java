@@ -0,0 +1,123 @@
+package core.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock free histogram of non negative values with logarithmic buckets, in the style of
+ * HdrHistogram. Every power of two range is split into {@link #SUB_BUCKETS} linear buckets,
+ * so any recorded value is reported to within about 6% over the full range of a long.
+ */
+public class Histogram {
+   /**The number of linear buckets per power of two, as a power of two.*/
+   private static final int SUB_BUCKET_BITS = 4;
+   /**The number of linear buckets per power of two.*/
+   private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+   /**The number of buckets needed to cover every positive long.*/
+   private static final int BUCKETS = (64 - SUB_BUCKET_BITS) * SUB_BUCKETS;
+
+   /**The number of values recorded into each bucket.*/
+   private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+   /**The number of values recorded.*/
+   private final AtomicLong count = new AtomicLong();
+   /**The sum of the values recorded.*/
+   private final AtomicLong sum = new AtomicLong();
+   /**The largest value recorded.*/
+   private final AtomicLong max = new AtomicLong();
+
+   /**
+    * Gets the bucket a value is recorded into.
+    * @param value the value, negative values are treated as 0.
+    * @return the index of the bucket.
+    */
+   static int getBucket(long value){
+      if(value < SUB_BUCKETS * 2){
+         return (int) Math.max(value, 0);
+      }//End if
+      int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+      return (shift + 1) * SUB_BUCKETS + (int) ((value >> shift) - SUB_BUCKETS);
+   }//End method getBucket
+
+   /**
+    * Gets the largest value recorded into a bucket.
+    * @param bucket the index of the bucket.
+    * @return the largest value of the bucket.
+    */
+   static long getBucketLimit(int bucket){
+      if(bucket < SUB_BUCKETS * 2){
+         return bucket;
+      }//End if
+      int shift = bucket / SUB_BUCKETS - 1;
+      return ((long) (SUB_BUCKETS + bucket % SUB_BUCKETS) << shift) + (1L << shift) - 1;
+   }//End method getBucketLimit
+
+   /**
+    * Records a value.
+    * @param value the value to record.
+    */
+   public void record(long value){
+      counts.incrementAndGet(getBucket(value));
+      count.incrementAndGet();
+      sum.addAndGet(value);
+      long current;
+      while(value > (current = max.get()) && !max.compareAndSet(current, value));
+   }//End method record
+
+   /**
+    * Gets the value at a percentile, to the precision of the buckets.
+    * @param percentile the percentile, from 0 to 100.
+    * @return the value at the percentile, 0 if nothing has been recorded.
+    */
+   public long getPercentile(double percentile){
+      long total = count.get();
+      if(total == 0){
+         return 0;
+      }//End if
+      long target = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+      long seen = 0;
+      for(int b = 0; b < BUCKETS; b++){
+         seen += counts.get(b);
+         if(seen >= target){
+            return Math.min(getBucketLimit(b), max.get());
+         }//End if
+      }//End for
+      return max.get();
+   }//End method getPercentile
+
+   /**
+    * Gets the number of values recorded.
+    * @return the number of values.
+    */
+   public long getCount(){
+      return count.get();
+   }//End method getCount
+
+   /**
+    * Gets the mean of the values recorded.
+    * @return the mean, 0 if nothing has been recorded.
+    */
+   public double getMean(){
+      long total = count.get();
+      return total == 0 ? 0 : (double) sum.get() / total;
+   }//End method getMean
+
+   /**
+    * Gets the largest value recorded.
+    * @return the largest value.
+    */
+   public long getMax(){
+      return max.get();
+   }//End method getMax
+
+   /**
+    * Clears this histogram. Values recorded while it is being cleared may be partly lost.
+    */
+   public void reset(){
+      for(int b = 0; b < BUCKETS; b++){
+         counts.set(b, 0);
+      }//End for
+      count.set(0);
+      sum.set(0);
+      max.set(0);
+   }//End method reset
+}//End class Histogram
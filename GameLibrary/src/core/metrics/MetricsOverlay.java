@@ -0,0 +1,107 @@
+package core.metrics;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import core.graphics.SpriteBatch;
+import core.graphics.SpriteFont;
+
+/**
+ * Draws a set of metrics as lines of text with a {@link SpriteFont}. The text is rebuilt
+ * a few times a second rather than every frame so the overlay does not add garbage of its own.
+ */
+public class MetricsOverlay {
+   /**Nanoseconds between rebuilding the text.*/
+   private static final long REFRESH_NANOS = 250000000L;
+
+   /**The font to draw with.*/
+   private SpriteFont font;
+   /**Supplies each line of text.*/
+   private List<Line> lines = new ArrayList<Line>();
+   /**The text last built for each line.*/
+   private String[] text = new String[0];
+   /**The time the text was last built.*/
+   private long lastRefresh;
+
+   /**
+    * Constructs a new {@link MetricsOverlay}.
+    * @param font the {@link SpriteFont} to draw with.
+    */
+   public MetricsOverlay(SpriteFont font){
+      this.font = font;
+   }//End constructor
+
+   /**
+    * Adds a line showing a histogram of nanosecond timings as milliseconds.
+    * @param label the label of the line.
+    * @param histogram the histogram.
+    */
+   public void addTiming(final String label, final Histogram histogram){
+      lines.add(new Line(){
+         @Override public String build(){
+            return String.format("%s p50 %.2fms p99 %.2fms max %.2fms", label,
+                  histogram.getPercentile(50) / 1e6, histogram.getPercentile(99) / 1e6, histogram.getMax() / 1e6);
+         }//End method build
+      });
+   }//End method addTiming
+
+   /**
+    * Adds a line showing a histogram of counts.
+    * @param label the label of the line.
+    * @param histogram the histogram.
+    */
+   public void addHistogram(final String label, final Histogram histogram){
+      lines.add(new Line(){
+         @Override public String build(){
+            return String.format("%s p50 %d p99 %d max %d", label,
+                  histogram.getPercentile(50), histogram.getPercentile(99), histogram.getMax());
+         }//End method build
+      });
+   }//End method addHistogram
+
+   /**
+    * Adds a line showing a gauge from the {@link MetricsRegistry}.
+    * @param label the label of the line.
+    * @param name the name of the gauge.
+    */
+   public void addGauge(final String label, final String name){
+      final MetricsRegistry registry = MetricsRegistry.getMetricsRegistry();
+      lines.add(new Line(){
+         @Override public String build(){
+            return label + " " + registry.getGauge(name);
+         }//End method build
+      });
+   }//End method addGauge
+
+   /**
+    * Draws the overlay, the {@link SpriteBatch} must have been begun.
+    * @param batch the batch to draw with.
+    * @param x the x coordinate of the first line.
+    * @param y the y coordinate of the first line.
+    */
+   public void draw(SpriteBatch batch, int x, int y){
+      long now = System.nanoTime();
+      if(text.length != lines.size() || now - lastRefresh >= REFRESH_NANOS){
+         text = new String[lines.size()];
+         for(int l = 0; l < text.length; l++){
+            text[l] = lines.get(l).build();
+         }//End for
+         lastRefresh = now;
+      }//End if
+      for(String line : text){
+         batch.drawText(x, y, line, font);
+         y += font.getHeight();
+      }//End for
+   }//End method draw
+
+   /**
+    * Builds the text of a line of the overlay.
+    */
+   private interface Line {
+      /**
+       * Builds the text of the line from the current metrics.
+       * @return the text.
+       */
+      String build();
+   }//End interface Line
+}//End class MetricsOverlay
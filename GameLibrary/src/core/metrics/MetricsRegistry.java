@@ -0,0 +1,287 @@
+package core.metrics;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.Writer;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The MetricsRegistry is a singleton holding the named {@link Counter}s, {@link Histogram}s and gauges
+ * of the application. Metrics are created on first use and can be updated from any thread without locking.
+ * 
+ * The registry can dump itself periodically to a JSON or CSV file, started from {@link core.Game} when the
+ * system property "metrics.dump" names the file, with "metrics.period" giving the period in milliseconds.
+ * Histograms are cleared after each dump so every dump covers one period.
+ */
+public class MetricsRegistry {
+   /**System property naming the file to dump metrics to.*/
+   public static final String DUMP_PROPERTY = "metrics.dump";
+   /**System property giving the dump period in milliseconds.*/
+   public static final String PERIOD_PROPERTY = "metrics.period";
+   /**The default dump period in milliseconds.*/
+   private static final long DEFAULT_PERIOD = 10000;
+   /**Percentiles reported for histograms.*/
+   private static final double[] PERCENTILES = new double[]{ 50, 90, 99, 99.9 };
+
+   /**The MetricsRegistry singleton.*/
+   private static MetricsRegistry metricsRegistry;
+   /**The counters mapped to their names.*/
+   private ConcurrentMap<String, Counter> counters = new ConcurrentSkipListMap<String, Counter>();
+   /**The histograms mapped to their names.*/
+   private ConcurrentMap<String, Histogram> histograms = new ConcurrentSkipListMap<String, Histogram>();
+   /**The gauges mapped to their names, read when the metrics are reported.*/
+   private Map<String, Gauge> gauges = new ConcurrentSkipListMap<String, Gauge>();
+   /**The executor running the periodic dump, null if not dumping.*/
+   private ScheduledExecutorService dumper;
+   /**Whether the CSV header has been written to the dump file.*/
+   private boolean headerWritten;
+
+   /**
+    * Constructs a new {@link MetricsRegistry} with the garbage collector gauges.
+    */
+   private MetricsRegistry(){
+      registerGauge("gc.count", new Gauge(){
+         @Override public long getValue(){
+            long total = 0;
+            for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+               total += Math.max(gc.getCollectionCount(), 0);
+            }//End for
+            return total;
+         }//End method getValue
+      });
+      registerGauge("gc.timeMillis", new Gauge(){
+         @Override public long getValue(){
+            long total = 0;
+            for(GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()){
+               total += Math.max(gc.getCollectionTime(), 0);
+            }//End for
+            return total;
+         }//End method getValue
+      });
+      registerGauge("heap.usedBytes", new Gauge(){
+         @Override public long getValue(){
+            return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+         }//End method getValue
+      });
+   }//End constructor
+
+   /**
+    * Gets the {@link MetricsRegistry} singleton for this application.
+    * @return the {@link MetricsRegistry} singleton for this application.
+    */
+   public synchronized static MetricsRegistry getMetricsRegistry(){
+      if(metricsRegistry == null){
+         metricsRegistry = new MetricsRegistry();
+      }//End if
+      return metricsRegistry;
+   }//End method getMetricsRegistry
+
+   /**
+    * Gets the {@link Counter} with the given name, creating it if needed.
+    * Callers on a hot path should keep the returned counter rather than look it up each time.
+    * @param name the name of the counter.
+    * @return the counter.
+    */
+   public Counter getCounter(String name){
+      Counter counter = counters.get(name);
+      if(counter == null){
+         Counter created = new Counter();
+         counter = counters.putIfAbsent(name, created);
+         if(counter == null){
+            counter = created;
+         }//End if
+      }//End if
+      return counter;
+   }//End method getCounter
+
+   /**
+    * Gets the {@link Histogram} with the given name, creating it if needed.
+    * Callers on a hot path should keep the returned histogram rather than look it up each time.
+    * @param name the name of the histogram.
+    * @return the histogram.
+    */
+   public Histogram getHistogram(String name){
+      Histogram histogram = histograms.get(name);
+      if(histogram == null){
+         Histogram created = new Histogram();
+         histogram = histograms.putIfAbsent(name, created);
+         if(histogram == null){
+            histogram = created;
+         }//End if
+      }//End if
+      return histogram;
+   }//End method getHistogram
+
+   /**
+    * Registers a gauge, a value read whenever the metrics are reported.
+    * @param name the name of the gauge.
+    * @param gauge supplies the value of the gauge, called from the reporting thread.
+    */
+   public void registerGauge(String name, Gauge gauge){
+      gauges.put(name, gauge);
+   }//End method registerGauge
+
+   /**
+    * Gets the current value of a gauge.
+    * @param name the name of the gauge.
+    * @return the value of the gauge, 0 if there is no gauge with the name.
+    */
+   public long getGauge(String name){
+      Gauge gauge = gauges.get(name);
+      return gauge == null ? 0 : gauge.getValue();
+   }//End method getGauge
+
+   /**
+    * Writes every metric as a single line JSON object.
+    * @param out the writer to write to.
+    */
+   public void writeJSON(Writer out){
+      PrintWriter writer = new PrintWriter(out);
+      writer.print("{\"time\": " + System.currentTimeMillis());
+      for(Entry<String, Counter> counter : counters.entrySet()){
+         writer.print(", \"" + counter.getKey() + "\": " + counter.getValue().getCount());
+      }//End for
+      for(Entry<String, Gauge> gauge : gauges.entrySet()){
+         writer.print(", \"" + gauge.getKey() + "\": " + gauge.getValue().getValue());
+      }//End for
+      for(Entry<String, Histogram> entry : histograms.entrySet()){
+         Histogram histogram = entry.getValue();
+         writer.print(", \"" + entry.getKey() + "\": {\"count\": " + histogram.getCount());
+         writer.print(String.format(", \"mean\": %.1f", histogram.getMean()));
+         for(double percentile : PERCENTILES){
+            writer.print(", \"p" + formatPercentile(percentile) + "\": " + histogram.getPercentile(percentile));
+         }//End for
+         writer.print(", \"max\": " + histogram.getMax() + "}");
+      }//End for
+      writer.println("}");
+      writer.flush();
+   }//End method writeJSON
+
+   /**
+    * Writes every metric as a CSV row, optionally preceded by a header row.
+    * Metrics created after the header was written are not reported until a new header is written.
+    * @param out the writer to write to.
+    * @param header whether to write the header row.
+    */
+   public void writeCSV(Writer out, boolean header){
+      PrintWriter writer = new PrintWriter(out);
+      if(header){
+         writer.print("time");
+         for(String name : counters.keySet()){
+            writer.print("," + name);
+         }//End for
+         for(String name : gauges.keySet()){
+            writer.print("," + name);
+         }//End for
+         for(String name : histograms.keySet()){
+            writer.print("," + name + ".count," + name + ".mean");
+            for(double percentile : PERCENTILES){
+               writer.print("," + name + ".p" + formatPercentile(percentile));
+            }//End for
+            writer.print("," + name + ".max");
+         }//End for
+         writer.println();
+      }//End if
+      writer.print(System.currentTimeMillis());
+      for(Counter counter : counters.values()){
+         writer.print("," + counter.getCount());
+      }//End for
+      for(Gauge gauge : gauges.values()){
+         writer.print("," + gauge.getValue());
+      }//End for
+      for(Histogram histogram : histograms.values()){
+         writer.print("," + histogram.getCount() + String.format(",%.1f", histogram.getMean()));
+         for(double percentile : PERCENTILES){
+            writer.print("," + histogram.getPercentile(percentile));
+         }//End for
+         writer.print("," + histogram.getMax());
+      }//End for
+      writer.println();
+      writer.flush();
+   }//End method writeCSV
+
+   /**
+    * Formats a percentile for a metric name, 99.9 becomes 999.
+    * @param percentile the percentile.
+    * @return the formatted percentile.
+    */
+   private static String formatPercentile(double percentile){
+      return percentile == Math.floor(percentile) ? Integer.toString((int) percentile) : Double.toString(percentile).replace(".", "");
+   }//End method formatPercentile
+
+   /**
+    * Starts appending the metrics to a file periodically, as JSON lines if the name ends in .json and CSV otherwise.
+    * Any previous dump is stopped.
+    * @param file the file to append to.
+    * @param periodMillis the period between dumps in milliseconds.
+    */
+   public synchronized void startDump(final File file, long periodMillis){
+      stopDump();
+      headerWritten = false;
+      final boolean json = file.getName().toLowerCase().endsWith(".json");
+      dumper = Executors.newSingleThreadScheduledExecutor(new ThreadFactory(){
+         @Override public Thread newThread(Runnable runnable){
+            Thread thread = new Thread(runnable, "Metrics dump");
+            thread.setDaemon(true);
+            return thread;
+         }//End method newThread
+      });
+      dumper.scheduleAtFixedRate(new Runnable(){
+         @Override public void run(){
+            dump(file, json);
+         }//End method run
+      }, periodMillis, periodMillis, TimeUnit.MILLISECONDS);
+   }//End method startDump
+
+   /**
+    * Starts the periodic dump if the {@link #DUMP_PROPERTY} system property is set.
+    */
+   public void startDumpFromProperties(){
+      String file = System.getProperty(DUMP_PROPERTY);
+      if(file != null){
+         startDump(new File(file), Long.getLong(PERIOD_PROPERTY, DEFAULT_PERIOD));
+      }//End if
+   }//End method startDumpFromProperties
+
+   /**
+    * Appends the metrics to the dump file and clears the histograms.
+    * @param file the file to append to.
+    * @param json whether to write JSON rather than CSV.
+    */
+   private void dump(File file, boolean json){
+      try(Writer writer = new FileWriter(file, true)){
+         if(json){
+            writeJSON(writer);
+         } else {
+            writeCSV(writer, !headerWritten);
+            headerWritten = true;
+         }//End if
+         for(Histogram histogram : histograms.values()){
+            histogram.reset();
+         }//End for
+      } catch (IOException e){
+         e.printStackTrace();
+      }//End try/catch
+   }//End method dump
+
+   /**
+    * Stops the periodic dump, if it is running.
+    */
+   public synchronized void stopDump(){
+      if(dumper != null){
+         dumper.shutdown();
+         dumper = null;
+      }//End if
+   }//End method stopDump
+}//End class MetricsRegistry
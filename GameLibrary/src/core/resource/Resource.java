@@ -9,6 +9,8 @@ import java.util.List;
 public abstract class Resource {
    /** The name of this {@link Resource}.**/
    private String name;
+   /** The references held through {@link ResourceManager#acquire(Class, String)}, guarded by the manager.**/
+   int references;
 
    public Resource(){};
    
@@ -19,6 +21,40 @@ public abstract class Resource {
       throw new UnsupportedOperationException("The load operation has not been implemented for this type " + getClass().getSimpleName());
    }//End method load
 
+   /**
+    * Does the part of loading this resource that needs no OpenGL context, such as reading and
+    * decoding the file, so it can be done on a worker thread by {@link ResourceManager#loadAsync(Class, String)}.
+    * By default the whole of {@link #load(String)} is done here, resources making OpenGL calls
+    * override this and {@link #upload()}.
+    * @param fileName the file to load.
+    * @throws IOException if the file can not be read.
+    */
+   public void decode(String fileName) throws IOException{
+      load(fileName);
+   }//End method decode
+
+   /**
+    * Does the part of loading this resource that needs the OpenGL context, after {@link #decode(String)}.
+    * Called on the OpenGL thread, nothing by default.
+    */
+   public void upload(){
+   }//End method upload
+
+   /**
+    * Gets the memory this resource holds, counted against the budget of the {@link ResourceManager}.
+    * @return the size in bytes, 0 by default.
+    */
+   public long getSizeInBytes(){
+      return 0;
+   }//End method getSizeInBytes
+
+   /**
+    * Releases anything this resource holds outside the Java heap once evicted, called on the OpenGL thread.
+    * Nothing by default.
+    */
+   public void dispose(){
+   }//End method dispose
+
    /**
     * Gets the name of this {@link Resource}.
     * @return the name of this resource as found in the {@link ResourceManager}.
@@ -0,0 +1,190 @@
+package core.resource;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+import utility.ByteBufferInputStream;
+
+/**
+ * A ResourceArchive is a single pack file of resources, written by {@link ResourceArchiveBuilder} and
+ * mounted with {@link ResourceManager#mount(File)}. The whole file is memory mapped once and stored entries
+ * are handed out as slices of the mapping, so reading a resource is neither a file open nor a copy.
+ * <p>
+ * The format, big endian:
+ * <pre>
+ * int     magic, "GPAK"
+ * int     version, 1
+ * int     entry count
+ * entries: short name length, UTF-8 name, long offset, int stored size, int size, byte method
+ * data of every entry, at the offsets given
+ * </pre>
+ * where method is {@link #STORED} or {@link #DEFLATED}.
+ */
+public class ResourceArchive {
+   /**The first four bytes of an archive.*/
+   public static final int MAGIC = 0x4750414B;
+   /**The version of the format.*/
+   public static final int VERSION = 1;
+   /**An entry stored as is.*/
+   public static final byte STORED = 0;
+   /**An entry compressed with deflate.*/
+   public static final byte DEFLATED = 1;
+
+   /**The archive file.*/
+   private File file;
+   /**The mapping of the whole archive.*/
+   private MappedByteBuffer mapping;
+   /**The entries by name.*/
+   private Map<String, Entry> entries = new HashMap<String, Entry>();
+
+   /**
+    * Opens and maps an archive, reading its index.
+    * @param file the archive file.
+    * @throws IOException if the file can not be read or is not an archive.
+    */
+   public ResourceArchive(File file) throws IOException{
+      this.file = file;
+      try(RandomAccessFile input = new RandomAccessFile(file, "r"); FileChannel channel = input.getChannel()){
+         //The mapping stays valid after the channel is closed.
+         mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      }//End try
+      ByteBuffer index = mapping.duplicate();
+      if(index.remaining() < 12 || index.getInt() != MAGIC){
+         throw new IOException(file + " is not a resource archive");
+      }//End if
+      int version = index.getInt();
+      if(version != VERSION){
+         throw new IOException(file + " is version " + version + " of the archive format, expected " + VERSION);
+      }//End if
+      int count = index.getInt();
+      for(int e = 0; e < count; e++){
+         byte[] name = new byte[index.getShort() & 0xFFFF];
+         index.get(name);
+         Entry entry = new Entry(index.getLong(), index.getInt(), index.getInt(), index.get());
+         if(entry.offset + entry.storedSize > mapping.capacity()){
+            throw new IOException(file + " is truncated");
+         }//End if
+         entries.put(new String(name, StandardCharsets.UTF_8), entry);
+      }//End for
+   }//End constructor
+
+   /**
+    * Checks whether this archive holds a resource.
+    * @param name the name of the resource, a path relative to the directory the archive was built from.
+    * @return <code>true</code> if the archive holds the resource.
+    */
+   public boolean contains(String name){
+      return entries.containsKey(name);
+   }//End method contains
+
+   /**
+    * Gets the names of the resources in this archive.
+    * @return the names.
+    */
+   public Set<String> getNames(){
+      return Collections.unmodifiableSet(entries.keySet());
+   }//End method getNames
+
+   /**
+    * Gets the bytes of a resource. Stored entries are a read only slice of the mapping, deflated entries are
+    * inflated into a new buffer.
+    * @param name the name of the resource.
+    * @return the bytes of the resource from position 0, null if the archive does not hold it.
+    * @throws IOException if a deflated entry is corrupt.
+    */
+   public ByteBuffer getBuffer(String name) throws IOException{
+      Entry entry = entries.get(name);
+      if(entry == null){
+         return null;
+      }//End if
+      ByteBuffer slice = mapping.asReadOnlyBuffer();
+      slice.position((int) entry.offset);
+      slice.limit((int) entry.offset + entry.storedSize);
+      slice = slice.slice();
+      if(entry.method == STORED){
+         return slice;
+      }//End if
+      Inflater inflater = new Inflater();
+      try {
+         byte[] compressed = new byte[entry.storedSize];
+         slice.get(compressed);
+         inflater.setInput(compressed);
+         byte[] inflated = new byte[entry.size];
+         int length = 0;
+         while(length < inflated.length && !inflater.finished()){
+            int read = inflater.inflate(inflated, length, inflated.length - length);
+            if(read == 0 && (inflater.needsInput() || inflater.needsDictionary())){
+               break;
+            }//End if
+            length += read;
+         }//End while
+         if(length != entry.size){
+            throw new IOException(name + " in " + file + " is corrupt");
+         }//End if
+         return ByteBuffer.wrap(inflated);
+      } catch (DataFormatException e) {
+         throw new IOException(name + " in " + file + " is corrupt", e);
+      } finally {
+         inflater.end();
+      }//End try/catch
+   }//End method getBuffer
+
+   /**
+    * Gets a resource as a stream reading from {@link #getBuffer(String)}.
+    * @param name the name of the resource.
+    * @return the stream, null if the archive does not hold the resource.
+    * @throws IOException if a deflated entry is corrupt.
+    */
+   public InputStream getInputStream(String name) throws IOException{
+      ByteBuffer buffer = getBuffer(name);
+      return buffer == null ? null : new ByteBufferInputStream(buffer);
+   }//End method getInputStream
+
+   /**
+    * Gets the archive file.
+    * @return the file.
+    */
+   public File getFile(){
+      return file;
+   }//End method getFile
+
+   /**
+    * An entry in the index of an archive.
+    */
+   private static class Entry {
+      /**The offset of the data from the start of the archive.*/
+      private long offset;
+      /**The size of the data in the archive.*/
+      private int storedSize;
+      /**The size of the resource.*/
+      private int size;
+      /**How the data is stored.*/
+      private byte method;
+
+      /**
+       * Constructs a new {@link Entry}.
+       * @param offset the offset of the data from the start of the archive.
+       * @param storedSize the size of the data in the archive.
+       * @param size the size of the resource.
+       * @param method how the data is stored.
+       */
+      Entry(long offset, int storedSize, int size, byte method){
+         this.offset = offset;
+         this.storedSize = storedSize;
+         this.size = size;
+         this.method = method;
+      }//End constructor
+   }//End class Entry
+}//End class ResourceArchive
@@ -0,0 +1,168 @@
+package core.resource;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.Deflater;
+
+/**
+ * Builds a {@link ResourceArchive} from a directory of resources, each named by its path relative
+ * to the directory with '/' separators, the same name it would be loaded by from the class path.
+ * Entries are deflated only where it saves at least an eighth, so already compressed files such as PNGs are stored.
+ * Usage: ResourceArchiveBuilder archive directory [-store]
+ * where -store stores every entry without compressing.
+ */
+public class ResourceArchiveBuilder {
+   /**The files to add, by name.*/
+   private List<String> names = new ArrayList<String>();
+   /**The contents of the files to add.*/
+   private List<byte[]> contents = new ArrayList<byte[]>();
+   /**Whether entries may be compressed.*/
+   private boolean compress = true;
+
+   /**
+    * Sets whether entries may be compressed.
+    * @param compress <code>false</code> to store every entry as is.
+    */
+   public void setCompress(boolean compress){
+      this.compress = compress;
+   }//End method setCompress
+
+   /**
+    * Adds a resource.
+    * @param name the name to load the resource by.
+    * @param content the bytes of the resource.
+    */
+   public void add(String name, byte[] content){
+      names.add(name);
+      contents.add(content);
+   }//End method add
+
+   /**
+    * Adds every file under a directory, in name order so the same files always build the same archive.
+    * @param directory the directory.
+    * @throws IOException if a file can not be read.
+    */
+   public void addDirectory(File directory) throws IOException{
+      List<String> files = new ArrayList<String>();
+      listFiles(directory, "", files);
+      Collections.sort(files);
+      for(String name : files){
+         add(name, Files.readAllBytes(new File(directory, name).toPath()));
+      }//End for
+   }//End method addDirectory
+
+   /**
+    * Lists the files under a directory and its subdirectories.
+    * @param directory the directory.
+    * @param prefix the name of the directory relative to the one being added, ending in '/', empty for that one.
+    * @param files receives the names of the files relative to the directory being added.
+    * @throws IOException if a directory can not be listed.
+    */
+   private static void listFiles(File directory, String prefix, List<String> files) throws IOException{
+      File[] children = directory.listFiles();
+      if(children == null){
+         throw new IOException("Unable to list " + directory);
+      }//End if
+      for(File child : children){
+         if(child.isDirectory()){
+            listFiles(child, prefix + child.getName() + "/", files);
+         } else if(child.isFile()){
+            files.add(prefix + child.getName());
+         }//End if
+      }//End for
+   }//End method listFiles
+
+   /**
+    * Writes the archive.
+    * @param file the archive file to write.
+    * @throws IOException if the file can not be written.
+    */
+   public void write(File file) throws IOException{
+      int count = names.size();
+      byte[][] encodedNames = new byte[count][];
+      byte[][] stored = new byte[count][];
+      byte[] methods = new byte[count];
+      long indexSize = 12;
+      for(int e = 0; e < count; e++){
+         encodedNames[e] = names.get(e).getBytes(StandardCharsets.UTF_8);
+         indexSize += 2 + encodedNames[e].length + 8 + 4 + 4 + 1;
+         byte[] content = contents.get(e);
+         byte[] deflated = compress ? deflate(content) : null;
+         if(deflated != null && deflated.length <= content.length - content.length / 8){
+            stored[e] = deflated;
+            methods[e] = ResourceArchive.DEFLATED;
+         } else {
+            stored[e] = content;
+            methods[e] = ResourceArchive.STORED;
+         }//End if
+      }//End for
+      try(DataOutputStream output = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)))){
+         output.writeInt(ResourceArchive.MAGIC);
+         output.writeInt(ResourceArchive.VERSION);
+         output.writeInt(count);
+         long offset = indexSize;
+         for(int e = 0; e < count; e++){
+            output.writeShort(encodedNames[e].length);
+            output.write(encodedNames[e]);
+            output.writeLong(offset);
+            output.writeInt(stored[e].length);
+            output.writeInt(contents.get(e).length);
+            output.writeByte(methods[e]);
+            offset += stored[e].length;
+         }//End for
+         for(int e = 0; e < count; e++){
+            output.write(stored[e]);
+         }//End for
+      }//End try
+   }//End method write
+
+   /**
+    * Deflates bytes.
+    * @param content the bytes.
+    * @return the deflated bytes.
+    */
+   private static byte[] deflate(byte[] content){
+      Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+      try {
+         deflater.setInput(content);
+         deflater.finish();
+         byte[] buffer = new byte[content.length + 64];
+         int length = 0;
+         while(!deflater.finished()){
+            if(length == buffer.length){
+               buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }//End if
+            length += deflater.deflate(buffer, length, buffer.length - length);
+         }//End while
+         return Arrays.copyOf(buffer, length);
+      } finally {
+         deflater.end();
+      }//End try/catch
+   }//End method deflate
+
+   /**
+    * Entry point.
+    * @param args arguments, see the class documentation.
+    * @throws IOException if a file can not be read or the archive written.
+    */
+   public static void main(String[] args) throws IOException{
+      if(args.length < 2){
+         System.err.println("Usage: ResourceArchiveBuilder archive directory [-store]");
+         System.exit(1);
+      }//End if
+      ResourceArchiveBuilder builder = new ResourceArchiveBuilder();
+      builder.setCompress(!(args.length > 2 && args[2].equals("-store")));
+      builder.addDirectory(new File(args[1]));
+      builder.write(new File(args[0]));
+      System.out.println("Packed " + builder.names.size() + " resources into " + args[0]);
+   }//End method main
+}//End class ResourceArchiveBuilder
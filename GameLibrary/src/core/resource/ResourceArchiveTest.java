@@ -0,0 +1,132 @@
+package core.resource;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Random;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests resources survive a round trip through an archive, deflated or stored.
+ */
+public class ResourceArchiveTest {
+   /**A directory of resources to pack.*/
+   private File directory;
+   /**The archive written.*/
+   private File archive;
+   /**Text that deflates well.*/
+   private byte[] text;
+   /**Random bytes that do not deflate.*/
+   private byte[] noise;
+
+   @Before public void createResources() throws IOException{
+      directory = Files.createTempDirectory("archive").toFile();
+      archive = File.createTempFile("archive", ".gpak");
+      StringBuilder builder = new StringBuilder();
+      for(int line = 0; line < 200; line++){
+         builder.append("line ").append(line).append(" of some text that repeats\n");
+      }//End for
+      text = builder.toString().getBytes(StandardCharsets.UTF_8);
+      noise = new byte[5000];
+      new Random(7).nextBytes(noise);
+      new File(directory, "fonts/baked").mkdirs();
+      Files.write(new File(directory, "readme.txt").toPath(), text);
+      Files.write(new File(directory, "fonts/noise.bin").toPath(), noise);
+      Files.write(new File(directory, "fonts/baked/empty.dat").toPath(), new byte[0]);
+   }//End method createResources
+
+   @After public void deleteResources(){
+      delete(directory);
+      archive.delete();
+   }//End method deleteResources
+
+   /**
+    * Deletes a file, or a directory and everything in it.
+    * @param file the file to delete.
+    */
+   private static void delete(File file){
+      File[] children = file.listFiles();
+      if(children != null){
+         for(File child : children){
+            delete(child);
+         }//End for
+      }//End if
+      file.delete();
+   }//End method delete
+
+   /**
+    * Reads the whole of a stream.
+    * @param stream the stream to read.
+    * @return the bytes read.
+    * @throws IOException if the stream can not be read.
+    */
+   private static byte[] readAll(InputStream stream) throws IOException{
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      byte[] buffer = new byte[777];
+      int read;
+      while((read = stream.read(buffer)) != -1){
+         bytes.write(buffer, 0, read);
+      }//End while
+      stream.close();
+      return bytes.toByteArray();
+   }//End method readAll
+
+   /**
+    * Checks an archive holds the resources with their contents.
+    * @param resources the archive.
+    * @throws IOException if a resource can not be read.
+    */
+   private void assertContents(ResourceArchive resources) throws IOException{
+      assertEquals(new HashSet<String>(Arrays.asList("readme.txt", "fonts/noise.bin", "fonts/baked/empty.dat")), resources.getNames());
+      assertFalse(resources.contains("missing.txt"));
+      String[] names = new String[]{ "readme.txt", "fonts/noise.bin", "fonts/baked/empty.dat" };
+      byte[][] contents = new byte[][]{ text, noise, new byte[0] };
+      for(int r = 0; r < names.length; r++){
+         ByteBuffer buffer = resources.getBuffer(names[r]);
+         byte[] read = new byte[buffer.remaining()];
+         buffer.get(read);
+         assertArrayEquals(names[r], contents[r], read);
+         assertArrayEquals(names[r], contents[r], readAll(resources.getInputStream(names[r])));
+      }//End for
+   }//End method assertContents
+
+   @Test public void testRoundTrip() throws IOException{
+      ResourceArchiveBuilder builder = new ResourceArchiveBuilder();
+      builder.addDirectory(directory);
+      builder.write(archive);
+      assertContents(new ResourceArchive(archive));
+      //The text is deflated, so the archive is smaller than the resources.
+      assertTrue(archive.length() < text.length + noise.length);
+   }//End method testRoundTrip
+
+   @Test public void testStored() throws IOException{
+      ResourceArchiveBuilder builder = new ResourceArchiveBuilder();
+      builder.setCompress(false);
+      builder.addDirectory(directory);
+      builder.write(archive);
+      assertContents(new ResourceArchive(archive));
+      assertTrue(archive.length() > text.length + noise.length);
+   }//End method testStored
+
+   @Test public void testSameFilesSameArchive() throws IOException{
+      ResourceArchiveBuilder builder = new ResourceArchiveBuilder();
+      builder.addDirectory(directory);
+      builder.write(archive);
+      byte[] first = Files.readAllBytes(archive.toPath());
+      builder = new ResourceArchiveBuilder();
+      builder.addDirectory(directory);
+      builder.write(archive);
+      assertArrayEquals(first, Files.readAllBytes(archive.toPath()));
+   }//End method testSameFilesSameArchive
+}//End class ResourceArchiveTest
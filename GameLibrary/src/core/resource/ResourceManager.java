@@ -4,8 +4,26 @@ import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import org.lwjgl.LWJGLException;
 import org.lwjgl.opengl.Display;
@@ -23,42 +41,260 @@ public class ResourceManager {
    private static SharedDrawable sharedDrawable;
    /** A blank 1x1 white texture; */
    private static Texture2D blankTexture;
+   /** The worker threads decoding resources for {@link #loadAsync(Class, String)}, created on first use. */
+   private static ExecutorService decoders;
+   /** The loads in flight, by type and name. Also its own lock. */
+   private static Map<String, PendingLoad<?>> pending = new HashMap<String, PendingLoad<?>>();
+   /** The decoded resources waiting to be uploaded on the OpenGL thread. */
+   private static LinkedBlockingQueue<PendingLoad<?>> uploads = new LinkedBlockingQueue<PendingLoad<?>>();
+   /** The acquired resources by key, in least recently used order. Also the lock for reference counts. */
+   private static LinkedHashMap<String, Resource> managed = new LinkedHashMap<String, Resource>(16, 0.75f, true);
+   /** The total size in bytes of the acquired resources. */
+   private static long managedBytes;
+   /** The size in bytes acquired resources may take before unreferenced ones are evicted. */
+   private static long memoryBudget = Long.MAX_VALUE;
+   /** The mounted archives, searched in the order mounted before the class path. */
+   private static List<ResourceArchive> archives = new CopyOnWriteArrayList<ResourceArchive>();
+   /** Evicted resources waiting to be disposed of on the OpenGL thread. */
+   private static ConcurrentLinkedQueue<Resource> disposals = new ConcurrentLinkedQueue<Resource>();
+   /** The OpenGL thread, the last to call {@link #processUploads(long)} or {@link #await(Future)}, null until one has. */
+   private static volatile Thread openGLThread;
    /** Constructor **/
    private ResourceManager(){};
    
    /** Map containing {@link ResourceMap}s for each resource type */
-   private static Map<Class<? extends Resource>, ResourceMap<? extends Resource>> resourceMap =
-         new HashMap<Class<? extends Resource>, ResourceMap<? extends Resource>>();;
+   private static ConcurrentMap<Class<? extends Resource>, ResourceMap<? extends Resource>> resourceMap =
+         new ConcurrentHashMap<Class<? extends Resource>, ResourceMap<? extends Resource>>();
 
    /**
     * Method to load a {@link Resource} of the given {@link Class} and handle it in this {@link ResourceManager}.
+    * Only one thread loads each resource, others asking for it at the same time wait for that load.
+    * The file is decoded on the calling thread. Off the OpenGL thread the upload is queued for 
+    * {@link #processUploads(long)} and the caller waits for it, so the OpenGL thread must not be waiting on the caller.
     * @param clazz the type of the {@link Resource} to load.
     * @param fileName the path of the file to load.
     * @return the {@link Resource} that has been loaded, null if the load fails.
     */
+   @SuppressWarnings("unchecked")
    private static <T extends Resource> T load(Class<T> clazz, String fileName){
-      try {
-         //ThreadedOGLUtil.setContext();
-         T resource = clazz.newInstance();
-         String extension = fileName.substring(fileName.lastIndexOf('.'), fileName.length()).trim().toUpperCase();
-         if(resource.validExtensions() != null && !resource.validExtensions().contains(extension)){
-            throw new IllegalArgumentException("The file extension " + extension + " for resource type " + clazz.getCanonicalName() +
-                  ". Supported file types are " + resource.validExtensions().toString());
+      String key = key(clazz, fileName);
+      PendingLoad<T> load;
+      boolean owner = false;
+      synchronized(pending){
+         load = (PendingLoad<T>) pending.get(key);
+         if(load == null){
+            //A load may have been added and left the pending map since the caller's find() missed.
+            T loaded = find(clazz, fileName);
+            if(loaded != null){
+               return loaded;
+            }//End if
+            load = new PendingLoad<T>(clazz, key, fileName, false);
+            pending.put(key, load);
+            owner = true;
+         }//End if
+      }//End synchronized
+      if(owner){
+         load.decoded.run();
+      }//End if
+      Thread thread = openGLThread;
+      if(thread == null || thread == Thread.currentThread()){
+         //Anyone else on the OpenGL thread waits in complete() for the owner's decode.
+         return load.complete();
+      }//End if
+      if(owner){
+         uploads.add(load);
+      }//End if
+      return load.waitForResult();
+   }//End method load
+
+   /**
+    * Gets the key of a {@link Resource} in the pending and acquired maps.
+    * @param clazz the type of the {@link Resource}.
+    * @param name the name of the {@link Resource}.
+    * @return the key.
+    */
+   private static String key(Class<? extends Resource> clazz, String name){
+      return clazz.getName() + ":" + name;
+   }//End method key
+
+   /**
+    * Creates an empty {@link Resource} of the given {@link Class}, checking it supports the file.
+    * @param clazz the type of the {@link Resource} to create.
+    * @param fileName the path of the file to be loaded.
+    * @return the new, unloaded {@link Resource}.
+    * @throws InstantiationException if the {@link Resource} can not be created.
+    * @throws IllegalAccessException if the {@link Resource} has no public constructor.
+    */
+   private static <T extends Resource> T create(Class<T> clazz, String fileName) throws InstantiationException, IllegalAccessException{
+      T resource = clazz.newInstance();
+      String extension = fileName.substring(fileName.lastIndexOf('.'), fileName.length()).trim().toUpperCase();
+      if(resource.validExtensions() != null && !resource.validExtensions().contains(extension)){
+         throw new IllegalArgumentException("The file extension " + extension + " for resource type " + clazz.getCanonicalName() +
+               ". Supported file types are " + resource.validExtensions().toString());
+      }//End if
+      return resource;
+   }//End method create
+
+   /**
+    * Loads a {@link Resource} in the background. The file is decoded on a worker thread, then the
+    * resource is uploaded on the OpenGL thread by {@link #processUploads(long)} or {@link #await(Future)}
+    * before the future completes. Loading many resources this way takes as long as the slowest, not the sum.
+    * Loading a resource already loaded, or already being loaded, does not load it again.
+    * @param clazz the type of the {@link Resource} to load.
+    * @param fileName the path of the file to load.
+    * @return a {@link Future} completing with the loaded {@link Resource}.
+    */
+   @SuppressWarnings("unchecked")
+   public static <T extends Resource> Future<T> loadAsync(Class<T> clazz, String fileName){
+      T loaded = find(clazz, fileName);
+      if(loaded != null){
+         return completed(loaded);
+      }//End if
+      synchronized(ResourceManager.class){
+         if(decoders == null){
+            decoders = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory(){
+               @Override public Thread newThread(Runnable runnable){
+                  Thread thread = new Thread(runnable, "ResourceDecoder");
+                  thread.setDaemon(true);
+                  return thread;
+               }//End method newThread
+            });
          }//End if
-         resource.load(fileName);
-         resource.setName(fileName);
-         addContent(resource, fileName);
-         return resource;
-      } catch (InstantiationException | IllegalAccessException | IOException e) {
-         System.err.println("Unable to create a new instance of " + clazz.getCanonicalName());
+      }//End synchronized
+      String key = key(clazz, fileName);
+      synchronized(pending){
+         PendingLoad<T> load = (PendingLoad<T>) pending.get(key);
+         if(load == null){
+            //As in load(), a load may have finished since the find() above.
+            loaded = find(clazz, fileName);
+            if(loaded != null){
+               return completed(loaded);
+            }//End if
+            load = new PendingLoad<T>(clazz, key, fileName, true);
+            pending.put(key, load);
+            decoders.execute(load.decoded);
+         }//End if
+         return load.result;
+      }//End synchronized
+   }//End method loadAsync
+
+   /**
+    * Wraps a {@link Resource} that is already loaded in a finished {@link Future}.
+    * @param resource the {@link Resource}.
+    * @return a {@link Future} holding the {@link Resource}.
+    */
+   private static <T extends Resource> Future<T> completed(final T resource){
+      FutureTask<T> future = new FutureTask<T>(new Callable<T>(){
+         @Override public T call(){
+            return resource;
+         }//End method call
+      });
+      future.run();
+      return future;
+   }//End method completed
+
+   /**
+    * Disposes of evicted resources then uploads decoded resources on the OpenGL thread until the time budget
+    * is spent, called once per frame by {@link core.Game}. At least one resource is uploaded per call, so loading always makes progress.
+    * @param budgetNanos the nanoseconds that may be spent uploading.
+    */
+   public static void processUploads(long budgetNanos){
+      long start = System.nanoTime();
+      openGLThread = Thread.currentThread();
+      Resource evicted;
+      while((evicted = disposals.poll()) != null){
+         evicted.dispose();
+      }//End while
+      PendingLoad<?> load;
+      while((load = uploads.poll()) != null){
+         load.complete();
+         if(System.nanoTime() - start >= budgetNanos){
+            break;
+         }//End if
+      }//End while
+   }//End method processUploads
+
+   /**
+    * Waits on the OpenGL thread for an asynchronous load to finish, uploading
+    * whatever finishes decoding in the meantime.
+    * @param future a future returned by {@link #loadAsync(Class, String)}.
+    * @return the loaded {@link Resource}, null if it failed to load.
+    */
+   public static <T extends Resource> T await(Future<T> future){
+      openGLThread = Thread.currentThread();
+      try {
+         while(!future.isDone()){
+            PendingLoad<?> load = uploads.poll(10, TimeUnit.MILLISECONDS);
+            if(load != null){
+               load.complete();
+            }//End if
+         }//End while
+         return future.get();
+      } catch (Exception e) {
          e.printStackTrace();
       }//End try/catch
       return null;
-   }//End method load
+   }//End method await
+
+   /**
+    * Mounts a {@link ResourceArchive}, resources it holds are read from it rather than the class path.
+    * @param archive the archive file, built by {@link ResourceArchiveBuilder}.
+    * @throws IOException if the archive can not be opened.
+    */
+   public static void mount(File archive) throws IOException{
+      archives.add(new ResourceArchive(archive));
+   }//End method mount
+
+   /**
+    * Finds the mounted archive holding a resource.
+    * @param fileName the name of the resource.
+    * @return the archive, null if no mounted archive holds the resource.
+    */
+   private static ResourceArchive findArchive(String fileName){
+      for(ResourceArchive archive : archives){
+         if(archive.contains(fileName)){
+            return archive;
+         }//End if
+      }//End for
+      return null;
+   }//End method findArchive
 
    public static InputStream getInputStreamForFilename(String fileName) throws IOException{
+      ResourceArchive archive = findArchive(fileName);
+      if(archive != null){
+         return archive.getInputStream(fileName);
+      }//End if
       return ResourceManager.class.getClassLoader().getResourceAsStream(fileName);
    }//End method getInputStreamForFileName
+
+   /**
+    * Gets the bytes of a resource. From a mounted archive this is a slice of its mapping, not a copy,
+    * otherwise the resource is read from the class path.
+    * @param fileName the name of the resource.
+    * @return the bytes from position 0, null if the resource does not exist.
+    * @throws IOException if the resource can not be read.
+    */
+   public static ByteBuffer getBufferForFilename(String fileName) throws IOException{
+      ResourceArchive archive = findArchive(fileName);
+      if(archive != null){
+         return archive.getBuffer(fileName);
+      }//End if
+      try(InputStream stream = ResourceManager.class.getClassLoader().getResourceAsStream(fileName)){
+         if(stream == null){
+            return null;
+         }//End if
+         byte[] buffer = new byte[Math.max(stream.available(), 4096)];
+         int length = 0;
+         int read;
+         while((read = stream.read(buffer, length, buffer.length - length)) != -1){
+            length += read;
+            if(length == buffer.length){
+               buffer = Arrays.copyOf(buffer, buffer.length * 2);
+            }//End if
+         }//End while
+         return ByteBuffer.wrap(buffer, 0, length).slice();
+      }//End try
+   }//End method getBufferForFilename
    
    public static File getRelativeFileForFilename(String fileName) throws IOException{
       URL url = ResourceManager.class.getClassLoader().getResource(fileName);
@@ -94,12 +330,16 @@ public class ResourceManager {
     * @param resource the {@link Resource} to add to this {@link ResourceManager}
     * @param name the name of the {@link Resource}.
     */
+   @SuppressWarnings("unchecked")
    private static <T extends Resource> void addContent(T resource, String name){
-      if(!resourceMap.containsKey(resource.getClass())){
-         resourceMap.put(resource.getClass(), new ResourceMap<T>());
-      }//End if
-      @SuppressWarnings("unchecked")
       ResourceMap<T> resources = (ResourceMap<T>) resourceMap.get(resource.getClass());
+      if(resources == null){
+         ResourceMap<T> created = new ResourceMap<T>();
+         resources = (ResourceMap<T>) resourceMap.putIfAbsent(resource.getClass(), created);
+         if(resources == null){
+            resources = created;
+         }//End if
+      }//End if
       if(resources.containsKey(name)){
          throw new IllegalArgumentException(
                "The content manager already has a resource named " + name + " for the type " + resource.getClass().getName());
@@ -115,20 +355,107 @@ public class ResourceManager {
     * @return The {@link Resource} of type T with the given name, if not found this manager will
     *  attempt to load the resource.
     */
-   @SuppressWarnings("unchecked")
    public static <T extends Resource> T getResource(Class<T> clazz, String resourceName){
-      ResourceMap<?> resources = resourceMap.get(clazz);
-      if(resources != null){
-         T resource = (T) resources.getResource(resourceName);
-         if(resource == null){
-            resource = load(clazz, resourceName);
-         }//End if
-         return resource;
+      T resource = find(clazz, resourceName);
+      if(resource == null){
+         resource = load(clazz, resourceName);
       } else {
-         return load(clazz, resourceName);
+         synchronized(managed){
+            //Counts as a use for eviction if the resource has been acquired.
+            managed.get(key(clazz, resourceName));
+         }//End synchronized
       }//End if
+      return resource;
    }//End method getResource
    
+   /**
+    * Finds a loaded {@link Resource} without loading it.
+    * @param clazz the {@link Class} of the resource to find.
+    * @param resourceName the name of the resource to find.
+    * @return the {@link Resource}, null if it is not loaded.
+    */
+   @SuppressWarnings("unchecked")
+   private static <T extends Resource> T find(Class<T> clazz, String resourceName){
+      ResourceMap<?> resources = resourceMap.get(clazz);
+      return resources == null ? null : (T) resources.getResource(resourceName);
+   }//End method find
+
+   /**
+    * Gets a resource like {@link #getResource(Class, String)} and holds a reference to it.
+    * Acquired resources are kept until every reference is released, then may be evicted,
+    * least recently used first, while the acquired resources are over the memory budget.
+    * Resources only ever got with {@link #getResource(Class, String)} are never evicted.
+    * @param clazz the {@link Class} of the resource to acquire.
+    * @param resourceName the name of the resource to acquire.
+    * @return the {@link Resource}, null if it could not be loaded.
+    */
+   public static <T extends Resource> T acquire(Class<T> clazz, String resourceName){
+      T resource = getResource(clazz, resourceName);
+      if(resource != null){
+         synchronized(managed){
+            if(managed.put(key(clazz, resourceName), resource) == null){
+               managedBytes += resource.getSizeInBytes();
+            }//End if
+            resource.references++;
+            evict();
+         }//End synchronized
+      }//End if
+      return resource;
+   }//End method acquire
+
+   /**
+    * Releases a reference to a resource got with {@link #acquire(Class, String)}.
+    * @param resource the {@link Resource} to release.
+    */
+   public static void release(Resource resource){
+      synchronized(managed){
+         if(resource.references > 0){
+            resource.references--;
+         }//End if
+         evict();
+      }//End synchronized
+   }//End method release
+
+   /**
+    * Sets the size in bytes acquired resources may take, such as the texture memory they use,
+    * before unreferenced ones are evicted.
+    * @param bytes the budget in bytes.
+    */
+   public static void setMemoryBudget(long bytes){
+      synchronized(managed){
+         memoryBudget = bytes;
+         evict();
+      }//End synchronized
+   }//End method setMemoryBudget
+
+   /**
+    * Gets the size in bytes of the acquired resources.
+    * @return the size in bytes.
+    */
+   public static long getManagedBytes(){
+      synchronized(managed){
+         return managedBytes;
+      }//End synchronized
+   }//End method getManagedBytes
+
+   /**
+    * Evicts unreferenced acquired resources, least recently used first, until within the memory budget.
+    * They are removed at once and disposed of on the OpenGL thread by {@link #processUploads(long)}.
+    * Must hold the lock on the acquired map.
+    */
+   private static void evict(){
+      Iterator<Resource> resources = managed.values().iterator();
+      while(managedBytes > memoryBudget && resources.hasNext()){
+         Resource resource = resources.next();
+         if(resource.references == 0){
+            resources.remove();
+            managedBytes -= resource.getSizeInBytes();
+            resourceMap.get(resource.getClass()).removeResource(resource.getName());
+            disposals.add(resource);
+         }//End if
+      }//End while
+   }//End method evict
+
    /**
     * Returns a 1x1 white {@link Texture2D}.
     * @return a 1x1 white {@link Texture2D}.
@@ -139,4 +466,95 @@ public class ResourceManager {
       }//End if
       return blankTexture;
    }//End method getBlankTexture
+
+   /**
+    * A load in flight, decoded by the thread that started it or a worker thread, then completed on the OpenGL thread.
+    * @param <T> the type of {@link Resource} being loaded.
+    */
+   private static class PendingLoad<T extends Resource> {
+      /** The type of the {@link Resource}. */
+      private final Class<T> clazz;
+      /** The key of this load in the pending map. */
+      private final String key;
+      /** The name to add the {@link Resource} under. */
+      private final String name;
+      /** Decodes the {@link Resource}, run once by whoever started the load. */
+      private final FutureTask<T> decoded;
+      /** Uploads and adds the decoded {@link Resource}, run once by {@link #complete()}. */
+      private final FutureTask<T> result;
+
+      /**
+       * Constructs a new {@link PendingLoad}.
+       * @param clazz the type of the {@link Resource}.
+       * @param key the key of this load in the pending map.
+       * @param name the name to add the {@link Resource} under.
+       * @param queued whether to queue the load for {@link ResourceManager#processUploads(long)} once decoded.
+       */
+      PendingLoad(final Class<T> clazz, String key, final String name, final boolean queued){
+         this.clazz = clazz;
+         this.key = key;
+         this.name = name;
+         decoded = new FutureTask<T>(new Callable<T>(){
+            @Override public T call() throws Exception{
+               T resource = create(clazz, name);
+               resource.decode(name);
+               return resource;
+            }//End method call
+         }){
+            @Override protected void done(){
+               if(queued){
+                  uploads.add(PendingLoad.this);
+               }//End if
+            }//End method done
+         };
+         result = new FutureTask<T>(new Callable<T>(){
+            @Override public T call() throws Exception{
+               T resource = find(clazz, name);
+               if(resource == null){
+                  try {
+                     resource = decoded.get();
+                  } catch (ExecutionException e) {
+                     throw new IOException("Unable to load " + name + " as " + clazz.getCanonicalName(), e.getCause());
+                  }//End try/catch
+                  resource.upload();
+                  resource.setName(name);
+                  addContent(resource, name);
+               }//End if
+               return resource;
+            }//End method call
+         });
+      }//End constructor
+
+      /**
+       * Uploads and adds the decoded {@link Resource}, waiting for it to be decoded, if not done already.
+       * Must be called on the OpenGL thread. If the resource was loaded by other means in the meantime, that one is kept.
+       * @return the loaded {@link Resource}, null if the load failed.
+       */
+      synchronized T complete(){
+         result.run();
+         //Only leaves the map once the resource has been added, so the re-check under the lock finds it.
+         synchronized(pending){
+            if(pending.get(key) == this){
+               pending.remove(key);
+            }//End if
+         }//End synchronized
+         return waitForResult();
+      }//End method complete
+
+      /**
+       * Waits for {@link #complete()} to be called on the OpenGL thread.
+       * @return the loaded {@link Resource}, null if the load failed.
+       */
+      T waitForResult(){
+         try {
+            return result.get();
+         } catch (ExecutionException e) {
+            e.getCause().printStackTrace();
+            return null;
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+         }//End try/catch
+      }//End method waitForResult
+   }//End class PendingLoad
 }//End class ContentManager
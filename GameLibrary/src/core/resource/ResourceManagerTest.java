@@ -0,0 +1,161 @@
+package core.resource;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Tests reference counting and least recently used eviction of acquired resources, that a resource
+ * asked for by many threads at once is only loaded once, and that resources are only uploaded on the
+ * thread processing uploads. Uses a resource that needs no files or OpenGL.
+ */
+public class ResourceManagerTest {
+   /**The size of every test resource.*/
+   private static final long SIZE = 100;
+
+   /**
+    * A resource of {@link #SIZE} bytes that remembers being disposed of.
+    */
+   public static class TestResource extends Resource {
+      /**The number of test resources loaded.*/
+      static AtomicInteger loads = new AtomicInteger();
+      /**Whether this resource has been disposed of.*/
+      boolean disposed;
+      /**The thread that uploaded this resource.*/
+      volatile Thread uploader;
+
+      @Override public void load(String fileName){
+         loads.incrementAndGet();
+         try {
+            //Long enough for the other threads asking for it to arrive while it loads.
+            Thread.sleep(20);
+         } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+         }//End try/catch
+      }//End method load
+
+      @Override public void upload(){
+         uploader = Thread.currentThread();
+      }//End method upload
+
+      @Override public long getSizeInBytes(){
+         return SIZE;
+      }//End method getSizeInBytes
+
+      @Override public void dispose(){
+         disposed = true;
+      }//End method dispose
+
+      @Override public List<String> validExtensions(){
+         return null;
+      }//End method validExtensions
+   }//End class TestResource
+
+   /**The acquired bytes before the test.*/
+   private long base;
+
+   @Before public void resetBudget(){
+      ResourceManager.setMemoryBudget(Long.MAX_VALUE);
+      base = ResourceManager.getManagedBytes();
+   }//End method resetBudget
+
+   @After public void evictAll(){
+      ResourceManager.setMemoryBudget(0);
+      ResourceManager.processUploads(0);
+      ResourceManager.setMemoryBudget(Long.MAX_VALUE);
+   }//End method evictAll
+
+   @Test public void testReferencedNotEvicted(){
+      TestResource a = ResourceManager.acquire(TestResource.class, "ref-a.res");
+      TestResource b = ResourceManager.acquire(TestResource.class, "ref-b.res");
+      assertSame(a, ResourceManager.acquire(TestResource.class, "ref-a.res"));
+      assertEquals(base + 2 * SIZE, ResourceManager.getManagedBytes());
+      ResourceManager.setMemoryBudget(base);
+      //Both are referenced, so the budget is exceeded rather than evicting them.
+      assertEquals(base + 2 * SIZE, ResourceManager.getManagedBytes());
+      ResourceManager.release(a);
+      ResourceManager.release(b);
+      //a is still held by its second acquire.
+      assertEquals(base + SIZE, ResourceManager.getManagedBytes());
+      ResourceManager.processUploads(0);
+      assertTrue(b.disposed);
+      assertFalse(a.disposed);
+      assertSame(a, ResourceManager.getResource(TestResource.class, "ref-a.res"));
+      assertNotSame(b, ResourceManager.getResource(TestResource.class, "ref-b.res"));
+      ResourceManager.release(a);
+      assertEquals(base, ResourceManager.getManagedBytes());
+   }//End method testReferencedNotEvicted
+
+   @Test public void testLeastRecentlyUsedFirst(){
+      TestResource a = ResourceManager.acquire(TestResource.class, "lru-a.res");
+      TestResource b = ResourceManager.acquire(TestResource.class, "lru-b.res");
+      TestResource c = ResourceManager.acquire(TestResource.class, "lru-c.res");
+      ResourceManager.release(a);
+      ResourceManager.release(b);
+      ResourceManager.release(c);
+      //Using a makes b the least recently used.
+      assertSame(a, ResourceManager.getResource(TestResource.class, "lru-a.res"));
+      ResourceManager.setMemoryBudget(base + 2 * SIZE);
+      ResourceManager.processUploads(0);
+      assertTrue(b.disposed);
+      assertFalse(a.disposed);
+      assertFalse(c.disposed);
+      ResourceManager.setMemoryBudget(base + SIZE);
+      ResourceManager.processUploads(0);
+      assertTrue(c.disposed);
+      assertFalse(a.disposed);
+      assertEquals(base + SIZE, ResourceManager.getManagedBytes());
+   }//End method testLeastRecentlyUsedFirst
+
+   /**
+    * Gets a resource on a number of other threads at once, processing uploads on this thread until they have all finished.
+    * @param threads the number of threads.
+    * @param name the name of the resource.
+    * @return the resources each thread got.
+    */
+   private static List<Future<TestResource>> getOnThreads(int threads, final String name){
+      ExecutorService pool = Executors.newFixedThreadPool(threads);
+      List<Future<TestResource>> results = new ArrayList<Future<TestResource>>();
+      for(int t = 0; t < threads; t++){
+         results.add(pool.submit(new Callable<TestResource>(){
+            @Override public TestResource call(){
+               return ResourceManager.getResource(TestResource.class, name);
+            }//End method call
+         }));
+      }//End for
+      pool.shutdown();
+      while(!pool.isTerminated()){
+         ResourceManager.processUploads(Long.MAX_VALUE);
+      }//End while
+      return results;
+   }//End method getOnThreads
+
+   @Test public void testUploadedOnOpenGLThread() throws Exception{
+      //Processing uploads makes this the OpenGL thread.
+      ResourceManager.processUploads(0);
+      TestResource resource = getOnThreads(1, "upload.res").get(0).get();
+      assertNotNull(resource);
+      assertSame(Thread.currentThread(), resource.uploader);
+   }//End method testUploadedOnOpenGLThread
+
+   @Test public void testLoadedOnce() throws Exception{
+      int before = TestResource.loads.get();
+      List<Future<TestResource>> results = getOnThreads(8, "once.res");
+      TestResource first = results.get(0).get();
+      assertNotNull(first);
+      for(Future<TestResource> result : results){
+         assertSame(first, result.get());
+      }//End for
+      assertEquals(before + 1, TestResource.loads.get());
+   }//End method testLoadedOnce
+}//End class ResourceManagerTest
@@ -1,10 +1,11 @@
 package core.resource;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * A ResourceMap holds all of the {@link Resource}s of a particular type mapped to its name.
+ * It may be read and written from any thread.
  * @param <T> the {@link Resource} type this {@link ResourceMap} holds.
  */
 public class ResourceMap <T extends Resource>{
@@ -16,7 +17,7 @@ public class ResourceMap <T extends Resource>{
     * Constructs a new {@link ResourceMap}
     */
    public ResourceMap(){
-      resources = new HashMap<String, T>();
+      resources = new ConcurrentHashMap<String, T>();
    }//End constructor
    
    /**
@@ -0,0 +1,31 @@
+//Instanced vertex shader, expands one sprite record into a rotated, textured quad
+#version 330
+uniform mat4 CameraMatrix;
+uniform mat4 TransformMatrix;
+
+//Per vertex, the corner of the quad from (0, 0) to (1, 1)
+in vec2 Corner;
+//Per instance, x, y, width and height
+in vec4 Rect;
+//Per instance, the rotation origin x and y, then the angle
+in vec3 Rotation;
+in float Depth;
+in vec4 Colour;
+//Per instance, the texture coordinates u, v, u2 and v2
+in vec4 Source;
+
+out vec2 vTexCoord;
+out vec4 vColour;
+
+void main(void)
+{
+    vec2 local = Corner * Rect.zw - Rotation.xy;
+    float s = sin(Rotation.z);
+    float c = cos(Rotation.z);
+    vec2 position = Rect.xy + vec2(c * local.x - s * local.y, s * local.x + c * local.y) + Rotation.xy;
+    gl_Position = CameraMatrix * (TransformMatrix * vec4(position.x, position.y, Depth, 1.0));
+
+    vTexCoord = mix(Source.xy, Source.zw, Corner);
+    gl_Position.z = Depth;
+    vColour = Colour;
+}
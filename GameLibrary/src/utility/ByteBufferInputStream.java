@@ -0,0 +1,59 @@
+package utility;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+
+/**
+ * An {@link InputStream} reading straight from a {@link ByteBuffer}, such as a slice of a memory mapped file,
+ * so stream based decoders can read it without copying it first.
+ */
+public class ByteBufferInputStream extends InputStream {
+   /**The buffer being read, its position is the position of the stream.*/
+   private ByteBuffer buffer;
+
+   /**
+    * Constructs a new {@link ByteBufferInputStream}.
+    * @param buffer the buffer to read from its position to its limit, it is not copied.
+    */
+   public ByteBufferInputStream(ByteBuffer buffer){
+      this.buffer = buffer;
+   }//End constructor
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public int read(){
+      return buffer.hasRemaining() ? buffer.get() & 0xFF : -1;
+   }//End method read
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public int read(byte[] bytes, int offset, int length){
+      if(length == 0){
+         return 0;
+      }//End if
+      if(!buffer.hasRemaining()){
+         return -1;
+      }//End if
+      int read = Math.min(length, buffer.remaining());
+      buffer.get(bytes, offset, read);
+      return read;
+   }//End method read
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public long skip(long count){
+      int skipped = (int) Math.max(0, Math.min(count, buffer.remaining()));
+      buffer.position(buffer.position() + skipped);
+      return skipped;
+   }//End method skip
+
+   /**
+    * {@inheritDoc}
+    */
+   @Override public int available(){
+      return buffer.remaining();
+   }//End method available
+}//End class ByteBufferInputStream
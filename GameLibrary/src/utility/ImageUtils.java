@@ -1,8 +1,14 @@
 package utility;
 
 import java.awt.image.BufferedImage;
+import java.awt.image.ColorModel;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.IntBuffer;
 
 /**
  * Utility class for helper methods relating to images.
@@ -14,19 +20,89 @@ public class ImageUtils {
     * @return a {@link ByteBuffer} containing pixel information from the buffered image.
     */
    public static ByteBuffer createBufferFromImage(BufferedImage image) {
-      int[] pixels = new int[image.getWidth() * image.getHeight()];
-      image.getRGB(0, 0, image.getWidth(), image.getHeight(), pixels, 0, image.getWidth());
-      ByteBuffer buffer = ByteBuffer.allocateDirect(image.getWidth() * image.getHeight() * 4).order(ByteOrder.nativeOrder());
-      for(int y = 0; y < image.getHeight(); y++){
-         for(int x = 0; x < image.getWidth(); x++){
-            int pixel = pixels[y * image.getWidth() + x];
-            buffer.put((byte) ((pixel >> 16) & 0xFF));
-            buffer.put((byte) ((pixel >> 8) & 0xFF));
-            buffer.put((byte) (pixel & 0xFF));
-            buffer.put((byte) ((pixel >> 24) & 0xFF));
+      int width = image.getWidth();
+      int height = image.getHeight();
+      if(image.getType() == BufferedImage.TYPE_INT_ARGB && image.getRaster().getDataBuffer() instanceof DataBufferInt
+            && image.getRaster().getSampleModelTranslateX() == 0 && image.getRaster().getSampleModelTranslateY() == 0
+            && ((DataBufferInt) image.getRaster().getDataBuffer()).getSize() == width * height){
+         //The pixels are already packed ARGB, so can be converted without copying them out first.
+         return createBufferFromPixels(((DataBufferInt) image.getRaster().getDataBuffer()).getData());
+      }//End if
+      int[] pixels = new int[width * height];
+      image.getRGB(0, 0, width, height, pixels, 0, width);
+      return createBufferFromPixels(pixels);
+   }//End method createBufferFromImage
+
+   /**
+    * Creates a {@link ByteBuffer} of RGBA bytes from ARGB pixels.
+    * @param pixels the ARGB pixels.
+    * @return a {@link ByteBuffer} containing the pixels in the order OpenGL expects for GL_RGBA.
+    */
+   public static ByteBuffer createBufferFromPixels(int[] pixels){
+      ByteBuffer buffer = ByteBuffer.allocateDirect(pixels.length * 4);
+      //Written as big endian ints, RGBA is a rotate of ARGB by a byte.
+      IntBuffer ints = buffer.asIntBuffer();
+      for(int p = 0; p < pixels.length; p++){
+         ints.put(p, Integer.rotateLeft(pixels[p], 8));
+      }//End for
+      return buffer.order(ByteOrder.nativeOrder());
+   }//End method createBufferFromPixels
+
+   /**
+    * Reads RGBA bytes, as uploaded to or read back from OpenGL, into ARGB pixels.
+    * @param buffer the RGBA bytes, from its position.
+    * @param pixels the array to write the ARGB pixels into, one for every four bytes.
+    * @return the pixels.
+    */
+   public static int[] readPixelsFromBuffer(ByteBuffer buffer, int[] pixels){
+      IntBuffer ints = buffer.duplicate().order(ByteOrder.BIG_ENDIAN).asIntBuffer();
+      for(int p = 0; p < pixels.length; p++){
+         pixels[p] = Integer.rotateRight(ints.get(p), 8);
+      }//End for
+      return pixels;
+   }//End method readPixelsFromBuffer
+
+   /**
+    * Creates a {@link BufferedImage} backed by an array of ARGB pixels, without copying them,
+    * so changes to either the image or the array are seen by the other.
+    * @param pixels the ARGB pixels, row by row.
+    * @param width the width of the image.
+    * @param height the height of the image.
+    * @return a {@link BufferedImage#TYPE_INT_ARGB} image of the pixels.
+    */
+   public static BufferedImage createImageFromPixels(int[] pixels, int width, int height){
+      DirectColorModel model = (DirectColorModel) ColorModel.getRGBdefault();
+      WritableRaster raster = Raster.createPackedRaster(new DataBufferInt(pixels, width * height), width, height, width,
+            model.getMasks(), null);
+      return new BufferedImage(model, raster, false, null);
+   }//End method createImageFromPixels
+
+   /**
+    * Creates a {@link BufferedImage} from a packed 1 bit per pixel bitmap, without needing an OpenGL context.
+    * Pixel (x, y) is bit (y * width + x) of the bitmap, counting from the least significant bit of the first long.
+    * @param bitmap the packed bitmap.
+    * @param width the width of the bitmap in pixels.
+    * @param height the height of the bitmap in pixels.
+    * @param scale the number of image pixels to use for each bitmap pixel.
+    * @param onColour the ARGB colour of set pixels.
+    * @param offColour the ARGB colour of clear pixels.
+    * @return a {@link BufferedImage} of size (width * scale, height * scale).
+    */
+   public static BufferedImage createImageFromBitmap(long[] bitmap, int width, int height, int scale, int onColour, int offColour){
+      BufferedImage image = new BufferedImage(width * scale, height * scale, BufferedImage.TYPE_INT_ARGB);
+      int[] row = new int[width * scale];
+      for(int y = 0; y < height; y++){
+         for(int x = 0; x < width; x++){
+            int bit = y * width + x;
+            int colour = ((bitmap[bit >> 6] >>> bit) & 1L) != 0 ? onColour : offColour;
+            for(int s = 0; s < scale; s++){
+               row[x * scale + s] = colour;
+            }//End for
+         }//End for
+         for(int s = 0; s < scale; s++){
+            image.setRGB(0, y * scale + s, row.length, 1, row, 0, row.length);
          }//End for
       }//End for
-      buffer.flip(); 
-      return buffer;
-   }//End for
+      return image;
+   }//End method createImageFromBitmap
 }//End class ImageUtils
@@ -0,0 +1,77 @@
+package utility;
+
+import java.util.Arrays;
+
+/**
+ * Utility class for sorting primitive keys without allocating.
+ */
+public class RadixSort {
+   /**The number of bits sorted per pass.*/
+   private static final int BITS = 8;
+   /**The number of buckets per pass.*/
+   private static final int BUCKETS = 1 << BITS;
+   /**The size of the counts scratch space, a set of buckets for each byte of a key.*/
+   public static final int COUNTS_SIZE = BUCKETS * (Long.SIZE / BITS);
+
+   /** Constructor **/
+   private RadixSort(){}
+
+   /**
+    * Sorts keys as unsigned 64 bit values, moving their values with them. The sort is stable, so
+    * entries with equal keys keep their order. Passes where every key has the same byte are skipped,
+    * so keys using few of their bits sort in few passes.
+    * @param keys the keys, sorted in place.
+    * @param values the values of each key, reordered in place.
+    * @param count the number of entries to sort from the start of the arrays.
+    * @param keyScratch scratch space for at least count keys.
+    * @param valueScratch scratch space for at least count values.
+    * @param counts scratch space of {@link #COUNTS_SIZE} for counting bytes.
+    */
+   public static void sort(long[] keys, int[] values, int count, long[] keyScratch, int[] valueScratch, int[] counts){
+      if(count < 2){
+         return;
+      }//End if
+      long[] fromKeys = keys;
+      int[] fromValues = values;
+      long[] toKeys = keyScratch;
+      int[] toValues = valueScratch;
+      int[] offsets = counts;
+      Arrays.fill(offsets, 0, COUNTS_SIZE, 0);
+      //Count every byte of every key in one pass over the keys
+      for(int i = 0; i < count; i++){
+         long key = keys[i];
+         for(int pass = 0; pass < Long.SIZE / BITS; pass++){
+            offsets[pass * BUCKETS + (int)((key >>> (pass * BITS)) & (BUCKETS - 1))]++;
+         }//End for
+      }//End for
+      for(int pass = 0; pass < Long.SIZE / BITS; pass++){
+         int base = pass * BUCKETS;
+         int shift = pass * BITS;
+         if(offsets[base + (int)((keys[0] >>> shift) & (BUCKETS - 1))] == count){
+            continue;
+         }//End if
+         int total = 0;
+         for(int b = 0; b < BUCKETS; b++){
+            int bucket = offsets[base + b];
+            offsets[base + b] = total;
+            total += bucket;
+         }//End for
+         for(int i = 0; i < count; i++){
+            long key = fromKeys[i];
+            int to = offsets[base + (int)((key >>> shift) & (BUCKETS - 1))]++;
+            toKeys[to] = key;
+            toValues[to] = fromValues[i];
+         }//End for
+         long[] swapKeys = fromKeys;
+         fromKeys = toKeys;
+         toKeys = swapKeys;
+         int[] swapValues = fromValues;
+         fromValues = toValues;
+         toValues = swapValues;
+      }//End for
+      if(fromKeys != keys){
+         System.arraycopy(fromKeys, 0, keys, 0, count);
+         System.arraycopy(fromValues, 0, values, 0, count);
+      }//End if
+   }//End method sort
+}//End class RadixSort
@@ -0,0 +1,62 @@
+package utility;
+
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Tests the radix sort orders keys as unsigned values, keeps equal keys in order and skips passes
+ * where every key has the same byte.
+ */
+public class RadixSortTest {
+
+   @Test public void testSortsUnsigned(){
+      Random random = new Random(42);
+      long[] keys = new long[1000];
+      int[] values = new int[keys.length];
+      for(int i = 0; i < keys.length; i++){
+         keys[i] = random.nextLong();
+         values[i] = i;
+      }//End for
+      long[] expected = keys.clone();
+      RadixSort.sort(keys, values, keys.length, new long[keys.length], new int[keys.length], new int[RadixSort.COUNTS_SIZE]);
+      //Flipping the sign bit orders signed values the way the sort orders unsigned ones.
+      for(int i = 0; i < expected.length; i++){
+         expected[i] ^= Long.MIN_VALUE;
+      }//End for
+      Arrays.sort(expected);
+      for(int i = 0; i < keys.length; i++){
+         assertEquals(expected[i] ^ Long.MIN_VALUE, keys[i]);
+      }//End for
+   }//End method testSortsUnsigned
+
+   @Test public void testStable(){
+      long[] keys = new long[]{ 3, 1, 2, 1, 3, 0x100000001L, 2, 1 };
+      int[] values = new int[]{ 0, 1, 2, 3, 4, 5, 6, 7 };
+      RadixSort.sort(keys, values, keys.length, new long[keys.length], new int[keys.length], new int[RadixSort.COUNTS_SIZE]);
+      assertArrayEquals(new long[]{ 1, 1, 1, 2, 2, 3, 3, 0x100000001L }, keys);
+      assertArrayEquals(new int[]{ 1, 3, 7, 2, 6, 0, 4, 5 }, values);
+   }//End method testStable
+
+   @Test public void testSkipsUniformPasses(){
+      long[] keyScratch = new long[4];
+      int[] valueScratch = new int[4];
+      Arrays.fill(keyScratch, -1L);
+      //Every byte is the same in every key, so no pass runs and the scratch space is untouched.
+      long[] keys = new long[]{ 0x1234L, 0x1234L, 0x1234L, 0x1234L };
+      int[] values = new int[]{ 0, 1, 2, 3 };
+      RadixSort.sort(keys, values, keys.length, keyScratch, valueScratch, new int[RadixSort.COUNTS_SIZE]);
+      assertArrayEquals(new long[]{ -1L, -1L, -1L, -1L }, keyScratch);
+      assertArrayEquals(new int[]{ 0, 1, 2, 3 }, values);
+      //Only the top byte differs, so the one pass run sorts into the scratch space and is copied back.
+      keys = new long[]{ 0x0300000000000005L, 0x0100000000000005L, 0x0200000000000005L, 0x0100000000000005L };
+      RadixSort.sort(keys, values, keys.length, keyScratch, valueScratch, new int[RadixSort.COUNTS_SIZE]);
+      long[] sorted = new long[]{ 0x0100000000000005L, 0x0100000000000005L, 0x0200000000000005L, 0x0300000000000005L };
+      assertArrayEquals(sorted, keys);
+      assertArrayEquals(sorted, keyScratch);
+      assertArrayEquals(new int[]{ 1, 3, 2, 0 }, values);
+   }//End method testSkipsUniformPasses
+}//End class RadixSortTest